@@ -0,0 +1,58 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the benchmarks and write the results as JSON.
+ * <p>
+ * Usage: <code>BenchmarkMain [result-file [include-regexp...]]</code>. The
+ * result file defaults to <code>jmh-result.json</code>; with no includes every
+ * benchmark in this module is run. For anything fancier use
+ * <code>org.openjdk.jmh.Main</code>, which is also in the benchmarks jar.
+ */
+public class BenchmarkMain
+{
+    public static void main(String[] args) throws Exception {
+        String result = (args.length > 0) ? args[0] : "jmh-result.json";
+        OptionsBuilder builder = new OptionsBuilder();
+        if (args.length > 1) {
+            for (int i = 1; i < args.length; i++) {
+                builder.include(args[i]);
+            }
+        }
+        else {
+            builder.include(BenchmarkMain.class.getPackage().getName() + "\\..*");
+        }
+        Options options = builder
+            .resultFormat(ResultFormatType.JSON)
+            .result(result)
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.bench;
+
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.row.ValuesHolderRow;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.AkServerUtil;
+import com.foundationdb.server.service.session.Session;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency of committing a single row insert: the in-memory store, the same
+ * store logging to disk and FoundationDB (which needs a running cluster).
+ * The concurrent variant shows how far group commit amortizes the log sync.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CommitBenchmarks
+{
+    private static final String SCHEMA = "bench";
+
+    @Param({"memory", "durable", "fdb"})
+    public String store;
+
+    private MemoryDatabase db;
+    private File dataDir;
+    private RowType rowType;
+    private final AtomicInteger nextID = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        switch (store) {
+        case "memory":
+            db = MemoryDatabase.start();
+            break;
+        case "durable":
+            dataDir = Files.createTempDirectory("fdbsql-memory").toFile();
+            Map<String,String> properties = new HashMap<>();
+            properties.put("fdbsql.memory.data_dir", dataDir.getAbsolutePath());
+            db = MemoryDatabase.start(properties);
+            break;
+        case "fdb":
+            db = MemoryDatabase.startFDB(Collections.<String,String>emptyMap());
+            break;
+        default:
+            throw new IllegalArgumentException(store);
+        }
+        db.createTables(SCHEMA, "CREATE TABLE t(id INT NOT NULL PRIMARY KEY, v VARCHAR(64))");
+        rowType = db.rowType(SCHEMA, "t");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+        if (dataDir != null) {
+            AkServerUtil.cleanUpDirectory(dataDir);
+        }
+    }
+
+    /** A session per benchmark thread. */
+    @State(Scope.Thread)
+    public static class Client
+    {
+        private Session session;
+
+        @Setup(Level.Trial)
+        public void setUp(CommitBenchmarks benchmarks) {
+            session = benchmarks.db.serviceManager().getSessionService().createSession();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            session.close();
+        }
+    }
+
+    @Benchmark
+    public void insertCommit(Client client) {
+        insert(client.session);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void insertCommitConcurrent(Client client) {
+        insert(client.session);
+    }
+
+    private void insert(Session session) {
+        int id = nextID.incrementAndGet();
+        Row row = new ValuesHolderRow(rowType, id, "value " + id);
+        db.insert(session, Collections.singletonList(row));
+    }
+}
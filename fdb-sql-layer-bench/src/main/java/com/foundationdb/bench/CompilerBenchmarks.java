@@ -0,0 +1,108 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.bench;
+
+import com.foundationdb.ais.model.AkibanInformationSchema;
+import com.foundationdb.server.SchemaFactory;
+import com.foundationdb.sql.optimizer.OperatorCompiler;
+import com.foundationdb.sql.optimizer.OperatorCompilerTest.TestOperatorCompiler;
+import com.foundationdb.sql.optimizer.OptimizerTestBase;
+import com.foundationdb.sql.optimizer.plan.BasePlannable;
+import com.foundationdb.sql.parser.DMLStatementNode;
+import com.foundationdb.sql.parser.SQLParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse through operator plan for TPC-H style queries against {@link TpchData#DDL},
+ * with no index statistics, i.e. the work done on every statement cache miss.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CompilerBenchmarks
+{
+    private static final Map<String,String> QUERIES = new HashMap<>();
+    static {
+        QUERIES.put("point",
+                    "SELECT * FROM orders WHERE o_orderkey = ?");
+        QUERIES.put("q1",
+                    "SELECT l_returnflag, SUM(l_quantity), SUM(l_extendedprice), AVG(l_discount), COUNT(*) " +
+                    "FROM lineitem WHERE l_shipdate <= DATE '1998-09-02' " +
+                    "GROUP BY l_returnflag ORDER BY l_returnflag");
+        QUERIES.put("q3",
+                    "SELECT l_orderkey, SUM(l_extendedprice * (1 - l_discount)) AS revenue, o_orderdate " +
+                    "FROM customer, orders, lineitem " +
+                    "WHERE c_mktsegment = 'BUILDING' AND c_custkey = o_custkey AND l_orderkey = o_orderkey " +
+                    "AND o_orderdate < DATE '1995-03-15' AND l_shipdate > DATE '1995-03-15' " +
+                    "GROUP BY l_orderkey, o_orderdate ORDER BY revenue DESC, o_orderdate LIMIT 10");
+        QUERIES.put("q6",
+                    "SELECT SUM(l_extendedprice * l_discount) FROM lineitem " +
+                    "WHERE l_shipdate >= DATE '1994-01-01' AND l_shipdate < DATE '1995-01-01' " +
+                    "AND l_discount BETWEEN 0.05 AND 0.07 AND l_quantity < 24");
+        QUERIES.put("q14",
+                    "SELECT SUM(CASE WHEN p_brand LIKE 'Brand#1%' THEN l_extendedprice ELSE 0 END) / SUM(l_extendedprice) " +
+                    "FROM lineitem, part WHERE l_partkey = p_partkey " +
+                    "AND l_shipdate >= DATE '1995-09-01' AND l_shipdate < DATE '1995-10-01'");
+    }
+
+    @Param({"point", "q1", "q3", "q6", "q14"})
+    public String query;
+
+    private String sql;
+    private SQLParser parser;
+    private OperatorCompiler compiler;
+
+    @Setup
+    public void setUp() throws Exception {
+        AkibanInformationSchema ais = new SchemaFactory(OptimizerTestBase.DEFAULT_SCHEMA).ais(TpchData.DDL);
+        parser = new SQLParser();
+        compiler = TestOperatorCompiler.create(parser, ais, null, new Properties());
+        sql = QUERIES.get(query);
+    }
+
+    @Benchmark
+    public BasePlannable compile() throws Exception {
+        DMLStatementNode stmt = (DMLStatementNode)parser.parseStatement(sql);
+        return compiler.compile(stmt, parser.getParameterList());
+    }
+}
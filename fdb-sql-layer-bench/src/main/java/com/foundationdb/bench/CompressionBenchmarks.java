@@ -0,0 +1,159 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.bench;
+
+import com.foundationdb.ais.model.AkibanInformationSchema;
+import com.foundationdb.ais.model.Table;
+import com.foundationdb.ais.model.TableName;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.row.ValuesHolderRow;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.rowtype.Schema;
+import com.foundationdb.server.SchemaFactory;
+import com.foundationdb.server.store.format.compressed.RowCompressor;
+import com.foundationdb.server.store.format.tuple.TupleRow;
+import com.foundationdb.server.store.format.tuple.TupleRowConverter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Size and decode cost of the <code>compressed</code> storage format on
+ * lineitem rows, with and without a trained dictionary. The bytes saved are
+ * printed once from {@link #setUp}; the benchmarks time a write and a
+ * two-column read of each encoding against the plain tuple.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CompressionBenchmarks
+{
+    private static final int ROWS = 1000;
+    private static final int TRAINING_ROWS = 200;
+    private static final int DICTIONARY_SIZE = 1024;
+
+    private RowType rowType;
+    private byte[][] tupleBytes;
+    private RowCompressor plainCompressor, trainedCompressor;
+    private byte[][] plainBytes, trainedBytes;
+    private int next;
+
+    @Setup
+    public void setUp() throws Exception {
+        AkibanInformationSchema ais = new SchemaFactory(TpchData.SCHEMA).aisWithTableStatus(TpchData.DDL);
+        Schema schema = new Schema(ais);
+        Table lineitem = ais.getTable(new TableName(TpchData.SCHEMA, "lineitem"));
+        rowType = schema.tableRowType(lineitem);
+        Random random = new Random(ROWS);
+        String[] flags = { "A", "N", "R" };
+        tupleBytes = new byte[ROWS][];
+        for (int i = 0; i < ROWS; i++) {
+            Row row = new ValuesHolderRow(rowType,
+                                          1 + i / TpchData.LINES_PER_ORDER,
+                                          1 + i % TpchData.LINES_PER_ORDER,
+                                          1 + random.nextInt(TpchData.PARTS),
+                                          1 + random.nextInt(50),
+                                          new BigDecimal(random.nextInt(5000000)).movePointLeft(2),
+                                          new BigDecimal(random.nextInt(11)).movePointLeft(2),
+                                          String.format("%04d-%02d-%02d", 1992 + random.nextInt(7), 1 + random.nextInt(12), 1 + random.nextInt(28)),
+                                          flags[random.nextInt(flags.length)]);
+            tupleBytes[i] = TupleRowConverter.tupleFromRow(row).pack();
+        }
+        List<byte[]> samples = new ArrayList<>(TRAINING_ROWS);
+        for (int i = 0; i < TRAINING_ROWS; i++) {
+            samples.add(tupleBytes[i]);
+        }
+        plainCompressor = new RowCompressor(null, 0);
+        trainedCompressor = new RowCompressor(RowCompressor.trainDictionary(samples, DICTIONARY_SIZE), 0);
+        plainBytes = new byte[ROWS][];
+        trainedBytes = new byte[ROWS][];
+        long raw = 0, plain = 0, trained = 0;
+        for (int i = 0; i < ROWS; i++) {
+            plainBytes[i] = plainCompressor.compress(tupleBytes[i]);
+            trainedBytes[i] = trainedCompressor.compress(tupleBytes[i]);
+            raw += tupleBytes[i].length;
+            plain += plainBytes[i].length;
+            trained += trainedBytes[i].length;
+        }
+        System.out.println(String.format("%d rows: tuple %d bytes, deflate %d bytes (%+.1f%%), dictionary of %d %d bytes (%+.1f%%)",
+                                         ROWS, raw,
+                                         plain, 100.0 * (plain - raw) / raw,
+                                         trainedCompressor.getDictionary().length,
+                                         trained, 100.0 * (trained - raw) / raw));
+    }
+
+    private int nextRow() {
+        int i = next;
+        next = (i + 1) % ROWS;
+        return i;
+    }
+
+    @Benchmark
+    public byte[] compressPlain() {
+        return plainCompressor.compress(tupleBytes[nextRow()]);
+    }
+
+    @Benchmark
+    public byte[] compressTrained() {
+        return trainedCompressor.compress(tupleBytes[nextRow()]);
+    }
+
+    @Benchmark
+    public Object decodeTuple() {
+        Row decoded = new TupleRow(rowType, tupleBytes[nextRow()]);
+        decoded.value(0);
+        return decoded.value(5);
+    }
+
+    @Benchmark
+    public Object decodePlain() {
+        Row decoded = new TupleRow(rowType, plainCompressor.expand(plainBytes[nextRow()]));
+        decoded.value(0);
+        return decoded.value(5);
+    }
+
+    @Benchmark
+    public Object decodeTrained() {
+        Row decoded = new TupleRow(rowType, trainedCompressor.expand(trainedBytes[nextRow()]));
+        decoded.value(0);
+        return decoded.value(5);
+    }
+}
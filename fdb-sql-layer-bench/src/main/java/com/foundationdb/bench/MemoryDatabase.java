@@ -0,0 +1,218 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.bench;
+
+import com.foundationdb.ais.model.AkibanInformationSchema;
+import com.foundationdb.ais.model.Table;
+import com.foundationdb.ais.model.TableName;
+import com.foundationdb.qp.operator.API;
+import com.foundationdb.qp.operator.Cursor;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.operator.QueryContext;
+import com.foundationdb.qp.operator.SimpleQueryContext;
+import com.foundationdb.qp.operator.StoreAdapter;
+import com.foundationdb.qp.row.BindableRow;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.Schema;
+import com.foundationdb.qp.rowtype.TableRowType;
+import com.foundationdb.qp.util.SchemaCache;
+import com.foundationdb.server.SchemaFactory;
+import com.foundationdb.server.service.ServiceManager;
+import com.foundationdb.server.service.ServiceManagerImpl;
+import com.foundationdb.server.service.config.TestConfigService;
+import com.foundationdb.server.service.dxl.DXLService;
+import com.foundationdb.server.service.servicemanager.GuicedServiceManager;
+import com.foundationdb.server.service.session.Session;
+import com.foundationdb.server.service.transaction.TransactionService;
+import com.foundationdb.server.store.MemorySchemaManager;
+import com.foundationdb.server.store.MemoryStore;
+import com.foundationdb.server.store.MemoryTransactionService;
+import com.foundationdb.server.store.SchemaManager;
+import com.foundationdb.server.store.Store;
+import com.foundationdb.server.store.statistics.IndexStatisticsService;
+import com.foundationdb.server.store.statistics.MemoryIndexStatisticsService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A complete service stack bound to {@link MemoryStore}, so that operator
+ * benchmarks exercise the real adapter and cursor code without needing a
+ * FoundationDB cluster. {@link #startFDB} binds the default stores instead,
+ * for comparisons.
+ */
+public class MemoryDatabase implements AutoCloseable
+{
+    public static MemoryDatabase start() {
+        return start(Collections.<String,String>emptyMap());
+    }
+
+    public static MemoryDatabase start(Map<String,String> properties) {
+        return start(properties, GuicedServiceManager.testUrls()
+            .bind(SchemaManager.class, MemorySchemaManager.class)
+            .bind(Store.class, MemoryStore.class)
+            .bind(IndexStatisticsService.class, MemoryIndexStatisticsService.class)
+            .bind(TransactionService.class, MemoryTransactionService.class));
+    }
+
+    /** The same stack over the default FDB services, which needs a running cluster. */
+    public static MemoryDatabase startFDB(Map<String,String> properties) {
+        return start(properties, GuicedServiceManager.testUrls());
+    }
+
+    private static MemoryDatabase start(Map<String,String> properties,
+                                        GuicedServiceManager.BindingsConfigurationProvider bindings) {
+        System.setProperty("fdbsql.home", System.getProperty("user.home"));
+        TestConfigService.setOverrides(properties);
+        ServiceManager sm = new GuicedServiceManager(bindings);
+        try {
+            sm.startServices();
+        }
+        catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        ServiceManagerImpl.setServiceManager(sm);
+        return new MemoryDatabase(sm);
+    }
+
+    public void createTables(String schemaName, String ddl) {
+        new SchemaFactory(schemaName).ddl(dxl().ddlFunctions(), session, ddl);
+    }
+
+    public AkibanInformationSchema ais() {
+        return dxl().ddlFunctions().getAIS(session);
+    }
+
+    public Schema schema() {
+        return SchemaCache.globalSchema(ais());
+    }
+
+    public Table table(String schemaName, String tableName) {
+        return ais().getTable(new TableName(schemaName, tableName));
+    }
+
+    public TableRowType rowType(String schemaName, String tableName) {
+        return schema().tableRowType(table(schemaName, tableName));
+    }
+
+    public Session session() {
+        return session;
+    }
+
+    public TransactionService txnService() {
+        return sm.getServiceByClass(TransactionService.class);
+    }
+
+    public StoreAdapter newStoreAdapter() {
+        return newStoreAdapter(session);
+    }
+
+    public StoreAdapter newStoreAdapter(Session session) {
+        return sm.getServiceByClass(Store.class).createAdapter(session);
+    }
+
+    public QueryContext newQueryContext() {
+        return newQueryContext(session);
+    }
+
+    public QueryContext newQueryContext(Session session) {
+        return new SimpleQueryContext(newStoreAdapter(session)) {
+            @Override
+            public ServiceManager getServiceManager() {
+                return sm;
+            }
+        };
+    }
+
+    public ServiceManager serviceManager() {
+        return sm;
+    }
+
+    /** Insert <code>rows</code>, which must all be of the same type, in a single transaction. */
+    public void insert(Collection<? extends Row> rows) {
+        insert(session, rows);
+    }
+
+    /** Insert <code>rows</code>, which must all be of the same type, in a single transaction of <code>session</code>. */
+    public void insert(Session session, Collection<? extends Row> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<BindableRow> bindable = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            bindable.add(BindableRow.of(row));
+        }
+        Row first = rows.iterator().next();
+        Operator plan = API.insert_Returning(API.valuesScan_Default(bindable, first.rowType()));
+        txnService().beginTransaction(session);
+        try {
+            drain(plan, newQueryContext(session));
+            txnService().commitTransaction(session);
+        }
+        finally {
+            txnService().rollbackTransactionIfOpen(session);
+        }
+    }
+
+    /** Run <code>plan</code> to completion and return the number of rows it produced. */
+    public static int drain(Operator plan, QueryContext context) {
+        Cursor cursor = API.cursor(plan, context, context.createBindings());
+        cursor.openTopLevel();
+        try {
+            int count = 0;
+            while (cursor.next() != null) {
+                count++;
+            }
+            return count;
+        }
+        finally {
+            cursor.closeTopLevel();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            sm.stopServices();
+        }
+        catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private DXLService dxl() {
+        return sm.getServiceByClass(DXLService.class);
+    }
+
+    private MemoryDatabase(ServiceManager sm) {
+        this.sm = sm;
+        this.session = sm.getSessionService().createSession();
+    }
+
+    private final ServiceManager sm;
+    private final Session session;
+}
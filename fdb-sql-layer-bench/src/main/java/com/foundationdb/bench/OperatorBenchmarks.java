@@ -0,0 +1,207 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.bench;
+
+import com.foundationdb.ais.model.Group;
+import com.foundationdb.qp.expression.IndexKeyRange;
+import com.foundationdb.qp.operator.API;
+import com.foundationdb.qp.operator.API.JoinType;
+import com.foundationdb.qp.operator.API.Ordering;
+import com.foundationdb.qp.operator.API.SortOption;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.operator.QueryContext;
+import com.foundationdb.qp.rowtype.IndexRowType;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.rowtype.Schema;
+import com.foundationdb.qp.rowtype.TableRowType;
+import com.foundationdb.server.types.TAggregator;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.mcompat.aggr.MCount;
+import com.foundationdb.server.types.mcompat.aggr.MMinMaxAggregation;
+import com.foundationdb.server.types.mcompat.mtypes.MNumeric;
+import com.foundationdb.server.types.texpressions.TPreparedBoundField;
+import com.foundationdb.server.types.texpressions.TPreparedExpression;
+import com.foundationdb.server.types.texpressions.TPreparedField;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-plan throughput of the operators on the hot paths of typical
+ * queries. Each invocation opens a transaction, drains the plan and
+ * commits, so the numbers include cursor open / close but not planning.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class OperatorBenchmarks
+{
+    /** Scale, in customers; there are 4 orders per customer and 4 lines per order. */
+    @Param({"1000"})
+    public int customers;
+
+    private MemoryDatabase db;
+    private QueryContext context;
+
+    private Operator groupScan;
+    private Operator indexScan;
+    private Operator flatten;
+    private Operator sortGeneral;
+    private Operator sortInsertionLimited;
+    private Operator hashJoin;
+    private Operator aggregatePartial;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        db = MemoryDatabase.start();
+        TpchData.load(db, customers);
+        context = db.newQueryContext();
+
+        Schema schema = db.schema();
+        TableRowType customer = db.rowType(TpchData.SCHEMA, "customer");
+        TableRowType orders = db.rowType(TpchData.SCHEMA, "orders");
+        TableRowType lineitem = db.rowType(TpchData.SCHEMA, "lineitem");
+        TableRowType part = db.rowType(TpchData.SCHEMA, "part");
+        Group coi = customer.table().getGroup();
+
+        groupScan = API.groupScan_Default(coi);
+
+        IndexRowType ordersDate = schema.indexRowType(orders.table().getIndex("orders_date"));
+        indexScan = API.indexScan_Default(ordersDate, false, IndexKeyRange.unbounded(ordersDate));
+
+        Operator co = API.flatten_HKeyOrdered(API.groupScan_Default(coi), customer, orders, JoinType.INNER_JOIN);
+        flatten = API.flatten_HKeyOrdered(co, co.rowType(), lineitem, JoinType.INNER_JOIN);
+
+        // ORDER BY o_totalprice DESC, with and without LIMIT 10
+        Ordering byPrice = API.ordering();
+        byPrice.append(new TPreparedField(orders.typeAt(3), 3), false);
+        sortGeneral = API.sort_General(onlyRows(coi, orders), orders, byPrice, SortOption.PRESERVE_DUPLICATES);
+        sortInsertionLimited = API.sort_InsertionLimited(onlyRows(coi, orders), orders, byPrice,
+                                                         SortOption.PRESERVE_DUPLICATES, 10);
+
+        // lineitem JOIN part ON l_partkey = p_partkey, building the hash table on part
+        List<TPreparedExpression> partKey =
+            Collections.<TPreparedExpression>singletonList(new TPreparedField(part.typeAt(0), 0));
+        List<TPreparedExpression> linePartKey =
+            Collections.<TPreparedExpression>singletonList(new TPreparedBoundField(lineitem, LINE_BINDING, 2));
+        hashJoin = API.using_HashTable(onlyRows(part.table().getGroup(), part),
+                                       part,
+                                       partKey,
+                                       HASH_TABLE_BINDING,
+                                       API.map_NestedLoops(onlyRows(coi, lineitem),
+                                                           API.hashTableLookup_Default(part, linePartKey, HASH_TABLE_BINDING),
+                                                           LINE_BINDING, false, 1),
+                                       null, null);
+
+        // SELECT l_orderkey, COUNT(*), MAX(l_quantity) ... GROUP BY l_orderkey
+        Operator lines = API.project_Default(onlyRows(coi, lineitem), lineitem,
+                                             Arrays.<TPreparedExpression>asList(
+                                                 new TPreparedField(lineitem.typeAt(0), 0),
+                                                 new TPreparedField(lineitem.typeAt(3), 3),
+                                                 new TPreparedField(lineitem.typeAt(3), 3)));
+        aggregatePartial = API.aggregate_Partial(lines, lines.rowType(), 1,
+                                                 Arrays.<TAggregator>asList(MCount.INSTANCES[2], MMinMaxAggregation.MAX),
+                                                 Arrays.<TInstance>asList(MNumeric.BIGINT.instance(false),
+                                                                          lines.rowType().typeAt(2)),
+                                                 Arrays.<Object>asList(null, null));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        db.close();
+    }
+
+    @Benchmark
+    public int groupScan() {
+        return run(groupScan);
+    }
+
+    @Benchmark
+    public int indexScan() {
+        return run(indexScan);
+    }
+
+    @Benchmark
+    public int flatten() {
+        return run(flatten);
+    }
+
+    @Benchmark
+    public int sortGeneral() {
+        return run(sortGeneral);
+    }
+
+    @Benchmark
+    public int sortInsertionLimited() {
+        return run(sortInsertionLimited);
+    }
+
+    @Benchmark
+    public int hashJoin() {
+        return run(hashJoin);
+    }
+
+    @Benchmark
+    public int aggregatePartial() {
+        return run(aggregatePartial);
+    }
+
+    private int run(Operator plan) {
+        db.txnService().beginTransaction(db.session());
+        try {
+            int count = MemoryDatabase.drain(plan, context);
+            db.txnService().commitTransaction(db.session());
+            return count;
+        }
+        finally {
+            db.txnService().rollbackTransactionIfOpen(db.session());
+        }
+    }
+
+    private static Operator onlyRows(Group group, RowType rowType) {
+        return API.filter_Default(API.groupScan_Default(group), Collections.singleton(rowType));
+    }
+
+    private static final int HASH_TABLE_BINDING = 0;
+    private static final int LINE_BINDING = 1;
+}
@@ -0,0 +1,149 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.bench;
+
+import com.foundationdb.ais.model.AkibanInformationSchema;
+import com.foundationdb.ais.model.Column;
+import com.foundationdb.ais.model.Group;
+import com.foundationdb.ais.model.Table;
+import com.foundationdb.ais.model.TableName;
+import com.foundationdb.ais.protobuf.CommonProtobuf.ProtobufRowFormat;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.row.ValuesHolderRow;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.rowtype.Schema;
+import com.foundationdb.server.SchemaFactory;
+import com.foundationdb.server.store.format.protobuf.AISToProtobuf;
+import com.foundationdb.server.store.format.protobuf.CustomOptions;
+import com.foundationdb.server.store.format.protobuf.ProtobufRowConverter;
+import com.foundationdb.server.store.format.tuple.TupleRow;
+import com.foundationdb.server.store.format.tuple.TupleRowConverter;
+import com.foundationdb.tuple.Tuple2;
+import com.google.protobuf.DescriptorProtos.FileDescriptorSet;
+import com.google.protobuf.Descriptors.FileDescriptor;
+import com.google.protobuf.DynamicMessage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-row cost of the two storage encodings, using a lineitem row since it has
+ * the widest mix of column types in the benchmark schema.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class RowConverterBenchmarks
+{
+    private Row row;
+    private RowType rowType;
+    private byte[] tupleBytes;
+    private ProtobufRowConverter protobufConverter;
+    private byte[] protobufBytes;
+
+    @Setup
+    public void setUp() throws Exception {
+        AkibanInformationSchema ais = new SchemaFactory(TpchData.SCHEMA).aisWithTableStatus(TpchData.DDL);
+        for (Table table : ais.getTables().values()) {
+            if (!table.hasVersion()) {
+                table.setVersion(0);
+            }
+            if (table.getUuid() == null) {
+                table.setUuid(UUID.randomUUID());
+            }
+            for (Column column : table.getColumnsIncludingInternal()) {
+                if (column.getUuid() == null) {
+                    column.setUuid(UUID.randomUUID());
+                }
+            }
+        }
+        Schema schema = new Schema(ais);
+        Table lineitem = ais.getTable(new TableName(TpchData.SCHEMA, "lineitem"));
+        rowType = schema.tableRowType(lineitem);
+        row = new ValuesHolderRow(rowType,
+                                  1, 1, 155, 17,
+                                  new BigDecimal("21168.23"), new BigDecimal("0.04"),
+                                  "1996-03-13", "N");
+
+        tupleBytes = TupleRowConverter.tupleFromRow(row).pack();
+
+        Group group = lineitem.getGroup();
+        AISToProtobuf a2p = new AISToProtobuf(ProtobufRowFormat.Type.GROUP_MESSAGE);
+        a2p.addGroup(group);
+        FileDescriptorSet set = a2p.build();
+        FileDescriptor descriptor = FileDescriptor.buildFrom(set.getFile(0),
+                                                             new FileDescriptor[] { CustomOptions.getDescriptor() });
+        protobufConverter = ProtobufRowConverter.forGroup(group, descriptor);
+        protobufBytes = protobufConverter.encode(row).toByteArray();
+    }
+
+    @Benchmark
+    public byte[] tupleEncode() {
+        return TupleRowConverter.tupleFromRow(row).pack();
+    }
+
+    @Benchmark
+    public Row tupleDecode() {
+        return TupleRowConverter.tupleToRow(Tuple2.fromBytes(tupleBytes), rowType);
+    }
+
+    @Benchmark
+    public Object tupleDecodeTwoColumns() {
+        Row decoded = new TupleRow(rowType, tupleBytes);
+        decoded.value(0);
+        return decoded.value(5);
+    }
+
+    @Benchmark
+    public byte[] protobufEncode() {
+        return protobufConverter.encode(row).toByteArray();
+    }
+
+    @Benchmark
+    public Row protobufDecode() throws Exception {
+        return protobufConverter.decode(DynamicMessage.parseFrom(protobufConverter.getMessageType(), protobufBytes));
+    }
+
+    @Benchmark
+    public Object protobufDecodeTwoColumns() throws Exception {
+        Row decoded = protobufConverter.decode(DynamicMessage.parseFrom(protobufConverter.getMessageType(), protobufBytes));
+        decoded.value(0);
+        return decoded.value(5);
+    }
+}
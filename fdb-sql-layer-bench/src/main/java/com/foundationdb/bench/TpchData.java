@@ -0,0 +1,132 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.bench;
+
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.row.ValuesHolderRow;
+import com.foundationdb.qp.rowtype.RowType;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A cut down TPC-H schema, with customer / orders / lineitem in one group and
+ * part as its own group, plus a deterministic data generator scaled by customer count.
+ */
+public class TpchData
+{
+    public static final String SCHEMA = "tpch";
+
+    public static final String DDL =
+        "CREATE TABLE customer(c_custkey INT NOT NULL PRIMARY KEY, c_name VARCHAR(25), " +
+        "    c_nationkey INT, c_acctbal DECIMAL(12,2), c_mktsegment VARCHAR(10));" +
+        "CREATE TABLE orders(o_orderkey INT NOT NULL PRIMARY KEY, o_custkey INT, " +
+        "    o_orderstatus CHAR(1), o_totalprice DECIMAL(12,2), o_orderdate DATE, o_orderpriority VARCHAR(15), " +
+        "    GROUPING FOREIGN KEY(o_custkey) REFERENCES customer(c_custkey));" +
+        "CREATE TABLE lineitem(l_orderkey INT NOT NULL, l_linenumber INT NOT NULL, l_partkey INT, " +
+        "    l_quantity INT, l_extendedprice DECIMAL(12,2), l_discount DECIMAL(12,2), l_shipdate DATE, " +
+        "    l_returnflag CHAR(1), PRIMARY KEY(l_orderkey, l_linenumber), " +
+        "    GROUPING FOREIGN KEY(l_orderkey) REFERENCES orders(o_orderkey));" +
+        "CREATE TABLE part(p_partkey INT NOT NULL PRIMARY KEY, p_name VARCHAR(55), " +
+        "    p_brand VARCHAR(10), p_retailprice DECIMAL(12,2));" +
+        "CREATE INDEX customer_nation ON customer(c_nationkey);" +
+        "CREATE INDEX orders_date ON orders(o_orderdate);" +
+        "CREATE INDEX lineitem_part ON lineitem(l_partkey);";
+
+    public static final int ORDERS_PER_CUSTOMER = 4;
+    public static final int LINES_PER_ORDER = 4;
+    public static final int PARTS = 200;
+
+    private static final String[] SEGMENTS = { "AUTOMOBILE", "BUILDING", "FURNITURE", "HOUSEHOLD", "MACHINERY" };
+    private static final String[] PRIORITIES = { "1-URGENT", "2-HIGH", "3-MEDIUM", "4-NOT SPECIFIED", "5-LOW" };
+    private static final String[] FLAGS = { "A", "N", "R" };
+
+    /** Create the schema and load <code>customers</code> customers worth of rows. */
+    public static void load(MemoryDatabase db, int customers) {
+        db.createTables(SCHEMA, DDL);
+        RowType customer = db.rowType(SCHEMA, "customer");
+        RowType orders = db.rowType(SCHEMA, "orders");
+        RowType lineitem = db.rowType(SCHEMA, "lineitem");
+        RowType part = db.rowType(SCHEMA, "part");
+        Random random = new Random(customers);
+        List<Row> customerRows = new ArrayList<>(customers);
+        List<Row> orderRows = new ArrayList<>(customers * ORDERS_PER_CUSTOMER);
+        List<Row> lineRows = new ArrayList<>(customers * ORDERS_PER_CUSTOMER * LINES_PER_ORDER);
+        int orderKey = 0;
+        for (int c = 1; c <= customers; c++) {
+            customerRows.add(new ValuesHolderRow(customer,
+                                                 c,
+                                                 String.format("Customer#%09d", c),
+                                                 random.nextInt(25),
+                                                 money(random, 10000),
+                                                 SEGMENTS[random.nextInt(SEGMENTS.length)]));
+            for (int o = 0; o < ORDERS_PER_CUSTOMER; o++) {
+                orderKey++;
+                orderRows.add(new ValuesHolderRow(orders,
+                                                  orderKey,
+                                                  c,
+                                                  FLAGS[random.nextInt(FLAGS.length)],
+                                                  money(random, 100000),
+                                                  date(random),
+                                                  PRIORITIES[random.nextInt(PRIORITIES.length)]));
+                for (int l = 1; l <= LINES_PER_ORDER; l++) {
+                    lineRows.add(new ValuesHolderRow(lineitem,
+                                                     orderKey,
+                                                     l,
+                                                     1 + random.nextInt(PARTS),
+                                                     1 + random.nextInt(50),
+                                                     money(random, 50000),
+                                                     new BigDecimal(random.nextInt(11)).movePointLeft(2),
+                                                     date(random),
+                                                     FLAGS[random.nextInt(FLAGS.length)]));
+                }
+            }
+        }
+        List<Row> partRows = new ArrayList<>(PARTS);
+        for (int p = 1; p <= PARTS; p++) {
+            partRows.add(new ValuesHolderRow(part,
+                                             p,
+                                             "part " + p,
+                                             "Brand#" + (1 + random.nextInt(5)) + (1 + random.nextInt(5)),
+                                             money(random, 2000)));
+        }
+        db.insert(customerRows);
+        db.insert(orderRows);
+        db.insert(lineRows);
+        db.insert(partRows);
+    }
+
+    private static BigDecimal money(Random random, int max) {
+        return new BigDecimal(random.nextInt(max * 100)).movePointLeft(2);
+    }
+
+    private static String date(Random random) {
+        return String.format("%04d-%02d-%02d", 1992 + random.nextInt(7), 1 + random.nextInt(12), 1 + random.nextInt(28));
+    }
+
+    private TpchData() {
+    }
+}
@@ -64,6 +64,11 @@ public class BlobAsync {
      * while those larger will not.
      */
     protected static final int CHUNK_SMALL = 200;
+    /**
+     * The number of full chunks covered by each range read issued by a
+     * {@link BlobInputStream}.
+     */
+    protected static final int READ_AHEAD_CHUNKS = 10;
 
     private final Subspace subspace;
 
@@ -357,39 +362,63 @@ public class BlobAsync {
                 return getSize(tr).flatMap(new Function<Long,Future<byte[]>>() {
                     @Override
                     public Future<byte[]> apply(final Long size) {
-                        if(offset >= size){
-                            // Gone too far. Return null.
-                            return new ReadyFuture<>((byte[])null);
-                        }
-                        // Collect all of the results of the range read taken over the appropriate
-                        // range and pack them all together in the same list.
-                        return tr.getRange(KeySelector.lastLessOrEqual(dataKey(offset)),
-                                           KeySelector.firstGreaterOrEqual(dataKey(offset+n)))
-                                 .asList()
-                                 .map(new Function<List<KeyValue>,byte[]>() {
-                                     @Override
-                                     public byte[] apply(List<KeyValue> chunks) {
-                                         // Copy the data over from the list into a byte array.
-                                         // n is an integer from the input
-                                         byte[] result = new byte[(int)Math.min(n, (size-offset))];
-                                         for(KeyValue chunk : chunks){
-                                             long chunkOffset = dataKeyOffset(chunk.getKey());
-                                             for(int i = 0; i < chunk.getValue().length; i++){
-                                                 int rPos = (int)(chunkOffset + i -offset);
-                                                 if(rPos >= 0 && rPos < result.length) {
-                                                     result[rPos] = chunk.getValue()[i];
-                                                 }
-                                             }
-                                         }
-                                         return result;
-                                     }
-                                 });
+                        return readRange(tr, offset, n, size);
                     }
                 });
             }
         });
     }
 
+    /** Range read of up to <code>n</code> bytes at <code>offset</code> given the current blob size. */
+    Future<byte[]> readRange(Transaction tr, final long offset, final int n, final long size) {
+        if(offset >= size){
+            // Gone too far. Return null.
+            return new ReadyFuture<>((byte[])null);
+        }
+        // Collect all of the results of the range read taken over the appropriate
+        // range and pack them all together in the same list.
+        return tr.getRange(KeySelector.lastLessOrEqual(dataKey(offset)),
+                           KeySelector.firstGreaterOrEqual(dataKey(offset+n)))
+                 .asList()
+                 .map(new Function<List<KeyValue>,byte[]>() {
+                     @Override
+                     public byte[] apply(List<KeyValue> chunks) {
+                         // Copy the data over from the list into a byte array.
+                         // n is an integer from the input
+                         byte[] result = new byte[(int)Math.min(n, (size-offset))];
+                         for(KeyValue chunk : chunks){
+                             long chunkOffset = dataKeyOffset(chunk.getKey());
+                             byte[] value = chunk.getValue();
+                             // Overlapping part of chunk and result, both sides clipped.
+                             long from = Math.max(chunkOffset, offset);
+                             long to = Math.min(chunkOffset + value.length, offset + result.length);
+                             if(from < to) {
+                                 System.arraycopy(value, (int)(from - chunkOffset),
+                                                  result, (int)(from - offset), (int)(to - from));
+                             }
+                         }
+                         return result;
+                     }
+                 });
+    }
+
+    /**
+     * Opens a stream over the blob starting at <code>offset</code>. The
+     * stream issues range reads of <code>READ_AHEAD_CHUNKS</code> chunks at a
+     * time and keeps <code>prefetch</code> of them outstanding, so the next
+     * data is usually in hand by the time the caller asks for it.
+     *
+     * @param tr The transaction in which to read. It must remain open while
+     * the stream is in use.
+     * @param offset The starting position expressed as bytes from the
+     * beginning of the blob.
+     * @param prefetch The number of range reads to keep in flight.
+     */
+    public BlobInputStream openInputStream(Transaction tr, long offset, int prefetch) {
+        return new BlobInputStream(this, tr, offset, getSize(tr).get(),
+                                   READ_AHEAD_CHUNKS * CHUNK_LARGE, Math.max(1, prefetch));
+    }
+
     /**
      * Reads and returns the entire blob. 
      * 
@@ -0,0 +1,156 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.blob;
+
+import com.foundationdb.Transaction;
+import com.foundationdb.async.Future;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Sequential reader of a {@link BlobAsync}, as both an
+ * <code>InputStream</code> and a <code>ReadableByteChannel</code>.
+ * Range reads of <code>windowSize</code> bytes are issued
+ * <code>prefetch</code> windows ahead of the consumer.
+ */
+public class BlobInputStream extends InputStream implements ReadableByteChannel {
+    private final BlobAsync blob;
+    private final Transaction tr;
+    private final long size;
+    private final int windowSize;
+    private final int prefetch;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private long nextOffset;
+    private byte[] current;
+    private int currentPos;
+    private boolean open = true;
+
+    BlobInputStream(BlobAsync blob, Transaction tr, long offset, long size, int windowSize, int prefetch) {
+        this.blob = blob;
+        this.tr = tr;
+        this.size = size;
+        this.windowSize = windowSize;
+        this.prefetch = prefetch;
+        this.nextOffset = Math.max(0, offset);
+        fill();
+    }
+
+    /** Total size of the blob, independent of the starting offset. */
+    public long getSize() {
+        return size;
+    }
+
+    /** Issue range reads until <code>prefetch</code> are outstanding or the end is covered. */
+    private void fill() {
+        while((pending.size() < prefetch) && (nextOffset < size)) {
+            int n = (int)Math.min(windowSize, size - nextOffset);
+            pending.addLast(blob.readRange(tr, nextOffset, n, size));
+            nextOffset += n;
+        }
+    }
+
+    /** Make <code>current</code> have unread bytes, returning <code>false</code> at the end. */
+    private boolean advance() throws IOException {
+        if(!open) {
+            throw new ClosedChannelException();
+        }
+        while((current == null) || (currentPos >= current.length)) {
+            Future<byte[]> next = pending.pollFirst();
+            if(next == null) {
+                return false;
+            }
+            current = next.get();
+            currentPos = 0;
+            if(current == null) {
+                current = new byte[0];
+            }
+            fill();
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if(!advance()) {
+            return -1;
+        }
+        return current[currentPos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if(len == 0) {
+            return 0;
+        }
+        if(!advance()) {
+            return -1;
+        }
+        int n = Math.min(len, current.length - currentPos);
+        System.arraycopy(current, currentPos, b, off, n);
+        currentPos += n;
+        return n;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if(!dst.hasRemaining()) {
+            return 0;
+        }
+        if(!advance()) {
+            return -1;
+        }
+        int n = Math.min(dst.remaining(), current.length - currentPos);
+        dst.put(current, currentPos, n);
+        currentPos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return (current == null) ? 0 : (current.length - currentPos);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        if(open) {
+            open = false;
+            for(Future<byte[]> future : pending) {
+                future.cancel();
+            }
+            pending.clear();
+            current = null;
+        }
+    }
+}
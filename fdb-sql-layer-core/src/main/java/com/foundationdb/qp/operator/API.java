@@ -55,6 +55,29 @@ public class API
         return new Aggregate_Partial(inputOperator, rowType, inputsIndex, aggregatorFactories, aggregatorTypes, options);
     }
 
+    public static Operator hashAggregate_Default(Operator inputOperator,
+                                                 RowType rowType,
+                                                 int inputsIndex,
+                                                 List<? extends TAggregator> aggregatorFactories,
+                                                 List<? extends TInstance> aggregatorTypes,
+                                                 List<Object> options
+                                                 )
+    {
+        return new HashAggregate_Default(inputOperator, rowType, inputsIndex, aggregatorFactories, aggregatorTypes, options);
+    }
+
+    public static final String HASH_AGGREGATE_MEMORY_PROPERTY = HashAggregate_Default.MEMORY_PROPERTY;
+
+    public static long hashAggregateGroupSize(int nGroupBy, int nAggregates)
+    {
+        return HashAggregate_Default.estimateGroupSize(nGroupBy, nAggregates);
+    }
+
+    public static double hashAggregateSpilledRows(double nRows, double groupsSize, long memoryLimit)
+    {
+        return HashAggregate_Default.estimateSpilledRows(nRows, groupsSize, memoryLimit);
+    }
+
     // Project
 
     public static Operator project_DefaultTest(Operator inputOperator,
@@ -80,6 +103,14 @@ public class API
     {
         return new Project_Default(inputOperator, rowType, pExpressions);
     }
+
+    public static Operator project_Default(Operator inputOperator,
+                                           RowType rowType,
+                                           List<? extends TPreparedExpression> pExpressions,
+                                           int batchSize)
+    {
+        return new Project_Default(inputOperator, rowType, pExpressions, batchSize);
+    }
     
     public static Operator project_Default(Operator inputOperator, 
                                             List<ExpressionGenerator> expressionGenerators,
@@ -140,6 +171,20 @@ public class API
         return new GroupScan_Default(new GroupScan_Default.FullGroupCursorCreator(group));
     }
 
+    /** Scan the whole group; if not <code>ordered</code>, rows may come back in any order. */
+    public static Operator groupScan_Default(Group group, boolean ordered)
+    {
+        if (ordered)
+            return groupScan_Default(group);
+        return new GroupScan_Default(new GroupScan_Default.UnorderedGroupCursorCreator(group));
+    }
+
+    /** Scan the whole group, dropping rows that fail <code>runtimeFilter</code>. */
+    public static Operator groupScan_Default(Group group, RuntimeFilter runtimeFilter)
+    {
+        return new GroupScan_Default(new GroupScan_Default.FullGroupCursorCreator(group), runtimeFilter);
+    }
+
     public static Operator groupScan_Default(Group group,
                                              int hKeyBindingPosition,
                                              boolean deep,
@@ -414,7 +459,17 @@ public class API
                                              IndexScanSelector indexScanSelector,
                                              int lookaheadQuantum)
     {
-        return new IndexScan_Default(indexType, indexKeyRange, ordering, indexScanSelector, lookaheadQuantum);
+        return new IndexScan_Default(indexType, indexKeyRange, ordering, indexScanSelector, lookaheadQuantum, null);
+    }
+
+    public static Operator indexScan_Default(IndexRowType indexType,
+                                             IndexKeyRange indexKeyRange,
+                                             Ordering ordering,
+                                             IndexScanSelector indexScanSelector,
+                                             int lookaheadQuantum,
+                                             RuntimeFilter runtimeFilter)
+    {
+        return new IndexScan_Default(indexType, indexKeyRange, ordering, indexScanSelector, lookaheadQuantum, runtimeFilter);
     }
 
     // Select
@@ -426,6 +481,14 @@ public class API
         return new Select_HKeyOrdered(inputOperator, predicateRowType, predicate);
     }
 
+    public static Operator select_HKeyOrdered(Operator inputOperator,
+                                              RowType predicateRowType,
+                                              TPreparedExpression predicate,
+                                              int batchSize)
+    {
+        return new Select_HKeyOrdered(inputOperator, predicateRowType, predicate, batchSize);
+    }
+
     public static Operator select_HKeyOrdered(Operator inputOperator,
                                               RowType predicateRowType,
                                               ExpressionGenerator predicate)
@@ -499,6 +562,16 @@ public class API
         return new Sort_InsertionLimited(inputOperator, sortType, ordering, sortOption, limit);
     }
 
+    public static Operator sort_InsertionLimited(Operator inputOperator,
+                                                 RowType sortType,
+                                                 Ordering ordering,
+                                                 SortOption sortOption,
+                                                 int limit,
+                                                 int orderedPrefix)
+    {
+        return new Sort_InsertionLimited(inputOperator, sortType, ordering, sortOption, limit, orderedPrefix);
+    }
+
     public static Operator sort_General(Operator inputOperator,
                                         RowType sortType,
                                         Ordering ordering,
@@ -756,6 +829,23 @@ public class API
                                      collators);
     }
 
+    public static Operator using_BloomFilter(Operator filterInput,
+                                             RowType filterRowType,
+                                             long estimatedRowCount,
+                                             int filterBindingPosition,
+                                             Operator streamInput,
+                                             List<AkCollator> collators,
+                                             int runtimeFilterBindingPosition)
+    {
+        return new Using_BloomFilter(filterInput,
+                                     filterRowType,
+                                     estimatedRowCount,
+                                     filterBindingPosition,
+                                     streamInput,
+                                     collators,
+                                     runtimeFilterBindingPosition);
+    }
+
     // Select_BloomFilter
 
     public static Operator select_BloomFilterTest(Operator input,
@@ -836,6 +926,18 @@ public class API
         return new Using_HashTable(hashInput, hashedRowType, comparisonFields, hashTableBindingPosition, joinedInput, tComparisons, collators);
     }
 
+    public static Operator using_HashTable(Operator hashInput,
+                                           RowType hashedRowType,
+                                           List<TPreparedExpression> comparisonFields,
+                                           int hashTableBindingPosition,
+                                           Operator joinedInput,
+                                           List<TComparison> tComparisons,
+                                           List<AkCollator> collators,
+                                           int runtimeFilterBindingPosition)
+    {
+        return new Using_HashTable(hashInput, hashedRowType, comparisonFields, hashTableBindingPosition, joinedInput, tComparisons, collators, runtimeFilterBindingPosition);
+    }
+
     // EmitBoundRow_Nested
 
     public static Operator emitBoundRow_Nested(Operator input,
@@ -893,7 +995,7 @@ public class API
 
     public static Cursor cursor(Operator root, QueryContext context, QueryBindingsCursor bindingsCursor)
     {
-        return new ChainedCursor(context, root.cursor(context, bindingsCursor));
+        return new ChainedCursor(context, root.newCursor(context, bindingsCursor));
     }
 
     public static Cursor cursor(Operator root, QueryContext context, QueryBindings bindings)
@@ -459,7 +459,7 @@ final class Aggregate_Partial extends Operator
         // AggregateCursor interface
 
         private AggregateCursor(QueryContext context, QueryBindingsCursor bindingsCursor) {
-            super(context, inputOperator.cursor(context, bindingsCursor));
+            super(context, inputOperator.newCursor(context, bindingsCursor));
             keyValues = new ArrayList<>(inputsIndex);
             for (int i = 0; i < inputsIndex; ++i) {
                 keyValues.add(new Value(outputType.typeAt(i)));
@@ -0,0 +1,62 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.qp.operator;
+
+/**
+ * Support for operators that evaluate their expressions over a batch
+ * of input rows at a time.
+ */
+final class BatchExecution
+{
+    /**
+     * Whether rows from <code>operator</code> keep their values after
+     * later rows have been read, so that a batch of them can be held
+     * at once. Not true of {@link com.foundationdb.qp.row.ProjectedRow},
+     * whose evaluations are shared by all the rows of one cursor.
+     */
+    static boolean stableRows(Operator operator) {
+        if ((operator instanceof GroupScan_Default) ||
+            (operator instanceof IndexScan_Default))
+            return true;
+        if (operator instanceof Project_Default)
+            return ((Project_Default)operator).isBatched();
+        // These make new rows or pass on their input's.
+        if ((operator instanceof GroupLookup_Default) ||
+            (operator instanceof AncestorLookup_Nested) ||
+            (operator instanceof BranchLookup_Nested) ||
+            (operator instanceof Filter_Default) ||
+            (operator instanceof Select_HKeyOrdered) ||
+            (operator instanceof Flatten_HKeyOrdered)) {
+            for (Operator input : operator.getInputOperators()) {
+                if (!stableRows(input))
+                    return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private BatchExecution() {
+    }
+}
@@ -33,6 +33,8 @@ import com.foundationdb.server.explain.*;
 import com.foundationdb.server.explain.std.LookUpOperatorExplainer;
 import com.foundationdb.util.ArgumentValidation;
 import com.foundationdb.util.tap.InOutTap;
+import com.foundationdb.util.tap.PointTap;
+import com.foundationdb.util.tap.Tap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -314,6 +316,8 @@ public class BranchLookup_Nested extends Operator
     private static final Logger LOG = LoggerFactory.getLogger(BranchLookup_Nested.class);
     private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: BranchLookup_Nested open");
     private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: BranchLookup_Nested next");
+    private static final PointTap TAP_LOOKAHEAD_HIT = Tap.createCount("operator: BranchLookup_Nested lookahead hit");
+    private static final PointTap TAP_LOOKAHEAD_STALL = Tap.createCount("operator: BranchLookup_Nested lookahead stall");
 
     // Object state
 
@@ -591,7 +595,7 @@ public class BranchLookup_Nested extends Operator
 
         LookaheadExecution(QueryContext context, QueryBindingsCursor bindingsCursor, 
                            StoreAdapter adapter, int quantum) {
-            super(context, bindingsCursor, adapter, quantum);
+            super(context, bindingsCursor, adapter, quantum, TAP_LOOKAHEAD_HIT, TAP_LOOKAHEAD_STALL);
         }
     }
 }
@@ -87,7 +87,7 @@ public class Buffer_Default extends Operator
 
     @Override
     protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor) {
-        return new Execution(context, inputOperator.cursor(context, bindingsCursor));
+        return new Execution(context, inputOperator.newCursor(context, bindingsCursor));
     }
 
     @Override
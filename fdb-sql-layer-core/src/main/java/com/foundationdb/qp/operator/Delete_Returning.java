@@ -91,7 +91,7 @@ public class Delete_Returning extends Operator {
 
     @Override
     protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor) {
-        return new Execution(context, inputOperator.cursor(context, bindingsCursor));
+        return new Execution(context, inputOperator.newCursor(context, bindingsCursor));
     }
 
     @Override
@@ -107,7 +107,7 @@ class Distinct_Partial extends Operator
     @Override
     protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
     {
-        return new Execution(context, inputOperator.cursor(context, bindingsCursor));
+        return new Execution(context, inputOperator.newCursor(context, bindingsCursor));
     }
 
     @Override
@@ -100,7 +100,7 @@ class EmitBoundRow_Nested extends Operator
     @Override
     protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
     {
-        return new Execution(context, inputOperator.cursor(context, bindingsCursor));
+        return new Execution(context, inputOperator.newCursor(context, bindingsCursor));
     }
 
     @Override
@@ -33,6 +33,8 @@ import com.foundationdb.server.explain.*;
 import com.foundationdb.server.explain.std.LookUpOperatorExplainer;
 import com.foundationdb.util.ArgumentValidation;
 import com.foundationdb.util.tap.InOutTap;
+import com.foundationdb.util.tap.PointTap;
+import com.foundationdb.util.tap.Tap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -139,10 +141,10 @@ class GroupLookup_Default extends Operator
     protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
     {
         if (lookaheadQuantum <= 1) {
-            return new Execution(context, inputOperator.cursor(context, bindingsCursor));
+            return new Execution(context, inputOperator.newCursor(context, bindingsCursor));
         }
         else {
-            return new LookaheadExecution(context, inputOperator.cursor(context, bindingsCursor), lookaheadQuantum);
+            return new LookaheadExecution(context, inputOperator.newCursor(context, bindingsCursor), lookaheadQuantum);
         }
     }
 
@@ -311,6 +313,8 @@ class GroupLookup_Default extends Operator
     private static final Logger LOG = LoggerFactory.getLogger(GroupLookup_Default.class);
     private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: GroupLookup_Default open");
     private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: GroupLookup_Default next");
+    private static final PointTap TAP_LOOKAHEAD_HIT = Tap.createCount("operator: GroupLookup_Default lookahead hit");
+    private static final PointTap TAP_LOOKAHEAD_STALL = Tap.createCount("operator: GroupLookup_Default lookahead stall");
     
     // Object state
 
@@ -541,6 +545,7 @@ class GroupLookup_Default extends Operator
             try {
                 super.open();
                 cursorIndex = 0;
+                firstRow = true;
             } finally {
                 TAP_OPEN.out();
             }
@@ -573,13 +578,23 @@ class GroupLookup_Default extends Operator
                         inputs[currentIndex].queryBindings = null;
                         currentIndex = (currentIndex + 1) % quantum;
                         cursorIndex = 0;
+                        firstRow = true;
+                        filled--;
                     }
                     else if (cursorIndex == keepInputCursorIndex) {
                         outputRow = inputs[currentIndex].inputRow; 
                         cursorIndex++;
                     }
                     else {
-                        outputRow = inputs[currentIndex].cursors[cursorIndex].next();
+                        if (firstRow) {
+                            long start = System.nanoTime();
+                            outputRow = inputs[currentIndex].cursors[cursorIndex].next();
+                            lookaheadQuantum.firstRow(System.nanoTime() - start);
+                            firstRow = false;
+                        }
+                        else {
+                            outputRow = inputs[currentIndex].cursors[cursorIndex].next();
+                        }
                         if (cursorIndex == branchCursorIndex) {
                             // Get all matching rows from branch.
                             if (outputRow == null) {
@@ -617,10 +632,13 @@ class GroupLookup_Default extends Operator
         public void close() {
             try {
                 // Any rows for the current bindings being closed need to be discarded.
+                int cleared = 0;
                 while (currentBindings == inputs[currentIndex].queryBindings) {
+                    if (inputs[currentIndex].inputRow != null) cleared++;
                     inputs[currentIndex].clearState();
                     currentIndex = (currentIndex + 1) % quantum;
                 }
+                discardRows(cleared);
                 if (inputs[nextIndex].inputRow == null && !input.isClosed()) {
                     input.close();
                     nextBindings = null;
@@ -668,11 +686,14 @@ class GroupLookup_Default extends Operator
                 pendingBindings.remove();
             }
             
+            int cleared = 0;
             while ((inputs[currentIndex].queryBindings != null) &&
                         inputs[currentIndex].queryBindings.isAncestor(bindings)) {
+                if (inputs[currentIndex].inputRow != null) cleared++;
                 inputs[currentIndex].clearState();
                 currentIndex = (currentIndex + 1) % quantum;
             }
+            discardRows(cleared);
             currentBindings = null;
             newBindings = false;
             if ((nextBindings != null) && nextBindings.isAncestor(bindings)) {
@@ -710,6 +731,7 @@ class GroupLookup_Default extends Operator
             quantum = (quantum + ncursors - 1) / ncursors;
             this.quantum = quantum;
             this.ncursors = nindex;
+            this.lookaheadQuantum = new LookaheadQuantum(quantum, TAP_LOOKAHEAD_HIT, TAP_LOOKAHEAD_STALL);
             this.inputs = new InputState[quantum];
             for (int j = 0; j < quantum; j++) {
                 this.inputs[j] = new InputState (nindex, keepInputCursorIndex, branchCursorIndex);
@@ -726,12 +748,25 @@ class GroupLookup_Default extends Operator
             }
             pendingBindings.clear();
             currentBindings = nextBindings = null;
+            filled = 0;
+        }
+
+        /** The first of <code>cleared</code> rows was current; the rest were looked ahead for nothing. */
+        private void discardRows(int cleared) {
+            if (cleared > 0) {
+                filled -= cleared;
+                lookaheadQuantum.discarded(cleared - 1);
+                if (LOG_EXECUTION) {
+                    LOG.debug("GroupLookup: discarded {}, {}", cleared - 1, lookaheadQuantum);
+                }
+            }
         }
         
         private void fillPipeline() {
             // Get some more input rows, crossing bindings boundaries as
             // necessary, and open cursors for them.
-            while (!bindingsExhausted && inputs[nextIndex].inputRow == null) {
+            while (!bindingsExhausted && inputs[nextIndex].inputRow == null &&
+                   filled < lookaheadQuantum.get()) {
                 if (nextBindings == null) {
                     if (newBindings) {
                         nextBindings = currentBindings;
@@ -779,6 +814,7 @@ class GroupLookup_Default extends Operator
                         inputState.cursors[i].open();
                     }
                     nextIndex = (nextIndex + 1) % quantum;
+                    filled++;
                 }
             }
         }
@@ -820,7 +856,10 @@ class GroupLookup_Default extends Operator
         private final Cursor input;
         private final Queue<QueryBindings> pendingBindings;
         private final int quantum;
+        private final LookaheadQuantum lookaheadQuantum;
         private final InputState[] inputs;
+        private int filled;
+        private boolean firstRow;
         
         
         //private final Row[] inputRows;
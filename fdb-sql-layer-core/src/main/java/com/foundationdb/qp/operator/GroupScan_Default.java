@@ -32,6 +32,7 @@ import com.foundationdb.server.api.dml.ColumnSelector;
 import com.foundationdb.server.explain.*;
 import com.foundationdb.util.ArgumentValidation;
 import com.foundationdb.util.tap.InOutTap;
+import com.persistit.Key;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -90,6 +91,8 @@ class GroupScan_Default extends Operator
     @Override
     public String toString()
     {
+        if (runtimeFilter != null)
+            return getClass().getSimpleName() + '(' + cursorCreator + ", " + runtimeFilter + ')';
         return getClass().getSimpleName() + '(' + cursorCreator + ')';
     }
 
@@ -98,15 +101,22 @@ class GroupScan_Default extends Operator
     @Override
     protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
     {
-        return new Execution(context, bindingsCursor, cursorCreator);
+        return new Execution(context, bindingsCursor, cursorCreator,
+                             (runtimeFilter == null) ? null : runtimeFilter.evaluation(context));
     }
 
     // GroupScan_Default interface
 
     public GroupScan_Default(GroupCursorCreator cursorCreator)
+    {
+        this(cursorCreator, null);
+    }
+
+    public GroupScan_Default(GroupCursorCreator cursorCreator, RuntimeFilter runtimeFilter)
     {
         ArgumentValidation.notNull("groupTable", cursorCreator);
         this.cursorCreator = cursorCreator;
+        this.runtimeFilter = runtimeFilter;
     }
     
     // Class state
@@ -118,6 +128,7 @@ class GroupScan_Default extends Operator
     // Object state
 
     private final GroupCursorCreator cursorCreator;
+    private final RuntimeFilter runtimeFilter;
 
     @Override
     public CompoundExplainer getExplainer(ExplainContext context)
@@ -129,6 +140,8 @@ class GroupScan_Default extends Operator
         TableName rootName = cursorCreator.group().getRoot().getName();
         att.put(Label.TABLE_SCHEMA, PrimitiveExplainer.getInstance(rootName.getSchemaName()));
         att.put(Label.TABLE_NAME, PrimitiveExplainer.getInstance(rootName.getTableName()));
+        if (runtimeFilter != null)
+            att.put(Label.BLOOM_FILTER, runtimeFilter.getExplainer(context));
         return new CompoundExplainer(Type.SCAN_OPERATOR, att);
     }
 
@@ -145,6 +158,9 @@ class GroupScan_Default extends Operator
             TAP_OPEN.in();
             try {
                 super.open();
+                if (filterEvaluation != null) {
+                    filterEvaluation.reset();
+                }
                 cursor.open();
             } finally {
                 TAP_OPEN.out();
@@ -159,8 +175,13 @@ class GroupScan_Default extends Operator
             }
             try {
                 checkQueryCancelation();
-                Row row;
-                if ((row = cursor.next()) == null) {
+                Row row = cursor.next();
+                if (filterEvaluation != null) {
+                    while ((row != null) && !filterEvaluation.maybePresent(row, bindings)) {
+                        row = cursor.next();
+                    }
+                }
+                if (row == null) {
                     setIdle();
                 }
                 if (LOG_EXECUTION) {
@@ -212,19 +233,30 @@ class GroupScan_Default extends Operator
             cursor.rebind(hKey, deep);
         }
 
+        @Override
+        public void rebindRange(Key start) {
+            if(!canRebind) {
+                throw new IllegalStateException("rebind not allowed for");
+            }
+            cursor.rebindRange(start);
+        }
+
         // Execution interface
 
-        Execution(QueryContext context, QueryBindingsCursor bindingsCursor, GroupCursorCreator cursorCreator)
+        Execution(QueryContext context, QueryBindingsCursor bindingsCursor, GroupCursorCreator cursorCreator,
+                  RuntimeFilter.Evaluation filterEvaluation)
         {
             super(context, bindingsCursor);
             this.cursor = cursorCreator.cursor(context);
             this.canRebind = (cursorCreator instanceof FullGroupCursorCreator);
+            this.filterEvaluation = filterEvaluation;
         }
 
         // Object state
 
         private final GroupCursor cursor;
         private final boolean canRebind;
+        private final RuntimeFilter.Evaluation filterEvaluation;
     }
 
     static interface GroupCursorCreator
@@ -293,6 +325,33 @@ class GroupScan_Default extends Operator
         }
     }
 
+    static class UnorderedGroupCursorCreator extends AbstractGroupCursorCreator
+    {
+
+        // GroupCursorCreator interface
+
+        @Override
+        public GroupCursor cursor(QueryContext context)
+        {
+            return context.getStore(group().getRoot()).newUnorderedGroupCursor(group());
+        }
+
+        // UnorderedGroupCursorCreator interface
+
+        public UnorderedGroupCursorCreator(Group group)
+        {
+            super(group);
+        }
+
+        // AbstractGroupCursorCreator interface
+
+        @Override
+        public String describeRange()
+        {
+            return "unordered full scan";
+        }
+    }
+
     static class PositionalGroupCursorCreator extends AbstractGroupCursorCreator
     {
 
@@ -415,6 +474,11 @@ class GroupScan_Default extends Operator
             throw new UnsupportedOperationException();
         }
 
+        @Override
+        public void rebindRange(Key start) {
+            throw new UnsupportedOperationException();
+        }
+
         HKeyBoundCursor(QueryContext context,
                         GroupCursor input,
                         int hKeyBindingPosition,
@@ -0,0 +1,621 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.row.ValuesHolderRow;
+import com.foundationdb.qp.rowtype.AggregatedRowType;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.storeadapter.indexcursor.MergeJoinSorter;
+import com.foundationdb.qp.util.SpillFile;
+import com.foundationdb.server.collation.AkCollator;
+import com.foundationdb.server.explain.*;
+import com.foundationdb.server.types.TAggregator;
+import com.foundationdb.server.types.TClass;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.common.types.TString;
+import com.foundationdb.server.types.value.*;
+import com.foundationdb.util.ArgumentValidation;
+import com.foundationdb.util.tap.InOutTap;
+import com.foundationdb.util.tap.PointTap;
+import com.foundationdb.util.tap.Tap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+
+/**
+
+ <h1>Overview</h1>
+
+ HashAggregate_Default applies a full aggregation to rows that are in
+ no particular order, by accumulating one group per distinct value of
+ the GROUP BY columns in a hash table. Unlike Aggregate_Partial, the
+ input does not need to be sorted on the GROUP BY columns first.
+
+ <h1>Arguments</h1>
+
+ <ul>
+
+ <li><b>input:</b> the input operator
+
+ <li><b>inputsIndex:</b> the first index of the input rows that
+ represents an input; indexes before this are GROUP BY
+ fields. Required: <i>1 <= inputsIndex <= input.rowType().nFields()</i>
+
+ <li><b>aggregatorFactories:</b> one aggregator per input.  Required:
+ <i>inputsIndex + aggregatorFactories.size() ==
+ input.rowType().nFields()</i>
+
+ <li><b>aggregatorTypes:</b> the state / result type of each aggregator.
+
+ <li><b>options:</b> per-aggregator option, as for Aggregate_Partial.
+
+ </ul>
+
+ <h1>Behavior</h1>
+
+ Each input row of type <i>input.rowType()</i> is hashed on its GROUP BY
+ columns (respecting string collation) and applied to the aggregators of
+ its group in an open-addressed table. When the input is exhausted,
+ one row is output for each group, in no particular order.
+
+ The in-memory groups are limited by
+ the <code>fdbsql.hash_aggregate.memory</code> property. Once that is
+ reached, no new groups are started: rows of groups already in memory
+ continue to be aggregated there and all other rows are written to
+ one of several temporary files, partitioned by hash. After the in-memory
+ groups have been output, each file is aggregated the same way with a
+ different hash seed, which may spill again, up to a fixed depth.
+
+ <h1>Output</h1>
+
+ All input rows are swallowed. One row per group is output, laid out as
+ for Aggregate_Partial. All rows from the incoming operator with a type
+ other than <i>input.rowType()</i> are passed through unchanged, ahead
+ of any aggregated rows.
+
+ If there are no input rows, no rows are output.
+
+ <h1>Assumptions</h1>
+
+ There is at least one GROUP BY column. Aggregators must not need
+ their inputs in any order.
+
+ <h1>Performance</h1>
+
+ One hash probe per input row. Spilled rows are written and read back
+ once per level of spilling.
+
+ <h1>Memory requirements</h1>
+
+ One set of grouping column values and aggregator states per group,
+ up to the configured limit.
+
+ */
+
+final class HashAggregate_Default extends Operator
+{
+
+    // Operator interface
+
+    @Override
+    protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor) {
+        return new Execution(context, bindingsCursor);
+    }
+
+    @Override
+    public void findDerivedTypes(Set<RowType> derivedTypes) {
+        inputOperator.findDerivedTypes(derivedTypes);
+        derivedTypes.add(outputType);
+    }
+
+    @Override
+    public List<Operator> getInputOperators() {
+        return Collections.singletonList(inputOperator);
+    }
+
+    @Override
+    public RowType rowType() {
+        return outputType;
+    }
+
+    // HashAggregate_Default interface
+
+    public HashAggregate_Default(Operator inputOperator,
+                                 RowType inputRowType,
+                                 int inputsIndex,
+                                 List<? extends TAggregator> aggregatorFactories,
+                                 List<? extends TInstance> pAggrTypes,
+                                 List<Object> options) {
+        this.inputOperator = inputOperator;
+        this.inputRowType = inputRowType;
+        this.inputsIndex = inputsIndex;
+        this.outputType = inputRowType.schema().newAggregateType(inputRowType, inputsIndex, pAggrTypes);
+        this.pAggrs = aggregatorFactories;
+        this.pAggrTypes = pAggrTypes;
+        this.options = options;
+        validate();
+        this.collators = new AkCollator[inputsIndex];
+        for (int i = 0; i < inputsIndex; i++) {
+            TInstance type = inputRowType.typeAt(i);
+            if (type.typeClass() instanceof TString) {
+                collators[i] = TString.getCollator(type);
+            }
+        }
+        this.spillTypes = new TInstance[inputRowType.nFields()];
+        for (int i = 0; i < spillTypes.length; i++) {
+            spillTypes[i] = inputRowType.typeAt(i);
+        }
+    }
+
+    // Object interface
+
+    @Override
+    public String toString() {
+        return String.format("%s(GROUP BY %d fields, then: %s)", getClass().getSimpleName(), inputsIndex, pAggrs);
+    }
+
+    // private methods
+
+    private void validate() {
+        if (inputOperator == null || inputRowType == null || outputType == null)
+            throw new NullPointerException();
+        ArgumentValidation.isBetween("inputsIndex", 1, inputsIndex, inputRowType.nFields()+1);
+        if (pAggrTypes.size() != pAggrs.size())
+            throw new IllegalArgumentException("aggregators and aggregator types mismatch in size");
+        if (inputsIndex + pAggrs.size() != inputRowType.nFields()) {
+            throw new IllegalArgumentException(
+                    String.format("inputsIndex(=%d) + aggregatorNames.size(=%d) != inputRowType.nFields(=%d)",
+                            inputsIndex, pAggrs.size(), inputRowType.nFields()
+            ));
+        }
+    }
+
+    // Remix with a per-level seed so that a spilled partition spreads out when aggregated again.
+    private static int remix(int hash, int depth) {
+        int h = hash ^ (0x9E3779B9 * (depth + 1));
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    // class state
+
+    private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: HashAggregate_Default open");
+    private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: HashAggregate_Default next");
+    private static final PointTap SPILL_PARTITION_TAP = Tap.createCount("hash aggregate: spill partition");
+    private static final PointTap SPILL_ROW_TAP = Tap.createCount("hash aggregate: spill row");
+    private static final Logger LOG = LoggerFactory.getLogger(HashAggregate_Default.class);
+    static final String MEMORY_PROPERTY = "fdbsql.hash_aggregate.memory";
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int PARTITION_BITS = 4;
+    private static final int PARTITION_COUNT = 1 << PARTITION_BITS;
+    private static final int MAX_SPILL_DEPTH = 3;
+    private static final long GROUP_OVERHEAD = 64;
+    private static final long STATE_SIZE = 32;
+    private static final long SLOT_SIZE = 8;
+    private static final long KEY_SIZE_ESTIMATE = 24;
+
+    // object state
+
+    private final Operator inputOperator;
+    private final RowType inputRowType;
+    private final AggregatedRowType outputType;
+    private final int inputsIndex;
+    private final List<? extends TInstance> pAggrTypes;
+    private final List<? extends TAggregator> pAggrs;
+    private final List<Object> options;
+    private final AkCollator[] collators;
+    private final TInstance[] spillTypes;
+
+    @Override
+    public CompoundExplainer getExplainer(ExplainContext context)
+    {
+        Attributes atts = new Attributes();
+        atts.put(Label.NAME, PrimitiveExplainer.getInstance(getName()));
+        for (TAggregator agg : pAggrs)
+            atts.put(Label.AGGREGATORS, PrimitiveExplainer.getInstance(agg.displayName().toUpperCase()));
+        atts.put(Label.GROUPING_OPTION, PrimitiveExplainer.getInstance(inputsIndex));
+        atts.put(Label.INPUT_OPERATOR, inputOperator.getExplainer(context));
+        atts.put(Label.INPUT_TYPE, inputRowType.getExplainer(context));
+        atts.put(Label.OUTPUT_TYPE, outputType.getExplainer(context));
+        return new CompoundExplainer(Type.AGGREGATE, atts);
+    }
+
+    // for use by the optimizer
+
+    /** Estimate the memory taken by one group, counted the way it is
+     * against the memory limit. Keys are taken to be small fixed-size
+     * values and the table to be half full on average.
+     */
+    static long estimateGroupSize(int nGroupBy, int nAggregates) {
+        return 2 * SLOT_SIZE + GROUP_OVERHEAD +
+            nGroupBy * KEY_SIZE_ESTIMATE + nAggregates * STATE_SIZE;
+    }
+
+    /** Estimate the total number of rows written to spill files when
+     * <code>nRows</code> rows fall into groups that would take
+     * <code>groupsSize</code> bytes in memory. Groups are assumed to be
+     * of uniform size, so that each level keeps the share of rows that
+     * fits in memory and spills the rest evenly over the partitions.
+     */
+    static double estimateSpilledRows(double nRows, double groupsSize, long memoryLimit) {
+        if (memoryLimit <= 0)
+            return 0;
+        double spilledRows = 0, rows = nRows, partitions = 1;
+        for (int depth = 0; depth < MAX_SPILL_DEPTH; depth++) {
+            double partitionSize = groupsSize / partitions;
+            if (partitionSize <= memoryLimit)
+                break;
+            double spilled = 1.0 - memoryLimit / partitionSize;
+            rows *= spilled;
+            groupsSize *= spilled;
+            spilledRows += rows;
+            partitions *= PARTITION_COUNT;
+        }
+        return spilledRows;
+    }
+
+    // nested classes
+
+    private static class Group
+    {
+        final int hash;
+        final Value[] keys;
+        final Value[] states;
+
+        Group(int hash, Value[] keys, Value[] states) {
+            this.hash = hash;
+            this.keys = keys;
+            this.states = states;
+        }
+    }
+
+    private static class SpilledPartition
+    {
+        final SpillFile file;
+        final int depth;
+
+        SpilledPartition(SpillFile file, int depth) {
+            this.file = file;
+            this.depth = depth;
+        }
+    }
+
+    private class Execution extends ChainedCursor
+    {
+
+        // Cursor interface
+
+        @Override
+        public void open() {
+            TAP_OPEN.in();
+            try {
+                super.open();
+                if (memoryLimit < 0) {
+                    memoryLimit = memoryLimit();
+                    fileProvider = new MergeJoinSorter.MergeTempFileProvider(context, "aggregate");
+                }
+                table = new GroupTable(0);
+                inputDone = false;
+            } finally {
+                TAP_OPEN.out();
+            }
+        }
+
+        @Override
+        public Row next() {
+            if (TAP_NEXT_ENABLED) {
+                TAP_NEXT.in();
+            }
+            try {
+                checkQueryCancelation();
+                if (CURSOR_LIFECYCLE_ENABLED) {
+                    CursorLifecycle.checkIdleOrActive(this);
+                }
+                if (isIdle()) {
+                    return null;
+                }
+                while (true) {
+                    if (!inputDone) {
+                        Row row = input.next();
+                        if (row == null) {
+                            inputDone = true;
+                        }
+                        else if (row.rowType() != inputRowType) {
+                            if (LOG_EXECUTION) {
+                                LOG.debug("HashAggregate_Default: yield {}", row);
+                            }
+                            return row; // pass through
+                        }
+                        else {
+                            table.add(row);
+                        }
+                        continue;
+                    }
+                    Row output = table.nextOutput();
+                    if (output != null) {
+                        if (LOG_EXECUTION) {
+                            LOG.debug("HashAggregate_Default: yield {}", output);
+                        }
+                        return output;
+                    }
+                    table.finishSpilling(pending);
+                    if (pending.isEmpty()) {
+                        table = null;
+                        setIdle();
+                        if (LOG_EXECUTION) {
+                            LOG.debug("HashAggregate_Default: null");
+                        }
+                        return null;
+                    }
+                    table = load(pending.removeFirst());
+                }
+            } finally {
+                if (TAP_NEXT_ENABLED) {
+                    TAP_NEXT.out();
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                if (table != null) {
+                    table.finishSpilling(pending);
+                    table = null;
+                }
+                for (SpilledPartition partition : pending) {
+                    partition.file.delete();
+                }
+                pending.clear();
+                if ((spilledPartitions > 0) && LOG.isDebugEnabled()) {
+                    LOG.debug("HashAggregate_Default: spilled {} partitions, {} rows, {} bytes",
+                              new Object[] { spilledPartitions, spilledRows, spilledBytes });
+                }
+                spilledPartitions = spilledRows = spilledBytes = 0;
+            } finally {
+                super.close();
+            }
+        }
+
+        // Execution interface
+
+        Execution(QueryContext context, QueryBindingsCursor bindingsCursor) {
+            super(context, inputOperator.newCursor(context, bindingsCursor));
+        }
+
+        // for use by this class
+
+        private long memoryLimit() {
+            String prop = context.getServiceManager().getConfigurationService().getProperty(MEMORY_PROPERTY);
+            long limit = Long.parseLong(prop);
+            return (limit > 0) ? limit : Long.MAX_VALUE;
+        }
+
+        private GroupTable load(SpilledPartition partition) {
+            GroupTable loaded = new GroupTable(partition.depth + 1);
+            SpillFile.Reader reader = partition.file.openReader();
+            try {
+                while (reader.next()) {
+                    checkQueryCancelation();
+                    ValuesHolderRow row = new ValuesHolderRow(inputRowType);
+                    for (int i = 0; i < spillTypes.length; i++) {
+                        reader.read(row.valueAt(i));
+                    }
+                    loaded.add(row);
+                }
+            }
+            catch (RuntimeException ex) {
+                loaded.finishSpilling(pending);
+                throw ex;
+            }
+            finally {
+                reader.close();
+                partition.file.delete();
+            }
+            return loaded;
+        }
+
+        // object state
+
+        private final Deque<SpilledPartition> pending = new ArrayDeque<>();
+        private long memoryLimit = -1;
+        private MergeJoinSorter.MergeTempFileProvider fileProvider;
+        private GroupTable table;
+        private boolean inputDone;
+        private long spilledPartitions, spilledRows, spilledBytes;
+
+        /** Open-addressed (linear probing) table of groups at one level of spilling. */
+        private class GroupTable
+        {
+            GroupTable(int depth) {
+                this.depth = depth;
+                this.slots = new Group[INITIAL_CAPACITY];
+                this.memoryUsed = slots.length * SLOT_SIZE;
+            }
+
+            void add(Row row) {
+                int hash = remix(hashKeys(row), depth);
+                int mask = slots.length - 1;
+                int index = hash & mask;
+                Group group;
+                while ((group = slots[index]) != null) {
+                    if ((group.hash == hash) && keysEqual(group, row)) {
+                        aggregate(group, row);
+                        return;
+                    }
+                    index = (index + 1) & mask;
+                }
+                if (full) {
+                    spill(row, hash);
+                    return;
+                }
+                group = newGroup(hash, row);
+                slots[index] = group;
+                aggregate(group, row);
+                if (++size * 4 > slots.length * 3) {
+                    grow();
+                }
+                if ((memoryUsed > memoryLimit) && (depth < MAX_SPILL_DEPTH)) {
+                    full = true;
+                }
+            }
+
+            Row nextOutput() {
+                while (outputIndex < slots.length) {
+                    Group group = slots[outputIndex];
+                    slots[outputIndex++] = null;
+                    if (group != null) {
+                        return createOutput(group);
+                    }
+                }
+                return null;
+            }
+
+            /** Close any spill files and queue them for aggregation in turn. */
+            void finishSpilling(Deque<SpilledPartition> into) {
+                if (partitions != null) {
+                    for (SpillFile file : partitions) {
+                        if (file != null) {
+                            file.finishWriting();
+                            into.addLast(new SpilledPartition(file, depth));
+                        }
+                    }
+                    partitions = null;
+                }
+            }
+
+            private int hashKeys(Row row) {
+                int hash = 0;
+                for (int i = 0; i < inputsIndex; i++) {
+                    hash = hash * 31 + ValueSources.hash(row.value(i), collators[i]);
+                }
+                return hash;
+            }
+
+            private boolean keysEqual(Group group, Row row) {
+                for (int i = 0; i < inputsIndex; i++) {
+                    if (!TClass.areEqual(group.keys[i], row.value(i))) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            private Group newGroup(int hash, Row row) {
+                Value[] keys = new Value[inputsIndex];
+                for (int i = 0; i < inputsIndex; i++) {
+                    ValueSource source = row.value(i);
+                    keys[i] = new Value(outputType.typeAt(i));
+                    ValueTargets.copyFrom(source, keys[i]);
+                    memoryUsed += SpillFile.estimateSize(source);
+                }
+                Value[] states = new Value[pAggrs.size()];
+                for (int i = 0; i < states.length; i++) {
+                    states[i] = new Value(pAggrTypes.get(i));
+                }
+                memoryUsed += GROUP_OVERHEAD + states.length * STATE_SIZE;
+                return new Group(hash, keys, states);
+            }
+
+            private void aggregate(Group group, Row input) {
+                for (int i = 0; i < pAggrs.size(); ++i) {
+                    int inputIndex = i + inputsIndex;
+                    pAggrs.get(i).input(input.rowType().typeAt(inputIndex), input.value(inputIndex),
+                                        pAggrTypes.get(i), group.states[i], options.get(i));
+                }
+            }
+
+            private Row createOutput(Group group) {
+                ValuesHolderRow outputRow = new ValuesHolderRow(outputType);
+                for (int i = 0; i < inputsIndex; ++i) {
+                    ValueTargets.copyFrom(group.keys[i], outputRow.valueAt(i));
+                }
+                for (int i = 0; i < group.states.length; ++i) {
+                    Value value = outputRow.valueAt(i + inputsIndex);
+                    if (group.states[i].hasAnyValue())
+                        ValueTargets.copyFrom(group.states[i], value);
+                    else
+                        pAggrs.get(i).emptyValue(value);
+                }
+                return outputRow;
+            }
+
+            private void grow() {
+                Group[] old = slots;
+                slots = new Group[old.length * 2];
+                int mask = slots.length - 1;
+                for (Group group : old) {
+                    if (group != null) {
+                        int index = group.hash & mask;
+                        while (slots[index] != null) {
+                            index = (index + 1) & mask;
+                        }
+                        slots[index] = group;
+                    }
+                }
+                memoryUsed += (slots.length - old.length) * SLOT_SIZE;
+            }
+
+            private void spill(Row row, int hash) {
+                if (partitions == null) {
+                    partitions = new SpillFile[PARTITION_COUNT];
+                    spillValues = new ValueSource[spillTypes.length];
+                }
+                // Top bits, since the slot index uses the bottom ones.
+                int index = hash >>> (Integer.SIZE - PARTITION_BITS);
+                SpillFile file = partitions[index];
+                if (file == null) {
+                    file = new SpillFile(fileProvider, spillTypes);
+                    partitions[index] = file;
+                    spilledPartitions++;
+                    SPILL_PARTITION_TAP.hit();
+                }
+                for (int i = 0; i < spillValues.length; i++) {
+                    spillValues[i] = row.value(i);
+                }
+                long before = file.getBytes();
+                file.write(spillValues);
+                spilledBytes += file.getBytes() - before;
+                spilledRows++;
+                SPILL_ROW_TAP.hit();
+            }
+
+            private final int depth;
+            private Group[] slots;
+            private int size, outputIndex;
+            private long memoryUsed;
+            private boolean full;
+            private SpillFile[] partitions;
+            private ValueSource[] spillValues;
+        }
+    }
+
+}
@@ -262,7 +262,7 @@ class IfEmpty_Default extends Operator
 
         Execution(QueryContext context, QueryBindingsCursor bindingsCursor)
         {
-            super(context, inputOperator.cursor(context, bindingsCursor));
+            super(context, inputOperator.newCursor(context, bindingsCursor));
             this.pEvaluations = new ArrayList<>(pExpressions.size());
             for (TPreparedExpression outerJoinRowExpressions : pExpressions) {
                 TEvaluatableExpression eval = outerJoinRowExpressions.build();
@@ -34,6 +34,8 @@ import com.foundationdb.server.api.dml.ColumnSelector;
 import com.foundationdb.server.explain.*;
 import com.foundationdb.util.ArgumentValidation;
 import com.foundationdb.util.tap.InOutTap;
+import com.foundationdb.util.tap.PointTap;
+import com.foundationdb.util.tap.Tap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -162,6 +164,9 @@ class IndexScan_Default extends Operator
             str.append(" ").append(ordering);
         }
         str.append(scanSelector.describe());
+        if (runtimeFilter != null) {
+            str.append(" ").append(runtimeFilter);
+        }
         str.append(")");
         return str.toString();
     }
@@ -187,7 +192,8 @@ class IndexScan_Default extends Operator
                              IndexKeyRange indexKeyRange,
                              API.Ordering ordering,
                              IndexScanSelector scanSelector,
-                             int lookaheadQuantum)
+                             int lookaheadQuantum,
+                             RuntimeFilter runtimeFilter)
     {
         ArgumentValidation.notNull("indexType", indexType);
         this.indexType = indexType;
@@ -196,12 +202,15 @@ class IndexScan_Default extends Operator
         this.indexKeyRange = indexKeyRange;
         this.scanSelector = scanSelector;
         this.lookaheadQuantum = lookaheadQuantum;
+        this.runtimeFilter = runtimeFilter;
     }
 
     // Class state
 
     private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: IndexScan_Default open");
     private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: IndexScan_Default next");
+    private static final PointTap TAP_LOOKAHEAD_HIT = Tap.createCount("operator: IndexScan_Default lookahead hit");
+    private static final PointTap TAP_LOOKAHEAD_STALL = Tap.createCount("operator: IndexScan_Default lookahead stall");
     private static final Logger LOG = LoggerFactory.getLogger(IndexScan_Default.class);
 
     // Object state
@@ -212,6 +221,7 @@ class IndexScan_Default extends Operator
     private final IndexKeyRange indexKeyRange;
     private final IndexScanSelector scanSelector;
     private final int lookaheadQuantum;
+    private final RuntimeFilter runtimeFilter;
 
     @Override
     public CompoundExplainer getExplainer(ExplainContext context)
@@ -285,6 +295,8 @@ class IndexScan_Default extends Operator
             atts.put(Label.ORDERING, PrimitiveExplainer.getInstance(ordering.ascending(i) ? "ASC" : "DESC"));
         }
         atts.put(Label.PIPELINE, PrimitiveExplainer.getInstance(lookaheadQuantum));
+        if (runtimeFilter != null)
+            atts.put(Label.BLOOM_FILTER, runtimeFilter.getExplainer(context));
         if (context.hasExtraInfo(this))
             atts.putAll(context.getExtraInfo(this).get()); 
         return new CompoundExplainer(Type.SCAN_OPERATOR, atts);
@@ -302,6 +314,9 @@ class IndexScan_Default extends Operator
             TAP_OPEN.in();
             try {
                 super.open();
+                if (filterEvaluation != null) {
+                    filterEvaluation.reset();
+                }
                 cursor.open();
             } finally {
                 TAP_OPEN.out();
@@ -317,6 +332,11 @@ class IndexScan_Default extends Operator
             try {
                 checkQueryCancelation();
                 Row row = cursor.next();
+                if (filterEvaluation != null) {
+                    while ((row != null) && !filterEvaluation.maybePresent(row, bindings)) {
+                        row = cursor.next();
+                    }
+                }
                 if (row == null) {
                     setIdle();
                 }
@@ -365,11 +385,13 @@ class IndexScan_Default extends Operator
             super(context, bindingsCursor);
             Table table = index.rootMostTable();
             this.cursor = adapter(table).newIndexCursor(context, indexType, indexKeyRange, ordering, scanSelector, false);
+            this.filterEvaluation = (runtimeFilter == null) ? null : runtimeFilter.evaluation(context);
         }
 
         // Object state
 
         private final RowCursor cursor;
+        private final RuntimeFilter.Evaluation filterEvaluation;
     }
 
     private class LookaheadExecution extends LookaheadLeafCursor<BindingsAwareCursor>
@@ -380,6 +402,9 @@ class IndexScan_Default extends Operator
         public void open() {
             TAP_OPEN.in();
             try {
+                if (filterEvaluation != null) {
+                    filterEvaluation.reset();
+                }
                 super.open();
             } finally {
                 TAP_OPEN.out();
@@ -393,6 +418,11 @@ class IndexScan_Default extends Operator
             }
             try {
                 Row row = super.next();
+                if (filterEvaluation != null) {
+                    while ((row != null) && !filterEvaluation.maybePresent(row, currentBindings)) {
+                        row = super.next();
+                    }
+                }
                 if (LOG_EXECUTION) {
                     LOG.debug(IndexScan_Default.this.toString() + ": yield {}", row);
                 }
@@ -414,7 +444,7 @@ class IndexScan_Default extends Operator
         @Override
         protected BindingsAwareCursor openACursor(QueryBindings bindings, boolean lookahead) {
             if (LOG_EXECUTION) {
-                LOG.debug(IndexScan_Default.this.toString() + ": open{} for {}", lookahead ? " lookahead" : "", bindings);
+                LOG.debug(IndexScan_Default.this.toString() + ": open{} for {}, {}", new Object[] { lookahead ? " lookahead" : "", bindings, getQuantum() });
             }
             return super.openACursor(bindings, lookahead);
         }
@@ -423,12 +453,17 @@ class IndexScan_Default extends Operator
 
         LookaheadExecution(QueryContext context, QueryBindingsCursor bindingsCursor, 
                            StoreAdapter adapter, int quantum) {
-            super(context, bindingsCursor, adapter, quantum);
+            super(context, bindingsCursor, adapter, quantum, TAP_LOOKAHEAD_HIT, TAP_LOOKAHEAD_STALL);
+            this.filterEvaluation = (runtimeFilter == null) ? null : runtimeFilter.evaluation(context);
         }
         
         @Override
         public String toString() {
             return "LookaheadExecution for " + IndexScan_Default.this.toString();
         }
+
+        // Object state
+
+        private final RuntimeFilter.Evaluation filterEvaluation;
     }
 }
@@ -25,12 +25,15 @@ package com.foundationdb.qp.operator;
 
 import com.foundationdb.qp.row.Row;
 import com.foundationdb.server.api.dml.ColumnSelector;
+import com.foundationdb.util.tap.PointTap;
+import com.foundationdb.util.tap.Tap;
 
 import java.util.ArrayDeque;
 import java.util.Queue;
 
 /** An {@link OperatorCursor} that opens a single {@link BindingsAwareCursor}
 * for each {@link QueryBindings} with lookahead.
+* The number of cursors open at once adapts as in {@link LookaheadQuantum}.
 */
 public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends OperatorCursor
 {
@@ -50,7 +53,8 @@ public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends
             // At the very beginning, the pipeline isn't started.
             currentCursor = openACursor(currentBindings, false);
         }
-        while (!cursorPool.isEmpty() && !bindingsExhausted) {
+        firstRow = true;
+        while ((cursorsInUse() < quantum.get()) && !bindingsExhausted) {
             QueryBindings bindings = bindingsCursor.nextBindings();
             if (bindings == null) {
                 bindingsExhausted = true;
@@ -70,7 +74,16 @@ public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends
             CursorLifecycle.checkIdleOrActive(this);
         }
         checkQueryCancelation();
-        Row row = currentCursor.next();
+        Row row;
+        if (firstRow) {
+            long start = System.nanoTime();
+            row = currentCursor.next();
+            quantum.firstRow(System.nanoTime() - start);
+            firstRow = false;
+        }
+        else {
+            row = currentCursor.next();
+        }
         if (row == null) {
             currentCursor.setIdle();
         }
@@ -149,6 +162,7 @@ public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends
             resetActiveCursors();
             currentBindings = null;
         }
+        int discarded = 0;
         while (true) {
             BindingsAndCursor<C> bandc = pendingBindings.peek();
             if (bandc == null) break;
@@ -158,11 +172,13 @@ public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends
                 try {
                     bandc.cursor.close();
                     cursorPool.add(bandc.cursor);
+                    discarded++;
                 } finally {
                     bandc.cursor = null;
                 }
             }
         }
+        quantum.discarded(discarded);
         bindingsCursor.cancelBindings(bindings);
     }
 
@@ -170,14 +186,23 @@ public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends
 
     LookaheadLeafCursor(QueryContext context, QueryBindingsCursor bindingsCursor, 
                         StoreAdapter adapter, int quantum) {
+        this(context, bindingsCursor, adapter, quantum, HIT_TAP, STALL_TAP);
+    }
+
+    /** Cursors are only created as the quantum grows toward <code>quantum</code>. */
+    LookaheadLeafCursor(QueryContext context, QueryBindingsCursor bindingsCursor, 
+                        StoreAdapter adapter, int quantum,
+                        PointTap hitTap, PointTap stallTap) {
         super(context);
         this.bindingsCursor = bindingsCursor;
+        this.adapter = adapter;
+        this.quantum = new LookaheadQuantum(quantum, hitTap, stallTap);
         this.pendingBindings = new ArrayDeque<>(quantum+1);
         this.cursorPool = new ArrayDeque<>(quantum);
-        for (int i = 0; i < quantum; i++) {
-            C cursor = newCursor(context, adapter);
-            cursorPool.add(cursor);
-        }
+    }
+
+    public LookaheadQuantum getQuantum() {
+        return quantum;
     }
 
     // Implemented by subclass
@@ -214,6 +239,7 @@ public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends
             try {
                 pendingCursor.close();
                 cursorPool.add(pendingCursor);
+                quantum.discarded(1);
             } finally {
                 pendingCursor = null;
             }
@@ -221,6 +247,7 @@ public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends
     }
     
     protected void recyclePending() {
+        int discarded = 0;
         while (true) {
             BindingsAndCursor<C> bandc = pendingBindings.poll();
             if (bandc == null) break;
@@ -228,23 +255,43 @@ public abstract class LookaheadLeafCursor<C extends BindingsAwareCursor> extends
                 try {
                     bandc.cursor.close();
                     cursorPool.add(bandc.cursor);
+                    discarded++;
                 } finally {
                     bandc.cursor = null;
                 }
             }
         }
+        quantum.discarded(discarded);
     }
 
     protected C openACursor(QueryBindings bindings, boolean lookahead) {
-        C cursor = cursorPool.remove();
+        C cursor = cursorPool.poll();
+        if (cursor == null) {
+            cursor = newCursor(context, adapter);
+            allocated++;
+        }
         cursor.rebind(bindings);
         cursor.open();
         return cursor;
     }
 
+    /** Cursors open as current, pending or lookahead. */
+    protected int cursorsInUse() {
+        return allocated - cursorPool.size();
+    }
+
+    // Class state
+
+    private static final PointTap HIT_TAP = Tap.createCount("lookahead: hit");
+    private static final PointTap STALL_TAP = Tap.createCount("lookahead: stall");
+
     // Object state
 
     protected final QueryBindingsCursor bindingsCursor;
+    protected final StoreAdapter adapter;
+    protected final LookaheadQuantum quantum;
+    protected int allocated;
+    protected boolean firstRow;
     protected final Queue<BindingsAndCursor<C>> pendingBindings;
     protected final Queue<C> cursorPool;
     protected QueryBindings currentBindings;
@@ -0,0 +1,108 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.util.tap.PointTap;
+
+/**
+ * The number of cursors (or input rows) a lookahead pipeline keeps open,
+ * adjusted as it runs between one and the configured quantum.
+ *
+ * The pipeline reports how long the consumer waited for the first row of
+ * each cursor it moves on to. A long wait is a stall: the pipeline was not
+ * deep enough to hide the store's latency, so the quantum doubles. A short
+ * wait is a hit: the cursor's first read had already completed. When a
+ * whole quantum's worth of hits arrive in a row, the quantum grows by one,
+ * probing for more concurrency. When the pipeline is torn down with cursors
+ * that were opened but never used, as happens under a <code>Limit_Default</code>,
+ * the quantum halves.
+ */
+class LookaheadQuantum
+{
+    public LookaheadQuantum(int maximum, PointTap hitTap, PointTap stallTap) {
+        this.maximum = Math.max(maximum, 1);
+        this.current = Math.min(INITIAL_QUANTUM, this.maximum);
+        this.hitTap = hitTap;
+        this.stallTap = stallTap;
+    }
+
+    /** The number of cursors to keep open now. */
+    public int get() {
+        return current;
+    }
+
+    public int getMaximum() {
+        return maximum;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getStalls() {
+        return stalls;
+    }
+
+    /** Record how long it took to get the first row of a cursor. */
+    public void firstRow(long waitNanos) {
+        if (waitNanos <= READY_NANOS) {
+            hits++;
+            hitTap.hit();
+            if (++consecutiveHits >= current) {
+                consecutiveHits = 0;
+                if (current < maximum) {
+                    current++;
+                }
+            }
+        }
+        else {
+            stalls++;
+            stallTap.hit();
+            consecutiveHits = 0;
+            current = Math.min(current * 2, maximum);
+        }
+    }
+
+    /** Record that <code>count</code> opened cursors were discarded unused. */
+    public void discarded(int count) {
+        if (count > 0) {
+            consecutiveHits = 0;
+            current = Math.max(current / 2, 1);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("quantum %d of %d, %d hits, %d stalls", current, maximum, hits, stalls);
+    }
+
+    // Well under a round trip to the store.
+    static final long READY_NANOS = 50000;
+    static final int INITIAL_QUANTUM = 1;
+
+    private final int maximum;
+    private final PointTap hitTap, stallTap;
+    private int current, consecutiveHits;
+    private long hits, stalls;
+}
@@ -55,8 +55,8 @@ public abstract class MultiChainedCursor extends  OperatorCursor {
         super(context);
         MultipleQueryBindingsCursor multiple = new MultipleQueryBindingsCursor(bindingsCursor);
         this.bindingsCursor = multiple;
-        this.leftInput = left().cursor(context, multiple.newCursor());
-        this.rightInput = right().cursor(context, multiple.newCursor());
+        this.leftInput = left().newCursor(context, multiple.newCursor());
+        this.rightInput = right().newCursor(context, multiple.newCursor());
     }
     
     protected abstract Operator left();
@@ -77,6 +77,20 @@ public abstract class Operator implements Plannable
 
     protected abstract Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor);
 
+    /**
+     * Create a cursor for this operator, as inputs and {@link API#cursor} do,
+     * counting its rows and time if the session is collecting an {@link OperatorProfile}.
+     */
+    final Cursor newCursor(QueryContext context, QueryBindingsCursor bindingsCursor)
+    {
+        Cursor cursor = cursor(context, bindingsCursor);
+        OperatorProfile profile = OperatorProfile.get(context.getSession());
+        if (profile != null) {
+            cursor = new ProfiledCursor(cursor, profile, profile.getStats(this));
+        }
+        return cursor;
+    }
+
     @Override
     public String describePlan()
     {
@@ -0,0 +1,172 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.server.explain.Attributes;
+import com.foundationdb.server.explain.CompoundExplainer;
+import com.foundationdb.server.explain.Explainer;
+import com.foundationdb.server.explain.Label;
+import com.foundationdb.server.explain.PrimitiveExplainer;
+import com.foundationdb.server.service.session.Session;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runtime statistics for each operator of one execution, as for
+ * <code>EXPLAIN ANALYZE</code>. While a profile is installed in the
+ * session, {@link Operator#newCursor} wraps every cursor to count
+ * rows and time, and storage iterators charge what they read to the
+ * operator whose cursor is running.
+ */
+public class OperatorProfile
+{
+    private static final Session.Key<OperatorProfile> SESSION_KEY = Session.Key.named("OPERATOR_PROFILE");
+
+    public static OperatorProfile get(Session session) {
+        return (session == null) ? null : session.get(SESSION_KEY);
+    }
+
+    public static void install(Session session, OperatorProfile profile) {
+        session.put(SESSION_KEY, profile);
+    }
+
+    public static void remove(Session session) {
+        session.remove(SESSION_KEY);
+    }
+
+    public static class Stats
+    {
+        long opens, rows, bindings, nanos;
+        long storeReads, storeBytes, storeWaits;
+
+        public long getOpens() {
+            return opens;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getBindings() {
+            return bindings;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public long getStoreReads() {
+            return storeReads;
+        }
+
+        public long getStoreBytes() {
+            return storeBytes;
+        }
+
+        public long getStoreWaits() {
+            return storeWaits;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder str = new StringBuilder();
+            str.append("rows = ").append(rows)
+               .append(", loops = ").append(opens);
+            if (bindings > 1) {
+                str.append(", rows/batch = ").append(String.format("%.1f", (double)rows / bindings));
+            }
+            str.append(", time = ").append(String.format("%.3f ms", nanos / 1.0e6));
+            if (storeReads > 0) {
+                str.append(", reads = ").append(storeReads)
+                   .append(", bytes = ").append(storeBytes)
+                   .append(", waits = ").append(storeWaits);
+            }
+            return str.toString();
+        }
+    }
+
+    private final Map<Operator,Stats> stats = new IdentityHashMap<>();
+    private Stats current;
+
+    public Stats getStats(Operator operator) {
+        Stats result = stats.get(operator);
+        if (result == null) {
+            result = new Stats();
+            stats.put(operator, result);
+        }
+        return result;
+    }
+
+    /** Make <code>running</code> the operator charged for reads; returns the one to restore. */
+    Stats enter(Stats running) {
+        Stats outer = current;
+        current = running;
+        return outer;
+    }
+
+    void exit(Stats outer) {
+        current = outer;
+    }
+
+    /** Charge a key-value read from the store to the running operator. */
+    public void storeRead(int bytes, boolean waited) {
+        if (current != null) {
+            current.storeReads++;
+            current.storeBytes += bytes;
+            if (waited) {
+                current.storeWaits++;
+            }
+        }
+    }
+
+    /**
+     * Add {@link Label#ACTUAL} statistics to the explainer for <code>operator</code>
+     * and its inputs. Inputs are matched up by position and name, so that operators
+     * that only appear elsewhere in the explainer, such as in subquery expressions,
+     * are skipped rather than mislabeled.
+     */
+    public void explain(Operator operator, Explainer explainer) {
+        if (!(explainer instanceof CompoundExplainer)) {
+            return;
+        }
+        Attributes atts = ((CompoundExplainer)explainer).get();
+        if (!operator.getName().equals(atts.getValue(Label.NAME))) {
+            return;
+        }
+        Stats opStats = stats.get(operator);
+        if (opStats != null) {
+            atts.put(Label.ACTUAL, PrimitiveExplainer.getInstance(opStats.toString()));
+        }
+        List<Explainer> inputExplainers = atts.get(Label.INPUT_OPERATOR);
+        if (inputExplainers == null) {
+            return;
+        }
+        List<Operator> inputs = operator.getInputOperators();
+        for (int i = 0; (i < inputs.size()) && (i < inputExplainers.size()); i++) {
+            explain(inputs.get(i), inputExplainers.get(i));
+        }
+    }
+}
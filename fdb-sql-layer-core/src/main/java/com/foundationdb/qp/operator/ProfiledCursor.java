@@ -0,0 +1,162 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.server.api.dml.ColumnSelector;
+
+/**
+ * Wraps an operator's cursor while an {@link OperatorProfile} is being
+ * collected, timing each call and counting loops, rows and bindings.
+ * Time is inclusive of the operator's inputs.
+ */
+class ProfiledCursor implements Cursor
+{
+    private final Cursor cursor;
+    private final OperatorProfile profile;
+    private final OperatorProfile.Stats stats;
+
+    ProfiledCursor(Cursor cursor, OperatorProfile profile, OperatorProfile.Stats stats) {
+        this.cursor = cursor;
+        this.profile = profile;
+        this.stats = stats;
+    }
+
+    @Override
+    public void open() {
+        long start = System.nanoTime();
+        OperatorProfile.Stats outer = profile.enter(stats);
+        try {
+            cursor.open();
+            stats.opens++;
+        } finally {
+            profile.exit(outer);
+            stats.nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public Row next() {
+        long start = System.nanoTime();
+        OperatorProfile.Stats outer = profile.enter(stats);
+        try {
+            Row row = cursor.next();
+            if (row != null) {
+                stats.rows++;
+            }
+            return row;
+        } finally {
+            profile.exit(outer);
+            stats.nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public void jump(Row row, ColumnSelector columnSelector) {
+        long start = System.nanoTime();
+        OperatorProfile.Stats outer = profile.enter(stats);
+        try {
+            cursor.jump(row, columnSelector);
+        } finally {
+            profile.exit(outer);
+            stats.nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public void close() {
+        long start = System.nanoTime();
+        OperatorProfile.Stats outer = profile.enter(stats);
+        try {
+            cursor.close();
+        } finally {
+            profile.exit(outer);
+            stats.nanos += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public boolean isIdle() {
+        return cursor.isIdle();
+    }
+
+    @Override
+    public boolean isActive() {
+        return cursor.isActive();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return cursor.isClosed();
+    }
+
+    @Override
+    public void setIdle() {
+        cursor.setIdle();
+    }
+
+    @Override
+    public void openBindings() {
+        cursor.openBindings();
+    }
+
+    @Override
+    public QueryBindings nextBindings() {
+        OperatorProfile.Stats outer = profile.enter(stats);
+        try {
+            QueryBindings bindings = cursor.nextBindings();
+            if (bindings != null) {
+                stats.bindings++;
+            }
+            return bindings;
+        } finally {
+            profile.exit(outer);
+        }
+    }
+
+    @Override
+    public void closeBindings() {
+        cursor.closeBindings();
+    }
+
+    @Override
+    public void cancelBindings(QueryBindings bindings) {
+        cursor.cancelBindings(bindings);
+    }
+
+    @Override
+    public QueryBindings openTopLevel() {
+        openBindings();
+        QueryBindings bindings = nextBindings();
+        assert (bindings != null);
+        open();
+        return bindings;
+    }
+
+    @Override
+    public void closeTopLevel() {
+        close();
+        closeBindings();
+    }
+}
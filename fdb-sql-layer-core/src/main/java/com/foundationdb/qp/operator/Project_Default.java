@@ -23,15 +23,21 @@
  */
 package com.foundationdb.qp.operator;
 
+import com.foundationdb.qp.row.BatchProjectedRow;
 import com.foundationdb.qp.row.ProjectedRow;
 import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.row.RowBatch;
 import com.foundationdb.qp.rowtype.ProjectedRowType;
 import com.foundationdb.qp.rowtype.ProjectedTableRowType;
 import com.foundationdb.qp.rowtype.RowType;
 import com.foundationdb.server.explain.*;
 import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.api.dml.ColumnSelector;
+import com.foundationdb.server.types.texpressions.ColumnVector;
 import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
 import com.foundationdb.server.types.texpressions.TPreparedExpression;
+import com.foundationdb.server.types.texpressions.TVectorizedExpression;
+import com.foundationdb.server.types.texpressions.TVectorizedExpressions;
 import com.foundationdb.util.ArgumentValidation;
 import com.foundationdb.util.tap.InOutTap;
 import org.slf4j.Logger;
@@ -70,9 +76,13 @@ import java.util.*;
 
   Project_Default does no IO. For each input row, the type is checked and each output field is computed.
 
+  With a batchSize greater than one, input rows are read batchSize at a time and each expression is evaluated over
+  all the rows of rowType in the batch at once. This is only done if every expression is simple enough for
+  {@link TVectorizedExpressions} and the input's rows can be held that long; otherwise rows are handled one at a time.
+
   <h1>Memory Requirements</h1>
 
-    None.
+    None, or batchSize rows and their projected fields in batch mode.
  */
 
 
@@ -95,7 +105,7 @@ class Project_Default extends Operator
     @Override
     protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
     {
-        return new Execution(context, inputOperator.cursor(context, bindingsCursor));
+        return new Execution(context, inputOperator.newCursor(context, bindingsCursor));
     }
 
     @Override
@@ -126,6 +136,12 @@ class Project_Default extends Operator
     // Project_Default interface
 
     public Project_Default(Operator inputOperator, RowType rowType, List<? extends TPreparedExpression> pExpressions)
+    {
+        this(inputOperator, rowType, pExpressions, 0);
+    }
+
+    public Project_Default(Operator inputOperator, RowType rowType, List<? extends TPreparedExpression> pExpressions,
+                           int batchSize)
     {
         ArgumentValidation.notNull("rowType", rowType);
         ArgumentValidation.notEmpty("new projections", pExpressions);
@@ -134,6 +150,10 @@ class Project_Default extends Operator
         this.rowType = rowType;
         this.pExpressions = pExpressions;
         this.projectType = rowType.schema().newProjectType(pExpressions);
+        if ((batchSize > 1) && BatchExecution.stableRows(inputOperator) && (vectorize(pExpressions) != null))
+            this.batchSize = batchSize;
+        else
+            this.batchSize = 0;
     }
 
     // Project_Default constructor, returns ProjectedTableRowType rows
@@ -152,6 +172,23 @@ class Project_Default extends Operator
                                                     projectTableRowType.table(),
                                                     pExpressions, true);
         this.pExpressions = pExpressions; // TODO defensively copy once the old expressions are gone (until then, this may NPE)
+        this.batchSize = 0;
+    }
+
+    boolean isBatched()
+    {
+        return batchSize > 0;
+    }
+
+    private static TVectorizedExpression[] vectorize(List<? extends TPreparedExpression> pExpressions)
+    {
+        TVectorizedExpression[] result = new TVectorizedExpression[pExpressions.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = TVectorizedExpressions.compile(pExpressions.get(i));
+            if (result[i] == null)
+                return null;
+        }
+        return result;
     }
 
 
@@ -167,6 +204,7 @@ class Project_Default extends Operator
     protected final RowType rowType;
     private final List<? extends TPreparedExpression> pExpressions;
     protected ProjectedRowType projectType;
+    private final int batchSize;
 
     @Override
     public CompoundExplainer getExplainer(ExplainContext context)
@@ -196,6 +234,13 @@ class Project_Default extends Operator
             TAP_OPEN.in();
             try {
                 super.open();
+                if (vEvalExpr != null) {
+                    for (TVectorizedExpression vEval : vEvalExpr) {
+                        vEval.with(context);
+                        vEval.with(bindings);
+                    }
+                    inputDone = false;
+                }
             } finally {
                 TAP_OPEN.out();
             }
@@ -214,7 +259,15 @@ class Project_Default extends Operator
                 checkQueryCancelation();
                 Row projectedRow = null;
                 Row inputRow;
-                if ((inputRow = input.next()) != null) {
+                if (vEvalExpr != null) {
+                    if ((inputRow = nextPending()) != null) {
+                        projectedRow =
+                            inputRow.rowType() == rowType
+                            ? new BatchProjectedRow(projectType, columns, batchPosition++)
+                            : inputRow;
+                    }
+                }
+                else if ((inputRow = input.next()) != null) {
                     projectedRow =
                         inputRow.rowType() == rowType
                         ? new ProjectedRow(projectType, inputRow, context, bindings, pEvalExpr)
@@ -234,6 +287,20 @@ class Project_Default extends Operator
             }
         }
 
+        @Override
+        public void jump(Row row, ColumnSelector columnSelector)
+        {
+            clearPending();
+            inputDone = false;
+            super.jump(row, columnSelector);
+        }
+
+        @Override
+        public void close()
+        {
+            super.close();
+            clearPending();
+        }
 
         // Execution interface
 
@@ -245,9 +312,70 @@ class Project_Default extends Operator
                 pEvalExpr = ProjectedRow.createTEvaluatableExpressions(pExpressions);
             else
                 pEvalExpr = null;
+            if (batchSize > 0) {
+                vEvalExpr = vectorize(pExpressions);
+                pending = new Row[batchSize];
+                batch = new RowBatch(batchSize);
+            }
+            else {
+                vEvalExpr = null;
+                pending = null;
+                batch = null;
+            }
+        }
+
+        private Row nextPending()
+        {
+            if (pendingPosition == pendingCount) {
+                fillBatch();
+                if (pendingCount == 0) {
+                    return null;
+                }
+            }
+            return pending[pendingPosition++];
+        }
+
+        private void fillBatch()
+        {
+            clearPending();
+            while (!inputDone && (pendingCount < pending.length)) {
+                Row row = input.next();
+                if (row == null) {
+                    inputDone = true;
+                    break;
+                }
+                pending[pendingCount++] = row;
+                if (row.rowType() == rowType) {
+                    batch.add(row);
+                }
+            }
+            if (batch.size() > 0) {
+                // Copied, since the rows handed out outlive this batch.
+                columns = new ColumnVector[vEvalExpr.length];
+                for (int i = 0; i < columns.length; i++) {
+                    columns[i] = vEvalExpr[i].evaluate(batch).copy();
+                }
+            }
+        }
+
+        private void clearPending()
+        {
+            if (pending != null) {
+                Arrays.fill(pending, 0, pendingCount, null);
+                pendingCount = pendingPosition = batchPosition = 0;
+                batch.clear();
+                columns = null;
+            }
         }
 
         // Object state
         private List<TEvaluatableExpression> pEvalExpr = null;
+        // Batch mode
+        private final TVectorizedExpression[] vEvalExpr;
+        private final Row[] pending;
+        private final RowBatch batch;
+        private ColumnVector[] columns;
+        private int pendingCount, pendingPosition, batchPosition;
+        private boolean inputDone;
     }
 }
@@ -24,8 +24,12 @@
 package com.foundationdb.qp.operator;
 
 import com.foundationdb.qp.row.HKey;
+import com.persistit.Key;
 
 public interface Rebindable {
     /** Passing {@code null} for {@code hKey} will scan from beginning of group, */
     void rebind(HKey hKey, boolean deep);
+
+    /** Scan from the encoded hKey {@code start}, inclusive, to the end of the group. */
+    void rebindRange(Key start);
 }
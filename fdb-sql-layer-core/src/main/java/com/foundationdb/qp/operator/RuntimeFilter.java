@@ -0,0 +1,186 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.collation.AkCollator;
+import com.foundationdb.server.explain.*;
+import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
+import com.foundationdb.server.types.texpressions.TPreparedExpression;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.server.types.value.ValueSources;
+import com.foundationdb.util.ArgumentValidation;
+import com.foundationdb.util.BloomFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A join filter that a scan applies to its own rows.
+ * <p>
+ * The build side of a hash join ({@link Using_HashTable}) or Bloom
+ * filter join ({@link Using_BloomFilter}) is loaded before the probe
+ * side is opened. The join keys go into a {@link BloomFilter}, which is
+ * kept in the bindings. A scan on the probe side that has a
+ * <code>RuntimeFilter</code> evaluates the join key fields against
+ * each of its rows of {@link #getRowType}. It drops any row that cannot
+ * have a match, before lookups or joins do further work on it. Rows of
+ * other types are passed through.
+ * <p>
+ * A row with a <code>NULL</code> key never matches an equality
+ * condition, so such rows are left out of the filter and dropped by it.
+ * This is only correct for inner and semi joins. Choosing where a
+ * filter is safe is up to the optimizer.
+ */
+public class RuntimeFilter
+{
+    public RuntimeFilter(RowType rowType,
+                         List<? extends TPreparedExpression> fields,
+                         List<AkCollator> collators,
+                         int bindingPosition)
+    {
+        ArgumentValidation.notNull("rowType", rowType);
+        ArgumentValidation.notNull("fields", fields);
+        ArgumentValidation.isGT("fields.size()", fields.size(), 0);
+        ArgumentValidation.isGTE("bindingPosition", bindingPosition, 0);
+        if (collators != null)
+            ArgumentValidation.isEQ("collators length", collators.size(), fields.size());
+        this.rowType = rowType;
+        this.fields = fields;
+        this.collators = collators;
+        this.bindingPosition = bindingPosition;
+    }
+
+    public RowType getRowType()
+    {
+        return rowType;
+    }
+
+    public int getBindingPosition()
+    {
+        return bindingPosition;
+    }
+
+    public Evaluation evaluation(QueryContext context)
+    {
+        return new Evaluation(context);
+    }
+
+    /** Fold the hash of one key field into the running hash of a row's keys. */
+    public static long hash(long hash, ValueSource value, AkCollator collator)
+    {
+        return hash * HASH_MULTIPLIER + ValueSources.longHash(value, collator);
+    }
+
+    public CompoundExplainer getExplainer(ExplainContext context)
+    {
+        Attributes atts = new Attributes();
+        atts.put(Label.NAME, PrimitiveExplainer.getInstance("RuntimeFilter"));
+        atts.put(Label.BINDING_POSITION, PrimitiveExplainer.getInstance(bindingPosition));
+        atts.put(Label.ROWTYPE, rowType.getExplainer(context));
+        for (TPreparedExpression field : fields) {
+            atts.put(Label.EXPRESSIONS, field.getExplainer(context));
+        }
+        return new CompoundExplainer(Type.BLOOM_FILTER, atts);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "RuntimeFilter(" + bindingPosition + ", " + fields + ")";
+    }
+
+    // Class state
+
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    // Object state
+
+    private final RowType rowType;
+    private final List<? extends TPreparedExpression> fields;
+    private final List<AkCollator> collators;
+    private final int bindingPosition;
+
+    // Inner classes
+
+    /** Per-cursor state for checking rows. */
+    public class Evaluation
+    {
+        /**
+         * Forget the filter found last time. Call whenever the cursor is
+         * opened: a subquery reopens it with the very same bindings, which
+         * by then may hold the filter from another build of the join.
+         */
+        public void reset()
+        {
+            filterBindings = null;
+            filter = null;
+        }
+
+        /** Return <code>false</code> if <code>row</code> certainly has no match. */
+        public boolean maybePresent(Row row, QueryBindings bindings)
+        {
+            if (row.rowType() != rowType) {
+                return true;
+            }
+            if (bindings != filterBindings) {
+                // The filter is set in an ancestor of any bindings the scan sees,
+                // and only changes when the join is opened again, which reopens the scan.
+                filterBindings = bindings;
+                filter = bindings.getBloomFilter(bindingPosition);
+            }
+            if (filter == null) {
+                return true;
+            }
+            long hash = 0;
+            for (int f = 0; f < evaluations.size(); f++) {
+                TEvaluatableExpression evaluation = evaluations.get(f);
+                evaluation.with(row);
+                evaluation.with(bindings);
+                evaluation.evaluate();
+                ValueSource value = evaluation.resultValue();
+                if (value.isNull()) {
+                    return false;
+                }
+                hash = hash(hash, value, (collators == null) ? null : collators.get(f));
+            }
+            return filter.maybePresent(hash);
+        }
+
+        private Evaluation(QueryContext context)
+        {
+            evaluations = new ArrayList<>(fields.size());
+            for (TPreparedExpression field : fields) {
+                TEvaluatableExpression evaluation = field.build();
+                evaluation.with(context);
+                evaluations.add(evaluation);
+            }
+        }
+
+        private final List<TEvaluatableExpression> evaluations;
+        private QueryBindings filterBindings;
+        private BloomFilter filter;
+    }
+}
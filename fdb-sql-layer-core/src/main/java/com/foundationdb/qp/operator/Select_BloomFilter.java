@@ -27,7 +27,7 @@ import com.foundationdb.qp.row.Row;
 import com.foundationdb.qp.rowtype.RowType;
 import com.foundationdb.server.collation.AkCollator;
 import com.foundationdb.server.explain.*;
-import com.foundationdb.server.types.value.ValueSources;
+import com.foundationdb.server.types.value.ValueSource;
 import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
 import com.foundationdb.server.types.texpressions.TPreparedExpression;
 import com.foundationdb.util.ArgumentValidation;
@@ -115,9 +115,9 @@ class Select_BloomFilter extends Operator
         }
         else {
             assert (tFields != null);
-            Cursor inputCursor = inputOperator.cursor(context, bindingsCursor);
+            Cursor inputCursor = inputOperator.newCursor(context, bindingsCursor);
             QueryBindingsCursor toBindings = new FilterBindingsCursor(context, inputCursor, bindingPosition, depth, tFields, newExpressionsAdapter);
-            Cursor checkCursor = onPositive.cursor(context, toBindings);
+            Cursor checkCursor = onPositive.newCursor(context, toBindings);
             return new RecoverRowsCursor(context, checkCursor, bindingPosition, depth);
         }
     }
@@ -201,7 +201,7 @@ class Select_BloomFilter extends Operator
 
     private interface ExpressionAdapter<EXPR,EVAL> {
         EVAL evaluate(EXPR expression, QueryContext contex);
-        int hash(StoreAdapter adapter, EVAL evaluation, Row row, AkCollator collator);
+        ValueSource value(StoreAdapter adapter, EVAL evaluation, Row row);
     }
 
     private static ExpressionAdapter<TPreparedExpression, TEvaluatableExpression> newExpressionsAdapter
@@ -214,10 +214,10 @@ class Select_BloomFilter extends Operator
         }
 
         @Override
-        public int hash(StoreAdapter adapter, TEvaluatableExpression evaluation, Row row, AkCollator collator) {
+        public ValueSource value(StoreAdapter adapter, TEvaluatableExpression evaluation, Row row) {
             evaluation.with(row);
             evaluation.evaluate();
-            return ValueSources.hash(evaluation.resultValue(), collator);
+            return evaluation.resultValue();
         }
     };
 
@@ -253,7 +253,7 @@ class Select_BloomFilter extends Operator
                     row = input.next();
                     if (row == null) {
                         setIdle();
-                    } else if (!filter.maybePresent(hashProjectedRow(row)) || !rowReallyHasMatch(row)) {
+                    } else if (!maybePresent(row) || !rowReallyHasMatch(row)) {
                         row = null;
                     }
                 } while (isActive() && row == null);
@@ -274,9 +274,9 @@ class Select_BloomFilter extends Operator
         <EXPR> Execution(QueryContext context, QueryBindingsCursor bindingsCursor,
                               List<? extends EXPR> expressions, ExpressionAdapter<EXPR,E> adapter)
         {
-            super(context, inputOperator.cursor(context, bindingsCursor));
+            super(context, inputOperator.newCursor(context, bindingsCursor));
             this.onPositiveBindingsCursor = new SingletonQueryBindingsCursor(null);
-            this.onPositiveCursor = onPositive.cursor(context, onPositiveBindingsCursor);
+            this.onPositiveCursor = onPositive.newCursor(context, onPositiveBindingsCursor);
             this.adapter = adapter;
             for (EXPR field : expressions) {
                 E eval = adapter.evaluate(field, context);
@@ -286,14 +286,18 @@ class Select_BloomFilter extends Operator
 
         // For use by this class
 
-        private int hashProjectedRow(Row row)
+        private boolean maybePresent(Row row)
         {
-            int hash = 0;
+            long hash = 0;
             for (int f = 0; f < fieldEvals.size(); f++) {
                 E fieldEval = fieldEvals.get(f);
-                hash = hash ^ adapter.hash(adapter(), fieldEval, row, collator(f));
+                ValueSource value = adapter.value(adapter(), fieldEval, row);
+                if (value.isNull()) {
+                    return false;
+                }
+                hash = RuntimeFilter.hash(hash, value, collator(f));
             }
-            return hash;
+            return filter.maybePresent(hash);
         }
 
         private boolean rowReallyHasMatch(Row row)
@@ -359,7 +363,7 @@ class Select_BloomFilter extends Operator
                 if (row == null) {
                     return row;
                 }
-                if (filter.maybePresent(hashProjectedRow(row))) {
+                if (maybePresent(filter, row)) {
                     if (ExecutionBase.LOG_EXECUTION) {
                         LOG.debug("Select_BloomFilter: candidate {}", row);
                     }
@@ -368,14 +372,18 @@ class Select_BloomFilter extends Operator
             }
         }
 
-        private int hashProjectedRow(Row row)
+        private boolean maybePresent(BloomFilter filter, Row row)
         {
-            int hash = 0;
+            long hash = 0;
             for (int f = 0; f < fieldEvals.size(); f++) {
                 TEvaluatableExpression fieldEval = fieldEvals.get(f);
-                hash = hash ^ expressionAdapter.hash(storeAdapter, fieldEval, row, collator(f));
+                ValueSource value = expressionAdapter.value(storeAdapter, fieldEval, row);
+                if (value.isNull()) {
+                    return false;
+                }
+                hash = RuntimeFilter.hash(hash, value, collator(f));
             }
-            return hash;
+            return filter.maybePresent(hash);
         }
     }
 
@@ -24,18 +24,24 @@
 package com.foundationdb.qp.operator;
 
 import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.row.RowBatch;
 import com.foundationdb.qp.rowtype.IndexRowType;
 import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.api.dml.ColumnSelector;
 import com.foundationdb.server.explain.*;
 import com.foundationdb.server.types.aksql.aktypes.AkBool;
+import com.foundationdb.server.types.texpressions.ColumnVector;
 import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
 import com.foundationdb.server.types.texpressions.TPreparedExpression;
+import com.foundationdb.server.types.texpressions.TVectorizedExpression;
+import com.foundationdb.server.types.texpressions.TVectorizedExpressions;
 import com.foundationdb.util.ArgumentValidation;
 import com.foundationdb.util.tap.InOutTap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
 
@@ -78,9 +84,13 @@ import java.util.Set;
 
  Project_Default does no IO. For each input row, the type is checked and each output field is computed.
 
+ With a batchSize greater than one, input rows are read batchSize at a time and the predicate is evaluated over
+ all the rows of predicateRowType in the batch at once, provided that it is simple enough for
+ {@link TVectorizedExpressions} and the input's rows can be held that long. Otherwise rows are handled one at a time.
+
  <h1>Memory Requirements</h1>
 
- One row of type predicateRowType.
+ One row of type predicateRowType, or batchSize rows in batch mode.
  
  */
 
@@ -107,7 +117,7 @@ class Select_HKeyOrdered extends Operator
     @Override
     protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
     {
-        return new Execution(context, inputOperator.cursor(context, bindingsCursor));
+        return new Execution(context, inputOperator.newCursor(context, bindingsCursor));
     }
 
     @Override
@@ -126,6 +136,12 @@ class Select_HKeyOrdered extends Operator
 
     // Select_HKeyOrdered interface
     public Select_HKeyOrdered(Operator inputOperator, RowType predicateRowType, TPreparedExpression pPredicate)
+    {
+        this(inputOperator, predicateRowType, pPredicate, 0);
+    }
+
+    public Select_HKeyOrdered(Operator inputOperator, RowType predicateRowType, TPreparedExpression pPredicate,
+                              int batchSize)
     {
         ArgumentValidation.notNull("predicateRowType", predicateRowType);
         this.inputOperator = inputOperator;
@@ -136,6 +152,12 @@ class Select_HKeyOrdered extends Operator
         ArgumentValidation.notNull("predicate", pPredicate);
         if (pPredicate.resultType().typeClass() != AkBool.INSTANCE)
             throw new IllegalArgumentException("predicate must return type " + AkBool.INSTANCE);
+        if ((batchSize > 1) &&
+            BatchExecution.stableRows(inputOperator) &&
+            (TVectorizedExpressions.compile(pPredicate) != null))
+            this.batchSize = batchSize;
+        else
+            this.batchSize = 0;
     }
 
     // Class state
@@ -150,6 +172,7 @@ class Select_HKeyOrdered extends Operator
     private final RowType predicateRowType;
     private final boolean groupScanInput;
     private final TPreparedExpression pPredicate;
+    private final int batchSize;
 
     @Override
     public CompoundExplainer getExplainer(ExplainContext context)
@@ -175,6 +198,11 @@ class Select_HKeyOrdered extends Operator
                 super.open();
                 pEvaluation.with(context);
                 pEvaluation.with(bindings);
+                if (vEvaluation != null) {
+                    vEvaluation.with(context);
+                    vEvaluation.with(bindings);
+                    inputDone = false;
+                }
             } finally {
                 TAP_OPEN.out();
             }
@@ -192,12 +220,10 @@ class Select_HKeyOrdered extends Operator
                 }
                 checkQueryCancelation();
                 Row row = null;
-                Row inputRow = input.next();
+                Row inputRow = nextInputRow();
                 while (row == null && inputRow != null) {
                     if (inputRow.rowType() == predicateRowType) {
-                        pEvaluation.with(inputRow);
-                        pEvaluation.evaluate();
-                        if (pEvaluation.resultValue().getBoolean(false)) {
+                        if (selected(inputRow)) {
                             // New row of predicateRowType
                             if (groupScanInput) {
                                 selectedRow = inputRow;
@@ -215,7 +241,7 @@ class Select_HKeyOrdered extends Operator
                         row = inputRow;
                     }
                     if (row == null) {
-                        inputRow = input.next();
+                        inputRow = nextInputRow();
                     }
                 }
                 if (LOG_EXECUTION) {
@@ -229,11 +255,20 @@ class Select_HKeyOrdered extends Operator
             }
         }
 
+        @Override
+        public void jump(Row row, ColumnSelector columnSelector)
+        {
+            clearPending();
+            inputDone = false;
+            super.jump(row, columnSelector);
+        }
+
         @Override
         public void close()
         {
             super.close();
             selectedRow = null;
+            clearPending();
         }
 
         // Execution interface
@@ -242,11 +277,83 @@ class Select_HKeyOrdered extends Operator
         {
             super(context, input);
             this.pEvaluation = pPredicate.build();
+            if (batchSize > 0) {
+                this.vEvaluation = TVectorizedExpressions.compile(pPredicate);
+                this.pending = new Row[batchSize];
+                this.batch = new RowBatch(batchSize);
+            }
+            else {
+                this.vEvaluation = null;
+                this.pending = null;
+                this.batch = null;
+            }
+        }
+
+        private Row nextInputRow()
+        {
+            if (vEvaluation == null) {
+                return input.next();
+            }
+            if (pendingPosition == pendingCount) {
+                fillBatch();
+                if (pendingCount == 0) {
+                    return null;
+                }
+            }
+            return pending[pendingPosition++];
+        }
+
+        private void fillBatch()
+        {
+            clearPending();
+            while (!inputDone && (pendingCount < pending.length)) {
+                Row row = input.next();
+                if (row == null) {
+                    inputDone = true;
+                    break;
+                }
+                pending[pendingCount++] = row;
+                if (row.rowType() == predicateRowType) {
+                    batch.add(row);
+                }
+            }
+            if (batch.size() > 0) {
+                vResult = vEvaluation.evaluate(batch);
+            }
+        }
+
+        private void clearPending()
+        {
+            if (pending != null) {
+                Arrays.fill(pending, 0, pendingCount, null);
+                pendingCount = pendingPosition = batchPosition = 0;
+                batch.clear();
+                vResult = null;
+            }
+        }
+
+        // Rows of predicateRowType come in the same order as they were added to the batch.
+        private boolean selected(Row inputRow)
+        {
+            if (vEvaluation != null) {
+                int i = batchPosition++;
+                return !vResult.isNull(i) && vResult.getBoolean(i);
+            }
+            pEvaluation.with(inputRow);
+            pEvaluation.evaluate();
+            return pEvaluation.resultValue().getBoolean(false);
         }
 
         // Object state
 
         private Row selectedRow; // The last input row with type = predicateRowType.
         private final TEvaluatableExpression pEvaluation;
+        // Batch mode
+        private final TVectorizedExpression vEvaluation;
+        private final Row[] pending;
+        private final RowBatch batch;
+        private ColumnVector vResult;
+        private int pendingCount, pendingPosition, batchPosition;
+        private boolean inputDone;
     }
 }
@@ -28,6 +28,8 @@ import com.foundationdb.qp.row.Row;
 import com.foundationdb.qp.rowtype.RowType;
 import com.foundationdb.server.explain.*;
 import com.foundationdb.server.explain.std.SortOperatorExplainer;
+import com.foundationdb.server.types.TClass;
+import com.foundationdb.server.types.TInstance;
 import com.foundationdb.server.types.value.ValueSource;
 import com.foundationdb.server.types.value.ValueSources;
 import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
@@ -55,11 +57,20 @@ import java.util.*;
  <li><b>API.SortOption sortOption:</b> Specifies whether duplicates should be kept (PRESERVE_DUPLICATES) or eliminated
  (SUPPRESS_DUPLICATES)
  <li><b>int limit:</b> Number of rows to keep.
+ <li><b>int orderedPrefix:</b> Number of leading sort columns on which the input is already in order, or 0.
 
  <h1>Behavior</h1>
 
- All input rows are examined, and the top limit of them are kept. These rows are emitted in order after the input
- stream has been consumed.
+ All input rows are examined, and the top limit of them are kept in a bounded heap whose root is the current
+ limit'th row. These rows are emitted in order after the input stream has been consumed.
+
+ If the input is already ordered on a prefix of the sort, then once the heap is full, the first row whose prefix
+ is greater than that of the root cannot be kept and neither can any that follow it, so the input is abandoned
+ there.
+
+ If limit rows are estimated not to fit in the <code>fdbsql.sort.memory</code> budget, the input is instead
+ given to the store's {@link com.foundationdb.qp.storeadapter.Sorter}, which spills to disk, and the first limit
+ of its output are emitted.
 
  <h1>Output</h1>
 
@@ -70,17 +81,16 @@ import java.util.*;
 
  All input rows are of type sortType.
 
- The limit can be any value, but the sort is done in memory, so bad things (like swapping) will occur if the limit
- is "too large".
+ When orderedPrefix is not 0, the input really is sorted on that many leading sort columns.
 
  <h1>Performance</h1>
 
- Sort_InsertionLimited does no IO. For each row, a sorted set of rows is maintained, requiring O(log(limit)) comparisons
- per row.
+ Sort_InsertionLimited does no IO unless it needs to spill. For each row, a heap of rows is maintained, requiring
+ O(log(limit)) comparisons per row. A row that sorts after the root only costs one comparison.
 
  <h1>Memory Requirements</h1>
 
- Up to limit rows are kept in memory.
+ Up to limit rows are kept in memory, when that is within the sort memory budget.
 
  */
 
@@ -106,7 +116,7 @@ class Sort_InsertionLimited extends Operator
     @Override
     protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
     {
-        return new Execution(context, inputOperator.cursor(context, bindingsCursor));
+        return new Execution(context, inputOperator.newCursor(context, bindingsCursor));
     }
 
     @Override
@@ -135,22 +145,35 @@ class Sort_InsertionLimited extends Operator
                                  API.Ordering ordering,
                                  API.SortOption sortOption,
                                  int limit)
+    {
+        this(inputOperator, sortType, ordering, sortOption, limit, 0);
+    }
+
+    public Sort_InsertionLimited(Operator inputOperator,
+                                 RowType sortType,
+                                 API.Ordering ordering,
+                                 API.SortOption sortOption,
+                                 int limit,
+                                 int orderedPrefix)
     {
         ArgumentValidation.notNull("sortType", sortType);
         ArgumentValidation.isGT("ordering.columns()", ordering.sortColumns(), 0);
         ArgumentValidation.isGTE("limit", limit, 0);
+        ArgumentValidation.isBetween("orderedPrefix", 0, orderedPrefix, ordering.sortColumns() + 1);
         this.inputOperator = inputOperator;
         this.sortType = sortType;
         this.ordering = ordering;
         this.preserveDuplicates = sortOption == API.SortOption.PRESERVE_DUPLICATES;
         this.sortOption = sortOption;
         this.limit = limit;
+        this.orderedPrefix = orderedPrefix;
     }
 
     // Class state
     
     private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: Sort_InsertionLimited open");
     private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: Sort_InsertionLimited next");
+    private static final InOutTap TAP_LOAD = OPERATOR_TAP.createSubsidiaryTap("operator: Sort_InsertionLimited load");
     private static final Logger LOG = LoggerFactory.getLogger(Sort_InsertionLimited.class);
 
     // Object state
@@ -160,6 +183,15 @@ class Sort_InsertionLimited extends Operator
     private final API.Ordering ordering;
     private final boolean preserveDuplicates;
     private final int limit;
+    private final int orderedPrefix;
+
+    private static final String SORT_MEMORY_PROPERTY = "fdbsql.sort.memory";
+    // Below this estimate, keep everything in memory without consulting the budget.
+    private static final long MIN_SPILL_BYTES = 1024 * 1024;
+    // Holder, its key array and the row itself.
+    private static final int ROW_OVERHEAD_BYTES = 64;
+    private static final int UNKNOWN_FIELD_BYTES = 32;
+    private static final int INITIAL_HEAP_CAPACITY = 1024;
 
     @Override
     public CompoundExplainer getExplainer(ExplainContext context)
@@ -188,11 +220,20 @@ class Sort_InsertionLimited extends Operator
                     eval.with(context);
                     eval.with(bindings);
                 }
-                sorted = new TreeSet<>();
                 if(limit <= 0) {
                     setIdle();
                     sortingState = State.CLOSED;
                 }
+                else {
+                    spilling = needsSpill();
+                    if (!spilling) {
+                        heap = new PriorityQueue<>(Math.min(limit, INITIAL_HEAP_CAPACITY) + 1,
+                                                   Collections.reverseOrder());
+                        if (!preserveDuplicates) {
+                            members = new TreeSet<>();
+                        }
+                    }
+                }
             } finally {
                 TAP_OPEN.out();
             }
@@ -211,60 +252,36 @@ class Sort_InsertionLimited extends Operator
                 checkQueryCancelation();
                 switch (sortingState) {
                 case FILLING:
-                    {
-                        // If duplicates are preserved, the label is different for each row. Otherwise, it stays at 0.
-                        int label = 0;
-                        Row row;
-                        while ((row = input.next()) != null) {
-                            assert row.rowType() == sortType : row;
-                            Holder holder;
-                            holder = new Holder(label, row, tEvaluations);
-                            if (preserveDuplicates) {
-                                label++;
-                            }
-                            if (sorted.size() < limit) {
-                                // Still room: add it in.
-                                holder.freeze();
-                                boolean added = sorted.add(holder);
-                                assert !preserveDuplicates || added;
-                            }
-                            else {
-                                // Current greatest element.
-                                Holder last = sorted.last();
-                                if (last.compareTo(holder) > 0) {
-                                    // New row is less, so keep it
-                                    // instead unless it's already in
-                                    // there (in suppress dups case).
-                                    boolean added = sorted.add(holder);
-                                    if (added) {
-                                        sorted.remove(last);
-                                        last.empty();
-                                        holder.freeze();
-                                    }
-                                    else {
-                                        assert !preserveDuplicates;
-                                    }
-                                }
-                                else {
-                                    // Will not be using new row.
-                                    holder.empty();
-                                }
-                            }
-                        }
-                        iterator = sorted.iterator();
-                        sortingState = State.EMPTYING;
+                    if (spilling) {
+                        cutoffInput = new PrefixCutoffCursor();
+                        cutoffInput.open();
+                        sorted = new SorterToCursorAdapter(adapter(), context, bindings, cutoffInput,
+                                                           sortType, ordering, sortOption, TAP_LOAD);
+                        sorted.open();
+                    }
+                    else {
+                        fill();
                     }
+                    emitted = 0;
+                    sortingState = State.EMPTYING;
                     /* falls through */
                 case EMPTYING:
-                    Row output;
-                    if (iterator.hasNext()) {
-                        Holder holder = iterator.next();
-                        output = holder.empty();
+                    Row output = null;
+                    if (emitted < limit) {
+                        if (spilling) {
+                            output = sorted.next();
+                        }
+                        else if (emitted < held.length) {
+                            output = held[emitted].empty();
+                            held[emitted] = null;
+                        }
+                    }
+                    if (output != null) {
+                        emitted++;
                     }
                     else {
                         setIdle();
                         sortingState = State.CLOSED;
-                        output = null;
                     }
                     if (LOG_EXECUTION) {
                         LOG.debug("Sort_InsertionLimited: yield {}", output);
@@ -289,10 +306,18 @@ class Sort_InsertionLimited extends Operator
         {
             super.close();
             if (limit > 0) {
+                heap = null;
+                members = null;
+                held = null;
                 if (sorted != null) {
-                    sorted.clear();
+                    sorted.close();
                     sorted = null;
-                    iterator = null;
+                }
+                if (cutoffInput != null) {
+                    if (!cutoffInput.isClosed()) {
+                        cutoffInput.close();
+                    }
+                    cutoffInput = null;
                 }
                 sortingState = State.CLOSED;
             }
@@ -317,12 +342,129 @@ class Sort_InsertionLimited extends Operator
             }
         }
 
+        // Keep the top limit rows of the input in the heap, then
+        // move them to held in order.
+        private void fill()
+        {
+            // If duplicates are preserved, the label is different for each row. Otherwise, it stays at 0.
+            int label = 0;
+            Row row;
+            while ((row = input.next()) != null) {
+                assert row.rowType() == sortType : row;
+                Holder holder = new Holder(label, row, tEvaluations);
+                if (preserveDuplicates) {
+                    label++;
+                }
+                if (heap.size() < limit) {
+                    // Still room: add it in, unless it's already in
+                    // there (in suppress dups case).
+                    if ((members == null) || members.add(holder)) {
+                        holder.freeze();
+                        heap.add(holder);
+                    }
+                    continue;
+                }
+                // Current greatest element.
+                Holder last = heap.peek();
+                if ((orderedPrefix > 0) && (holder.compareTo(last, orderedPrefix) > 0)) {
+                    // Nothing from here on can sort ahead of last.
+                    break;
+                }
+                if (last.compareTo(holder) > 0) {
+                    // New row is less, so keep it instead.
+                    if ((members == null) || members.add(holder)) {
+                        heap.poll();
+                        if (members != null) {
+                            members.remove(last);
+                        }
+                        holder.freeze();
+                        heap.add(holder);
+                    }
+                    else {
+                        assert !preserveDuplicates;
+                    }
+                }
+            }
+            held = new Holder[heap.size()];
+            for (int i = held.length - 1; i >= 0; i--) {
+                held[i] = heap.poll();
+            }
+            heap = null;
+            members = null;
+        }
+
+        // Whether limit rows are expected to be more than the sort memory budget.
+        private boolean needsSpill()
+        {
+            long rowBytes = ROW_OVERHEAD_BYTES;
+            for (int i = 0; i < sortType.nFields(); i++) {
+                TInstance type = sortType.typeAt(i);
+                if (type == null) {
+                    continue;
+                }
+                TClass tclass = type.typeClass();
+                try {
+                    rowBytes += tclass.variableSerializationSize(type, true);
+                }
+                catch (UnsupportedOperationException ex) {
+                    rowBytes += UNKNOWN_FIELD_BYTES;
+                }
+            }
+            long estimate = rowBytes * limit;
+            if (estimate < MIN_SPILL_BYTES) {
+                return false;
+            }
+            long budget = Long.parseLong(context.getServiceManager().getConfigurationService()
+                                         .getProperty(SORT_MEMORY_PROPERTY));
+            return estimate > budget;
+        }
+
         // Object state
 
         private final List<TEvaluatableExpression> tEvaluations;
         private State sortingState = State.CLOSED;
-        private SortedSet<Holder> sorted;
-        private Iterator<Holder> iterator;
+        private boolean spilling;
+        private PriorityQueue<Holder> heap;
+        private SortedSet<Holder> members;
+        private Holder[] held;
+        private int emitted;
+        private PrefixCutoffCursor cutoffInput;
+        private RowCursor sorted;
+
+        // The input for a spilling sort. When it is ordered on a
+        // prefix, a row whose prefix is after that of the limit'th
+        // row read ends it.
+        private class PrefixCutoffCursor extends RowCursorImpl
+        {
+            @Override
+            public Row next()
+            {
+                if (isIdle()) {
+                    return null;
+                }
+                Row row = input.next();
+                if ((row != null) && (orderedPrefix > 0) && preserveDuplicates) {
+                    if (nth != null) {
+                        Holder holder = new Holder(count, row, tEvaluations);
+                        holder.empty();
+                        if (holder.compareTo(nth, orderedPrefix) > 0) {
+                            row = null;
+                        }
+                    }
+                    else if (++count == limit) {
+                        nth = new Holder(count, row, tEvaluations);
+                        nth.empty();
+                    }
+                }
+                if (row == null) {
+                    setIdle();
+                }
+                return row;
+            }
+
+            private int count;
+            private Holder nth;
+        }
     }
 
     // Sortable row holder.
@@ -362,9 +504,18 @@ class Sort_InsertionLimited extends Operator
             }
         }
 
-        @SuppressWarnings("unchecked")
         public int compareTo(Holder other) {
-            for (int i = 0; i < values.length; i++) {
+            int comp = compareTo(other, values.length);
+            if (comp != 0) {
+                return comp;
+            }
+            return index - other.index;
+        }
+
+        // Compare just the first n sort columns.
+        @SuppressWarnings("unchecked")
+        public int compareTo(Holder other, int n) {
+            for (int i = 0; i < n; i++) {
                 Comparable v1 = values[i];
                 Comparable v2 = other.values[i];
                 int less, greater;
@@ -401,7 +552,7 @@ class Sort_InsertionLimited extends Operator
                         return greater;
                 }
             }
-            return index - other.index;
+            return 0;
         }
 
         public String toString() {
@@ -50,6 +50,11 @@ public abstract class StoreAdapter
 {
     public abstract GroupCursor newGroupCursor(Group group);
 
+    /** A cursor over the whole group whose rows need not come back in hkey order. */
+    public GroupCursor newUnorderedGroupCursor(Group group) {
+        return newGroupCursor(group);
+    }
+
     public static final int COMMIT_FREQUENCY_PERIODICALLY = -2;
 
     public GroupCursor newDumpGroupCursor(Group group, int commitFrequency) {
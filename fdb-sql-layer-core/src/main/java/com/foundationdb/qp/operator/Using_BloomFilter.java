@@ -28,7 +28,6 @@ import com.foundationdb.qp.rowtype.RowType;
 import com.foundationdb.server.collation.AkCollator;
 import com.foundationdb.server.explain.*;
 import com.foundationdb.server.types.value.ValueSource;
-import com.foundationdb.server.types.value.ValueSources;
 import com.foundationdb.util.ArgumentValidation;
 import com.foundationdb.util.BloomFilter;
 import com.foundationdb.util.tap.InOutTap;
@@ -101,7 +100,7 @@ class Using_BloomFilter extends Operator
     @Override
     protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
     {
-        return new Execution(context, streamInput.cursor(context, bindingsCursor));
+        return new Execution(context, streamInput.newCursor(context, bindingsCursor));
     }
 
     @Override
@@ -124,6 +123,21 @@ class Using_BloomFilter extends Operator
                              int filterBindingPosition,
                              Operator streamInput,
                              List<AkCollator> collators)
+    {
+        this(filterInput, filterRowType, estimatedRowCount, filterBindingPosition, streamInput, collators, -1);
+    }
+
+    /**
+     * If <code>runtimeFilterBindingPosition</code> is not negative, the filter is
+     * also bound there, for a {@link RuntimeFilter} on a scan of <code>streamInput</code>.
+     */
+    public Using_BloomFilter(Operator filterInput,
+                             RowType filterRowType,
+                             long estimatedRowCount,
+                             int filterBindingPosition,
+                             Operator streamInput,
+                             List<AkCollator> collators,
+                             int runtimeFilterBindingPosition)
     {
         ArgumentValidation.notNull("filterInput", filterInput);
         ArgumentValidation.notNull("filterRowType", filterRowType);
@@ -138,6 +152,7 @@ class Using_BloomFilter extends Operator
         this.filterBindingPosition = filterBindingPosition;
         this.streamInput = streamInput;
         this.collators = collators;
+        this.runtimeFilterBindingPosition = runtimeFilterBindingPosition;
     }
 
     // For use by this class
@@ -162,12 +177,16 @@ class Using_BloomFilter extends Operator
     private final int filterBindingPosition;
     private final Operator streamInput;
     private final List<AkCollator> collators;
+    private final int runtimeFilterBindingPosition;
 
     @Override
     public CompoundExplainer getExplainer(ExplainContext context) {
         Attributes atts = new Attributes();
         atts.put(Label.NAME, PrimitiveExplainer.getInstance(getName()));
         atts.put(Label.BINDING_POSITION, PrimitiveExplainer.getInstance(filterBindingPosition));
+        if (runtimeFilterBindingPosition >= 0) {
+            atts.put(Label.BINDING_POSITION, PrimitiveExplainer.getInstance(runtimeFilterBindingPosition));
+        }
         atts.put(Label.INPUT_OPERATOR, filterInput.getExplainer(context));
         atts.put(Label.INPUT_OPERATOR, streamInput.getExplainer(context));
         return new CompoundExplainer(Type.BLOOM_FILTER, atts);
@@ -189,6 +208,9 @@ class Using_BloomFilter extends Operator
                 // to the filled BloomFilter in the bindings. 
                 BloomFilter filter = loadBloomFilter();
                 bindings.setBloomFilter(filterBindingPosition, filter);
+                if (runtimeFilterBindingPosition >= 0) {
+                    bindings.setBloomFilter(runtimeFilterBindingPosition, filter);
+                }
                 super.open();
             } finally {
                 TAP_OPEN.out();
@@ -215,6 +237,18 @@ class Using_BloomFilter extends Operator
         }
 
 
+        @Override
+        public void close()
+        {
+            try {
+                if ((runtimeFilterBindingPosition >= 0) && (bindings != null)) {
+                    bindings.setBloomFilter(runtimeFilterBindingPosition, null);
+                }
+            } finally {
+                super.close();
+            }
+        }
+
         // Execution interface
 
         Execution(QueryContext context, Cursor input)
@@ -241,17 +275,22 @@ class Using_BloomFilter extends Operator
             int fields = filterRowType.nFields();
             int rows = 0;
             QueryBindingsCursor bindingsCursor = new SingletonQueryBindingsCursor(bindings);
-            Cursor loadCursor = filterInput.cursor(context, bindingsCursor);
+            Cursor loadCursor = filterInput.newCursor(context, bindingsCursor);
             loadCursor.openTopLevel();
             Row row;
+            rows:
             while ((row = loadCursor.next()) != null) {
-                int h = 0;
+                rows++;
+                long h = 0;
                 for (int f = 0; f < fields; f++) {
                     ValueSource valueSource = row.value(f);
-                    h = h ^ ValueSources.hash(valueSource, collator(f));
+                    if (valueSource.isNull()) {
+                        // Cannot match anything, so leave it out.
+                        continue rows;
+                    }
+                    h = RuntimeFilter.hash(h, valueSource, collator(f));
                 }
                 filter.add(h);
-                rows++;
             }
             loadCursor.closeTopLevel();
             return rows;
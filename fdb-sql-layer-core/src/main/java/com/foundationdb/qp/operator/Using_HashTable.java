@@ -24,13 +24,16 @@
 package com.foundationdb.qp.operator;
 
 import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.storeadapter.indexcursor.MergeJoinSorter;
 import com.foundationdb.qp.rowtype.RowType;
 import com.foundationdb.server.collation.AkCollator;
 import com.foundationdb.server.explain.*;
 import com.foundationdb.server.types.TComparison;
 import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
 import com.foundationdb.server.types.texpressions.TPreparedExpression;
+import com.foundationdb.server.types.value.ValueSource;
 import com.foundationdb.util.ArgumentValidation;
+import com.foundationdb.util.BloomFilter;
 import com.foundationdb.qp.util.HashTable;
 import com.foundationdb.util.tap.InOutTap;
 import org.slf4j.Logger;
@@ -64,7 +67,7 @@ class Using_HashTable extends Operator
     @Override
     protected Cursor cursor(QueryContext context, QueryBindingsCursor bindingsCursor)
     {
-        return new Execution(context, joinedInput.cursor(context, bindingsCursor));
+        return new Execution(context, joinedInput.newCursor(context, bindingsCursor));
     }
 
     @Override
@@ -86,6 +89,23 @@ class Using_HashTable extends Operator
                            Operator joinedInput,
                            List<TComparison> tComparisons,
                            List<AkCollator> collators)
+    {
+        this(hashInput, hashedRowType, comparisonFields, tableBindingPosition, joinedInput, tComparisons, collators, -1);
+    }
+
+    /**
+     * If <code>runtimeFilterBindingPosition</code> is not negative, the join keys are also
+     * loaded into a {@link BloomFilter} there, for a {@link RuntimeFilter} on a scan
+     * of <code>joinedInput</code>.
+     */
+    public Using_HashTable(Operator hashInput,
+                           RowType hashedRowType,
+                           List<TPreparedExpression> comparisonFields,
+                           int tableBindingPosition,
+                           Operator joinedInput,
+                           List<TComparison> tComparisons,
+                           List<AkCollator> collators,
+                           int runtimeFilterBindingPosition)
     {
         ArgumentValidation.notNull("hashInput", hashInput);
         ArgumentValidation.notNull("hashedRowType", hashedRowType);
@@ -101,7 +121,7 @@ class Using_HashTable extends Operator
         this.tComparisons = tComparisons;
         this.collators = collators;
         this.comparisonFields = comparisonFields;
-
+        this.runtimeFilterBindingPosition = runtimeFilterBindingPosition;
     }
 
 
@@ -110,6 +130,10 @@ class Using_HashTable extends Operator
     private static final InOutTap TAP_OPEN = OPERATOR_TAP.createSubsidiaryTap("operator: Using_HashTable open");
     private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: Using_HashTable next");
     private static final Logger LOG = LoggerFactory.getLogger(Using_HashTable.class);
+    private static final String MEMORY_PROPERTY = "fdbsql.hash_join.memory";
+    // The runtime filter only saves work, so it can be smaller than Using_BloomFilter's.
+    private static final double FILTER_ERROR_RATE = 0.01;
+    private static final int INITIAL_KEY_HASHES = 1024;
 
     // Object state
 
@@ -120,6 +144,7 @@ class Using_HashTable extends Operator
     private final List<AkCollator> collators;
     private final List<TComparison> tComparisons;
     private final List<TPreparedExpression> comparisonFields;
+    private final int runtimeFilterBindingPosition;
 
 
     @Override
@@ -127,6 +152,9 @@ class Using_HashTable extends Operator
         Attributes atts = new Attributes();
         atts.put(Label.NAME, PrimitiveExplainer.getInstance(getName()));
         atts.put(Label.BINDING_POSITION, PrimitiveExplainer.getInstance(tableBindingPosition));
+        if (runtimeFilterBindingPosition >= 0) {
+            atts.put(Label.BINDING_POSITION, PrimitiveExplainer.getInstance(runtimeFilterBindingPosition));
+        }
         atts.put(Label.INPUT_OPERATOR, hashInput.getExplainer(context));
         atts.put(Label.INPUT_OPERATOR, joinedInput.getExplainer(context));
         for (TPreparedExpression field : comparisonFields) {
@@ -141,6 +169,9 @@ class Using_HashTable extends Operator
     {
         // Cursor interface
         private final List<TEvaluatableExpression> evaluatableComparisonFields = new ArrayList<>();
+        private HashTable hashTable;
+        private long[] keyHashes;
+        private int nkeyHashes;
 
         @Override
         public void open()
@@ -150,8 +181,11 @@ class Using_HashTable extends Operator
                 // Usually super.open called first, but needs to be done
                 // opposite order here to allow Using_HashFilter access
                 // to the filled HashTable in the bindings. 
-                HashTable hashTable = buildHashTable();
+                hashTable = buildHashTable();
                 bindings.setHashTable(tableBindingPosition, hashTable);
+                if (runtimeFilterBindingPosition >= 0) {
+                    bindings.setBloomFilter(runtimeFilterBindingPosition, buildFilter());
+                }
                 super.open();
             } finally {
                 TAP_OPEN.out();
@@ -183,6 +217,19 @@ class Using_HashTable extends Operator
             try {
                 if (bindings != null) {
                     bindings.setHashTable(tableBindingPosition, null);
+                    if (runtimeFilterBindingPosition >= 0) {
+                        bindings.setBloomFilter(runtimeFilterBindingPosition, null);
+                    }
+                }
+                keyHashes = null;
+                if (hashTable != null) {
+                    if (hashTable.getSpilledPartitions() > 0) {
+                        LOG.debug("Using_HashTable: spilled {} partitions, {} rows, {} bytes; reloaded {} partitions",
+                                  new Object[] { hashTable.getSpilledPartitions(), hashTable.getSpilledRows(),
+                                                 hashTable.getSpilledBytes(), hashTable.getReloadedPartitions() });
+                    }
+                    hashTable.close();
+                    hashTable = null;
                 }
             } finally {
                 super.close();
@@ -203,19 +250,66 @@ class Using_HashTable extends Operator
 
         private HashTable  buildHashTable() {
             QueryBindingsCursor bindingsCursor = new SingletonQueryBindingsCursor(bindings);
-            Cursor loadCursor = hashInput.cursor(context, bindingsCursor);
+            Cursor loadCursor = hashInput.newCursor(context, bindingsCursor);
             loadCursor.openTopLevel();
             Row row;
             HashTable hashTable= new HashTable();
+            if (runtimeFilterBindingPosition >= 0) {
+                keyHashes = new long[INITIAL_KEY_HASHES];
+                nkeyHashes = 0;
+            }
             hashTable.setRowType(hashedRowType);
             hashTable.setTComparisons(tComparisons);
             hashTable.setCollators(collators);
-            while ((row = loadCursor.next()) != null) {
-                assert(row.rowType() == hashedRowType) : row;
-                hashTable.put(row, evaluatableComparisonFields, bindings);
+            hashTable.setSpilling(memoryLimit(),
+                                  new MergeJoinSorter.MergeTempFileProvider(context, "hash"));
+            try {
+                while ((row = loadCursor.next()) != null) {
+                    assert(row.rowType() == hashedRowType) : row;
+                    hashTable.put(row, evaluatableComparisonFields, bindings);
+                    if (runtimeFilterBindingPosition >= 0) {
+                        addKeyHash();
+                    }
+                }
+                hashTable.finishLoading();
+            } catch (RuntimeException ex) {
+                hashTable.close();
+                throw ex;
+            } finally {
+                loadCursor.closeTopLevel();
             }
-            loadCursor.closeTopLevel();
             return hashTable;
         }
+
+        /** Hash the keys that <code>put</code> just evaluated. */
+        private void addKeyHash() {
+            long hash = 0;
+            for (int f = 0; f < evaluatableComparisonFields.size(); f++) {
+                ValueSource value = evaluatableComparisonFields.get(f).resultValue();
+                if (value.isNull()) {
+                    return;
+                }
+                hash = RuntimeFilter.hash(hash, value, (collators == null) ? null : collators.get(f));
+            }
+            if (nkeyHashes == keyHashes.length) {
+                keyHashes = Arrays.copyOf(keyHashes, nkeyHashes * 2);
+            }
+            keyHashes[nkeyHashes++] = hash;
+        }
+
+        private BloomFilter buildFilter() {
+            BloomFilter filter = new BloomFilter(nkeyHashes, FILTER_ERROR_RATE);
+            for (int i = 0; i < nkeyHashes; i++) {
+                filter.add(keyHashes[i]);
+            }
+            keyHashes = null;
+            return filter;
+        }
+
+        private long memoryLimit() {
+            String prop = context.getServiceManager().getConfigurationService().getProperty(MEMORY_PROPERTY);
+            long limit = Long.parseLong(prop);
+            return (limit > 0) ? limit : HashTable.UNLIMITED_MEMORY;
+        }
      }
 }
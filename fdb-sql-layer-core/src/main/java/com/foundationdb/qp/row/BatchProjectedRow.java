@@ -0,0 +1,110 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.qp.row;
+
+import com.foundationdb.qp.rowtype.ProjectedRowType;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.texpressions.ColumnVector;
+import com.foundationdb.server.types.value.Value;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.util.AkibanAppender;
+
+/**
+ * A projected row whose fields were computed for a whole batch at
+ * once. The column vectors are shared by all the rows of the batch
+ * and are not changed afterwards.
+ */
+public class BatchProjectedRow extends AbstractRow
+{
+    // Object interface
+
+    @Override
+    public String toString()
+    {
+        StringBuilder buffer = new StringBuilder();
+        AkibanAppender appender = AkibanAppender.of(buffer);
+        buffer.append('(');
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                buffer.append(", ");
+            }
+            TInstance type = rowType.typeAt(i);
+            if (type != null) {
+                type.format(value(i), appender);
+            } else {
+                buffer.append("NULL");
+            }
+        }
+        buffer.append(')');
+        return buffer.toString();
+    }
+
+    // Row interface
+
+    @Override
+    public RowType rowType()
+    {
+        return rowType;
+    }
+
+    @Override
+    public ValueSource uncheckedValue(int index) {
+        Value value = values[index];
+        if (value == null) {
+            value = new Value(rowType.typeAt(index));
+            columns[index].get(position, value.getType(), value);
+            values[index] = value;
+        }
+        return value;
+    }
+
+    @Override
+    public HKey hKey()
+    {
+        return null;
+    }
+
+    @Override
+    public boolean isBindingsSensitive() {
+        return false;
+    }
+
+    // BatchProjectedRow interface
+
+    public BatchProjectedRow(ProjectedRowType rowType, ColumnVector[] columns, int position)
+    {
+        this.rowType = rowType;
+        this.columns = columns;
+        this.position = position;
+        this.values = new Value[columns.length];
+    }
+
+    // Object state
+
+    private final ProjectedRowType rowType;
+    private final ColumnVector[] columns;
+    private final int position;
+    private final Value[] values;
+}
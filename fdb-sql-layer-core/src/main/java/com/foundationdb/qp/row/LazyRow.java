@@ -0,0 +1,73 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.qp.row;
+
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.types.value.Value;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.server.types.value.ValueSources;
+
+/**
+ * A row over some stored encoding that only decodes a field when it
+ * is asked for, so that operators which read a few columns of a wide
+ * table do not pay for the rest. Decoded fields are kept.
+ */
+public abstract class LazyRow extends AbstractRow
+{
+    private final RowType rowType;
+    private final Value[] values;
+
+    protected LazyRow(RowType rowType) {
+        this.rowType = rowType;
+        this.values = new Value[rowType.nFields()];
+    }
+
+    /** Decode the given field as it would be given to {@link ValueSources#valuefromObject}. */
+    protected abstract Object decodeField(int i);
+
+    @Override
+    public RowType rowType() {
+        return rowType;
+    }
+
+    @Override
+    public HKey hKey() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected ValueSource uncheckedValue(int i) {
+        Value value = values[i];
+        if (value == null) {
+            value = ValueSources.valuefromObject(decodeField(i), rowType.typeAt(i));
+            values[i] = value;
+        }
+        return value;
+    }
+
+    @Override
+    public boolean isBindingsSensitive() {
+        return false;
+    }
+}
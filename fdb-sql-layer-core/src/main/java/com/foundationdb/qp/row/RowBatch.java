@@ -0,0 +1,66 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.qp.row;
+
+import java.util.Arrays;
+
+/**
+ * A batch of input rows of one type, gathered so that expressions can
+ * be evaluated over all of them at once.
+ * @see com.foundationdb.server.types.texpressions.TVectorizedExpression
+ */
+public class RowBatch
+{
+    public RowBatch(int capacity) {
+        this.rows = new Row[capacity];
+    }
+
+    public int capacity() {
+        return rows.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == rows.length;
+    }
+
+    public Row get(int index) {
+        return rows[index];
+    }
+
+    public void add(Row row) {
+        rows[size++] = row;
+    }
+
+    public void clear() {
+        Arrays.fill(rows, 0, size, null);
+        size = 0;
+    }
+
+    private final Row[] rows;
+    private int size;
+}
@@ -66,6 +66,7 @@ import java.util.Collection;
 
 public class FDBAdapter extends StoreAdapter {
     private static final IndexRowPool indexRowPool = new IndexRowPool();
+    private static final String GROUP_SCAN_PARALLELISM_PROPERTY = "fdbsql.fdb.group_scan_parallelism";
 
     private final FDBStore store;
     private final FDBTransactionService txnService;
@@ -78,7 +79,17 @@ public class FDBAdapter extends StoreAdapter {
 
     @Override
     public FDBGroupCursor newGroupCursor(Group group) {
-        return new FDBGroupCursor(this, group, scanOptions());
+        return new FDBGroupCursor(this, group, scanOptions(), groupScanParallelism(), true);
+    }
+
+    @Override
+    public FDBGroupCursor newUnorderedGroupCursor(Group group) {
+        return new FDBGroupCursor(this, group, scanOptions(), groupScanParallelism(), false);
+    }
+
+    /** How many shard sub-ranges a full group scan reads at once. */
+    protected int groupScanParallelism() {
+        return Integer.parseInt(getConfig().getProperty(GROUP_SCAN_PARALLELISM_PROPERTY));
     }
 
     /** The transaction scan options for normal operator scans. */
@@ -35,24 +35,39 @@ import com.foundationdb.server.store.FDBScanTransactionOptions;
 import com.foundationdb.server.store.FDBStoreData;
 import com.foundationdb.util.tap.PointTap;
 import com.foundationdb.util.tap.Tap;
+import com.persistit.Key;
 
 public class FDBGroupCursor extends RowCursorImpl implements GroupCursor {
     private final FDBAdapter adapter;
     private final FDBStoreData storeData;
     private final Schema schema;
     private final FDBScanTransactionOptions transactionOptions;
+    private final int parallelism;
+    private final boolean ordered;
     private HKey hKey;
     private boolean hKeyDeep;
+    private Key rangeStart;
     private GroupScan groupScan;
     // static state
     private static final PointTap TRAVERSE_COUNT = Tap.createCount("traverse: fdb group cursor");
 
     public FDBGroupCursor(FDBAdapter adapter, Group group, FDBScanTransactionOptions transactionOptions) {
+        this(adapter, group, transactionOptions, 1, true);
+    }
+
+    /**
+     * @param parallelism number of sub-ranges of a full scan to read at once
+     * @param ordered whether a full scan must return rows in hkey order
+     */
+    public FDBGroupCursor(FDBAdapter adapter, Group group, FDBScanTransactionOptions transactionOptions,
+                          int parallelism, boolean ordered) {
         this.adapter = adapter;
         this.storeData = adapter.getUnderlyingStore()
             .createStoreData(adapter.getSession(), group);
         this.schema = SchemaCache.globalSchema(group.getAIS());
         this.transactionOptions = transactionOptions;
+        this.parallelism = parallelism;
+        this.ordered = ordered;
     }
 
     @Override
@@ -60,13 +75,30 @@ public class FDBGroupCursor extends RowCursorImpl implements GroupCursor {
         CursorLifecycle.checkClosed(this);
         this.hKey = hKey;
         this.hKeyDeep = deep;
+        this.rangeStart = null;
+    }
+
+    @Override
+    public void rebindRange(Key start) {
+        CursorLifecycle.checkClosed(this);
+        this.hKey = null;
+        this.rangeStart = start;
     }
 
     @Override
     public void open() {
         super.open();
-        if (hKey == null) {
-            groupScan = new FullScan();
+        if (rangeStart != null) {
+            groupScan = new RangeScan(rangeStart);
+        }
+        else if (hKey == null) {
+            // A committing scan resets the transaction under all the sub-ranges at once.
+            if ((parallelism > 1) && !transactionOptions.isCommitting()) {
+                groupScan = new ParallelFullScan();
+            }
+            else {
+                groupScan = new FullScan();
+            }
         }
         else if (hKeyDeep) {
             groupScan = new HKeyAndDescendantScan(hKey);
@@ -113,6 +145,20 @@ public class FDBGroupCursor extends RowCursorImpl implements GroupCursor {
         }
     }
 
+    private class ParallelFullScan extends GroupScan {
+        public ParallelFullScan() {
+            adapter.getUnderlyingStore().parallelGroupIterator(adapter.getSession(), storeData,
+                                                               parallelism, ordered, transactionOptions);
+        }
+    }
+
+    private class RangeScan extends GroupScan {
+        public RangeScan(Key start) {
+            start.copyTo(storeData.persistitKey);
+            adapter.getUnderlyingStore().groupIteratorFrom(adapter.getSession(), storeData, transactionOptions);
+        }
+    }
+
     private class HKeyAndDescendantScan extends GroupScan {
         public HKeyAndDescendantScan(HKey hKey) {
             hKey.copyTo(storeData.persistitKey.clear());
@@ -32,6 +32,7 @@ import com.foundationdb.qp.row.Row;
 import com.foundationdb.qp.rowtype.Schema;
 import com.foundationdb.qp.util.SchemaCache;
 import com.foundationdb.server.store.MemoryStoreData;
+import com.persistit.Key;
 
 public class MemoryGroupCursor extends RowCursorImpl implements GroupCursor
 {
@@ -40,6 +41,7 @@ public class MemoryGroupCursor extends RowCursorImpl implements GroupCursor
     private final Schema schema;
     private HKey hKey;
     private boolean hKeyDeep;
+    private Key rangeStart;
     private GroupScan groupScan;
 
     public MemoryGroupCursor(MemoryAdapter adapter, Group group) {
@@ -52,7 +54,9 @@ public class MemoryGroupCursor extends RowCursorImpl implements GroupCursor
     @Override
     public void open() {
         super.open();
-        if(hKey == null) {
+        if(rangeStart != null) {
+            groupScan = new RangeScan(rangeStart);
+        } else if(hKey == null) {
             groupScan = new FullScan();
         } else if(hKeyDeep) {
             groupScan = new HKeyAndDescendantScan(hKey);
@@ -88,6 +92,14 @@ public class MemoryGroupCursor extends RowCursorImpl implements GroupCursor
         CursorLifecycle.checkClosed(this);
         this.hKey = hKey;
         this.hKeyDeep = deep;
+        this.rangeStart = null;
+    }
+
+    @Override
+    public void rebindRange(Key start) {
+        CursorLifecycle.checkClosed(this);
+        this.hKey = null;
+        this.rangeStart = start;
     }
 
     //
@@ -109,6 +121,14 @@ public class MemoryGroupCursor extends RowCursorImpl implements GroupCursor
         }
     }
 
+    private class RangeScan extends GroupScan
+    {
+        public RangeScan(Key start) {
+            start.copyTo(storeData.persistitKey);
+            adapter.getUnderlyingStore().groupIteratorFrom(adapter.getSession(), storeData);
+        }
+    }
+
     private class HKeyAndDescendantScan extends GroupScan
     {
         public HKeyAndDescendantScan(HKey hKey) {
@@ -535,16 +535,20 @@ public class MergeJoinSorter implements Sorter {
      * Class to provide temporary file names for inserting the 
      * overflow buffers to disk. Implemented to the MergeJoin sort interface
      */
-    public class MergeTempFileProvider implements TempFileProvider {
+    public static class MergeTempFileProvider implements TempFileProvider {
         
         private final File directory;
         private final String prefix;
         private final String suffix;
         public MergeTempFileProvider (QueryContext context) {
+            this(context, "sort");
+        }
+
+        public MergeTempFileProvider (QueryContext context, String kind) {
             directory = new File (context.getServiceManager().getConfigurationService().getProperty("fdbsql.tmp_dir"));
             suffix = ".tmp";
             String tmpPrefix;
-            tmpPrefix = "sort-" +  context.getSessionId() + "-";
+            tmpPrefix = kind + "-" +  context.getSessionId() + "-";
             prefix = tmpPrefix;
         }
 
@@ -23,42 +23,126 @@
  */
 package com.foundationdb.qp.util;
 
+import com.fasterxml.sort.TempFileProvider;
 import com.foundationdb.qp.operator.QueryBindings;
 import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.row.ValuesHolderRow;
 import com.foundationdb.qp.rowtype.RowType;
 import com.foundationdb.server.collation.AkCollator;
 import com.foundationdb.server.types.TClass;
 import com.foundationdb.server.types.TComparison;
+import com.foundationdb.server.types.TInstance;
 import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
 import com.foundationdb.server.types.value.Value;
 import com.foundationdb.server.types.value.ValueSource;
 import com.foundationdb.server.types.value.ValueSources;
 import com.foundationdb.server.types.value.ValueTargets;
+import com.foundationdb.util.tap.PointTap;
+import com.foundationdb.util.tap.Tap;
 import com.google.common.collect.ArrayListMultimap;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * <h1>Overview</h1>
+ *
+ * Build side of a hash join. Rows are partitioned by the hash of their join key into a fixed
+ * number of partitions, each of which is an in-memory multimap from key to rows.
+ *
+ * <h1>Behavior</h1>
+ *
+ * If a memory limit and a spill file provider are set, the estimated size of the rows held in memory
+ * is tracked while loading. When it exceeds the limit, the largest in-memory partition is written
+ * to a temporary file and all further rows for that partition are appended to the file.
+ *
+ * A probe whose key falls into a spilled partition reads that partition back into a nested
+ * table, partitioned on a different hash seed, which may itself spill. Reloaded partitions stay
+ * resident while they fit in the memory left over by the in-memory partitions, and are evicted
+ * least recently loaded first. Nesting stops after {@link #MAX_SPILL_DEPTH} levels, where the
+ * remaining rows are kept in memory regardless of the limit (e.g. a single enormous key).
+ *
+ * <h1>Performance</h1>
+ *
+ * If the build side fits within the memory limit, no IO is generated. Otherwise each spilled row
+ * is written once per nesting level and read once each time its partition is reloaded. Since the
+ * probe side is not partitioned, probes that alternate among many spilled partitions can cause
+ * repeated reloads.
+ */
 public class HashTable {
-    private ArrayListMultimap<KeyWrapper, Row> hashTable = ArrayListMultimap.create();
+    public static final long UNLIMITED_MEMORY = Long.MAX_VALUE;
+
+    static final int PARTITION_COUNT = 16;
+    static final int MAX_SPILL_DEPTH = 3;
+    // Per entry overhead of the multimap, key wrapper and row.
+    private static final int ENTRY_OVERHEAD = 96;
+
+    private static final PointTap SPILL_PARTITION_TAP = Tap.createCount("hash table: spill partition");
+    private static final PointTap SPILL_ROW_TAP = Tap.createCount("hash table: spill row");
+    private static final PointTap RELOAD_PARTITION_TAP = Tap.createCount("hash table: reload partition");
+
+    private final Partition[] partitions = new Partition[PARTITION_COUNT];
+    private final Deque<Partition> residentPartitions = new ArrayDeque<>();
+    private final int depth;
+    private final SpillStatistics statistics;
 
     private RowType hashedRowType;
     private List<TComparison> tComparisons;
     private List<AkCollator> collators;
     private boolean matchNulls;
+    private long memoryLimit = UNLIMITED_MEMORY;
+    private TempFileProvider spillFileProvider;
+    private TInstance[] keyTypes;
+    private long memoryUsed;
+    private boolean loading = true;
+
+    public HashTable() {
+        this(0, new SpillStatistics());
+    }
+
+    private HashTable(int depth, SpillStatistics statistics) {
+        this.depth = depth;
+        this.statistics = statistics;
+        for (int i = 0; i < PARTITION_COUNT; i++) {
+            partitions[i] = new Partition();
+        }
+    }
 
     public List<Row> getMatchingRows(Row row, List<TEvaluatableExpression> evaluatableComparisonFields, QueryBindings bindings){
         KeyWrapper key = new KeyWrapper(row, evaluatableComparisonFields, bindings);
         if (!matchNulls && key.isNull())
             return Collections.emptyList();
-        return hashTable.get(key);
+        return getMatchingRows(key);
     }
 
     public void put(Row row, List<TEvaluatableExpression> evaluatableComparisonFields, QueryBindings bindings){
         KeyWrapper key = new KeyWrapper(row, evaluatableComparisonFields, bindings);
         if (matchNulls || !key.isNull()) {
-            hashTable.put(key, row);
+            put(key, row);
+        }
+    }
+
+    /** Called once all rows have been put, to flush any partition files. */
+    public void finishLoading() {
+        if (loading) {
+            loading = false;
+            for (Partition partition : partitions) {
+                partition.finishSpill();
+            }
+        }
+    }
+
+    /** Release any resources, in particular delete partition files. */
+    public void close() {
+        loading = false;
+        residentPartitions.clear();
+        for (Partition partition : partitions) {
+            partition.close();
         }
     }
 
@@ -80,6 +164,225 @@ public class HashTable {
         this.matchNulls = matchNulls;
     }
 
+    /** Spill to files from <code>spillFileProvider</code> once rows estimated at
+     * more than <code>memoryLimit</code> bytes are held in memory. */
+    public void setSpilling(long memoryLimit, TempFileProvider spillFileProvider) {
+        this.memoryLimit = memoryLimit;
+        this.spillFileProvider = spillFileProvider;
+    }
+
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    /** Number of partitions written to disk, at any nesting level. */
+    public int getSpilledPartitions() {
+        return statistics.spilledPartitions;
+    }
+
+    public long getSpilledRows() {
+        return statistics.spilledRows;
+    }
+
+    public long getSpilledBytes() {
+        return statistics.spilledBytes;
+    }
+
+    /** Number of times a spilled partition was read back for a probe. */
+    public int getReloadedPartitions() {
+        return statistics.reloadedPartitions;
+    }
+
+    // For use by this class
+
+    private void put(KeyWrapper key, Row row) {
+        assert loading : "put after finishLoading";
+        if (keyTypes == null) {
+            keyTypes = new TInstance[key.values.size()];
+            for (int i = 0; i < keyTypes.length; i++) {
+                keyTypes[i] = key.values.get(i).getType();
+            }
+        }
+        Partition partition = partitionFor(key);
+        if (partition.isSpilled()) {
+            partition.spill(key, row);
+        }
+        else {
+            long size = estimateSize(key, row);
+            partition.rows.put(key, row);
+            partition.memoryUsed += size;
+            memoryUsed += size;
+            if ((memoryUsed > memoryLimit) && canSpill()) {
+                spillLargestPartition();
+            }
+        }
+    }
+
+    private List<Row> getMatchingRows(KeyWrapper key) {
+        if (loading) {
+            finishLoading();
+        }
+        Partition partition = partitionFor(key);
+        if (partition.isSpilled()) {
+            return reload(partition).getMatchingRows(key);
+        }
+        return partition.rows.get(key);
+    }
+
+    private boolean canSpill() {
+        return (spillFileProvider != null) && (depth < MAX_SPILL_DEPTH);
+    }
+
+    private Partition partitionFor(KeyWrapper key) {
+        // Remix with a per-level seed so that a spilled partition spreads out when reloaded.
+        int h = key.hashKey ^ (0x9E3779B9 * (depth + 1));
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return partitions[h & (PARTITION_COUNT - 1)];
+    }
+
+    private void spillLargestPartition() {
+        Partition largest = null;
+        for (Partition partition : partitions) {
+            if (!partition.isSpilled() && ((largest == null) || (partition.memoryUsed > largest.memoryUsed))) {
+                largest = partition;
+            }
+        }
+        if ((largest == null) || largest.rows.isEmpty()) {
+            return;
+        }
+        memoryUsed -= largest.memoryUsed;
+        largest.startSpill();
+        for (Map.Entry<KeyWrapper, Row> entry : largest.rows.entries()) {
+            largest.spill(entry.getKey(), entry.getValue());
+        }
+        largest.rows = null;
+        largest.memoryUsed = 0;
+    }
+
+    private HashTable reload(Partition partition) {
+        if (partition.resident != null) {
+            return partition.resident;
+        }
+        long available = Math.max(memoryLimit - memoryUsed, memoryLimit / PARTITION_COUNT);
+        HashTable resident = new HashTable(depth + 1, statistics);
+        resident.hashedRowType = hashedRowType;
+        resident.tComparisons = tComparisons;
+        resident.collators = collators;
+        resident.matchNulls = matchNulls;
+        resident.keyTypes = keyTypes;
+        resident.setSpilling(available, spillFileProvider);
+        try (SpillFile.Reader reader = partition.spillFile.openReader()) {
+            while (reader.next()) {
+                Value[] keyValues = new Value[keyTypes.length];
+                for (int i = 0; i < keyTypes.length; i++) {
+                    keyValues[i] = new Value(keyTypes[i]);
+                    reader.read(keyValues[i]);
+                }
+                ValuesHolderRow row = new ValuesHolderRow(hashedRowType);
+                for (int i = 0; i < hashedRowType.nFields(); i++) {
+                    reader.read(row.valueAt(i));
+                }
+                resident.put(new KeyWrapper(Arrays.<ValueSource>asList(keyValues)), row);
+            }
+        }
+        resident.finishLoading();
+        statistics.reloadedPartitions++;
+        RELOAD_PARTITION_TAP.hit();
+        // Keep as many reloaded partitions as fit, evicting the oldest.
+        long residentBytes = partition.spillFile.getBytes();
+        for (Partition other : residentPartitions) {
+            residentBytes += other.spillFile.getBytes();
+        }
+        while (!residentPartitions.isEmpty() && (residentBytes > available)) {
+            Partition evicted = residentPartitions.removeFirst();
+            residentBytes -= evicted.spillFile.getBytes();
+            evicted.resident.close();
+            evicted.resident = null;
+        }
+        partition.resident = resident;
+        residentPartitions.addLast(partition);
+        return resident;
+    }
+
+    private long estimateSize(KeyWrapper key, Row row) {
+        long size = ENTRY_OVERHEAD;
+        for (ValueSource value : key.values) {
+            size += SpillFile.estimateSize(value);
+        }
+        for (int i = 0; i < hashedRowType.nFields(); i++) {
+            size += SpillFile.estimateSize(row.value(i));
+        }
+        return size;
+    }
+
+    static class SpillStatistics {
+        int spilledPartitions;
+        long spilledRows;
+        long spilledBytes;
+        int reloadedPartitions;
+    }
+
+    private class Partition {
+        ArrayListMultimap<KeyWrapper, Row> rows = ArrayListMultimap.create();
+        long memoryUsed;
+        SpillFile spillFile;
+        ValueSource[] spillValues;
+        HashTable resident;
+
+        boolean isSpilled() {
+            return spillFile != null;
+        }
+
+        void startSpill() {
+            TInstance[] types = new TInstance[keyTypes.length + hashedRowType.nFields()];
+            System.arraycopy(keyTypes, 0, types, 0, keyTypes.length);
+            for (int i = 0; i < hashedRowType.nFields(); i++) {
+                types[keyTypes.length + i] = hashedRowType.typeAt(i);
+            }
+            spillFile = new SpillFile(spillFileProvider, types);
+            spillValues = new ValueSource[types.length];
+            statistics.spilledPartitions++;
+            SPILL_PARTITION_TAP.hit();
+        }
+
+        void spill(KeyWrapper key, Row row) {
+            for (int i = 0; i < keyTypes.length; i++) {
+                spillValues[i] = key.values.get(i);
+            }
+            for (int i = 0; i < hashedRowType.nFields(); i++) {
+                spillValues[keyTypes.length + i] = row.value(i);
+            }
+            long before = spillFile.getBytes();
+            spillFile.write(spillValues);
+            statistics.spilledRows++;
+            statistics.spilledBytes += spillFile.getBytes() - before;
+            SPILL_ROW_TAP.hit();
+        }
+
+        void finishSpill() {
+            if (spillFile != null) {
+                spillFile.finishWriting();
+                spillValues = null;
+            }
+        }
+
+        void close() {
+            rows = null;
+            if (resident != null) {
+                resident.close();
+                resident = null;
+            }
+            if (spillFile != null) {
+                spillFile.delete();
+                spillFile = null;
+            }
+        }
+    }
+
     public class KeyWrapper implements Comparable<KeyWrapper> {
         List<ValueSource> values = new ArrayList<>();
         int hashKey = 0;
@@ -137,5 +440,16 @@ public class HashTable {
                 i++;
             }
         }
+
+        KeyWrapper(List<ValueSource> values) {
+            for (int i = 0; i < values.size(); i++) {
+                ValueSource value = values.get(i);
+                if (value.isNull())
+                    isNull = true;
+                AkCollator collator = (collators != null) ? collators.get(i) : null;
+                hashKey ^= ValueSources.hash(value, collator);
+                this.values.add(value);
+            }
+        }
     }
 }
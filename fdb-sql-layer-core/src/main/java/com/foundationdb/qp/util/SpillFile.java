@@ -0,0 +1,247 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.qp.util;
+
+import com.fasterxml.sort.TempFileProvider;
+import com.foundationdb.server.PersistitValueValueSource;
+import com.foundationdb.server.PersistitValueValueTarget;
+import com.foundationdb.server.error.SpillIOException;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.value.Value;
+import com.foundationdb.server.types.value.ValueSource;
+import com.persistit.Persistit;
+import com.persistit.exception.ConversionException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * A temporary file of entries of typed values, written by operators that
+ * overflow their memory limit. Each entry is encoded as a length-prefixed Persistit
+ * value, like the rows in {@link com.foundationdb.qp.storeadapter.indexcursor.MergeJoinSorter}.
+ */
+public class SpillFile
+{
+    public SpillFile(TempFileProvider fileProvider, TInstance[] types) {
+        this.types = types;
+        try {
+            file = fileProvider.provide();
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        }
+        catch (IOException ex) {
+            throw new SpillIOException(ex);
+        }
+        encoded = new com.persistit.Value((Persistit)null);
+        target = new PersistitValueValueTarget();
+        target.attach(encoded);
+    }
+
+    public void write(ValueSource[] values) {
+        assert values.length == types.length : values.length;
+        while (true) {
+            try {
+                encoded.clear();
+                encoded.setStreamMode(true);
+                for (int i = 0; i < types.length; i++) {
+                    if (values[i].isNull()) {
+                        target.putNull();
+                    }
+                    else {
+                        types[i].writeCanonical(values[i], target);
+                    }
+                }
+                break;
+            }
+            catch (ConversionException ex) {
+                if (encoded.getMaximumSize() == com.persistit.Value.MAXIMUM_SIZE) {
+                    throw ex;
+                }
+                encoded.setMaximumSize(Math.min(encoded.getMaximumSize() * 2, com.persistit.Value.MAXIMUM_SIZE));
+            }
+        }
+        int size = encoded.getEncodedSize();
+        try {
+            output.writeInt(size);
+            output.write(encoded.getEncodedBytes(), 0, size);
+        }
+        catch (IOException ex) {
+            throw new SpillIOException(ex);
+        }
+        entries++;
+        bytes += size + 4;
+    }
+
+    /** Flush and close the file for writing. Entries can then be read back. */
+    public void finishWriting() {
+        if (output != null) {
+            try {
+                output.close();
+            }
+            catch (IOException ex) {
+                throw new SpillIOException(ex);
+            }
+            finally {
+                output = null;
+                encoded = null;
+                target = null;
+            }
+        }
+    }
+
+    public Reader openReader() {
+        finishWriting();
+        try {
+            return new Reader(new DataInputStream(new BufferedInputStream(new FileInputStream(file))));
+        }
+        catch (IOException ex) {
+            throw new SpillIOException(ex);
+        }
+    }
+
+    public void delete() {
+        try {
+            if (output != null) {
+                output.close();
+            }
+        }
+        catch (IOException ex) {
+            // Only cleaning up.
+        }
+        finally {
+            output = null;
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    public long getEntries() {
+        return entries;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public TInstance[] getTypes() {
+        return types;
+    }
+
+    /** Rough size of <code>value</code> when held in memory, for deciding when to spill. */
+    public static long estimateSize(ValueSource value) {
+        if (value.isNull()) {
+            return FIELD_OVERHEAD;
+        }
+        TInstance type = value.getType();
+        if (type.typeClass().hasFixedSerializationSize()) {
+            return FIELD_OVERHEAD + type.typeClass().fixedSerializationSize();
+        }
+        switch (TInstance.underlyingType(type)) {
+        case STRING:
+            {
+                Object obj = value.getObject();
+                if (obj instanceof String) {
+                    return FIELD_OVERHEAD + 2 * ((String)obj).length();
+                }
+            }
+            break;
+        case BYTES:
+            return FIELD_OVERHEAD + value.getBytes().length;
+        }
+        return FIELD_OVERHEAD + VARIABLE_FIELD_SIZE;
+    }
+
+    public class Reader implements Closeable {
+        private final DataInputStream input;
+        private final PersistitValueValueSource source = new PersistitValueValueSource();
+        private final com.persistit.Value value = new com.persistit.Value((Persistit)null);
+
+        Reader(DataInputStream input) {
+            this.input = input;
+        }
+
+        /** Advance to the next entry, whose fields are then read in order with {@link #read}. */
+        public boolean next() {
+            try {
+                int size;
+                try {
+                    size = input.readInt();
+                }
+                catch (EOFException ex) {
+                    return false;
+                }
+                value.setMaximumSize(Math.max(size, value.getMaximumSize()));
+                value.ensureFit(size);
+                input.readFully(value.getEncodedBytes(), 0, size);
+                value.setEncodedSize(size);
+                source.attach(value);
+                return true;
+            }
+            catch (IOException ex) {
+                throw new SpillIOException(ex);
+            }
+        }
+
+        /** Read the next field of the current entry into <code>target</code>, which has that field's type. */
+        public void read(Value target) {
+            TInstance type = target.getType();
+            source.getReady(type);
+            if (source.isNull()) {
+                target.putNull();
+            }
+            else {
+                type.writeCanonical(source, target);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                input.close();
+            }
+            catch (IOException ex) {
+                throw new SpillIOException(ex);
+            }
+        }
+    }
+
+    private static final int FIELD_OVERHEAD = 16;
+    private static final int VARIABLE_FIELD_SIZE = 32;
+
+    private final TInstance[] types;
+    private final File file;
+    private DataOutputStream output;
+    private com.persistit.Value encoded;
+    private PersistitValueValueTarget target;
+    private long entries;
+    private long bytes;
+}
@@ -29,6 +29,7 @@ import com.foundationdb.qp.operator.GroupCursor;
 import com.foundationdb.qp.operator.RowCursorImpl;
 import com.foundationdb.qp.row.HKey;
 import com.foundationdb.qp.row.Row;
+import com.persistit.Key;
 
 public class VirtualGroupCursor extends RowCursorImpl implements GroupCursor {
 
@@ -37,6 +38,11 @@ public class VirtualGroupCursor extends RowCursorImpl implements GroupCursor {
         CursorLifecycle.checkIdle(this);
     }
 
+    @Override
+    public void rebindRange(Key start) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public void open() {
         super.open();
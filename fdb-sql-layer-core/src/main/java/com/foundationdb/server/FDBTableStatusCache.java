@@ -23,6 +23,10 @@
  */
 package com.foundationdb.server;
 
+import com.foundationdb.KeyValue;
+import com.foundationdb.Range;
+import com.foundationdb.qp.storeadapter.FDBAdapter;
+import com.foundationdb.server.service.config.ConfigurationService;
 import com.foundationdb.server.store.FDBHolder;
 import com.foundationdb.server.store.FDBStoreDataHelper;
 import com.foundationdb.server.store.FDBTransactionService;
@@ -53,19 +57,36 @@ import java.util.Map;
  *     prefix and  the string "rowCount". The count is a little-endian encoded
  *     long (for {@link Transaction#mutate} usage).
  * </p>
+ * <p>
+ *     When <code>fdbsql.fdb.row_count_shards</code> is greater than one, writers
+ *     spread their additions over that many keys, each the row count key followed
+ *     by a shard number, so that concurrent inserts don't all hit one storage server.
+ *     The count is then the sum of every key starting with the row count key, which
+ *     includes counts written before sharding was turned on. In that mode the
+ *     approximate count comes from a sum cached for
+ *     <code>fdbsql.fdb.row_count_cache_millis</code>. With a single shard, only the
+ *     row count key itself is read, so the setting should not be lowered back to
+ *     one once tables have been written with shards.
+ * </p>
  */
 public class FDBTableStatusCache implements TableStatusCache {
     private static final List<String> TABLE_STATUS_DIR_PATH = Arrays.asList("tableStatus");
     private static final byte[] ROW_COUNT_PACKED = Tuple2.from("rowCount").pack();
+    private static final String ROW_COUNT_SHARDS_PROP = "fdbsql.fdb.row_count_shards";
+    private static final String ROW_COUNT_CACHE_MILLIS_PROP = "fdbsql.fdb.row_count_cache_millis";
 
     private final FDBTransactionService txnService;
+    private final int rowCountShards;
+    private final long rowCountCacheMillis;
     private final Map<Integer,VirtualTableStatus> virtualTableStatusMap = new HashMap<>();
 
     private byte[] packedTableStatusPrefix;
 
 
-    public FDBTableStatusCache(FDBHolder holder, FDBTransactionService txnService) {
+    public FDBTableStatusCache(FDBHolder holder, FDBTransactionService txnService, ConfigurationService config) {
         this.txnService = txnService;
+        this.rowCountShards = Math.max(Integer.parseInt(config.getProperty(ROW_COUNT_SHARDS_PROP)), 1);
+        this.rowCountCacheMillis = Long.parseLong(config.getProperty(ROW_COUNT_CACHE_MILLIS_PROP));
         this.packedTableStatusPrefix = holder.getRootDirectory().createOrOpen(holder.getTransactionContext(),
                                                                               TABLE_STATUS_DIR_PATH).get().pack();
     }
@@ -117,11 +138,23 @@ public class FDBTableStatusCache implements TableStatusCache {
     private class FDBTableStatus implements TableStatus {
         private final int tableID;
         private volatile byte[] rowCountKey;
+        private final Range rowCountRange;
+        /** Shard <code>i</code> is at <code>rowCountShardKeys[i]</code>, shard 0 being the plain key. */
+        private final byte[][] rowCountShardKeys;
+        private volatile long cachedRowCount;
+        private volatile long cachedRowCountTime;
+        private volatile boolean cachedRowCountValid;
 
         public FDBTableStatus(Table table) {
             this.tableID = table.getTableId();
             byte[] prefixBytes = FDBStoreDataHelper.prefixBytes(table.getPrimaryKeyIncludingInternal().getIndex());
             this.rowCountKey = ByteArrayUtil.join(packedTableStatusPrefix, prefixBytes, ROW_COUNT_PACKED);
+            this.rowCountRange = Range.startsWith(rowCountKey);
+            this.rowCountShardKeys = new byte[rowCountShards][];
+            rowCountShardKeys[0] = rowCountKey;
+            for (int i = 1; i < rowCountShards; i++) {
+                rowCountShardKeys[i] = ByteArrayUtil.join(rowCountKey, Tuple2.from(i).pack());
+            }
         }
 
         @Override
@@ -132,13 +165,15 @@ public class FDBTableStatusCache implements TableStatusCache {
         @Override
         public void rowsWritten(Session session, long count) {
             TransactionState txn = txnService.getTransaction(session);
-            txn.mutate(MutationType.ADD, rowCountKey, packForAtomicOp(count));
+            txn.mutate(MutationType.ADD, shardKey(session), packForAtomicOp(count));
         }
 
         @Override
         public void truncate(Session session) {
             TransactionState txn = txnService.getTransaction(session);
+            txn.clearRange(rowCountRange);
             txn.setBytes(rowCountKey, packForAtomicOp(0));
+            cachedRowCountValid = false;
         }
 
         @Override
@@ -148,8 +183,17 @@ public class FDBTableStatusCache implements TableStatusCache {
 
         @Override
         public long getApproximateRowCount(Session session) {
-            // TODO: Snapshot avoids conflicts but might still round trip. Cache locally for some time frame?
-            return getRowCount(txnService.getTransaction(session), true);
+            if (rowCountShards == 1) {
+                // Snapshot avoids conflicts but still round trips.
+                return getRowCount(txnService.getTransaction(session), true);
+            }
+            long now = System.currentTimeMillis();
+            if (!cachedRowCountValid || (now - cachedRowCountTime > rowCountCacheMillis)) {
+                cachedRowCount = getRowCount(txnService.getTransaction(session), true);
+                cachedRowCountTime = now;
+                cachedRowCountValid = true;
+            }
+            return cachedRowCount;
         }
 
         @Override
@@ -159,15 +203,42 @@ public class FDBTableStatusCache implements TableStatusCache {
 
         private void clearState(Session session) {
             TransactionState txn = txnService.getTransaction(session);
-            txn.clearKey(rowCountKey);
+            txn.clearRange(rowCountRange);
+            cachedRowCountValid = false;
+        }
+
+        /** Spread sessions over the shards, keeping each on one key. */
+        private byte[] shardKey(Session session) {
+            if (rowCountShards == 1) {
+                return rowCountKey;
+            }
+            return rowCountShardKeys[(int)(session.sessionId() % rowCountShards)];
         }
 
         private long getRowCount(TransactionState txn, boolean snapshot) {
+            if (rowCountShards == 1) {
+                if (snapshot) {
+                    return unpackForAtomicOp(txn.getSnapshotValue(rowCountKey));
+                } else {
+                    return unpackForAtomicOp(txn.getValue(rowCountKey));
+                }
+            }
+            List<KeyValue> shards;
             if (snapshot) {
-                return unpackForAtomicOp(txn.getSnapshotValue(rowCountKey));
+                try {
+                    shards = txn.getSnapshotRangeAsFutureList(rowCountRange.begin, rowCountRange.end,
+                                                              Transaction.ROW_LIMIT_UNLIMITED, false).get();
+                } catch (RuntimeException e) {
+                    throw FDBAdapter.wrapFDBException(txn.getSession(), e);
+                }
             } else {
-                return unpackForAtomicOp(txn.getValue(rowCountKey));
+                shards = txn.getRangeAsValueList(rowCountRange.begin, rowCountRange.end);
+            }
+            long count = 0;
+            for (KeyValue kv : shards) {
+                count += unpackForAtomicOp(kv.getValue());
             }
+            return count;
         }
     }
 }
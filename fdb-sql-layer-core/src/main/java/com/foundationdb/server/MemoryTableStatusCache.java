@@ -112,7 +112,9 @@ public class MemoryTableStatusCache implements TableStatusCache
 
         @Override
         public void rowsWritten(Session session, long count) {
-            setRowCount(session, getRowCount(session) + count);
+            // Concurrent writers do not conflict on the count
+            MemoryTransaction txn = txnService.getTransaction(session);
+            txn.addLong(statusKey, count);
         }
 
         @Override
@@ -271,7 +271,8 @@ public enum ErrorCode {
     FDB_COMMIT_UNKNOWN_RESULT ("40", "003", Importance.ERROR, FDBCommitUnknownResultException.class),
     FDB_PAST_VERSION        ("40", "004", Importance.ERROR, FDBPastVersionException.class),
     FDB_FUTURE_VERSION      ("40", "005", Importance.ERROR, FDBFutureVersionException.class),
-    //40006-A open
+    TRANSACTION_CONFLICT    ("40", "006", Importance.DEBUG, TransactionConflictException.class),
+    //40007-A open
     LOCK_TIMEOUT            ("40", "00B", Importance.DEBUG, LockTimeoutException.class),
 
     // Class 42 - syntax error or access rule violation
@@ -487,6 +488,8 @@ public enum ErrorCode {
     NOT_ALLOWED_BY_CONFIG   ("53", "00G", Importance.ERROR, NotAllowedByConfigException.class),
     JOIN_GRAPH_FAILURE      ("53", "00H", Importance.ERROR, FailedJoinGraphCreationException.class),
     CORRUPTED_PLAN          ("53", "00I", Importance.ERROR, CorruptedPlanException.class),
+    SPILL_IO                ("53", "00J", Importance.ERROR, SpillIOException.class),
+    MEMORY_STORE_IO         ("53", "00K", Importance.ERROR, MemoryStoreIOException.class),
     
     // Class 55 - Type conversion errors
     UNKNOWN_TYPE            ("55", "001", Importance.DEBUG, UnknownDataTypeException.class),
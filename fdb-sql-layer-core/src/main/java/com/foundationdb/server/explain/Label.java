@@ -45,6 +45,7 @@ public enum Label
     // COST
     //--------------------------------------------------------------------------
     COST(Category.COST),
+    ACTUAL(Category.COST), // runtime statistics, from EXPLAIN ANALYZE
     
     // DESCRIPTION (may or may not needed)
     //--------------------------------------------------------------------------
@@ -296,6 +296,11 @@ public class DefaultFormatter
             sb.append((String)atts.getValue(Label.COST));
             sb.append(")");
         }
+        if (atts.containsKey(Label.ACTUAL)) {
+            sb.append(" (actual ");
+            sb.append((String)atts.getValue(Label.ACTUAL));
+            sb.append(")");
+        }
         if (atts.containsKey(Label.INPUT_OPERATOR)) {
             for (Explainer input : atts.get(Label.INPUT_OPERATOR)) {
                 newRow();
@@ -332,6 +337,7 @@ public class DefaultFormatter
                     sb.append(", Pipelining ");
                     sb.append((long)(atts.getValue(Label.PIPELINE)));
                 }
+                appendRuntimeFilter(atts);
             }
         }
         else if (name.equals("ValuesScan_Default")) {
@@ -352,12 +358,29 @@ public class DefaultFormatter
                     sb.append(opt).append(" on ");
             }
             appendTableName(atts);
+            if ((levelOfDetail == LevelOfDetail.VERBOSE_WITHOUT_COST) ||
+                    (levelOfDetail == LevelOfDetail.VERBOSE)) {
+                appendRuntimeFilter(atts);
+            }
         }
         else if (name.equals("IndexScan_FullText")) {
             appendFullTextScanOperator(atts);
         }
     }
 
+    protected void appendRuntimeFilter(Attributes atts) {
+        if (atts.containsKey(Label.BLOOM_FILTER)) {
+            Attributes filterAtts = ((CompoundExplainer)atts.getAttribute(Label.BLOOM_FILTER)).get();
+            sb.append(", ").append(filterAtts.getValue(Label.NAME)).append('(');
+            sb.append(filterAtts.getValue(Label.BINDING_POSITION));
+            for (Explainer ex : filterAtts.get(Label.EXPRESSIONS)) {
+                sb.append(", ");
+                append(ex);
+            }
+            sb.append(')');
+        }
+    }
+
     protected void appendIndexScanOperator(Attributes atts) {
         append(atts.getAttribute(Label.INDEX));
         if (levelOfDetail != LevelOfDetail.BRIEF) {
@@ -26,6 +26,8 @@ package com.foundationdb.server.service.blob;
 import com.foundationdb.server.error.LobContentException;
 import com.foundationdb.server.types.aksql.aktypes.AkGUID;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.util.UUID;
 import java.util.Arrays;
 
@@ -34,6 +36,14 @@ public class BlobRef {
     public enum LobType { SHORT_LOB, LONG_LOB, UNKNOWN }
     public static final byte SHORT_LOB = 0x01;
     public static final byte LONG_LOB = 0x02;
+
+    /** Content of a long lob that is only read when asked for. */
+    public interface Content {
+        long size();
+        byte[] read();
+        InputStream openStream();
+    }
+
     private UUID id;
     private byte[] data;
     private byte storeTypeBit;
@@ -41,6 +51,7 @@ public class BlobRef {
     private LobType lobType = LobType.UNKNOWN;
     private LobType requestedType = LobType.UNKNOWN;
     private Boolean returnedBlobInUnwrappedMode = false;
+    private Content content;
     
     
     public BlobRef(byte[] value) {
@@ -51,6 +62,15 @@ public class BlobRef {
     }
     
 
+    /** A long lob returned in unwrapped mode, whose data is read from <code>content</code> on first use. */
+    public BlobRef(UUID id, Content content) {
+        this.id = id;
+        this.content = content;
+        this.leadingBitState = LeadingBitState.NO;
+        this.lobType = LobType.LONG_LOB;
+        this.returnedBlobInUnwrappedMode = true;
+    }
+
     public BlobRef(byte[] value, LeadingBitState state, LobType definedType, LobType requestedType) {
         this.leadingBitState = state;
         this.lobType = definedType;
@@ -96,7 +116,7 @@ public class BlobRef {
                 res[0] = storeTypeBit;
             }
         } else {
-            res = data;
+            res = getBytes();
         }
         return res;
     }
@@ -118,8 +138,24 @@ public class BlobRef {
     }
     
     public byte[] getBytes() {
+        if ((data == null) && (content != null)) {
+            data = content.read();
+        }
         return data;
     }
+
+    /** Whether the data has not been read yet and can be streamed instead. */
+    public boolean isStreamable() {
+        return (data == null) && (content != null);
+    }
+
+    public long getContentSize() {
+        return isStreamable() ? content.size() : getBytes().length;
+    }
+
+    public InputStream openStream() {
+        return isStreamable() ? content.openStream() : new ByteArrayInputStream(getBytes());
+    }
     
     public LobType getLobType() {
         return lobType;
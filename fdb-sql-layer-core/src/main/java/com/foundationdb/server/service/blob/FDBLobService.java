@@ -24,6 +24,8 @@
 package com.foundationdb.server.service.blob;
 
 import com.foundationdb.Transaction;
+import com.foundationdb.async.Function;
+import com.foundationdb.blob.BlobInputStream;
 import com.foundationdb.blob.SQLBlob;
 import com.foundationdb.subspace.Subspace;
 import com.foundationdb.directory.DirectorySubspace;
@@ -35,6 +37,7 @@ import com.foundationdb.TransactionContext;
 import com.foundationdb.server.service.session.Session;
 import com.foundationdb.server.service.Service;
 import com.foundationdb.server.service.ServiceManager;
+import com.foundationdb.server.service.config.ConfigurationService;
 import com.foundationdb.server.service.security.SecurityService;
 import com.foundationdb.server.service.transaction.TransactionService;
 import com.foundationdb.server.store.FDBHolder;
@@ -42,6 +45,8 @@ import com.foundationdb.server.store.FDBTransactionService;
 import com.foundationdb.tuple.Tuple2;
 import com.google.inject.Inject;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.UUID;
 
@@ -53,6 +58,10 @@ public class FDBLobService implements Service, LobService {
     private final SecurityService securityService;
     private final ServiceManager serviceManager;
     private final String LOB_DIRECTORY = "lobs";
+    private static final String STREAM_PREFETCH_PROPERTY = "fdbsql.blob.stream_prefetch";
+    private static final String STREAM_WRITE_BYTES_PROPERTY = "fdbsql.blob.stream_write_bytes";
+    private int streamPrefetch;
+    private int streamWriteBytes;
     
     @Inject
     public FDBLobService(ServiceManager serviceManager, SecurityService securityService) {
@@ -126,12 +135,58 @@ public class FDBLobService implements Service, LobService {
         return blob.read(getTxc(session)).get();
     }
 
+    @Override
+    public BlobInputStream openBlobStream(final Session session, final UUID lobId, final long offset) {
+        SQLBlob blob = openBlob(session, lobId);
+        return blob.openInputStream(getTxc(session), offset, streamPrefetch);
+    }
+
     @Override
     public void writeBlob(final Session session, final UUID lobId, final long offset, final byte[] data) {
         SQLBlob blob = openBlob(session, lobId);
         blob.write(getTxc(session), offset, data).get();
     }
 
+    @Override
+    public long writeBlob(final Session session, final UUID lobId, final long offset, final InputStream data) {
+        final SQLBlob blob = openBlob(session, lobId);
+        // A lob created in this transaction is invisible to everyone else until the caller commits, so its
+        // pieces can each go in their own transaction. Otherwise a rollback has to undo them.
+        TransactionContext txc = getTxc(session);
+        if (!existsCommittedLob(lobId)) {
+            txc = fdbHolder.getTransactionContext();
+            transactionService.addCallback(session, TransactionService.CallbackType.ROLLBACK, new TransactionService.Callback() {
+                @Override
+                public void run(Session session, long timestamp) {
+                    blob.delete(fdbHolder.getTransactionContext()).get();
+                }
+            });
+        }
+        byte[] piece = new byte[streamWriteBytes];
+        long position = offset;
+        boolean more = true;
+        while (more) {
+            int length = 0;
+            try {
+                while (length < piece.length) {
+                    int n = data.read(piece, length, piece.length - length);
+                    if (n < 0) {
+                        more = false;
+                        break;
+                    }
+                    length += n;
+                }
+            } catch (IOException e) {
+                throw new LobContentException("error reading lob content: " + e.getMessage());
+            }
+            if (length > 0) {
+                blob.write(txc, position, (length == piece.length) ? piece : Arrays.copyOf(piece, length)).get();
+                position += length;
+            }
+        }
+        return position - offset;
+    }
+
     @Override
     public void appendBlob(final Session session, final UUID lobId, final byte[] data) {
         SQLBlob blob = openBlob(session, lobId);
@@ -173,6 +228,16 @@ public class FDBLobService implements Service, LobService {
         }
     }
     
+    private boolean existsCommittedLob(UUID lobId) {
+        final byte[] key = getLobSubspace(lobId).pack();
+        return fdbHolder.getTransactionContext().run(new Function<Transaction,byte[]>() {
+            @Override
+            public byte[] apply(Transaction tr) {
+                return tr.get(key).get();
+            }
+        }) != null;
+    }
+
     private Subspace getLobSubspace(UUID lobId) {
         Tuple2 tuple = new Tuple2();
         return lobDirectory.get(tuple.add(lobId));
@@ -189,6 +254,9 @@ public class FDBLobService implements Service, LobService {
         if (ts instanceof FDBTransactionService) {
             this.transactionService = (FDBTransactionService)ts;
         }
+        ConfigurationService configService = serviceManager.getServiceByClass(ConfigurationService.class);
+        this.streamPrefetch = Integer.parseInt(configService.getProperty(STREAM_PREFETCH_PROPERTY));
+        this.streamWriteBytes = Integer.parseInt(configService.getProperty(STREAM_WRITE_BYTES_PROPERTY));
         this.lobDirectory = fdbHolder.getRootDirectory().createOrOpen(fdbHolder.getTransactionContext(), Arrays.asList(LOB_DIRECTORY)).get();
     }
 
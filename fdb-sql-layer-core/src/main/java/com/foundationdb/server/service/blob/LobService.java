@@ -27,6 +27,7 @@ package com.foundationdb.server.service.blob;
 import com.foundationdb.server.service.session.Session;
 import com.foundationdb.qp.operator.QueryContext;
 
+import java.io.InputStream;
 import java.util.UUID;
 
 public interface LobService {
@@ -37,7 +38,16 @@ public interface LobService {
     public long sizeBlob(Session session, UUID lobId);
     public byte[] readBlob(Session session, UUID lobId, long offset, int length);
     public byte[] readBlob(Session session, UUID lobId);
+    /** Stream the content from <code>offset</code>, valid while the session's transaction stays open. */
+    public InputStream openBlobStream(Session session, UUID lobId, long offset);
     public void writeBlob(Session session, UUID lobId, long offset, byte[] data);
+    /**
+     * Write all of <code>data</code> starting at <code>offset</code>. Returns the number of bytes written.
+     * If the lob was created in the session's transaction, each piece is written in its own transaction,
+     * so that the total is not bounded by transaction limits, and removed again if the session's transaction
+     * rolls back. The content is then only visible to transactions begun after this returns.
+     */
+    public long writeBlob(Session session, UUID lobId, long offset, InputStream data);
     public void appendBlob(Session session, UUID lobId, byte[] data);
     public void truncateBlob(Session session, UUID lobId, long size);
     public void clearAllLobs(Session session);
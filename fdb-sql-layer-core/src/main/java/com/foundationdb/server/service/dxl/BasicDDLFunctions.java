@@ -125,6 +125,12 @@ public class BasicDDLFunctions implements DDLFunctions {
     private final TransactionService txnService;
     private final ListenerService listenerService;
     private OnlineDDLMonitor onlineDDLMonitor;
+    private final OnlineHelper.BuildListener onlineBuildListener = new OnlineHelper.BuildListener() {
+        @Override
+        public void rangeCompleted(TableName groupName, int completedRanges, int totalRanges) {
+            onlineBuildProgress(completedRanges, totalRanges);
+        }
+    };
 
     @Override
     public void createTable(Session session, Table table)
@@ -663,7 +669,7 @@ public class BasicDDLFunctions implements DDLFunctions {
         final boolean[] success = { false };
         try {
             onlineAt(OnlineDDLMonitor.Stage.PRE_TRANSFORM);
-            store().getOnlineHelper().buildIndexes(session, null);
+            store().getOnlineHelper().buildIndexes(session, null, onlineBuildListener);
             onlineAt(OnlineDDLMonitor.Stage.POST_TRANSFORM);
 
             txnService.run(session, new Runnable() {
@@ -922,7 +928,7 @@ public class BasicDDLFunctions implements DDLFunctions {
             break;
             case INDEX:
             case INDEX_CONSTRAINT:
-                store().getOnlineHelper().buildIndexes(session, context);
+                store().getOnlineHelper().buildIndexes(session, context, onlineBuildListener);
             break;
             case TABLE:
             case GROUP:
@@ -1257,6 +1263,12 @@ public class BasicDDLFunctions implements DDLFunctions {
         }
     }
 
+    private synchronized void onlineBuildProgress(int completedRanges, int totalRanges) {
+        if(onlineDDLMonitor != null) {
+            onlineDDLMonitor.buildProgress(completedRanges, totalRanges);
+        }
+    }
+
     private Store store() {
         return store;
     }
@@ -35,4 +35,7 @@ public interface OnlineDDLMonitor
     }
 
     void at(Stage stage);
+
+    /** Called, possibly from several threads, as ranges of a parallel index build complete. */
+    void buildProgress(int completedRanges, int totalRanges);
 }
@@ -70,6 +70,8 @@ public class ExternalDataServiceImpl implements ExternalDataService, Service {
     protected final Store store;
     protected final TransactionService transactionService;
     protected final ServiceManager serviceManager;
+    private int loadThreads;
+    private long loadCommitBytes;
     
     private static final Logger logger = LoggerFactory.getLogger(ExternalDataServiceImpl.class);
 
@@ -81,6 +83,9 @@ public class ExternalDataServiceImpl implements ExternalDataService, Service {
                 }
             };
 
+    public static final String LOAD_THREADS_PROPERTY = "fdbsql.load.threads";
+    public static final String LOAD_COMMIT_BYTES_PROPERTY = "fdbsql.load.commit_bytes";
+
 
     @Inject
     public ExternalDataServiceImpl(ConfigurationService configService,
@@ -244,6 +249,14 @@ public class ExternalDataServiceImpl implements ExternalDataService, Service {
                                           InputStream inputStream, RowReader reader, 
                                           long commitFrequency, int maxRetries)
             throws IOException {
+        if ((loadThreads > 1) && (commitFrequency != COMMIT_FREQUENCY_NEVER)) {
+            // Everything in one transaction leaves nothing to do in parallel.
+            ParallelRowLoader loader = new ParallelRowLoader(this, store, transactionService,
+                                                             serviceManager.getSessionService(),
+                                                             loadThreads, commitFrequency,
+                                                             loadCommitBytes, maxRetries);
+            return loader.load(session, reader);
+        }
         long pending = 0, total = 0;
         List<Row> rows = maxRetries > 0 ? new ArrayList<Row>() : null;
         boolean transaction = false;
@@ -357,6 +370,8 @@ public class ExternalDataServiceImpl implements ExternalDataService, Service {
     
     @Override
     public void start() {
+        loadThreads = Integer.parseInt(configService.getProperty(LOAD_THREADS_PROPERTY));
+        loadCommitBytes = Long.parseLong(configService.getProperty(LOAD_COMMIT_BYTES_PROPERTY));
     }
 
     @Override
@@ -0,0 +1,334 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.service.externaldata;
+
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.server.error.InvalidOperationException;
+import com.foundationdb.server.error.QueryCanceledException;
+import com.foundationdb.server.service.session.Session;
+import com.foundationdb.server.service.session.SessionService;
+import com.foundationdb.server.service.transaction.TransactionService;
+import com.foundationdb.server.store.Store;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.value.ValueSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pipelined load of rows from a {@link RowReader}.
+ * <p>
+ * The calling thread parses rows into batches, each of which is one commit.
+ * A batch is closed after <code>commitFrequency</code> rows, or, when committing
+ * periodically, once its estimated size reaches <code>commitBytes</code>.
+ * A fixed set of workers, each with its own session, write and commit the
+ * batches, retrying a failed batch up to <code>maxRetries</code> times on
+ * rollback class errors. A bounded queue between the two keeps at most a
+ * couple of batches per worker in memory.
+ * <p>
+ * Batches commit independently and in no particular order, so, as with the
+ * serial load and a commit frequency, a failure leaves some rows loaded.
+ */
+class ParallelRowLoader
+{
+    private static final Logger logger = LoggerFactory.getLogger(ParallelRowLoader.class);
+
+    /** Queued once per worker when the reader is done. */
+    private static final List<Row> END = new ArrayList<>(0);
+
+    private final ExternalDataServiceImpl service;
+    private final Store store;
+    private final TransactionService transactionService;
+    private final SessionService sessionService;
+    private final int threads;
+    private final long commitFrequency;
+    private final long commitBytes;
+    private final int maxRetries;
+
+    private final BlockingQueue<List<Row>> queue;
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicInteger batches = new AtomicInteger();
+    private final AtomicInteger retries = new AtomicInteger();
+
+    public ParallelRowLoader(ExternalDataServiceImpl service,
+                             Store store, TransactionService transactionService,
+                             SessionService sessionService,
+                             int threads, long commitFrequency, long commitBytes, int maxRetries) {
+        this.service = service;
+        this.store = store;
+        this.transactionService = transactionService;
+        this.sessionService = sessionService;
+        this.threads = threads;
+        this.commitFrequency = commitFrequency;
+        this.commitBytes = commitBytes;
+        this.maxRetries = maxRetries;
+        this.queue = new ArrayBlockingQueue<>(threads * 2);
+    }
+
+    public long load(Session session, RowReader reader) throws IOException {
+        long start = System.nanoTime();
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Thread(new Worker(), "LOAD_WORKER_" + i);
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+        long total = 0;
+        try {
+            boolean more = true;
+            while (more) {
+                List<Row> batch = new ArrayList<>();
+                more = readBatch(session, reader, batch);
+                if (!batch.isEmpty()) {
+                    total += batch.size();
+                    if (!enqueue(session, batch)) {
+                        break;
+                    }
+                }
+            }
+        }
+        finally {
+            finish(workers);
+        }
+        RuntimeException ex = failure.get();
+        if (ex != null) {
+            throw ex;
+        }
+        long elapsed = Math.max(System.nanoTime() - start, 1);
+        logger.info("Loaded {} rows in {} ms ({} rows/sec) with {} threads: {} commits, {} retries",
+                    total, elapsed / 1000000, (total * 1000000000L) / elapsed,
+                    threads, batches.get(), retries.get());
+        return total;
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten.get();
+    }
+
+    public int getBatches() {
+        return batches.get();
+    }
+
+    public int getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * Parse one commit's worth of rows into <code>batch</code>. A transaction
+     * is needed, even to read rows, because of auto increment; it is only held
+     * for the one batch. Returns <code>false</code> when input is exhausted.
+     */
+    protected boolean readBatch(Session session, RowReader reader, List<Row> batch) throws IOException {
+        long bytes = 0;
+        transactionService.beginTransaction(session);
+        try {
+            while (true) {
+                Row row = reader.nextRow();
+                logger.trace("Read row: {}", row);
+                if (row == null) {
+                    transactionService.commitTransaction(session);
+                    return false;
+                }
+                batch.add(row);
+                if (commitFrequency > 0) {
+                    if (batch.size() >= commitFrequency) break;
+                }
+                else {
+                    bytes += estimateSize(row);
+                    if (bytes >= commitBytes) break;
+                }
+            }
+            transactionService.commitTransaction(session);
+            return true;
+        }
+        finally {
+            transactionService.rollbackTransactionIfOpen(session);
+        }
+    }
+
+    /** Tell every worker to stop once the queue is drained and wait for them. */
+    private void finish(Thread[] workers) {
+        boolean interrupted = false;
+        int ended = 0;
+        while (ended < workers.length) {
+            boolean alive = false;
+            for (Thread worker : workers) {
+                alive |= worker.isAlive();
+            }
+            if (!alive) break;
+            try {
+                if (queue.offer(END, 100, TimeUnit.MILLISECONDS)) {
+                    ended++;
+                }
+            }
+            catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        for (Thread worker : workers) {
+            while (true) {
+                try {
+                    worker.join();
+                    break;
+                }
+                catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Returns <code>false</code> if a worker has failed and the load should stop. */
+    private boolean enqueue(Session session, List<Row> batch) {
+        while (failure.get() == null) {
+            try {
+                if (queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+            catch (InterruptedException ex) {
+                fail(new QueryCanceledException(session));
+            }
+        }
+        return false;
+    }
+
+    private void fail(RuntimeException ex) {
+        failure.compareAndSet(null, ex);
+    }
+
+    /** Rough encoded size, for sizing commits. */
+    static long estimateSize(Row row) {
+        long size = 0;
+        for (int i = 0; i < row.rowType().nFields(); i++) {
+            ValueSource value = row.value(i);
+            if (value.isNull()) {
+                size += 1;
+                continue;
+            }
+            switch (TInstance.underlyingType(value.getType())) {
+            case STRING:
+                size += value.getString().length() + 2;
+                break;
+            case BYTES:
+                size += value.getBytes().length + 2;
+                break;
+            default:
+                size += 8;
+                break;
+            }
+        }
+        return size;
+    }
+
+    class Worker implements Runnable {
+        @Override
+        public void run() {
+            try (Session session = sessionService.createSession()) {
+                while (true) {
+                    List<Row> batch;
+                    try {
+                        batch = queue.take();
+                    }
+                    catch (InterruptedException ex) {
+                        fail(new QueryCanceledException(session));
+                        break;
+                    }
+                    if (batch == END) break;
+                    // After any failure, keep draining so the reader does not block.
+                    if (failure.get() != null) continue;
+                    try {
+                        write(session, batch);
+                    }
+                    catch (RuntimeException ex) {
+                        fail(ex);
+                    }
+                }
+            }
+        }
+
+        /** Write and commit one batch, retrying as the serial load does for a single commit. */
+        private void write(Session session, List<Row> batch) {
+            Exception retryException = null;
+            int sessionCounter = -1;
+            try {
+                for (int i = 0; i <= maxRetries; i++) {
+                    try {
+                        service.retryHook(session, i, maxRetries, retryException);
+                        transactionService.beginTransaction(session);
+                        if (i > 0) {
+                            logger.debug("retry #{} from {}", i, retryException);
+                            if (transactionService.checkSucceeded(session,
+                                                                  retryException,
+                                                                  sessionCounter)) {
+                                logger.debug("transaction had succeeded");
+                                transactionService.commitTransaction(session);
+                                break;
+                            }
+                            retryException = null;
+                            sessionCounter = -1;
+                        }
+                        for (Row row : batch) {
+                            store.writeRow(session, row, null, null);
+                        }
+                        sessionCounter = transactionService.markForCheck(session);
+                        transactionService.commitTransaction(session);
+                        break;
+                    }
+                    catch (InvalidOperationException ex) {
+                        if ((i >= maxRetries) ||
+                            !ex.getCode().isRollbackClass()) {
+                            throw ex;
+                        }
+                        if (retryException == null) {
+                            retryException = ex;
+                        }
+                        retries.incrementAndGet();
+                        transactionService.rollbackTransactionIfOpen(session);
+                    }
+                }
+            }
+            finally {
+                transactionService.rollbackTransactionIfOpen(session);
+            }
+            logger.debug("Committed {} rows", batch.size());
+            rowsWritten.addAndGet(batch.size());
+            batches.incrementAndGet();
+        }
+    }
+}
@@ -61,6 +61,7 @@ import com.foundationdb.server.service.monitor.UserMonitor;
 import com.foundationdb.server.service.monitor.SessionMonitor.StatementTypes;
 import com.foundationdb.server.service.security.SecurityService;
 import com.foundationdb.server.service.session.Session;
+import com.foundationdb.server.store.OnlineHelper.BuildProgress;
 import com.foundationdb.server.store.SchemaManager;
 import com.foundationdb.server.store.Store;
 import com.foundationdb.server.types.common.types.TypesTranslator;
@@ -90,6 +91,7 @@ public class ServerSchemaTablesServiceImpl
     static final TableName SERVER_PREPARED_STATEMENTS = new TableName (SCHEMA_NAME, "server_prepared_statements");
     static final TableName SERVER_CURSORS = new TableName (SCHEMA_NAME, "server_cursors");
     static final TableName SERVER_USERS = new TableName (SCHEMA_NAME, "server_users");
+    static final TableName SERVER_INDEX_BUILDS = new TableName (SCHEMA_NAME, "server_index_builds");
 
     private final MonitorService monitor;
     private final ConfigurationService configService;
@@ -161,6 +163,8 @@ public class ServerSchemaTablesServiceImpl
         attach (ais, SERVER_CURSORS, Cursors.class);
         //SERVER_USERS
         attach(ais, SERVER_USERS, Users.class);
+        //SERVER_INDEX_BUILDS
+        attach(ais, SERVER_INDEX_BUILDS, IndexBuilds.class);
     }
 
     @Override
@@ -652,6 +656,36 @@ public class ServerSchemaTablesServiceImpl
             return monitor.getUserMonitors().size();
         }
     }
+
+    private class IndexBuilds extends BasicFactoryBase {
+        public IndexBuilds(TableName sourceTable) {
+            super(sourceTable);
+        }
+
+        @Override
+        public GroupScan getGroupScan(VirtualAdapter adapter, Group group) {
+            Iterator<BuildProgress> builds = store.getOnlineHelper().getIndexBuilds().iterator();
+            return new SimpleVirtualGroupScan<BuildProgress>(group.getAIS(), getName(), builds) {
+                @Override
+                protected Object[] createRow(BuildProgress data, int hiddenPk) {
+                    return new Object[] {
+                            data.getGroupName().getSchemaName(),
+                            data.getGroupName().getTableName(),
+                            Long.valueOf(data.getTotalRanges()),
+                            Long.valueOf(data.getCompletedRanges()),
+                            data.getRowCount(),
+                            data.getStartTimeMillis() / 1000,
+                            hiddenPk
+                    };
+                }
+            };
+        }
+
+        @Override
+        public long rowCount(Session session) {
+            return store.getOnlineHelper().getIndexBuilds().size();
+        }
+    }
     
     static AkibanInformationSchema createTablesToRegister(TypesTranslator typesTranslator) {
         NewAISBuilder builder = AISBBasedBuilder.create(typesTranslator);
@@ -756,6 +790,14 @@ public class ServerSchemaTablesServiceImpl
         builder.table(SERVER_USERS)
             .colString("user_name", IDENT_MAX, false)
             .colBigInt("statement_count", false);
+
+        builder.table(SERVER_INDEX_BUILDS)
+            .colString("group_schema_name", IDENT_MAX, false)
+            .colString("group_table_name", IDENT_MAX, false)
+            .colBigInt("total_ranges", false)
+            .colBigInt("completed_ranges", false)
+            .colBigInt("row_count", false)
+            .colSystemTimestamp("start_time", false);
             
         return builder.ais(false);
     }
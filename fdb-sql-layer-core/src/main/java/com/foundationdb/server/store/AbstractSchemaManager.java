@@ -404,6 +404,13 @@ public abstract class AbstractSchemaManager implements Service, SchemaManager {
         txnService.addCallback(session, CallbackType.COMMIT, REMOVE_ONLINE_SESSION_KEY_CALLBACK);
     }
 
+    @Override
+    public void joinOnline(Session session, Session helper) {
+        OnlineSession onlineSession = getOnlineSession(session, true);
+        getOnlineSession(helper, false);
+        helper.put(ONLINE_SESSION_KEY, onlineSession);
+    }
+
     @Override
     public void discardOnline(Session session) {
         OnlineSession onlineSession = getOnlineSession(session, true);
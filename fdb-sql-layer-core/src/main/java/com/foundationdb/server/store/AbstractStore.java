@@ -58,6 +58,7 @@ import com.foundationdb.qp.storeadapter.indexrow.SpatialColumnHandler;
 import com.foundationdb.qp.util.SchemaCache;
 import com.foundationdb.server.error.NoSuchRowException;
 import com.foundationdb.server.service.ServiceManager;
+import com.foundationdb.server.service.config.ConfigurationService;
 import com.foundationdb.server.service.listener.ListenerService;
 import com.foundationdb.server.service.listener.RowListener;
 import com.foundationdb.server.service.session.Session;
@@ -98,6 +99,8 @@ public abstract class AbstractStore<SType extends AbstractStore,SDType,SSDType e
     private static final InOutTap PROPAGATE_REPLACE_TAP = Tap.createTimer("write: propagate_hkey_change_row_replace");
 
     protected static final String FEATURE_DDL_WITH_DML_PROP = "fdbsql.feature.ddl_with_dml_on";
+    protected static final String ONLINE_BUILD_THREADS_PROP = "fdbsql.online_ddl.build_threads";
+    protected static final String ONLINE_BUILD_COMMIT_MILLIS_PROP = "fdbsql.online_ddl.build_commit_millis";
 
     protected final TransactionService txnService;
     protected final SchemaManager schemaManager;
@@ -115,6 +118,19 @@ public abstract class AbstractStore<SType extends AbstractStore,SDType,SSDType e
         this.serviceManager = serviceManager;
     }
 
+    /** Create the helper for online DDL, configured from {@code configService}. */
+    protected OnlineHelper createOnlineHelper(ConfigurationService configService, boolean withConcurrentDML) {
+        return new OnlineHelper(txnService,
+                                schemaManager,
+                                this,
+                                typesRegistryService,
+                                constraintHandler,
+                                withConcurrentDML,
+                                serviceManager.getSessionService(),
+                                Integer.parseInt(configService.getProperty(ONLINE_BUILD_THREADS_PROP)),
+                                Long.parseLong(configService.getProperty(ONLINE_BUILD_COMMIT_MILLIS_PROP)));
+    }
+
 
     //
     // Implementation methods
@@ -0,0 +1,218 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.store;
+
+import com.foundationdb.KeySelector;
+import com.foundationdb.KeyValue;
+import com.foundationdb.LocalityUtil;
+import com.foundationdb.Transaction;
+import com.foundationdb.async.AsyncIterator;
+import com.foundationdb.async.Future;
+import com.foundationdb.async.ReadyFuture;
+import com.foundationdb.qp.storeadapter.FDBAdapter;
+import com.foundationdb.server.store.FDBTransactionService.TransactionState;
+import com.foundationdb.tuple.ByteArrayUtil;
+import com.foundationdb.util.tap.PointTap;
+import com.foundationdb.util.tap.Tap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * An iterator over <code>KeyValue</code> pairs in a range that has been
+ * split at FDB shard boundaries, so that several sub-ranges are read
+ * concurrently. Up to <code>parallelism</code> sub-ranges are in flight at
+ * once. If <code>ordered</code>, pairs come back in key order, which is
+ * just the sub-ranges in turn; otherwise, from whichever sub-range has
+ * data ready first.
+ *
+ * Each sub-range is read with its own {@link FDBScanCommittingIterator},
+ * so that if the transaction is reset underneath it, it resumes after the
+ * last key it returned.
+ */
+public class FDBParallelRangeIterator implements AsyncIterator<KeyValue>
+{
+    private static final PointTap SUB_RANGE_COUNT = Tap.createCount("fdb: parallel scan sub-range");
+
+    private final TransactionState transaction;
+    private final List<byte[]> splits;
+    private final int parallelism;
+    private final boolean ordered;
+    private final FDBScanTransactionOptions options;
+    private final Deque<AsyncIterator<KeyValue>> active = new ArrayDeque<>();
+    private int nextRange;
+    private AsyncIterator<KeyValue> current;
+
+    /**
+     * @param splits the start of each sub-range followed by the end of the last one.
+     */
+    public FDBParallelRangeIterator(TransactionState transaction, List<byte[]> splits,
+                                    int parallelism, boolean ordered,
+                                    FDBScanTransactionOptions options) {
+        assert splits.size() >= 2 : splits;
+        this.transaction = transaction;
+        this.splits = splits;
+        this.parallelism = parallelism;
+        this.ordered = ordered;
+        this.options = options;
+        startRanges();
+    }
+
+    /** Split <code>[begin, end)</code> at shard boundaries into at
+     * most <code>maxRanges</code> contiguous sub-ranges.
+     */
+    public static List<byte[]> shardSplits(TransactionState transaction,
+                                           byte[] begin, byte[] end, int maxRanges) {
+        List<byte[]> boundaries = new ArrayList<>();
+        AsyncIterator<byte[]> keys = null;
+        try {
+            keys = LocalityUtil.getBoundaryKeys(transaction.getTransaction(), begin, end);
+            while (keys.hasNext()) {
+                byte[] key = keys.next();
+                if (ByteArrayUtil.compareUnsigned(key, begin) > 0) {
+                    boundaries.add(key);
+                }
+            }
+        }
+        catch (RuntimeException e) {
+            throw FDBAdapter.wrapFDBException(transaction.getSession(), e);
+        }
+        finally {
+            if (keys != null) {
+                keys.dispose();
+            }
+        }
+        List<byte[]> splits = new ArrayList<>(Math.min(boundaries.size(), maxRanges) + 2);
+        splits.add(begin);
+        // Keep every n-th boundary if there are too many.
+        int step = (boundaries.size() + maxRanges - 1) / maxRanges;
+        for (int i = step - 1; i < boundaries.size(); i += step) {
+            splits.add(boundaries.get(i));
+        }
+        splits.add(end);
+        return splits;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            if (ordered) {
+                while (!active.isEmpty()) {
+                    AsyncIterator<KeyValue> head = active.peekFirst();
+                    if (head.hasNext()) {
+                        current = head;
+                        return true;
+                    }
+                    finishRange(head);
+                }
+                return false;
+            }
+            while (!active.isEmpty()) {
+                AsyncIterator<KeyValue> ready = null;
+                for (AsyncIterator<KeyValue> range : active) {
+                    if (range.onHasNext().isDone()) {
+                        ready = range;
+                        break;
+                    }
+                }
+                if (ready == null) {
+                    // Nothing ready yet: wait for the oldest.
+                    ready = active.peekFirst();
+                }
+                if (ready.hasNext()) {
+                    current = ready;
+                    return true;
+                }
+                finishRange(ready);
+            }
+            return false;
+        }
+        catch (RuntimeException e) {
+            throw FDBAdapter.wrapFDBException(transaction.getSession(), e);
+        }
+    }
+
+    @Override
+    public KeyValue next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.next();
+    }
+
+    @Override
+    public Future<Boolean> onHasNext() {
+        return new ReadyFuture<>(hasNext());
+    }
+
+    @Override
+    public void cancel() {
+        for (AsyncIterator<KeyValue> range : active) {
+            range.cancel();
+        }
+    }
+
+    @Override
+    public void dispose() {
+        for (AsyncIterator<KeyValue> range : active) {
+            range.dispose();
+        }
+        active.clear();
+        current = null;
+        nextRange = splits.size() - 1;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private void finishRange(AsyncIterator<KeyValue> range) {
+        range.dispose();
+        active.remove(range);
+        if (current == range) {
+            current = null;
+        }
+        startRanges();
+    }
+
+    private void startRanges() {
+        while ((active.size() < parallelism) && (nextRange < splits.size() - 1)) {
+            AsyncIterator<KeyValue> range =
+                new FDBScanCommittingIterator(transaction,
+                                              KeySelector.firstGreaterOrEqual(splits.get(nextRange)),
+                                              KeySelector.firstGreaterOrEqual(splits.get(nextRange + 1)),
+                                              Transaction.ROW_LIMIT_UNLIMITED, false,
+                                              options);
+            // Get the first read going.
+            range.onHasNext();
+            active.addLast(range);
+            nextRange++;
+            SUB_RANGE_COUNT.hit();
+        }
+    }
+}
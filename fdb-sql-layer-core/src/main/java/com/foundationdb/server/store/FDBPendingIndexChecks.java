@@ -34,6 +34,7 @@ import com.foundationdb.server.error.ForeignKeyReferencingViolationException;
 import com.foundationdb.server.service.metrics.LongMetric;
 import com.foundationdb.server.service.session.Session;
 import com.foundationdb.KeyValue;
+import com.foundationdb.Transaction;
 import com.foundationdb.async.AsyncIterator;
 import com.foundationdb.async.Future;
 import com.foundationdb.tuple.ByteArrayUtil;
@@ -46,10 +47,14 @@ import org.slf4j.LoggerFactory;
 import java.sql.Types;
 import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 
 public class FDBPendingIndexChecks
 {
@@ -59,6 +64,8 @@ public class FDBPendingIndexChecks
         STATEMENT_WITH_RANGE_CACHE,
         DELAYED,
         DELAYED_WITH_RANGE_CACHE,
+        STATEMENT_BATCHED,
+        DELAYED_BATCHED,
         // For testing
         DELAYED_ALWAYS_UNTIL_COMMIT,
         DELAYED_WITH_RANGE_CACHE_ALWAYS_UNTIL_COMMIT
@@ -69,7 +76,12 @@ public class FDBPendingIndexChecks
         }
 
         public boolean isStatement() {
-            return (this == STATEMENT) || (this == STATEMENT_WITH_RANGE_CACHE);
+            return (this == STATEMENT) || (this == STATEMENT_WITH_RANGE_CACHE) || (this == STATEMENT_BATCHED);
+        }
+
+        /** Are uniqueness reads coalesced per index and issued together? */
+        public boolean isBatched() {
+            return (this == STATEMENT_BATCHED) || (this == DELAYED_BATCHED);
         }
 
         public boolean isTestOnly() {
@@ -272,6 +284,202 @@ public class FDBPendingIndexChecks
         }
     }
 
+    /** A uniqueness check whose read is issued later, together with
+     * the other checks on the same index, by {@link UniqueBatch}.
+     * The read is against the transaction's read version, so own
+     * writes known at the time of the check are recorded here.
+     */
+    static class BatchedKeyDoesNotExistCheck extends KeyDoesNotExistInIndexCheck {
+        final byte[] end;
+        final Boolean known;
+        final List<byte[]> ownClears;
+
+        public BatchedKeyDoesNotExistCheck(byte[] bkey, byte[] ekey, Boolean known, List<byte[]> ownClears) {
+            super(bkey, ekey);
+            this.end = (ekey != null) ? ekey : ByteArrayUtil.join(bkey, new byte[] { 0 });
+            this.known = known;
+            this.ownClears = ownClears;
+        }
+
+        public boolean needsQuery() {
+            return (known == null) && (value == null);
+        }
+
+        @Override
+        public void query(Session session, TransactionState txn, Index index) {
+            // Done for the whole batch by UniqueBatch.
+        }
+
+        @Override
+        public boolean isDone() {
+            return (known != null) || super.isDone();
+        }
+
+        @Override
+        public void blockUntilReady(TransactionState txn) {
+            if (known == null) {
+                super.blockUntilReady(txn);
+            }
+        }
+
+        @Override
+        public boolean check(Session session, TransactionState txn, Index index) {
+            if (known != null) {
+                return known;
+            }
+            @SuppressWarnings("unchecked")
+            List<KeyValue> kvs = (List<KeyValue>)getValue(session);
+            // The read covers at least this check's whole range; see UniqueBatch.query.
+            for (KeyValue kv : kvs) {
+                byte[] key = kv.getKey();
+                if (ByteArrayUtil.compareUnsigned(key, bkey) < 0) {
+                    continue;
+                }
+                if (ByteArrayUtil.compareUnsigned(key, end) >= 0) {
+                    break;
+                }
+                if (!isOwnClear(key)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        protected boolean isOwnClear(byte[] key) {
+            if (ownClears != null) {
+                for (byte[] clear : ownClears) {
+                    if (Arrays.equals(clear, key)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        protected int ownClearCount() {
+            return (ownClears == null) ? 0 : ownClears.size();
+        }
+    }
+
+    /** Uniqueness checks on one index waiting to be read as a batch, and this
+     * transaction's own writes to the index, which those reads do not see.
+     */
+    static class UniqueBatch {
+        protected final Index index;
+        protected final NavigableMap<byte[],Boolean> ownWrites = new TreeMap<>(UNSIGNED_ORDER);
+        protected boolean truncated;
+        protected List<BatchedKeyDoesNotExistCheck> unqueried = new ArrayList<>();
+
+        public UniqueBatch(Index index) {
+            this.index = index;
+        }
+
+        public void noteWrite(byte[] key, boolean present) {
+            ownWrites.put(key, present);
+        }
+
+        public void noteTruncate() {
+            ownWrites.clear();
+            truncated = true;
+        }
+
+        /** Make a check against what is known before writing the row's own entry. */
+        public BatchedKeyDoesNotExistCheck newCheck(byte[] bkey, byte[] ekey) {
+            if (ekey == null) {
+                Boolean present = ownWrites.get(bkey);
+                if (present != null) {
+                    return new BatchedKeyDoesNotExistCheck(bkey, null, !present, null);
+                }
+                return new BatchedKeyDoesNotExistCheck(bkey, null, truncated ? Boolean.TRUE : null, null);
+            }
+            List<byte[]> clears = null;
+            for (Map.Entry<byte[],Boolean> entry : ownWrites.subMap(bkey, true, ekey, false).entrySet()) {
+                if (entry.getValue()) {
+                    return new BatchedKeyDoesNotExistCheck(bkey, ekey, Boolean.FALSE, null);
+                }
+                if (clears == null) {
+                    clears = new ArrayList<>();
+                }
+                clears.add(entry.getKey());
+            }
+            return new BatchedKeyDoesNotExistCheck(bkey, ekey, truncated ? Boolean.TRUE : null, clears);
+        }
+
+        public void add(BatchedKeyDoesNotExistCheck check) {
+            if (check.needsQuery()) {
+                unqueried.add(check);
+            }
+        }
+
+        public int size() {
+            return unqueried.size();
+        }
+
+        /** Issue all the reads at once, without waiting; the usual check
+         * pass waits for them together. Checks whose ranges overlap or
+         * touch share a read. Separate ranges get separate reads, since a
+         * read spanning the gap could return any number of unrelated entries.
+         */
+        public void query(Session session, TransactionState txn) {
+            if (unqueried.isEmpty()) {
+                return;
+            }
+            Collections.sort(unqueried, new Comparator<BatchedKeyDoesNotExistCheck>() {
+                    @Override
+                    public int compare(BatchedKeyDoesNotExistCheck c1, BatchedKeyDoesNotExistCheck c2) {
+                        return ByteArrayUtil.compareUnsigned(c1.bkey, c2.bkey);
+                    }
+                });
+            Transaction reader = txn.getReadVersionTransaction();
+            Transaction tr = txn.getTransaction();
+            try {
+                int start = 0;
+                while (start < unqueried.size()) {
+                    BatchedKeyDoesNotExistCheck first = unqueried.get(start);
+                    byte[] end = first.end;
+                    int stop = start + 1;
+                    while ((stop < unqueried.size()) &&
+                           (ByteArrayUtil.compareUnsigned(unqueried.get(stop).bkey, end) <= 0)) {
+                        if (ByteArrayUtil.compareUnsigned(unqueried.get(stop).end, end) > 0) {
+                            end = unqueried.get(stop).end;
+                        }
+                        stop++;
+                    }
+                    List<BatchedKeyDoesNotExistCheck> run = unqueried.subList(start, stop);
+                    // A single check is decided by one entry beyond its own clears.
+                    // Merged ranges hold nothing but checked keys, which a unique index
+                    // has few of, so read them whole rather than risk stopping short.
+                    int limit = (run.size() == 1) ? first.ownClearCount() + 1 : Transaction.ROW_LIMIT_UNLIMITED;
+                    for (BatchedKeyDoesNotExistCheck check : run) {
+                        // The reader does not conflict; the real transaction does.
+                        tr.addReadConflictRange(check.bkey, check.end);
+                    }
+                    Future<List<KeyValue>> value = reader.getRange(first.bkey, end, limit).asList();
+                    for (BatchedKeyDoesNotExistCheck check : run) {
+                        check.value = value;
+                    }
+                    start = stop;
+                }
+            } catch (RuntimeException e) {
+                throw FDBAdapter.wrapFDBException(session, e);
+            }
+            unqueried.clear();
+        }
+
+        public void clear() {
+            ownWrites.clear();
+            truncated = false;
+            unqueried.clear();
+        }
+    }
+
+    static final Comparator<byte[]> UNSIGNED_ORDER = new Comparator<byte[]>() {
+            @Override
+            public int compare(byte[] b1, byte[] b2) {
+                return ByteArrayUtil.compareUnsigned(b1, b2);
+            }
+        };
+
     static enum DeferredForeignKey {
         IMMEDIATE,
         DEFERRABLE_STATEMENT, DEFERRABLE_TRANSACTION,
@@ -513,7 +721,10 @@ public class FDBPendingIndexChecks
     }
 
     private static final Logger LOG = LoggerFactory.getLogger(FDBPendingIndexChecks.class);
+    /** Unique checks on one index to accumulate before issuing their reads. */
+    static final int BATCH_SIZE = 1000;
     private final Map<Index,PendingChecks> pending = new HashMap<>();
+    private final Map<Index,UniqueBatch> batches = new HashMap<>();
     private final CheckTime checkTime;
     private final LongMetric metric;
 
@@ -526,6 +737,29 @@ public class FDBPendingIndexChecks
         return checkTime.isDelayed();
     }
 
+    public boolean isBatched() {
+        return checkTime.isBatched();
+    }
+
+    protected UniqueBatch getBatch(Index index) {
+        UniqueBatch batch = batches.get(index);
+        if (batch == null) {
+            batch = new UniqueBatch(index);
+            batches.put(index, batch);
+        }
+        return batch;
+    }
+
+    /** Record a write (<code>present</code>) or clear of a unique index entry by this transaction. */
+    public void noteIndexWrite(Index index, byte[] key, boolean present) {
+        getBatch(index).noteWrite(key, present);
+    }
+
+    /** Record that this transaction removed all entries of a unique index. */
+    public void noteIndexTruncate(Index index) {
+        getBatch(index).noteTruncate();
+    }
+
     public static PendingCheck<?> keyDoesNotExistInIndexCheck(Session session, TransactionState txn,
                                                               Index index, Key key) {
 
@@ -560,6 +794,11 @@ public class FDBPendingIndexChecks
         if (key.getDepth() < index.getAllColumns().size()) {
             ekey = FDBStoreDataHelper.packedTuple(index, key, Key.AFTER);
         }
+        if ((indexChecks != null) && indexChecks.isBatched() &&
+            !txn.getForceImmediateForeignKeyCheck()) {
+            // Read later with others, by add().
+            return indexChecks.getBatch(index).newCheck(bkey, ekey);
+        }
         PendingCheck<?> check = new KeyDoesNotExistInIndexCheck(bkey, ekey);
         check.query(session, txn, index);
         return check;
@@ -611,12 +850,24 @@ public class FDBPendingIndexChecks
         }
         checks.add(check);
         metric.increment();
+        if (check instanceof BatchedKeyDoesNotExistCheck) {
+            UniqueBatch batch = getBatch(index);
+            batch.add((BatchedKeyDoesNotExistCheck)check);
+            if (batch.size() >= BATCH_SIZE) {
+                batch.query(session, txn);
+            }
+        }
     }
     
     protected void performChecks(Session session, TransactionState txn, CheckPass pass) {
         if (checkTime.isTestOnly() && (pass != CheckPass.TRANSACTION))
             // Special test-only mode to avoid unpredictable timing.
             return;
+        if (pass != CheckPass.ROW) {
+            for (UniqueBatch batch : batches.values()) {
+                batch.query(session, txn);
+            }
+        }
         int count = 0;
         for (PendingChecks checks : pending.values()) {
             Iterator<PendingCheck<?>> iter = checks.getPending().iterator();
@@ -663,6 +914,9 @@ public class FDBPendingIndexChecks
             count += checks.size();
             checks.clear();
         }
+        for (UniqueBatch batch : batches.values()) {
+            batch.clear();
+        }
         if (count > 0) {
             metric.increment(- count);
         }
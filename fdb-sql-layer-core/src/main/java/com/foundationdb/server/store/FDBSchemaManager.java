@@ -58,9 +58,12 @@ import com.foundationdb.server.service.transaction.TransactionService;
 import com.foundationdb.server.store.FDBTransactionService.TransactionState;
 import com.foundationdb.server.store.TableChanges.ChangeSet;
 import com.foundationdb.server.store.format.FDBStorageFormatRegistry;
+import com.foundationdb.FDBException;
 import com.foundationdb.KeyValue;
 import com.foundationdb.Range;
 import com.foundationdb.Transaction;
+import com.foundationdb.async.Function;
+import com.foundationdb.async.Future;
 import com.foundationdb.server.types.service.TypesRegistryService;
 import com.foundationdb.subspace.Subspace;
 import com.foundationdb.tuple.ByteArrayUtil;
@@ -72,6 +75,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -91,6 +95,11 @@ import java.util.concurrent.Callable;
  *       id/
  *         dml/
  *           tid/           => hKeys of concurrent DML
+ *         build/
+ *           tid/
+ *             splits       => long   (number of hKey splits)
+ *             split,n      => byte[] (first hKey of range n+1)
+ *             done,n       => empty  (range n is built)
  *         protobuf/
  *           schema_name    => byte[] (AIS Protobuf)
  *         changes/
@@ -108,6 +117,8 @@ import java.util.concurrent.Callable;
  * Transactional Reasoning:
  * <ul>
  *     <li>All consumers of getAis() do a full read of the generation key to determine the proper version.</li>
+ *     <li>With {@link #GENERATION_WATCH_PROP}, a watch keeps the generation cached instead. Consumers matching it
+ *         issue a snapshot read and only add the key's read conflict and check the value when they commit.</li>
  *     <li>All DDL executors increment the generation while making the AIS changes</li>
  *     <li>Whenever a new AIS is read, the name generator and table version map is re-set</li>
  *     <li>Since there can be exactly one change to the generation at a time, all generated names and ids will be unique</li>
@@ -118,6 +129,7 @@ public class FDBSchemaManager extends AbstractSchemaManager implements Service,
     private static final Logger LOG = LoggerFactory.getLogger(FDBSchemaManager.class);
 
     static final String CLEAR_INCOMPATIBLE_DATA_PROP = "fdbsql.fdb.clear_incompatible_data";
+    static final String GENERATION_WATCH_PROP = "fdbsql.fdb.generation_watch";
     static final String EXTERNAL_CLEAR_MSG = "SQL Layer metadata has been externally modified. Restart required.";
     static final String EXTERNAL_VER_CHANGE_MSG = "SQL Layer version has been changed from another node.";
 
@@ -126,11 +138,15 @@ public class FDBSchemaManager extends AbstractSchemaManager implements Service,
     private static final List<String> ONLINE_PATH = Arrays.asList("online");
     private static final List<String> CHANGES_PATH = Arrays.asList("changes");
     private static final List<String> DML_PATH = Arrays.asList("dml");
+    private static final List<String> BUILD_PATH = Arrays.asList("build");
     private static final String GENERATION_KEY = "generation";
     private static final String DATA_VERSION_KEY = "dataVersion";
     private static final String META_VERSION_KEY = "metaDataVersion";
     private static final String ONLINE_SESSION_KEY = "onlineSession";
     private static final String ERROR_KEY = "error";
+    private static final String SPLITS_KEY = "splits";
+    private static final String SPLIT_KEY = "split";
+    private static final String DONE_KEY = "done";
 
     /**
      * 1) Initial
@@ -156,6 +172,9 @@ public class FDBSchemaManager extends AbstractSchemaManager implements Service,
 
     private static final Session.Key<AkibanInformationSchema> SESSION_AIS_KEY = Session.Key.named("AIS_KEY");
     private static final AkibanInformationSchema SENTINEL_AIS = new AkibanInformationSchema(Integer.MIN_VALUE);
+    private static final long UNKNOWN_GENERATION = -1;
+    private static final long WATCH_RETRY_MILLIS = 1000;
+    private static final int NOT_COMMITTED_CODE = 1020;
 
     private final FDBHolder holder;
     private final FDBTransactionService txnService;
@@ -172,6 +191,8 @@ public class FDBSchemaManager extends AbstractSchemaManager implements Service,
     private AkibanInformationSchema curAIS;
     private NameGenerator nameGenerator;
     private AkibanInformationSchema virtualTableAIS;
+    private GenerationWatcher generationWatcher;
+    private volatile long watchedGeneration = UNKNOWN_GENERATION;
 
 
     @Inject
@@ -205,7 +226,7 @@ public class FDBSchemaManager extends AbstractSchemaManager implements Service,
 
         initSchemaManagerDirectory();
         this.virtualTableAIS = new AkibanInformationSchema();
-        this.tableStatusCache = new FDBTableStatusCache(holder, txnService);
+        this.tableStatusCache = new FDBTableStatusCache(holder, txnService, config);
 
         try(Session session = sessionService.createSession()) {
             txnService.run(session, new Runnable() {
@@ -251,10 +272,20 @@ public class FDBSchemaManager extends AbstractSchemaManager implements Service,
         listenerService.registerTableListener(this);
 
         registerSystemTables();
+
+        if(Boolean.parseBoolean(config.getProperty(GENERATION_WATCH_PROP))) {
+            generationWatcher = new GenerationWatcher();
+            generationWatcher.start();
+        }
     }
 
     @Override
     public void stop() {
+        if(generationWatcher != null) {
+            generationWatcher.shutdown();
+            generationWatcher = null;
+        }
+        this.watchedGeneration = UNKNOWN_GENERATION;
         listenerService.deregisterTableListener(this);
         super.stop();
         this.tableStatusCache = null;
@@ -524,8 +555,14 @@ public class FDBSchemaManager extends AbstractSchemaManager implements Service,
             return localAIS;
         }
         TransactionState txn = txnService.getTransaction(session);
-        long generation = getTransactionalGeneration(txn);
         localAIS = curAIS;
+        long watched = watchedGeneration;
+        if((watched != UNKNOWN_GENERATION) && (watched == localAIS.getGeneration())) {
+            validateGenerationAtCommit(session, txn, localAIS.getGeneration());
+            attachToSession(session, localAIS);
+            return localAIS;
+        }
+        long generation = getTransactionalGeneration(txn);
         if(generation != localAIS.getGeneration()) {
             synchronized(AIS_LOCK) {
                 // May have been waiting
@@ -628,6 +665,57 @@ public class FDBSchemaManager extends AbstractSchemaManager implements Service,
         txn.setBytes(packedKey, new byte[0]);
     }
 
+    @Override
+    public List<byte[]> getOnlineBuildSplits(Session session, int tableID) {
+        OnlineSession onlineSession = getOnlineSession(session, true);
+        TransactionState txn = txnService.getTransaction(session);
+        DirectorySubspace dir = getOnlineBuildDir(txn, onlineSession.id, tableID);
+        byte[] countBytes = txn.getValue(dir.pack(SPLITS_KEY));
+        if(countBytes == null) {
+            return null;
+        }
+        long count = Tuple2.fromBytes(countBytes).getLong(0);
+        List<byte[]> splits = new ArrayList<>();
+        for(KeyValue kv : txn.getRangeAsValueList(dir.pack(Tuple2.from(SPLIT_KEY)),
+                                                  ByteArrayUtil.strinc(dir.pack(Tuple2.from(SPLIT_KEY))))) {
+            splits.add(kv.getValue());
+        }
+        assert splits.size() == count : splits.size() + " vs " + count;
+        return splits;
+    }
+
+    @Override
+    public void setOnlineBuildSplits(Session session, int tableID, List<byte[]> splits) {
+        OnlineSession onlineSession = getOnlineSession(session, true);
+        TransactionState txn = txnService.getTransaction(session);
+        DirectorySubspace dir = getOnlineBuildDir(txn, onlineSession.id, tableID);
+        txn.setBytes(dir.pack(SPLITS_KEY), Tuple2.from(splits.size()).pack());
+        for(int i = 0; i < splits.size(); ++i) {
+            txn.setBytes(dir.pack(Tuple2.from(SPLIT_KEY, i)), splits.get(i));
+        }
+    }
+
+    @Override
+    public void addOnlineBuildCompletedRange(Session session, int tableID, int range) {
+        OnlineSession onlineSession = getOnlineSession(session, true);
+        TransactionState txn = txnService.getTransaction(session);
+        DirectorySubspace dir = getOnlineBuildDir(txn, onlineSession.id, tableID);
+        txn.setBytes(dir.pack(Tuple2.from(DONE_KEY, range)), new byte[0]);
+    }
+
+    @Override
+    public Set<Integer> getOnlineBuildCompletedRanges(Session session, int tableID) {
+        OnlineSession onlineSession = getOnlineSession(session, true);
+        TransactionState txn = txnService.getTransaction(session);
+        DirectorySubspace dir = getOnlineBuildDir(txn, onlineSession.id, tableID);
+        byte[] prefix = dir.pack(Tuple2.from(DONE_KEY));
+        Set<Integer> completed = new TreeSet<>();
+        for(KeyValue kv : txn.getRangeAsValueList(prefix, ByteArrayUtil.strinc(prefix))) {
+            completed.add((int)dir.unpack(kv.getKey()).getLong(1));
+        }
+        return completed;
+    }
+
     @Override
     public void setOnlineDMLError(Session session, int tableID, String message) {
         AkibanInformationSchema ais = getAis(session);
@@ -911,6 +999,28 @@ public class FDBSchemaManager extends AbstractSchemaManager implements Service,
         return Tuple2.fromBytes(packedGen).getLong(0);
     }
 
+    /**
+     * Check {@code generation} against a snapshot read of the generation key, issued now but only waited on
+     * when committing. The read conflict is also added then, so a concurrent DDL still fails this transaction.
+     */
+    private void validateGenerationAtCommit(Session session, TransactionState txn, final long generation) {
+        final Future<byte[]> snapshotGen = txn.getSnapshotFuture(packedGenKey);
+        txnService.addCallback(session, TransactionService.CallbackType.PRE_COMMIT, new TransactionService.Callback() {
+            @Override
+            public void run(Session session, long timestamp) {
+                txnService.getTransaction(session).getTransaction().addReadConflictKey(packedGenKey);
+                byte[] packedGen = snapshotGen.get();
+                if(packedGen == null) {
+                    throw new FDBAdapterException(EXTERNAL_CLEAR_MSG);
+                }
+                if(Tuple2.fromBytes(packedGen).getLong(0) != generation) {
+                    // Retryable, next attempt will see the new generation
+                    throw new FDBException("AIS generation changed", NOT_COMMITTED_CODE);
+                }
+            }
+        });
+    }
+
     private void mergeNewAIS(Session session, AkibanInformationSchema newAIS) {
         OnlineCache onlineCache = getOnlineCache(session, newAIS);
         nameGenerator.mergeAIS(newAIS);
@@ -941,6 +1051,15 @@ public class FDBSchemaManager extends AbstractSchemaManager implements Service,
         }
     }
 
+    private DirectorySubspace getOnlineBuildDir(TransactionState txn, long onlineID, int tableID) {
+        try {
+            // Create on demand
+            return getOnlineDir(txn, onlineID).createOrOpen(txn.getTransaction(), PathUtil.extend(BUILD_PATH, String.valueOf(tableID))).get();
+        } catch (RuntimeException e) {
+            throw FDBAdapter.wrapFDBException(txn.session, e);
+        }
+    }
+
     private DirectorySubspace getOnlineTableDMLDir(TransactionState txn, long onlineID, int tableID) {
         try {
             // Create on demand
@@ -966,6 +1085,10 @@ public class FDBSchemaManager extends AbstractSchemaManager implements Service,
         return packedMetaVerKey;
     }
 
+    long getWatchedGeneration() {
+        return watchedGeneration;
+    }
+
     //
     // Static helpers
     //
@@ -1026,6 +1149,64 @@ public class FDBSchemaManager extends AbstractSchemaManager implements Service,
         }
     }
 
+    /** Keeps {@link #watchedGeneration} equal to the stored generation, or unknown while it may be stale. */
+    private class GenerationWatcher extends Thread {
+        private volatile boolean running = true;
+        private volatile Future<Void> watch;
+
+        public GenerationWatcher() {
+            super("GENERATION_WATCH");
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while(running) {
+                try {
+                    watchedGeneration = holder.getDatabase().run(new Function<Transaction,Long>() {
+                        @Override
+                        public Long apply(Transaction tr) {
+                            byte[] packedGen = tr.get(packedGenKey).get();
+                            if(packedGen == null) {
+                                throw new FDBAdapterException(EXTERNAL_CLEAR_MSG);
+                            }
+                            watch = tr.watch(packedGenKey);
+                            return Tuple2.fromBytes(packedGen).getLong(0);
+                        }
+                    });
+                    LOG.debug("Watching generation {}", watchedGeneration);
+                    watch.get();
+                    watchedGeneration = UNKNOWN_GENERATION;
+                } catch(RuntimeException e) {
+                    watchedGeneration = UNKNOWN_GENERATION;
+                    if(!running) {
+                        break;
+                    }
+                    LOG.warn("Generation watch failed, retrying", e);
+                    try {
+                        Thread.sleep(WATCH_RETRY_MILLIS);
+                    } catch(InterruptedException ie) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        public void shutdown() {
+            running = false;
+            Future<Void> w = watch;
+            if(w != null) {
+                w.cancel();
+            }
+            interrupt();
+            try {
+                join(WATCH_RETRY_MILLIS);
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     private static final TransactionService.Callback CLEAR_SESSION_KEY_CALLBACK = new TransactionService.Callback() {
         @Override
         public void run(Session session, long timestamp) {
@@ -70,6 +70,7 @@ import com.foundationdb.server.types.aksql.aktypes.AkBlob;
 import com.foundationdb.server.types.aksql.aktypes.AkGUID;
 import com.foundationdb.server.types.service.TypesRegistryService;
 import com.foundationdb.server.util.ReadWriteMap;
+import com.foundationdb.tuple.ByteArrayUtil;
 import com.foundationdb.tuple.Tuple2;
 import com.foundationdb.tuple.Tuple;
 import com.google.inject.Inject;
@@ -77,6 +78,8 @@ import com.persistit.Key;
 import com.persistit.Persistit;
 import com.persistit.Value;
 
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -210,7 +213,7 @@ public class FDBStore extends AbstractStore<FDBStore,FDBStoreData,FDBStorageDesc
         boolean withConcurrentDML = Boolean.parseBoolean(configService.getProperty(FEATURE_DDL_WITH_DML_PROP));
         this.sequenceCacheSize = Integer.parseInt(configService.getProperty(CONFIG_SEQUENCE_CACHE_SIZE));
         this.constraintHandler = new FDBConstraintHandler(this, configService, typesRegistryService, serviceManager, txnService);
-        this.onlineHelper = new OnlineHelper(txnService, schemaManager, this, typesRegistryService, constraintHandler, withConcurrentDML);
+        this.onlineHelper = createOnlineHelper(configService, withConcurrentDML);
         listenerService.registerRowListener(onlineHelper);
     }
 
@@ -342,7 +345,7 @@ public class FDBStore extends AbstractStore<FDBStore,FDBStoreData,FDBStorageDesc
 
         byte[] packedKey = packedTuple(index, indexKey);
         txn.setBytes(packedKey, EMPTY_BYTE_ARRAY);
-        
+        noteUniqueIndexWrite(txn, index, packedKey, true);
     }
     
     @Override
@@ -353,6 +356,7 @@ public class FDBStore extends AbstractStore<FDBStore,FDBStoreData,FDBStorageDesc
         constructIndexRow(session, indexKey, row, index, hKey, indexRow, spatialColumnHandler, zValue, false);
         byte[] packed = packedTuple(index, indexKey);
         txn.clearKey(packed);
+        noteUniqueIndexWrite(txn, index, packed, false);
     }
     
     @Override
@@ -375,6 +379,11 @@ public class FDBStore extends AbstractStore<FDBStore,FDBStoreData,FDBStorageDesc
     public void truncateTree(Session session, HasStorage object) {
         TransactionState txn = txnService.getTransaction(session);
         txn.clearRange(Range.startsWith(prefixBytes(object)));
+        FDBPendingIndexChecks indexChecks = txn.getIndexChecks(false);
+        if ((indexChecks != null) && indexChecks.isBatched() &&
+            (object instanceof Index) && ((Index)object).isUnique()) {
+            indexChecks.noteIndexTruncate((Index)object);
+        }
     }
 
     @Override
@@ -682,6 +691,15 @@ public class FDBStore extends AbstractStore<FDBStore,FDBStoreData,FDBStorageDesc
                 }
                 BlobRef.LeadingBitState state;
                 BlobRef.LobType type;
+                if (blobRefInit.isStreamable()) {
+                    // Unchanged long lob read in unwrapped mode; relink by id without reading it.
+                    BlobRef blobRef = new BlobRef(updateValue(blobRefInit.getId()), BlobRef.LeadingBitState.YES,
+                                                  BlobRef.LobType.LONG_LOB, BlobRef.LobType.UNKNOWN);
+                    lobService.linkTableBlob(session, blobRef.getId(), tableId);
+                    resRow.overlay(i, blobRef);
+                    changedRow = true;
+                    continue;
+                }
                 byte[] value = blobRefInit.getValue();
                 
                 // The contract: 
@@ -783,6 +801,27 @@ public class FDBStore extends AbstractStore<FDBStore,FDBStoreData,FDBStorageDesc
         }
     }
     
+    /** Content of a long lob, read from the {@link LobService} only when used. */
+    public BlobRef.Content getBlobContent(final Session session, final UUID lobId) {
+        return new BlobRef.Content() {
+            @Override
+            public long size() {
+                return lobService.sizeBlob(session, lobId);
+            }
+
+            @Override
+            public byte[] read() {
+                byte[] data = lobService.readBlob(session, lobId);
+                return (data != null) ? data : new byte[0];
+            }
+
+            @Override
+            public InputStream openStream() {
+                return lobService.openBlobStream(session, lobId, 0);
+            }
+        };
+    }
+
     public boolean isBlobReturnModeUnwrapped() {
         return configService.getProperty(AkBlob.RETURN_UNWRAPPED).equalsIgnoreCase(AkBlob.UNWRAPPED) ? true : false;
     }
@@ -850,6 +889,36 @@ public class FDBStore extends AbstractStore<FDBStore,FDBStoreData,FDBStorageDesc
         return txnService.getTransaction(session);
     }
 
+    /** Split at shard boundaries, each moved forward to the next row so it decodes as an hKey. */
+    @Override
+    public List<byte[]> getGroupSplits(Session session, Group group, int maxRanges) {
+        FDBStoreData storeData = createStoreData(session, group);
+        TransactionState txn = getTransaction(session, storeData);
+        byte[] begin = prefixBytes(storeData);
+        byte[] end = ByteArrayUtil.strinc(begin);
+        List<byte[]> boundaries = FDBParallelRangeIterator.shardSplits(txn, begin, end, maxRanges);
+        List<byte[]> splits = new ArrayList<>();
+        try {
+            // First and last are the range itself
+            for(byte[] boundary : boundaries.subList(1, boundaries.size() - 1)) {
+                byte[] rowKey = txn.getTransaction().getKey(KeySelector.firstGreaterOrEqual(boundary)).get();
+                if(ByteArrayUtil.compareUnsigned(rowKey, end) >= 0) {
+                    break;
+                }
+                storeData.rawKey = rowKey;
+                unpackKey(storeData);
+                byte[] hKey = Arrays.copyOf(storeData.persistitKey.getEncodedBytes(),
+                                            storeData.persistitKey.getEncodedSize());
+                if(splits.isEmpty() || !Arrays.equals(hKey, splits.get(splits.size() - 1))) {
+                    splits.add(hKey);
+                }
+            }
+        } catch(RuntimeException e) {
+            throw FDBAdapter.wrapFDBException(session, e);
+        }
+        return splits;
+    }
+
     public enum GroupIteratorBoundary { 
         START, END, KEY, NEXT_KEY, 
         FIRST_DESCENDANT, LAST_DESCENDANT
@@ -877,12 +946,30 @@ public class FDBStore extends AbstractStore<FDBStore,FDBStoreData,FDBStorageDesc
                       Transaction.ROW_LIMIT_UNLIMITED, transactionOptions);
     }
 
+    /** Iterate from <code>storeData.persistitKey</code> to the end of the group. */
+    public void groupIteratorFrom(Session session, FDBStoreData storeData, FDBScanTransactionOptions transactionOptions) {
+        groupIterator(session, storeData,
+                      GroupIteratorBoundary.KEY, GroupIteratorBoundary.END,
+                      Transaction.ROW_LIMIT_UNLIMITED, transactionOptions);
+    }
+
     public void groupIterator(Session session, FDBStoreData storeData, FDBScanTransactionOptions transactionOptions) {
         groupIterator(session, storeData, 
                       GroupIteratorBoundary.START, GroupIteratorBoundary.END, 
                       Transaction.ROW_LIMIT_UNLIMITED, transactionOptions);
     }
 
+    /** Iterate over the whole group, reading sub-ranges concurrently.
+     * @param ordered Return rows in hkey order.
+     */
+    public void parallelGroupIterator(Session session, FDBStoreData storeData,
+                                      int parallelism, boolean ordered,
+                                      FDBScanTransactionOptions transactionOptions) {
+        storeData.storageDescription.parallelGroupIterator(this, session, storeData,
+                                                           parallelism, ordered,
+                                                           transactionOptions);
+    }
+
     public void groupIterator(Session session, FDBStoreData storeData,
                               GroupIteratorBoundary left, GroupIteratorBoundary right,
                               int limit, FDBScanTransactionOptions transactionOptions) {
@@ -937,6 +1024,14 @@ public class FDBStore extends AbstractStore<FDBStore,FDBStoreData,FDBStorageDesc
         
     }
 
+    /** Batched uniqueness reads do not see this transaction's writes, so track them. */
+    private static void noteUniqueIndexWrite(TransactionState txn, Index index, byte[] key, boolean present) {
+        FDBPendingIndexChecks indexChecks = txn.getIndexChecks(false);
+        if ((indexChecks != null) && indexChecks.isBatched() && index.isUnique()) {
+            indexChecks.noteIndexWrite(index, key, present);
+        }
+    }
+
     private void checkKeyDoesNotExistInIndex(Session session, TransactionState txn, Row row, Index index, Key key) {
         assert index.isUnique() : index;
         FDBPendingIndexChecks.PendingCheck<?> check =
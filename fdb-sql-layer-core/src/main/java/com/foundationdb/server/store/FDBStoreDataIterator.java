@@ -23,6 +23,8 @@
  */
 package com.foundationdb.server.store;
 
+import com.foundationdb.qp.operator.OperatorProfile;
+
 import java.util.Iterator;
 
 /**
@@ -36,9 +38,12 @@ import java.util.Iterator;
  */
 public abstract class FDBStoreDataIterator implements Iterator<Void> {
     protected final FDBStoreData storeData;
+    /** Set while profiling, to charge reads to the running operator. */
+    protected final OperatorProfile profile;
 
     public FDBStoreDataIterator(FDBStoreData storeData) {
         this.storeData = storeData;
+        this.profile = OperatorProfile.get(storeData.session);
     }
 
     @Override
@@ -43,6 +43,7 @@ public class
     private static final InOutTap TAP_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: FDB Value Iterator");
     private static final InOutTap TAP_HAS_NEXT = OPERATOR_TAP.createSubsidiaryTap("operator: FDB Value hasNext"); 
     private static final boolean TAP_NEXT_ENABLED = Debug.isOn("tap_next");;
+    private boolean waited;
 
     public FDBStoreDataKeyValueIterator(FDBStoreData storeData,
                                         AsyncIterator<KeyValue> underlying) {
@@ -56,6 +57,9 @@ public class
             TAP_HAS_NEXT.in();
         }
         try {
+            if ((profile != null) && !waited) {
+                waited = !underlying.onHasNext().isDone();
+            }
             return underlying.hasNext();
         } catch (RuntimeException e) {
             throw FDBAdapter.wrapFDBException(storeData.session, e);
@@ -75,6 +79,10 @@ public class
             KeyValue kv = underlying.next();
             storeData.rawKey = kv.getKey();
             storeData.rawValue = kv.getValue();
+            if (profile != null) {
+                profile.storeRead(storeData.rawKey.length + storeData.rawValue.length, waited);
+                waited = false;
+            }
             return null;
         } catch (RuntimeException e) {
             throw FDBAdapter.wrapFDBException(storeData.session, e);
@@ -35,6 +35,7 @@ public class FDBStoreDataSingleKeyValueIterator extends FDBStoreDataIterator
     private final byte[] key;
     private Future<byte[]> futureValue;
     private byte[] value;
+    private boolean waited;
 
     public FDBStoreDataSingleKeyValueIterator(FDBStoreData storeData,
                                               byte[] key,
@@ -50,6 +51,9 @@ public class FDBStoreDataSingleKeyValueIterator extends FDBStoreDataIterator
             return false;
         }
         try {
+            if (profile != null) {
+                waited = !futureValue.isDone();
+            }
             value = futureValue.get();
         } catch (RuntimeException e) {
             throw FDBAdapter.wrapFDBException(storeData.session, e);
@@ -62,6 +66,9 @@ public class FDBStoreDataSingleKeyValueIterator extends FDBStoreDataIterator
     public Void next() {
         storeData.rawKey = key;
         storeData.rawValue = value;
+        if (profile != null) {
+            profile.storeRead(key.length + value.length, waited);
+        }
         return null;
     }
 
@@ -119,6 +119,7 @@ public class FDBTransactionService implements TransactionService {
     public class TransactionState {
         final Transaction transaction;
         final Session session;
+        Transaction readVersionTransaction;
         FDBPendingIndexChecks indexChecks;
         long startTime;
         long bytesSet;
@@ -145,6 +146,30 @@ public class FDBTransactionService implements TransactionService {
             return session;
         }
 
+        /**
+         * A transaction at this one's read version that does not see its writes.
+         * Only for reading; it is never committed.
+         */
+        public Transaction getReadVersionTransaction() {
+            if (readVersionTransaction == null) {
+                try {
+                    Transaction tr = createTransaction();
+                    tr.setReadVersion(transaction.getReadVersion().get());
+                    readVersionTransaction = tr;
+                } catch (RuntimeException e) {
+                    throw FDBAdapter.wrapFDBException(session, e);
+                }
+            }
+            return readVersionTransaction;
+        }
+
+        void disposeReadVersionTransaction() {
+            if (readVersionTransaction != null) {
+                readVersionTransaction.dispose();
+                readVersionTransaction = null;
+            }
+        }
+
         public long getStartTime() {
             return startTime;
         }
@@ -312,6 +337,7 @@ public class FDBTransactionService implements TransactionService {
             this.forceImmediateForeignKeyCheck = false;
             if (indexChecks != null)
                 indexChecks.clear();
+            disposeReadVersionTransaction();
             resetCount++;
         }
 
@@ -787,6 +813,7 @@ public class FDBTransactionService implements TransactionService {
                 TransactionState sessionTxn = session.remove(TXN_KEY);
                 assert sessionTxn == txn;
                 if(txn != null) {
+                    txn.disposeReadVersionTransaction();
                     txn.getTransaction().dispose();
                 }
             }
@@ -0,0 +1,315 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.store;
+
+import com.foundationdb.server.error.MemoryStoreIOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Durability for a {@link MemoryVersionedKV}: a {@link MemoryWriteAheadLog} of every commit and periodic
+ * checkpoints of a complete snapshot, after which older log files are discarded.
+ *
+ * <p>
+ * A checkpoint is a directory, {@code checkpoint-<version>}, of key ordered segment files:
+ * <pre>
+ *     ([int key length][key][int value length][value])* [int entry count][int crc32][int magic]
+ * </pre>
+ * It is written under a temporary name and renamed once synced, so one is either complete or ignored.
+ * Recovery memory maps the segments of the newest checkpoint and then replays the log after its version.
+ * </p>
+ */
+class MemoryPersistence
+{
+    private static final Logger LOG = LoggerFactory.getLogger(MemoryPersistence.class);
+
+    private static final String CHECKPOINT_PREFIX = "checkpoint-";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final int SEGMENT_MAGIC = 0x4D454D31;
+    private static final int TRAILER_SIZE = 12;
+    private static final int CRC_CHUNK_SIZE = 65536;
+
+    private final File dir;
+    private final long checkpointMillis;
+    private final long segmentBytes;
+    private final Object checkpointLock = new Object();
+    private MemoryVersionedKV db;
+    private MemoryWriteAheadLog log;
+    private Thread checkpointThread;
+    private volatile boolean running;
+    private long checkpointVersion = -1;
+
+    public MemoryPersistence(File dir, long checkpointMillis, long segmentBytes) {
+        this.dir = dir;
+        this.checkpointMillis = checkpointMillis;
+        this.segmentBytes = segmentBytes;
+    }
+
+    /** Load {@code db}, which must be empty, from disk and then log every commit made to it. */
+    public void open(MemoryVersionedKV db) {
+        if(!dir.isDirectory() && !dir.mkdirs()) {
+            throw new MemoryStoreIOException("Could not create directory " + dir);
+        }
+        for(File tmp : listCheckpoints(true)) {
+            deleteRecursively(tmp);
+        }
+        long version = 0;
+        File[] checkpoints = listCheckpoints(false);
+        if(checkpoints.length > 0) {
+            File latest = checkpoints[checkpoints.length - 1];
+            version = checkpointVersion(latest);
+            loadCheckpoint(latest, version, db);
+            checkpointVersion = version;
+        }
+        long lastVersion = MemoryWriteAheadLog.replay(dir, version, db);
+        db.restoreVersion(lastVersion);
+        LOG.info("Recovered {} at version {} (checkpoint {})", dir, lastVersion, version);
+
+        this.db = db;
+        this.log = new MemoryWriteAheadLog(dir, lastVersion + 1);
+        db.setCommitLog(log);
+        running = true;
+        if(checkpointMillis > 0) {
+            checkpointThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runCheckpoints();
+                }
+            }, "MEMORY_CHECKPOINT");
+            checkpointThread.setDaemon(true);
+            checkpointThread.start();
+        }
+    }
+
+    /** Stop logging, after a final checkpoint if {@code checkpoint}. */
+    public void close(boolean checkpoint) {
+        running = false;
+        if(checkpointThread != null) {
+            checkpointThread.interrupt();
+            try {
+                checkpointThread.join();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            checkpointThread = null;
+        }
+        try {
+            if(checkpoint) {
+                checkpoint();
+            }
+        } finally {
+            db.setCommitLog(null);
+            log.close();
+        }
+    }
+
+    /** Write a checkpoint of the current version, if not already present, and discard what it replaces. */
+    public void checkpoint() {
+        synchronized(checkpointLock) {
+            if(db.getCommittedVersion() == checkpointVersion) {
+                return;
+            }
+            Object owner = new Object();
+            long version = db.openCheckpoint(owner);
+            try {
+                File tmp = new File(dir, checkpointName(version) + TMP_SUFFIX);
+                writeSegments(tmp, db.getAll(version));
+                File complete = new File(dir, checkpointName(version));
+                if(!tmp.renameTo(complete)) {
+                    throw new MemoryStoreIOException("Could not rename " + tmp + " to " + complete);
+                }
+                syncDirectory(dir);
+            } catch(IOException e) {
+                throw new MemoryStoreIOException(e);
+            } finally {
+                db.closeSnapshot(owner);
+            }
+            checkpointVersion = version;
+            MemoryWriteAheadLog.deleteThrough(dir, version);
+            for(File prev : listCheckpoints(false)) {
+                if(checkpointVersion(prev) < version) {
+                    deleteRecursively(prev);
+                }
+            }
+            LOG.debug("Checkpoint at version {}", version);
+        }
+    }
+
+    //
+    // Internal
+    //
+
+    private void runCheckpoints() {
+        while(running) {
+            try {
+                Thread.sleep(checkpointMillis);
+            } catch(InterruptedException e) {
+                break;
+            }
+            try {
+                checkpoint();
+            } catch(RuntimeException e) {
+                LOG.error("Checkpoint failed", e);
+            }
+        }
+    }
+
+    private void writeSegments(File checkpoint, Iterator<Entry<byte[],byte[]>> it) throws IOException {
+        if(!checkpoint.mkdir()) {
+            throw new IOException("Could not create directory " + checkpoint);
+        }
+        int segment = 0;
+        // Always at least one, so an empty store still has a valid checkpoint
+        do {
+            File file = new File(checkpoint, String.format("%s%06d%s", SEGMENT_PREFIX, segment++, SEGMENT_SUFFIX));
+            try(FileOutputStream fos = new FileOutputStream(file)) {
+                CRC32 crc = new CRC32();
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(fos, crc)));
+                long size = 0;
+                int count = 0;
+                while((size < segmentBytes) && it.hasNext()) {
+                    Entry<byte[],byte[]> entry = it.next();
+                    out.writeInt(entry.getKey().length);
+                    out.write(entry.getKey());
+                    out.writeInt(entry.getValue().length);
+                    out.write(entry.getValue());
+                    size += 8 + entry.getKey().length + entry.getValue().length;
+                    ++count;
+                }
+                out.flush();
+                int crcValue = (int)crc.getValue();
+                out.writeInt(count);
+                out.writeInt(crcValue);
+                out.writeInt(SEGMENT_MAGIC);
+                out.flush();
+                fos.getFD().sync();
+            }
+        } while(it.hasNext());
+        syncDirectory(checkpoint);
+    }
+
+    private static void loadCheckpoint(File checkpoint, long version, MemoryVersionedKV db) {
+        File[] segments = checkpoint.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        if((segments == null) || (segments.length == 0)) {
+            throw new MemoryStoreIOException("No segments in checkpoint " + checkpoint);
+        }
+        Arrays.sort(segments);
+        for(File file : segments) {
+            try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                MappedByteBuffer bb = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                int end = bb.limit() - TRAILER_SIZE;
+                if((end < 0) || (bb.getInt(end + 8) != SEGMENT_MAGIC)) {
+                    throw new MemoryStoreIOException("Incomplete checkpoint segment " + file);
+                }
+                CRC32 crc = new CRC32();
+                byte[] chunk = new byte[CRC_CHUNK_SIZE];
+                while(bb.position() < end) {
+                    int len = Math.min(chunk.length, end - bb.position());
+                    bb.get(chunk, 0, len);
+                    crc.update(chunk, 0, len);
+                }
+                if((int)crc.getValue() != bb.getInt(end + 4)) {
+                    throw new MemoryStoreIOException("Checksum mismatch in checkpoint segment " + file);
+                }
+                bb.position(0);
+                int count = bb.getInt(end);
+                for(int i = 0; i < count; ++i) {
+                    byte[] key = new byte[bb.getInt()];
+                    bb.get(key);
+                    byte[] value = new byte[bb.getInt()];
+                    bb.get(value);
+                    db.restore(key, value, version);
+                }
+            } catch(IOException e) {
+                throw new MemoryStoreIOException(e);
+            }
+        }
+    }
+
+    /** Complete, or only temporary if {@code tmp}, checkpoint directories, oldest first. */
+    private File[] listCheckpoints(final boolean tmp) {
+        File[] files = dir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(CHECKPOINT_PREFIX) && (name.endsWith(TMP_SUFFIX) == tmp);
+            }
+        });
+        if(files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    private static String checkpointName(long version) {
+        return String.format("%s%020d", CHECKPOINT_PREFIX, version);
+    }
+
+    private static long checkpointVersion(File checkpoint) {
+        return Long.parseLong(checkpoint.getName().substring(CHECKPOINT_PREFIX.length()));
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if(children != null) {
+            for(File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        if(!file.delete()) {
+            LOG.warn("Could not delete {}", file);
+        }
+    }
+
+    /** Make a create, rename or delete within {@code dir} durable, where the platform allows. */
+    static void syncDirectory(File dir) {
+        try(FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch(IOException e) {
+            LOG.debug("Could not sync directory {}: {}", dir, e.getMessage());
+        }
+    }
+}
@@ -25,11 +25,14 @@ package com.foundationdb.server.store;
 
 import com.foundationdb.ais.model.AbstractVisitor;
 import com.foundationdb.ais.model.AkibanInformationSchema;
+import com.foundationdb.ais.model.Columnar;
 import com.foundationdb.ais.model.DefaultNameGenerator;
 import com.foundationdb.ais.model.Group;
 import com.foundationdb.ais.model.HasStorage;
 import com.foundationdb.ais.model.Index;
 import com.foundationdb.ais.model.NameGenerator;
+import com.foundationdb.ais.model.Routine;
+import com.foundationdb.ais.model.SQLJJar;
 import com.foundationdb.ais.model.Sequence;
 import com.foundationdb.ais.model.StorageDescription;
 import com.foundationdb.ais.model.Table;
@@ -53,10 +56,12 @@ import com.persistit.Key;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -97,21 +102,29 @@ public class MemorySchemaManager extends AbstractSchemaManager
     private static final Session.Key<AkibanInformationSchema> SESSION_AIS_KEY = Session.Key.named("AIS");
 
     private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final byte[] BUILD_STR_BYTES = "build".getBytes(UTF8);
     private static final byte[] CHANGES_STR_BYTES = "changes".getBytes(UTF8);
+    private static final byte[] DONE_STR_BYTES = "done".getBytes(UTF8);
     private static final byte[] ERROR_STR_BYTES = "error".getBytes(UTF8);
     private static final byte[] GENERATION_STR_BYTES = "generation".getBytes(UTF8);
     private static final byte[] HKEYS_STR_BYTES = "hkeys".getBytes(UTF8);
     private static final byte[] ONLINE_STR_BYTES = "online".getBytes(UTF8);
     private static final byte[] ONLINE_SESSION_ID_STR_BYTES = "online_session_id".getBytes(UTF8);
     private static final byte[] PROTOBUF_STR_BYTES = "protobuf".getBytes(UTF8);
+    private static final byte[] SPLIT_STR_BYTES = "split".getBytes(UTF8);
+    private static final byte[] SPLITS_STR_BYTES = "splits".getBytes(UTF8);
+    // Fixed so a durable store finds them again after restart
+    private static final UUID SM_UUID = UUID.nameUUIDFromBytes("MemorySchemaManager".getBytes(UTF8));
+    private static final UUID TS_UUID = UUID.nameUUIDFromBytes("MemoryTableStatusCache".getBytes(UTF8));
 
     private final MemoryTransactionService txnService;
-    private final byte[] smBytes = packUUID(UUID.randomUUID());
-    private final byte[] tsBytes = packUUID(UUID.randomUUID());
+    private final byte[] smBytes = packUUID(SM_UUID);
+    private final byte[] tsBytes = packUUID(TS_UUID);
 
     private volatile MemoryTableStatusCache tableStatusCache;
     private volatile AkibanInformationSchema curAIS;
     private volatile NameGenerator nameGenerator;
+    private volatile AkibanInformationSchema virtualTableAIS;
 
     @Inject
     public MemorySchemaManager(ConfigurationService config,
@@ -129,6 +142,7 @@ public class MemorySchemaManager extends AbstractSchemaManager
     @Override
     public void start() {
         super.start();
+        virtualTableAIS = new AkibanInformationSchema();
         tableStatusCache = new MemoryTableStatusCache(txnService, tsBytes);
         nameGenerator = new DefaultNameGenerator();
 
@@ -139,6 +153,7 @@ public class MemorySchemaManager extends AbstractSchemaManager
         nameGenerator = null;
         curAIS = null;
         tableStatusCache = null;
+        virtualTableAIS = null;
         super.stop();
     }
 
@@ -182,7 +197,7 @@ public class MemorySchemaManager extends AbstractSchemaManager
         if(localGen != localAIS.getGeneration()) {
             localAIS = loadFromStorage(session, txn);
             synchronized(this) {
-                if(localAIS.getGeneration() > curAIS.getGeneration()) {
+                if((curAIS == null) || (localAIS.getGeneration() > curAIS.getGeneration())) {
                     curAIS = localAIS;
                 }
             }
@@ -203,14 +218,25 @@ public class MemorySchemaManager extends AbstractSchemaManager
     }
 
     @Override
-    protected void unStoredAISChange(Session session, AkibanInformationSchema newAIS) {
-        // Treat as normal change as everything goes away on restart anyway.
+    protected void unStoredAISChange(Session session, final AkibanInformationSchema newAIS) {
+        // Stored objects in the system schemas are saved as normal. Virtual tables and system routines,
+        // which are registered again on every start, are only kept in memory and merged in on load.
         storedAISChange(session,
                         newAIS,
                         Arrays.asList(TableName.INFORMATION_SCHEMA,
                                       TableName.SECURITY_SCHEMA,
                                       TableName.SQLJ_SCHEMA,
                                       TableName.SYS_SCHEMA));
+        // As with FDBSchemaManager, only called during single threaded startup and shutdown
+        txnService.addCallback(session, TransactionService.CallbackType.COMMIT, new Callback() {
+            @Override
+            public void run(Session session, long timestamp) {
+                synchronized(MemorySchemaManager.this) {
+                    saveVirtualTables(newAIS);
+                    curAIS = null;
+                }
+            }
+        });
     }
 
     @Override
@@ -392,6 +418,51 @@ public class MemorySchemaManager extends AbstractSchemaManager
         };
     }
 
+    @Override
+    public List<byte[]> getOnlineBuildSplits(Session session, int tableID) {
+        MemoryTransaction txn = getTransaction(session);
+        byte[] buildBytes = onlineBuildBytes(session, tableID);
+        byte[] countBytes = txn.get(join(buildBytes, SPLITS_STR_BYTES));
+        if(countBytes == null) {
+            return null;
+        }
+        long count = unpackLong(countBytes);
+        List<byte[]> splits = new ArrayList<>();
+        for(long i = 0; i < count; ++i) {
+            splits.add(txn.get(join(buildBytes, SPLIT_STR_BYTES, packLong(i))));
+        }
+        return splits;
+    }
+
+    @Override
+    public void setOnlineBuildSplits(Session session, int tableID, List<byte[]> splits) {
+        MemoryTransaction txn = getTransaction(session);
+        byte[] buildBytes = onlineBuildBytes(session, tableID);
+        txn.set(join(buildBytes, SPLITS_STR_BYTES), packLong(splits.size()));
+        for(int i = 0; i < splits.size(); ++i) {
+            txn.set(join(buildBytes, SPLIT_STR_BYTES, packLong(i)), splits.get(i));
+        }
+    }
+
+    @Override
+    public void addOnlineBuildCompletedRange(Session session, int tableID, int range) {
+        MemoryTransaction txn = getTransaction(session);
+        txn.set(join(onlineBuildBytes(session, tableID), DONE_STR_BYTES, packLong(range)), BYTES_EMPTY);
+    }
+
+    @Override
+    public Set<Integer> getOnlineBuildCompletedRanges(Session session, int tableID) {
+        MemoryTransaction txn = getTransaction(session);
+        byte[] doneBytes = join(onlineBuildBytes(session, tableID), DONE_STR_BYTES);
+        Iterator<Entry<byte[], byte[]>> it = txn.getRange(join(doneBytes, packLong(0)), join(doneBytes, packLong(-1)));
+        Set<Integer> completed = new TreeSet<>();
+        while(it.hasNext()) {
+            byte[] key = it.next().getKey();
+            completed.add((int)unpackLong(key, key.length - 8));
+        }
+        return completed;
+    }
+
     @Override
     public void setOnlineDMLError(Session session, int tableID, String message) {
         MemoryTransaction txn = getTransaction(session);
@@ -469,6 +540,11 @@ public class MemorySchemaManager extends AbstractSchemaManager
     // Internal
     //
 
+    private byte[] onlineBuildBytes(Session session, int tableID) {
+        OnlineSession onlineSession = getOnlineSession(session, true);
+        return join(smBytes, ONLINE_STR_BYTES, packLong(onlineSession.id), BUILD_STR_BYTES, packLong(tableID));
+    }
+
     private void attachToSession(Session session, AkibanInformationSchema ais) {
         // attachToSession
         AkibanInformationSchema prev = session.put(SESSION_AIS_KEY, ais);
@@ -524,17 +600,79 @@ public class MemorySchemaManager extends AbstractSchemaManager
     }
 
     private ProtobufReader newProtobufReader() {
-        return new ProtobufReader(typesRegistryService.getTypesRegistry(), storageFormatRegistry);
+        // Start with existing virtual tables, merge in stored ones
+        AkibanInformationSchema newAIS = aisCloner.clone(virtualTableAIS);
+        return new ProtobufReader(typesRegistryService.getTypesRegistry(), storageFormatRegistry, newAIS);
+    }
+
+    private void saveVirtualTables(AkibanInformationSchema newAIS) {
+        // Want *just* non-persisted virtual tables and system routines
+        this.virtualTableAIS = aisCloner.clone(newAIS, new ProtobufWriter.TableFilterSelector() {
+            @Override
+            public Columnar getSelected(Columnar columnar) {
+                if(columnar.isTable() && ((Table)columnar).isVirtual()) {
+                    return columnar;
+                }
+                return null;
+            }
+
+            @Override
+            public boolean isSelected(Sequence sequence) {
+                return false;
+            }
+
+            @Override
+            public boolean isSelected(Routine routine) {
+                return isSystemName(routine.getName());
+            }
+
+            @Override
+            public boolean isSelected(SQLJJar sqljJar) {
+                return isSystemName(sqljJar.getName());
+            }
+
+            protected boolean isSystemName(TableName name) {
+                return TableName.SYS_SCHEMA.equals(name.getSchemaName()) ||
+                       TableName.SQLJ_SCHEMA.equals(name.getSchemaName()) ||
+                       TableName.SECURITY_SCHEMA.equals(name.getSchemaName());
+            }
+        });
     }
 
     private void storeProtobuf(MemoryTransaction txn, byte[] keyPrefix, AkibanInformationSchema ais, String schema) {
-        ProtobufWriter writer = new ProtobufWriter(new ProtobufWriter.SingleSchemaSelector(schema));
+        ProtobufWriter writer = new ProtobufWriter(storeSelector(schema));
         writer.save(ais);
         ByteBuffer bb = ByteBuffer.allocate(writer.getBufferSize());
         writer.serialize(bb);
         txn.set(join(keyPrefix, schema.getBytes(UTF8)), bb.array());
     }
 
+    private static ProtobufWriter.WriteSelector storeSelector(String schema) {
+        switch(schema) {
+            case TableName.INFORMATION_SCHEMA:
+            case TableName.SECURITY_SCHEMA:
+                return new ProtobufWriter.SingleSchemaSelector(schema) {
+                    @Override
+                    public Columnar getSelected(Columnar columnar) {
+                        if(columnar.isTable() && ((Table)columnar).isVirtual()) {
+                            return null;
+                        }
+                        return columnar;
+                    }
+                };
+            case TableName.SYS_SCHEMA:
+            case TableName.SQLJ_SCHEMA:
+                return new ProtobufWriter.SingleSchemaSelector(schema) {
+                    @Override
+                    public boolean isSelected(Routine routine) {
+                        return false;
+                    }
+                };
+            default:
+                return new ProtobufWriter.SingleSchemaSelector(schema);
+        }
+    }
+
     private void validateAndFreeze(MemoryTransaction txn, AkibanInformationSchema ais, Long generation) {
         ais.validate(AISValidations.ALL_VALIDATIONS).throwIfNecessary();
         if(generation == null) {
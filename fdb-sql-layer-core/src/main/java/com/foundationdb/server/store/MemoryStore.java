@@ -43,7 +43,7 @@ import com.foundationdb.qp.storeadapter.indexrow.MemoryIndexRow;
 import com.foundationdb.qp.util.SchemaCache;
 import com.foundationdb.server.error.LobUnsupportedException;
 import com.foundationdb.server.error.DuplicateKeyException;
-import com.foundationdb.server.error.LockTimeoutException;
+import com.foundationdb.server.error.TransactionConflictException;
 import com.foundationdb.server.service.Service;
 import com.foundationdb.server.service.ServiceManager;
 import com.foundationdb.server.service.config.ConfigurationService;
@@ -61,9 +61,11 @@ import com.persistit.Persistit;
 import com.persistit.Value;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
 import java.util.Set;
@@ -104,12 +106,7 @@ public class MemoryStore extends AbstractStore<MemoryStore, MemoryStoreData, Mem
                                                               typesRegistryService,
                                                               serviceManager);
         boolean withConcurrentDML = Boolean.parseBoolean(configService.getProperty(FEATURE_DDL_WITH_DML_PROP));
-        this.onlineHelper = new OnlineHelper(txnService,
-                                             schemaManager,
-                                             this,
-                                             typesRegistryService,
-                                             constraintHandler,
-                                             withConcurrentDML);
+        this.onlineHelper = createOnlineHelper(configService, withConcurrentDML);
         listenerService.registerRowListener(onlineHelper);
     }
 
@@ -391,6 +388,24 @@ public class MemoryStore extends AbstractStore<MemoryStore, MemoryStoreData, Mem
         return getClass().getSimpleName();
     }
 
+    /** Split by row count, as there is nothing cheaper to go on. */
+    @Override
+    public List<byte[]> getGroupSplits(Session session, Group group, int maxRanges) {
+        MemoryStoreData storeData = createStoreData(session, group);
+        List<byte[]> keys = new ArrayList<>();
+        groupIterator(session, storeData);
+        while(storeData.next()) {
+            keys.add(storeData.rawKey);
+        }
+        List<byte[]> splits = new ArrayList<>();
+        int step = (keys.size() + maxRanges - 1) / Math.max(maxRanges, 1);
+        for(int i = step; (step > 0) && (i < keys.size()); i += step) {
+            unpackKey(storeData.storageDescription, keys.get(i), storeData.persistitKey);
+            splits.add(Arrays.copyOf(storeData.persistitKey.getEncodedBytes(), storeData.persistitKey.getEncodedSize()));
+        }
+        return splits;
+    }
+
     @Override
     public Collection<String> getStorageDescriptionNames(final Session session) {
         return txnService.run(session, new Callable<Collection<String>>() {
@@ -413,7 +428,7 @@ public class MemoryStore extends AbstractStore<MemoryStore, MemoryStoreData, Mem
 
     @Override
     public Class<? extends Exception> getOnlineDMLFailureException() {
-        return LockTimeoutException.class;
+        return TransactionConflictException.class;
     }
     
     @Override
@@ -447,7 +462,7 @@ public class MemoryStore extends AbstractStore<MemoryStore, MemoryStoreData, Mem
     
     @Override
     public boolean isRestartable() {
-        return false;
+        return txnService.isDurable();
     }
 
     //
@@ -476,6 +491,15 @@ public class MemoryStore extends AbstractStore<MemoryStore, MemoryStoreData, Mem
         storeData.iterator = txn.getRange(uuidBytes, join(uuidBytes, BYTES_FF));
     }
 
+    /** Iterate from storeData.persistitKey to the end of the group. */
+    public void groupIteratorFrom(Session session, MemoryStoreData storeData) {
+        assert storeData.storageDescription.getObject() instanceof Group : storeData.storageDescription;
+        MemoryTransaction txn = getTransaction(session);
+        packKey(storeData);
+        byte[] uuidBytes = storeData.storageDescription.getUUIDBytes();
+        storeData.iterator = txn.getRange(storeData.rawKey, join(uuidBytes, BYTES_FF));
+    }
+
     /** Iterator over *just* storeData.persistitKey */
     public void groupKeyIterator(Session session, MemoryStoreData storeData) {
         assert storeData.storageDescription.getObject() instanceof Group : storeData.storageDescription;
@@ -35,6 +35,8 @@ public interface MemoryTransaction
     Iterator<Entry<byte[], byte[]>> getRange(byte[] beginKey, byte[] endKey, boolean reverse);
 
     void set(byte[] key, byte[] value);
+    /** Add to the big-endian long at {@code key}, missing as 0, at commit and without a read conflict. */
+    void addLong(byte[] key, long delta);
 
     void clear(byte[] key);
     void clearRange(byte[] beginKey, byte[] endKey);
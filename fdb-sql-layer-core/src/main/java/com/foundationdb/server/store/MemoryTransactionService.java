@@ -26,57 +26,50 @@ package com.foundationdb.server.store;
 import com.foundationdb.ais.model.ForeignKey;
 import com.foundationdb.server.error.AkibanInternalException;
 import com.foundationdb.server.error.InvalidOperationException;
-import com.foundationdb.server.error.LockTimeoutException;
 import com.foundationdb.server.error.NoTransactionInProgressException;
-import com.foundationdb.server.error.QueryCanceledException;
 import com.foundationdb.server.error.TransactionAbortedException;
+import com.foundationdb.server.error.TransactionConflictException;
 import com.foundationdb.server.error.TransactionInProgressException;
+import com.foundationdb.server.service.config.ConfigurationService;
 import com.foundationdb.server.service.session.Session;
 import com.foundationdb.server.service.session.Session.Key;
 import com.foundationdb.server.service.session.Session.StackKey;
 import com.foundationdb.server.service.transaction.TransactionService;
+import com.foundationdb.server.store.MemoryVersionedKV.PendingWrite;
 import com.foundationdb.sql.parser.IsolationLevel;
 import com.foundationdb.util.MultipleCauseException;
 import com.foundationdb.util.Strings;
-import com.google.common.primitives.UnsignedBytes;
 import com.google.inject.Inject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Deque;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
- * KV storage (via TreeMap<byte[],byte[]) and transaction provider.
+ * KV storage (via {@link MemoryVersionedKV}) and transaction provider.
  *
- * Per-key locking providing repeatable read semantics. No gap locking.
+ * Optimistic concurrency with FDB-like semantics. Each transaction reads from the snapshot
+ * current when it began, without locking, and buffers its writes. Commit fails with a
+ * retryable {@link TransactionConflictException} if any key or range read, other than under
+ * snapshot isolation, was changed by a commit after the snapshot.
  *
- * gets() take read (shared) locks, sets() and clears() take write (exclusive) locks
- * and shared can be upgraded to exclusive 'optimistically' via tag (StampedLock-ish).
+ * Ranges are only conflict checked up to the last key actually read and clearRange() checks
+ * the whole range, as the keys it clears are those visible in the snapshot.
  *
- * Uncommitted writes go directly into master KV after (exclusive) lock is acquired and an
- * undo log is maintained to restore proper state on rollback.
- *
- * Lock acquisition has an aggressive (1s) timeout after which a retryable error is thrown.
+ * Contents are lost on stop unless a data directory is configured, in which case every commit
+ * is logged there before returning and a checkpoint is written periodically (see {@link MemoryPersistence}).
  */
 public class MemoryTransactionService implements TransactionService
 {
@@ -84,20 +77,30 @@ public class MemoryTransactionService implements TransactionService
 
     private static final int PERIODIC_COMMIT_MILLS = 500;
     private static final int PERIODIC_COMMIT_BYTES = 100000;
-    private static final int LOCK_TIMEOUT_MILLIS = 1 * 1000;
+    private static final byte[] BYTES_00 = { 0x00 };
     private static final Key<MemoryTransactionImpl> TXN_KEY = Key.named("TXN");
     private static final StackKey<Callback> PRE_COMMIT_KEY = StackKey.stackNamed("TXN_PRE_COMMIT");
     private static final StackKey<Callback> AFTER_END_KEY = StackKey.stackNamed("TXN_AFTER_END");
     private static final StackKey<Callback> AFTER_COMMIT_KEY = StackKey.stackNamed("TXN_AFTER_COMMIT");
     private static final StackKey<Callback> AFTER_ROLLBACK_KEY = StackKey .stackNamed("TXN_AFTER_ROLLBACK");
 
-    private final ConcurrentMap<BytesHolder,TaggedLock> locks;
-    private final KVMap db;
+    static final String DATA_DIR_PROP = "fdbsql.memory.data_dir";
+    static final String CHECKPOINT_MILLIS_PROP = "fdbsql.memory.checkpoint_millis";
+    static final String CHECKPOINT_SEGMENT_BYTES_PROP = "fdbsql.memory.checkpoint_segment_bytes";
 
-    @Inject
+    private final ConfigurationService config;
+    private final MemoryVersionedKV db;
+    private MemoryPersistence persistence;
+
+    /** Not persisted, regardless of configuration. */
     public MemoryTransactionService() {
-        this.locks = new ConcurrentHashMap<>();
-        this.db = new KVMap();
+        this(null);
+    }
+
+    @Inject
+    public MemoryTransactionService(ConfigurationService config) {
+        this.config = config;
+        this.db = new MemoryVersionedKV();
     }
 
     //
@@ -106,20 +109,55 @@ public class MemoryTransactionService implements TransactionService
 
     @Override
     public void start() {
-        // None
+        String dataDir = (config != null) ? config.getProperty(DATA_DIR_PROP) : "";
+        if(!dataDir.isEmpty()) {
+            persistence = new MemoryPersistence(new File(dataDir),
+                                                Long.parseLong(config.getProperty(CHECKPOINT_MILLIS_PROP)),
+                                                Long.parseLong(config.getProperty(CHECKPOINT_SEGMENT_BYTES_PROP)));
+            persistence.open(db);
+        }
     }
 
     @Override
     public void stop() {
-        locks.clear();
-        synchronized(db) {
-            db.clear();
-        }
+        stop(true);
     }
 
     @Override
     public void crash() {
-        stop();
+        stop(false);
+    }
+
+    private void stop(boolean checkpoint) {
+        try {
+            if(persistence != null) {
+                persistence.close(checkpoint);
+            }
+        } finally {
+            persistence = null;
+            db.clear();
+        }
+    }
+
+    //
+    // MemoryTransactionService
+    //
+
+    /** Whether contents survive a restart. */
+    public boolean isDurable() {
+        return (persistence != null);
+    }
+
+    /** Oldest version kept for open snapshots. For testing. */
+    long getPruneHorizon() {
+        return db.getPruneHorizon();
+    }
+
+    /** Checkpoint now, if durable. */
+    public void checkpoint() {
+        if(persistence != null) {
+            persistence.checkpoint();
+        }
     }
 
     //
@@ -324,13 +362,23 @@ public class MemoryTransactionService implements TransactionService
 
     @Override
     public IsolationLevel actualIsolationLevel(IsolationLevel level) {
-        return IsolationLevel.REPEATABLE_READ_ISOLATION_LEVEL;
+        switch(level) {
+            case READ_UNCOMMITTED_ISOLATION_LEVEL:
+            case READ_COMMITTED_NO_SNAPSHOT_ISOLATION_LEVEL:
+            case READ_COMMITTED_ISOLATION_LEVEL:
+            case REPEATABLE_READ_ISOLATION_LEVEL:
+            case SNAPSHOT_ISOLATION_LEVEL:
+                return IsolationLevel.SNAPSHOT_ISOLATION_LEVEL;
+            default:
+                return IsolationLevel.SERIALIZABLE_ISOLATION_LEVEL;
+        }
     }
 
     @Override
     public IsolationLevel setIsolationLevel(Session session, IsolationLevel level) {
-        // Ignored.
-        return IsolationLevel.REPEATABLE_READ_ISOLATION_LEVEL;
+        level = actualIsolationLevel(level);
+        getTransactionInternal(session).snapshotReads = (level == IsolationLevel.SNAPSHOT_ISOLATION_LEVEL);
+        return level;
     }
 
     @Override
@@ -368,42 +416,14 @@ public class MemoryTransactionService implements TransactionService
     // Static
     //
 
-    /** Wrapper class providing equals() and hashCode() for byte[] */
-    private static class BytesHolder
-    {
-        public final byte[] bytes;
-
-        private BytesHolder(byte[] bytes) {
-            assert bytes != null;
-            this.bytes = bytes;
-        }
-
-        @Override
-        public boolean equals(Object o) {
-            if(this == o) {
-                return true;
-            }
-            if((o == null) || (getClass() != o.getClass())) {
-                return false;
-            }
-            BytesHolder that = (BytesHolder)o;
-            return Arrays.equals(bytes, that.bytes);
-        }
-
-        @Override
-        public int hashCode() {
-            return Arrays.hashCode(bytes);
-        }
-    }
-
     private static class CopiedEntry implements Entry<byte[], byte[]>
     {
         private final byte[] key;
         private final byte[] value;
 
-        public CopiedEntry(Entry<byte[], byte[]> entry) {
-            this.key = copy(entry.getKey());
-            this.value = copy(entry.getValue());
+        public CopiedEntry(byte[] key, byte[] value) {
+            this.key = copy(key);
+            this.value = copy(value);
         }
 
         @Override
@@ -427,148 +447,35 @@ public class MemoryTransactionService implements TransactionService
         }
     }
 
-    private static class KVMap extends TreeMap<byte[], byte[]>
-    {
-        private static final Comparator<byte[]> COMPARATOR = UnsignedBytes.lexicographicalComparator();
-
-        private static final Comparator<byte[]> REVERSE_COMPARATOR = new Comparator<byte[]>() {
-            @Override
-            public int compare(byte[] o1, byte[] o2) {
-                return COMPARATOR.compare(o2, o1);
-            }
-        };
-
-        public KVMap() {
-            this(Collections.<byte[],byte[]>emptyMap(), false);
-        }
-
-        public KVMap(Map<byte[], byte[]> map, boolean reverse) {
-            super(reverse ? REVERSE_COMPARATOR : COMPARATOR);
-            putAll(map);
-        }
-    }
-
-    private static class TaggedLock
-    {
-        private final ReadWriteLock rwLock;
-        // ReadWriteLock does not support upgrading read to write.
-        // Tag is checked pre-read.unlock() and must match post-write.lock().
-        private final AtomicLong tag;
-
-        public TaggedLock() {
-            this.rwLock = new ReentrantReadWriteLock(true);
-            this.tag = new AtomicLong(0);
-        }
-
-        public void readUnlock() {
-            rwLock.readLock().unlock();
-        }
-
-        public void writeUnlock() {
-            rwLock.writeLock().unlock();
-        }
-
-        public void readLock(Session session) {
-            tryLock(session, rwLock.readLock(), "shared");
-        }
-
-        public void writeLock(Session session) {
-            tryLock(session, rwLock.writeLock(), "exclusive");
-            tag.incrementAndGet();
-        }
-
-        public void upgradeLock(Session session) {
-            final long saveTag = tag.get();
-            readUnlock();
-            tryLock(session, rwLock.writeLock(), "upgrade");
-            if(saveTag != tag.get()) {
-                writeUnlock();
-                throwTimeout(session, "optimistic upgrade");
-            }
-            tag.incrementAndGet();
-        }
-
-        private static void tryLock(Session session, Lock lock, String lockType) {
-            try {
-                if(!lock.tryLock(LOCK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
-                    throwTimeout(session, lockType);
-                }
-            } catch(InterruptedException e) {
-                throw new QueryCanceledException(session);
-            }
-        }
-
-        private static void throwTimeout(Session session, String lockType) {
-            LOG.trace("lock timeout: {}", lockType);
-            // No telling where this happened, e.g. row could be half written.
-            getTransactionInternal(session).isRollbackPending = true;
-            throw new LockTimeoutException(LOCK_TIMEOUT_MILLIS, lockType, MemoryTransactionService.class.getSimpleName());
-        }
-    }
-
     private class MemoryTransactionImpl implements MemoryTransaction
     {
         final Session session;
-        final List<UndoOp> undoLog;
-        final Set<BytesHolder> readLocked;
-        final Set<BytesHolder> writeLocked;
-
+        /** Buffered until commit, also read through. */
+        final NavigableMap<byte[],PendingWrite> writes;
+        final List<byte[]> readKeys;
+        /** [begin, end) pairs, which range iterators extend as they advance. */
+        final List<byte[][]> readRanges;
+        /** Handed out since the snapshot was last registered, and so possibly still reading at it. */
+        final List<RangeIterator> iterators;
+
+        long readVersion;
         long startMillis;
         long commitMillis;
         long bytesWritten;
         boolean isRollbackPending;
+        boolean snapshotReads;
         Map<ForeignKey,Boolean> deferredForeignKeys;
         MemoryIndexChecks.PendingChecks pendingChecks;
 
         private MemoryTransactionImpl(Session session) {
             this.session = session;
-            this.undoLog = new ArrayList<>();
-            this.readLocked = new HashSet<>();
-            this.writeLocked = new HashSet<>();
+            this.writes = new TreeMap<>(MemoryVersionedKV.COMPARATOR);
+            this.readKeys = new ArrayList<>();
+            this.readRanges = new ArrayList<>();
+            this.iterators = new ArrayList<>();
             reset();
         }
 
-        private void readLock(byte[] rawKey) {
-            BytesHolder key = new BytesHolder(rawKey);
-            if(readLocked.contains(key) || writeLocked.contains(key)) {
-                // Already locked
-                return;
-            }
-            TaggedLock lock = locks.get(key);
-            if(lock == null) {
-                lock = new TaggedLock();
-                TaggedLock prevLock = locks.putIfAbsent(key, lock);
-                if(prevLock != null) {
-                    lock = prevLock;
-                }
-            }
-            lock.readLock(session);
-            readLocked.add(key);
-        }
-
-        private void writeLock(byte[] rawKey) {
-            BytesHolder key = new BytesHolder(rawKey);
-            if(writeLocked.contains(key)) {
-                // Already locked
-                return;
-            }
-            TaggedLock lock = locks.get(key);
-            if(lock == null) {
-                lock = new TaggedLock();
-                TaggedLock prevLock = locks.putIfAbsent(key, lock);
-                if(prevLock != null) {
-                    lock = prevLock;
-                }
-            }
-            if(readLocked.contains(key)) {
-                readLocked.remove(key);
-                lock.upgradeLock(session);
-            } else {
-                lock.writeLock(session);
-            }
-            writeLocked.add(key);
-        }
-
         public boolean isTimeToCommit() {
             if(bytesWritten > PERIODIC_COMMIT_BYTES) {
                 return true;
@@ -580,9 +487,20 @@ public class MemoryTransactionService implements TransactionService
         }
 
         public void reset() {
-            assert undoLog.isEmpty();
-            assert readLocked.isEmpty();
-            assert writeLocked.isEmpty();
+            assert writes.isEmpty();
+            readKeys.clear();
+            readRanges.clear();
+            for(Iterator<RangeIterator> it = iterators.iterator(); it.hasNext(); ) {
+                if(it.next().exhausted) {
+                    it.remove();
+                }
+            }
+            // Iterators from an earlier period still read at the registered version, so only move it once they are done
+            if(iterators.isEmpty()) {
+                readVersion = db.openSnapshot(this);
+            } else {
+                readVersion = db.getCommittedVersion();
+            }
             startMillis = System.currentTimeMillis();
             commitMillis = -1;
             bytesWritten = 0;
@@ -595,57 +513,78 @@ public class MemoryTransactionService implements TransactionService
             }
         }
 
-        public void runUndo() {
-            if(undoLog.isEmpty()) {
-                return;
+        public void commit() {
+            if(!writes.isEmpty()) {
+                db.commit(readVersion, readKeys, readRanges, writes);
+                writes.clear();
             }
-            // Undo in reverse order than applied
-            ListIterator<UndoOp> it = undoLog.listIterator(undoLog.size());
-            synchronized(db) {
-                while(it.hasPrevious()) {
-                    UndoOp op = it.previous();
-                    op.apply(db);
-                }
-            }
-            undoLog.clear();
         }
 
-        public void runUnlock() {
-            // Release all locks
-            for(BytesHolder key : readLocked) {
-                TaggedLock lock = locks.get(key);
-                lock.readUnlock();
+        public void discard() {
+            writes.clear();
+        }
+
+        public void close() {
+            iterators.clear();
+            db.closeSnapshot(this);
+        }
+
+        private void addReadKey(byte[] key) {
+            if(!snapshotReads) {
+                readKeys.add(copy(key));
             }
-            readLocked.clear();
-            for(BytesHolder key : writeLocked) {
-                TaggedLock lock = locks.get(key);
-                lock.writeUnlock();
+        }
+
+        private Iterator<Entry<byte[], byte[]>> rangeIterator(byte[] beginKey,
+                                                              byte[] endKey,
+                                                              boolean reverse,
+                                                              boolean addConflict) {
+            NavigableMap<byte[],PendingWrite> pending = writes.subMap(beginKey, true, endKey, false);
+            if(reverse) {
+                pending = pending.descendingMap();
             }
-            writeLocked.clear();
+            // Duplicate as some consumers want to iterate while calling set/clear
+            List<Entry<byte[],PendingWrite>> pendingCopy = new ArrayList<>(pending.size());
+            for(Entry<byte[],PendingWrite> entry : pending.entrySet()) {
+                pendingCopy.add(new SimpleImmutableEntry<>(entry));
+            }
+            byte[][] conflictRange = null;
+            if(addConflict) {
+                byte[] start = reverse ? endKey : beginKey;
+                conflictRange = new byte[][] { copy(start), copy(start) };
+                readRanges.add(conflictRange);
+            }
+            RangeIterator it = new RangeIterator(db.getRange(beginKey, endKey, reverse, readVersion),
+                                                 pendingCopy.iterator(),
+                                                 copy(beginKey),
+                                                 copy(endKey),
+                                                 reverse,
+                                                 conflictRange);
+            iterators.add(it);
+            return it;
         }
 
         //
-        // TreeMapTransaction
+        // MemoryTransaction
         //
 
         @Override
         public byte[] get(byte[] key) {
-            readLock(key);
-            byte[] value;
-            synchronized(db) {
-                value = db.get(key);
+            PendingWrite write = writes.get(key);
+            if((write != null) && !write.isAdd()) {
+                return copy(write.resolve(null));
             }
-            return copy(value);
+            addReadKey(key);
+            byte[] value = db.get(key, readVersion);
+            return copy((write != null) ? write.resolve(value) : value);
         }
 
         @Override
         public byte[] getUncommitted(byte[] key) {
-            // No lock
-            byte[] value;
-            synchronized(db) {
-                value = db.get(key);
-            }
-            return copy(value);
+            // Latest committed, no conflict
+            PendingWrite write = writes.get(key);
+            byte[] value = db.getLatest(key);
+            return copy((write != null) ? write.resolve(value) : value);
         }
 
         @Override
@@ -655,102 +594,155 @@ public class MemoryTransactionService implements TransactionService
 
         @Override
         public Iterator<Entry<byte[], byte[]>> getRange(byte[] beginKey, byte[] endKey, boolean reverse) {
-            // Duplicate as some consumers want to iterate while calling set/clear
-            final KVMap subMap;
-            synchronized(db) {
-                subMap = new KVMap(db.subMap(beginKey, endKey), reverse);
-            }
-            for(byte[] key : subMap.keySet()) {
-                readLock(key);
-            }
-            final Iterator<Entry<byte[], byte[]>> it = subMap.entrySet().iterator();
-            return new Iterator<Entry<byte[], byte[]>>()  {
-                @Override
-                public boolean hasNext() {
-                    return it.hasNext();
-                }
-
-                @Override
-                public Entry<byte[], byte[]> next() {
-                    Entry<byte[], byte[]> entry = it.next();
-                    return new CopiedEntry(entry);
-                }
-
-                @Override
-                public void remove() {
-                    throw new UnsupportedOperationException();
-                }
-            };
+            return rangeIterator(beginKey, endKey, reverse, !snapshotReads);
         }
 
         @Override
         public void set(byte[] key, byte[] value) {
-            writeLock(key);
-            byte[] k = copy(key);
-            byte[] v = copy(value);
-            byte[] prev;
-            synchronized(db) {
-                prev = db.put(k, v);
-            }
+            writes.put(copy(key), PendingWrite.set(copy(value)));
             bytesWritten += key.length;
             bytesWritten += value.length;
-            undoLog.add(new UndoOp(k, prev));
+        }
+
+        @Override
+        public void addLong(byte[] key, long delta) {
+            writes.put(copy(key), PendingWrite.add(writes.get(key), delta));
+            bytesWritten += key.length;
+            bytesWritten += 8;
         }
 
         @Override
         public void clear(byte[] key) {
-            writeLock(key);
-            byte[] prev;
-            synchronized(db) {
-                prev = db.remove(key);
-            }
+            writes.put(copy(key), PendingWrite.clear());
             bytesWritten += key.length;
-            undoLog.add(new UndoOp(copy(key), prev));
         }
 
         @Override
         public void clearRange(byte[] beginKey, byte[] endKey) {
-            KVMap subMap;
-            synchronized(db) {
-                subMap = new KVMap(db.subMap(beginKey, endKey), false);
+            // Clears what is visible now, so anything committed into the range since must conflict
+            readRanges.add(new byte[][] { copy(beginKey), copy(endKey) });
+            List<byte[]> keys = new ArrayList<>();
+            Iterator<Entry<byte[], byte[]>> it = rangeIterator(beginKey, endKey, false, false);
+            while(it.hasNext()) {
+                keys.add(it.next().getKey());
             }
-            for(Entry<byte[], byte[]> entry : subMap.entrySet()) {
-                writeLock(entry.getKey());
-                undoLog.add(new UndoOp(entry.getKey(), entry.getValue()));
-                bytesWritten += entry.getKey().length;
-            }
-            synchronized(db) {
-                for(byte[] key : subMap.keySet()) {
-                    db.remove(key);
-                }
+            for(byte[] key : keys) {
+                writes.put(key, PendingWrite.clear());
+                bytesWritten += key.length;
             }
         }
     }
 
-    private static class UndoOp
+    /** Merges committed entries, as of the snapshot, with pending writes. Both in iteration order. */
+    private static class RangeIterator implements Iterator<Entry<byte[], byte[]>>
     {
-        private final byte[] key;
-        private final byte[] value;
+        private final Iterator<Entry<byte[], byte[]>> stored;
+        private final Iterator<Entry<byte[], PendingWrite>> pending;
+        private final byte[] beginKey;
+        private final byte[] endKey;
+        private final boolean reverse;
+        private final byte[][] conflictRange;
+        private Entry<byte[], byte[]> nextStored;
+        private Entry<byte[], PendingWrite> nextPending;
+        private Entry<byte[], byte[]> next;
+        private boolean exhausted;
+
+        private RangeIterator(Iterator<Entry<byte[], byte[]>> stored,
+                              Iterator<Entry<byte[], PendingWrite>> pending,
+                              byte[] beginKey,
+                              byte[] endKey,
+                              boolean reverse,
+                              byte[][] conflictRange) {
+            this.stored = stored;
+            this.pending = pending;
+            this.beginKey = beginKey;
+            this.endKey = endKey;
+            this.reverse = reverse;
+            this.conflictRange = conflictRange;
+        }
 
-        private UndoOp(byte[] key, byte[] value) {
-            this.key = key;
-            this.value = value;
+        @Override
+        public boolean hasNext() {
+            if((next == null) && !exhausted) {
+                advance();
+            }
+            return (next != null);
         }
 
-        public void apply(KVMap map) {
-            if(value == null) {
-                map.remove(key);
-            } else {
-                map.put(key, value);
+        @Override
+        public Entry<byte[], byte[]> next() {
+            if(!hasNext()) {
+                throw new NoSuchElementException();
             }
+            Entry<byte[], byte[]> entry = next;
+            next = null;
+            return entry;
         }
 
         @Override
-        public String toString() {
-            return "UndoOp(" + Strings.hex(key) + "=" + (value == null ? null : Strings.hex(value)) + ")";
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void advance() {
+            while(next == null) {
+                if((nextStored == null) && stored.hasNext()) {
+                    nextStored = stored.next();
+                }
+                if((nextPending == null) && pending.hasNext()) {
+                    nextPending = pending.next();
+                }
+                if((nextStored == null) && (nextPending == null)) {
+                    exhausted = true;
+                    extendConflict(null);
+                    return;
+                }
+                int cmp;
+                if(nextPending == null) {
+                    cmp = -1;
+                } else if(nextStored == null) {
+                    cmp = 1;
+                } else {
+                    cmp = MemoryVersionedKV.COMPARATOR.compare(nextStored.getKey(), nextPending.getKey());
+                    if(reverse) {
+                        cmp = -cmp;
+                    }
+                }
+                byte[] key;
+                byte[] value;
+                if(cmp < 0) {
+                    key = nextStored.getKey();
+                    value = nextStored.getValue();
+                    nextStored = null;
+                } else {
+                    byte[] storedValue = null;
+                    if(cmp == 0) {
+                        storedValue = nextStored.getValue();
+                        nextStored = null;
+                    }
+                    key = nextPending.getKey();
+                    value = nextPending.getValue().resolve(storedValue);
+                    nextPending = null;
+                }
+                if(value != null) {
+                    // Observed, even if only by hasNext()
+                    extendConflict(key);
+                    next = new CopiedEntry(key, value);
+                }
+            }
         }
-    }
 
+        private void extendConflict(byte[] key) {
+            if(conflictRange == null) {
+                return;
+            }
+            if(reverse) {
+                conflictRange[0] = (key == null) ? beginKey : copy(key);
+            } else {
+                conflictRange[1] = (key == null) ? endKey : MemoryStore.join(key, BYTES_00);
+            }
+        }
+    }
 
     private static void clearStack(Session session, Session.StackKey<Callback> key) {
         Deque<Callback> stack = session.get(key);
@@ -768,15 +760,14 @@ public class MemoryTransactionService implements TransactionService
                 txn.pendingChecks.performChecks(session, txn, MemoryIndexChecks.CheckPass.TRANSACTION);
             }
             runCallbacks(session, PRE_COMMIT_KEY, txn.startMillis, null);
-            // Not much to do, locks are cleared in end().
-            txn.undoLog.clear();
+            txn.commit();
             txn.commitMillis = System.currentTimeMillis();
             runCallbacks(session, AFTER_COMMIT_KEY, txn.commitMillis, null);
         } catch(RuntimeException e1) {
             try {
                 rollbackInternal(session, txn);
                 // Only retryable exception from this store
-                if(allowRetry && (e1 instanceof LockTimeoutException)) {
+                if(allowRetry && (e1 instanceof TransactionConflictException)) {
                     clearState = false;
                     shouldRetry = true;
                 } else {
@@ -801,8 +792,8 @@ public class MemoryTransactionService implements TransactionService
             assert session.get(TXN_KEY) == txn;
             if(clearState) {
                 session.remove(TXN_KEY);
+                txn.close();
             }
-            txn.runUnlock();
         } catch(RuntimeException e) {
             re = MultipleCauseException.combine(re, e);
         } finally {
@@ -832,7 +823,7 @@ public class MemoryTransactionService implements TransactionService
     }
 
     private static void rollbackInternal(Session session, MemoryTransactionImpl txn) {
-        txn.runUndo();
+        txn.discard();
         runCallbacks(session, AFTER_ROLLBACK_KEY, -1, null);
     }
 
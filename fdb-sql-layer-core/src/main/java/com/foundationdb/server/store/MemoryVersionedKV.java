@@ -0,0 +1,412 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.store;
+
+import com.foundationdb.server.error.TransactionConflictException;
+import com.foundationdb.util.Strings;
+import com.google.common.primitives.UnsignedBytes;
+
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static com.foundationdb.server.store.MemoryStore.packLong;
+import static com.foundationdb.server.store.MemoryStore.unpackLong;
+
+/**
+ * Multi-version KV storage, via a ConcurrentSkipListMap of keys to chains of committed values.
+ *
+ * Readers see the newest value at or before their snapshot version and never block. Writers
+ * buffer their changes and apply them at commit, which is serialized and first fails with a
+ * {@link TransactionConflictException} if anything read was committed after the snapshot.
+ *
+ * Versions no longer visible to any open snapshot are pruned as keys are written.
+ *
+ * An optional {@link CommitLog} is given each commit, in version order, before it becomes visible
+ * and commit returns once the log says it is durable.
+ */
+class MemoryVersionedKV
+{
+    static final Comparator<byte[]> COMPARATOR = UnsignedBytes.lexicographicalComparator();
+
+    private final ConcurrentSkipListMap<byte[],Version> map = new ConcurrentSkipListMap<>(COMPARATOR);
+    /** Owner -> oldest version it may still read. */
+    private final ConcurrentMap<Object,Long> snapshots = new ConcurrentHashMap<>();
+    /** Deleted keys, removed from the map once no snapshot can see them. */
+    private final Queue<Tombstone> tombstones = new ConcurrentLinkedQueue<>();
+    private final Object commitLock = new Object();
+    private volatile long committedVersion;
+    /** Every snapshot is at or after this version. */
+    private volatile long horizon;
+    private volatile CommitLog commitLog;
+
+    public void setCommitLog(CommitLog commitLog) {
+        synchronized(commitLock) {
+            this.commitLog = commitLog;
+        }
+    }
+
+    /** Register a snapshot for {@code owner}, which must be closed, and return its version. */
+    public long openSnapshot(Object owner) {
+        // Placeholder keeps a concurrent prune from passing us before the real version is published
+        snapshots.put(owner, horizon);
+        long version = committedVersion;
+        snapshots.put(owner, version);
+        return version;
+    }
+
+    public void closeSnapshot(Object owner) {
+        snapshots.remove(owner);
+    }
+
+    public long getCommittedVersion() {
+        return committedVersion;
+    }
+
+    /** As of the last commit. */
+    long getPruneHorizon() {
+        return horizon;
+    }
+
+    /**
+     * Register a snapshot for {@code owner}, as {@link #openSnapshot(Object)}, and start a new
+     * {@link CommitLog} segment for every later commit.
+     */
+    public long openCheckpoint(Object owner) {
+        synchronized(commitLock) {
+            long version = openSnapshot(owner);
+            if(commitLog != null) {
+                commitLog.rotate(version + 1);
+            }
+            return version;
+        }
+    }
+
+    /** Install {@code key} as committed at {@code version}, {@code null} to remove. Only for recovery. */
+    public void restore(byte[] key, byte[] value, long version) {
+        synchronized(commitLock) {
+            if(value == null) {
+                map.remove(key);
+            } else {
+                map.put(key, new Version(version, value, null));
+            }
+            restoreVersion(version);
+        }
+    }
+
+    /** Continue from at least {@code version}. Only for recovery. */
+    public void restoreVersion(long version) {
+        synchronized(commitLock) {
+            if(version > committedVersion) {
+                committedVersion = version;
+                horizon = version;
+            }
+        }
+    }
+
+    /** Value of {@code key} as of {@code version}, {@code null} if not present. */
+    public byte[] get(byte[] key, long version) {
+        return visible(map.get(key), version);
+    }
+
+    /** Value of {@code key} from the most recent commit. */
+    public byte[] getLatest(byte[] key) {
+        Version head = map.get(key);
+        return (head != null) ? head.value : null;
+    }
+
+    /** Present entries in [begin, end) as of {@code version}. Values must not be modified. */
+    public Iterator<Entry<byte[],byte[]>> getRange(byte[] begin, byte[] end, boolean reverse, final long version) {
+        ConcurrentNavigableMap<byte[],Version> subMap = map.subMap(begin, end);
+        if(reverse) {
+            subMap = subMap.descendingMap();
+        }
+        return visibleEntries(subMap.entrySet().iterator(), version);
+    }
+
+    /** Every present entry as of {@code version}, in key order. Values must not be modified. */
+    public Iterator<Entry<byte[],byte[]>> getAll(long version) {
+        return visibleEntries(map.entrySet().iterator(), version);
+    }
+
+    /**
+     * Atomically check that nothing in {@code readKeys} or {@code readRanges} changed after {@code readVersion}
+     * and apply {@code writes}. Values in {@code writes} are owned by this map afterwards.
+     *
+     * @return The version of the commit.
+     */
+    public long commit(long readVersion,
+                       Collection<byte[]> readKeys,
+                       Collection<byte[][]> readRanges,
+                       NavigableMap<byte[],PendingWrite> writes) {
+        final long version;
+        long logPosition = -1;
+        CommitLog log;
+        synchronized(commitLock) {
+            if(committedVersion != readVersion) {
+                checkConflicts(readVersion, readKeys, readRanges);
+            }
+            log = commitLog;
+            long prunable = pruneHorizon();
+            version = committedVersion + 1;
+            List<byte[]> keys = new ArrayList<>(writes.size());
+            List<byte[]> values = new ArrayList<>(writes.size());
+            List<Version> heads = new ArrayList<>(writes.size());
+            for(Entry<byte[],PendingWrite> entry : writes.entrySet()) {
+                byte[] key = entry.getKey();
+                Version head = map.get(key);
+                byte[] value = entry.getValue().resolve((head != null) ? head.value : null);
+                if((value == null) && ((head == null) || (head.value == null))) {
+                    continue;   // Already absent
+                }
+                keys.add(key);
+                values.add(value);
+                heads.add(head);
+            }
+            // Logged before visible so nothing can observe, and build upon, a commit that fails to log
+            if((log != null) && !keys.isEmpty()) {
+                logPosition = log.append(version, keys, values);
+            }
+            for(int i = 0; i < keys.size(); ++i) {
+                byte[] key = keys.get(i);
+                byte[] value = values.get(i);
+                Version added = new Version(version, value, heads.get(i));
+                map.put(key, added);
+                prune(added, prunable);
+                if(value == null) {
+                    tombstones.add(new Tombstone(key, added));
+                }
+            }
+            committedVersion = version;
+            removeTombstones(prunable);
+        }
+        // Outside of the lock so concurrent commits share a sync
+        if(logPosition >= 0) {
+            log.sync(logPosition);
+        }
+        return version;
+    }
+
+    public void clear() {
+        synchronized(commitLock) {
+            map.clear();
+            tombstones.clear();
+        }
+    }
+
+    //
+    // Internal
+    //
+
+    private void checkConflicts(long readVersion, Collection<byte[]> readKeys, Collection<byte[][]> readRanges) {
+        for(byte[] key : readKeys) {
+            Version head = map.get(key);
+            if((head != null) && (head.version > readVersion)) {
+                throw new TransactionConflictException(Strings.hex(key));
+            }
+        }
+        for(byte[][] range : readRanges) {
+            if(COMPARATOR.compare(range[0], range[1]) >= 0) {
+                continue;
+            }
+            for(Entry<byte[],Version> entry : map.subMap(range[0], range[1]).entrySet()) {
+                if(entry.getValue().version > readVersion) {
+                    throw new TransactionConflictException(Strings.hex(entry.getKey()));
+                }
+            }
+        }
+    }
+
+    /** Oldest version any snapshot may read. Only called while committing. */
+    private long pruneHorizon() {
+        long oldest = committedVersion;
+        for(Long version : snapshots.values()) {
+            oldest = Math.min(oldest, version);
+        }
+        horizon = Math.max(horizon, oldest);
+        return horizon;
+    }
+
+    /** Drop every version older than the one visible at {@code prunable}. */
+    private static void prune(Version head, long prunable) {
+        for(Version v = head; v != null; v = v.prev) {
+            if(v.version <= prunable) {
+                v.prev = null;
+                break;
+            }
+        }
+    }
+
+    private void removeTombstones(long prunable) {
+        Tombstone t;
+        while(((t = tombstones.peek()) != null) && (t.version.version <= prunable)) {
+            tombstones.poll();
+            // Only if it is still the newest
+            map.remove(t.key, t.version);
+        }
+    }
+
+    private static byte[] visible(Version head, long version) {
+        for(Version v = head; v != null; v = v.prev) {
+            if(v.version <= version) {
+                return v.value;
+            }
+        }
+        return null;
+    }
+
+    private static Iterator<Entry<byte[],byte[]>> visibleEntries(final Iterator<Entry<byte[],Version>> it,
+                                                                 final long version) {
+        return new Iterator<Entry<byte[],byte[]>>() {
+            private Entry<byte[],byte[]> next;
+
+            @Override
+            public boolean hasNext() {
+                while((next == null) && it.hasNext()) {
+                    Entry<byte[],Version> entry = it.next();
+                    byte[] value = visible(entry.getValue(), version);
+                    if(value != null) {
+                        next = new SimpleImmutableEntry<>(entry.getKey(), value);
+                    }
+                }
+                return (next != null);
+            }
+
+            @Override
+            public Entry<byte[],byte[]> next() {
+                if(!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Entry<byte[],byte[]> entry = next;
+                next = null;
+                return entry;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    //
+    // Classes
+    //
+
+    /** Durable record of commits. {@link #append} and {@link #rotate} are serialized with commits. */
+    interface CommitLog
+    {
+        /** Record the changes made by {@code version}, a {@code null} value being a clear. */
+        long append(long version, List<byte[]> keys, List<byte[]> values);
+
+        /** Return once everything up to the position returned by {@link #append} is durable. */
+        void sync(long position);
+
+        /** Record every commit from {@code version} on separately from those before it. */
+        void rotate(long version);
+    }
+
+    /** A committed value, or deletion if {@code null}, and the one it replaced. */
+    private static final class Version
+    {
+        final long version;
+        final byte[] value;
+        volatile Version prev;
+
+        private Version(long version, byte[] value, Version prev) {
+            this.version = version;
+            this.value = value;
+            this.prev = prev;
+        }
+    }
+
+    private static final class Tombstone
+    {
+        final byte[] key;
+        final Version version;
+
+        private Tombstone(byte[] key, Version version) {
+            this.key = key;
+            this.version = version;
+        }
+    }
+
+    /** A buffered set, clear or addition. */
+    static final class PendingWrite
+    {
+        private final byte[] value;
+        private final long delta;
+        private final boolean isAdd;
+
+        private PendingWrite(byte[] value, long delta, boolean isAdd) {
+            this.value = value;
+            this.delta = delta;
+            this.isAdd = isAdd;
+        }
+
+        public static PendingWrite set(byte[] value) {
+            return new PendingWrite(value, 0, false);
+        }
+
+        public static PendingWrite clear() {
+            return new PendingWrite(null, 0, false);
+        }
+
+        /** Add {@code delta} to the big-endian long in {@code prev}, if any, treating missing as 0. */
+        public static PendingWrite add(PendingWrite prev, long delta) {
+            if(prev == null) {
+                return new PendingWrite(null, delta, true);
+            }
+            if(prev.isAdd) {
+                return new PendingWrite(null, prev.delta + delta, true);
+            }
+            return set(packLong(((prev.value == null) ? 0 : unpackLong(prev.value)) + delta));
+        }
+
+        /** Whether {@link #resolve(byte[])} depends on the stored value. */
+        public boolean isAdd() {
+            return isAdd;
+        }
+
+        /** New value given the current {@code stored} one, {@code null} if cleared. */
+        public byte[] resolve(byte[] stored) {
+            if(isAdd) {
+                return packLong(((stored == null) ? 0 : unpackLong(stored)) + delta);
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.store;
+
+import com.foundationdb.server.error.MemoryStoreIOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead log of {@link MemoryVersionedKV} commits.
+ *
+ * <p>
+ * Each file, {@code wal-<first version>.log}, is a sequence of records:
+ * <pre>
+ *     [int payload length][int payload crc32][long version][int count]([int key length][key][int value length or -1][value])*
+ * </pre>
+ * Appends are made as commits are serialized but only forced to disk by {@link #sync(long)}, where one
+ * caller forces everything written so far on behalf of all those waiting (i.e. group commit).
+ * </p>
+ *
+ * <p>
+ * A record that is short or fails its checksum in the newest file can only be the tail of an
+ * interrupted write and is truncated, along with everything after it, on {@link #replay}. Older
+ * files were forced before rotating away from them, so such a record there fails recovery.
+ * </p>
+ */
+class MemoryWriteAheadLog implements MemoryVersionedKV.CommitLog
+{
+    private static final Logger LOG = LoggerFactory.getLogger(MemoryWriteAheadLog.class);
+
+    private static final String FILE_PREFIX = "wal-";
+    private static final String FILE_SUFFIX = ".log";
+    private static final int HEADER_SIZE = 8;
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    private final File dir;
+    private final CRC32 crc = new CRC32();
+    private final Object syncLock = new Object();
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+    private volatile FileChannel channel;
+    /** Bytes appended over the life of this instance, across files. */
+    private volatile long written;
+    private volatile long synced;
+
+    public MemoryWriteAheadLog(File dir, long firstVersion) {
+        this.dir = dir;
+        this.channel = open(dir, firstVersion);
+    }
+
+    //
+    // CommitLog
+    //
+
+    @Override
+    public long append(long version, List<byte[]> keys, List<byte[]> values) {
+        int payloadSize = 12;
+        for(int i = 0; i < keys.size(); ++i) {
+            byte[] value = values.get(i);
+            payloadSize += 8 + keys.get(i).length + ((value == null) ? 0 : value.length);
+        }
+        ByteBuffer bb = buffer(HEADER_SIZE + payloadSize);
+        bb.putInt(payloadSize);
+        bb.putInt(0);
+        bb.putLong(version);
+        bb.putInt(keys.size());
+        for(int i = 0; i < keys.size(); ++i) {
+            byte[] key = keys.get(i);
+            byte[] value = values.get(i);
+            bb.putInt(key.length);
+            bb.put(key);
+            if(value == null) {
+                bb.putInt(-1);
+            } else {
+                bb.putInt(value.length);
+                bb.put(value);
+            }
+        }
+        crc.reset();
+        crc.update(bb.array(), HEADER_SIZE, payloadSize);
+        bb.putInt(4, (int)crc.getValue());
+        bb.flip();
+        try {
+            FileChannel ch = channel;
+            while(bb.hasRemaining()) {
+                ch.write(bb);
+            }
+        } catch(IOException e) {
+            throw new MemoryStoreIOException(e);
+        }
+        written += HEADER_SIZE + payloadSize;
+        return written;
+    }
+
+    @Override
+    public void sync(long position) {
+        if(synced >= position) {
+            return;
+        }
+        synchronized(syncLock) {
+            if(synced >= position) {
+                return;
+            }
+            // Everything appended by now, likely including commits made while the last force was running
+            long target = written;
+            try {
+                channel.force(false);
+            } catch(IOException e) {
+                throw new MemoryStoreIOException(e);
+            }
+            synced = target;
+        }
+    }
+
+    @Override
+    public void rotate(long version) {
+        synchronized(syncLock) {
+            FileChannel prev = channel;
+            try {
+                prev.force(false);
+                synced = written;
+                channel = open(dir, version);
+                prev.close();
+            } catch(IOException e) {
+                throw new MemoryStoreIOException(e);
+            }
+        }
+    }
+
+    //
+    // MemoryWriteAheadLog
+    //
+
+    public void close() {
+        synchronized(syncLock) {
+            try {
+                channel.force(false);
+                channel.close();
+            } catch(IOException e) {
+                throw new MemoryStoreIOException(e);
+            }
+        }
+    }
+
+    /** Apply every logged commit after {@code afterVersion} to {@code db} and return the last version seen. */
+    public static long replay(File dir, long afterVersion, MemoryVersionedKV db) {
+        long lastVersion = afterVersion;
+        File[] files = listFiles(dir);
+        for(int i = 0; i < files.length; ++i) {
+            File file = files[i];
+            // Unlogged (i.e. empty) commits may have preceded a rotation
+            lastVersion = Math.max(lastVersion, firstVersion(file) - 1);
+            long validLength = 0;
+            try(InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                DataInputStream data = new DataInputStream(in);
+                CRC32 crc = new CRC32();
+                byte[] payload = new byte[INITIAL_BUFFER_SIZE];
+                for(;;) {
+                    int payloadSize;
+                    int expectedCRC;
+                    try {
+                        payloadSize = data.readInt();
+                        expectedCRC = data.readInt();
+                        if(payloadSize < 12) {
+                            break;
+                        }
+                        if(payload.length < payloadSize) {
+                            payload = new byte[Math.max(payloadSize, payload.length * 2)];
+                        }
+                        data.readFully(payload, 0, payloadSize);
+                    } catch(EOFException e) {
+                        break;
+                    }
+                    crc.reset();
+                    crc.update(payload, 0, payloadSize);
+                    if((int)crc.getValue() != expectedCRC) {
+                        break;
+                    }
+                    long version = applyRecord(ByteBuffer.wrap(payload, 0, payloadSize), afterVersion, db);
+                    lastVersion = Math.max(lastVersion, version);
+                    validLength += HEADER_SIZE + payloadSize;
+                }
+            } catch(IOException e) {
+                throw new MemoryStoreIOException(e);
+            }
+            if(validLength < file.length()) {
+                // Forced before each rotation, so only the newest file can have been cut short
+                if(i + 1 < files.length) {
+                    throw new MemoryStoreIOException(String.format("Corrupt record in log %s at byte %d of %d",
+                                                                   file, validLength, file.length()));
+                }
+                LOG.warn("Truncating incomplete log {} from {} to {} bytes", file, file.length(), validLength);
+                try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.setLength(validLength);
+                    raf.getFD().sync();
+                } catch(IOException e) {
+                    throw new MemoryStoreIOException(e);
+                }
+            }
+        }
+        return lastVersion;
+    }
+
+    /** Remove every log file holding only commits at or before {@code version}. */
+    public static void deleteThrough(File dir, long version) {
+        File[] files = listFiles(dir);
+        for(int i = 0; i < files.length; ++i) {
+            // Next file starts after version, this one holds nothing newer
+            boolean covered = (i + 1 < files.length) && (firstVersion(files[i + 1]) <= version + 1);
+            if(covered && !files[i].delete()) {
+                LOG.warn("Could not delete log {}", files[i]);
+            }
+        }
+    }
+
+    //
+    // Internal
+    //
+
+    private ByteBuffer buffer(int size) {
+        if(buffer.capacity() < size) {
+            buffer = ByteBuffer.allocate(Math.max(size, buffer.capacity() * 2));
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private static long applyRecord(ByteBuffer bb, long afterVersion, MemoryVersionedKV db) {
+        long version = bb.getLong();
+        if(version <= afterVersion) {
+            return version;
+        }
+        int count = bb.getInt();
+        for(int i = 0; i < count; ++i) {
+            byte[] key = new byte[bb.getInt()];
+            bb.get(key);
+            int valueLength = bb.getInt();
+            byte[] value = null;
+            if(valueLength >= 0) {
+                value = new byte[valueLength];
+                bb.get(value);
+            }
+            db.restore(key, value, version);
+        }
+        return version;
+    }
+
+    private static FileChannel open(File dir, long firstVersion) {
+        File file = new File(dir, String.format("%s%020d%s", FILE_PREFIX, firstVersion, FILE_SUFFIX));
+        try {
+            FileChannel ch = FileChannel.open(file.toPath(),
+                                              StandardOpenOption.CREATE,
+                                              StandardOpenOption.WRITE,
+                                              StandardOpenOption.APPEND);
+            MemoryPersistence.syncDirectory(dir);
+            return ch;
+        } catch(IOException e) {
+            throw new MemoryStoreIOException(e);
+        }
+    }
+
+    private static long firstVersion(File file) {
+        String name = file.getName();
+        return Long.parseLong(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+    }
+
+    /** All log files, oldest first. */
+    private static File[] listFiles(File dir) {
+        File[] files = dir.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+            }
+        });
+        if(files == null) {
+            return new File[0];
+        }
+        // Zero padded, so name order is version order
+        Arrays.sort(files);
+        return files;
+    }
+}
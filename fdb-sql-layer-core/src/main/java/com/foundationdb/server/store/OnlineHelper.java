@@ -60,6 +60,7 @@ import com.foundationdb.server.error.ConstraintViolationException;
 import com.foundationdb.server.error.InvalidOperationException;
 import com.foundationdb.server.error.NoSuchRowException;
 import com.foundationdb.server.error.NotAllowedByConfigException;
+import com.foundationdb.server.error.QueryCanceledException;
 import com.foundationdb.server.error.SQLParserInternalException;
 import com.foundationdb.server.service.blob.BlobRef;
 import com.foundationdb.server.types.aksql.aktypes.AkBlob;
@@ -68,6 +69,7 @@ import com.foundationdb.server.types.service.TypesRegistryService;
 import com.foundationdb.server.service.dxl.DelegatingContext;
 import com.foundationdb.server.service.listener.RowListener;
 import com.foundationdb.server.service.session.Session;
+import com.foundationdb.server.service.session.SessionService;
 import com.foundationdb.server.service.transaction.TransactionService;
 import com.foundationdb.server.store.SchemaManager.OnlineChangeState;
 import com.foundationdb.server.store.TableChanges.Change;
@@ -108,12 +110,20 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class OnlineHelper implements RowListener
 {
     private static final Logger LOG = LoggerFactory.getLogger(OnlineHelper.class);
     private static final Object TRANSFORM_CACHE_KEY = new Object();
+    /** Ranges per worker, so faster workers pick up the slack of slower ones. */
+    private static final int RANGES_PER_BUILD_THREAD = 4;
 
     private final TransactionService txnService;
     private final SchemaManager schemaManager;
@@ -121,6 +131,10 @@ public class OnlineHelper implements RowListener
     private final TypesRegistryService typesRegistry;
     private final ConstraintHandler constraintHandler;
     private final boolean withConcurrentDML;
+    private final SessionService sessionService;
+    private final int buildThreads;
+    private final CommitThrottle commitThrottle;
+    private final Set<BuildProgress> activeBuilds = Collections.newSetFromMap(new ConcurrentHashMap<BuildProgress,Boolean>());
 
     public OnlineHelper(TransactionService txnService,
                         SchemaManager schemaManager,
@@ -128,19 +142,50 @@ public class OnlineHelper implements RowListener
                         TypesRegistryService typesRegistry,
                         ConstraintHandler constraintHandler,
                         boolean withConcurrentDML) {
+        this(txnService, schemaManager, store, typesRegistry, constraintHandler, withConcurrentDML, null, 1, 0);
+    }
+
+    /**
+     * @param buildThreads Workers for building table indexes, each scanning a range of the group. Requires
+     *                     {@code sessionService} if greater than 1.
+     * @param buildCommitMillis Average commit latency above which index builds pause, 0 to never pause.
+     */
+    public OnlineHelper(TransactionService txnService,
+                        SchemaManager schemaManager,
+                        Store store,
+                        TypesRegistryService typesRegistry,
+                        ConstraintHandler constraintHandler,
+                        boolean withConcurrentDML,
+                        SessionService sessionService,
+                        int buildThreads,
+                        long buildCommitMillis) {
+        assert (buildThreads <= 1) || (sessionService != null);
         this.txnService = txnService;
         this.schemaManager = schemaManager;
         this.store = store;
         this.typesRegistry = typesRegistry;
         this.constraintHandler = constraintHandler;
         this.withConcurrentDML = withConcurrentDML;
+        this.sessionService = sessionService;
+        this.buildThreads = Math.max(1, buildThreads);
+        this.commitThrottle = (buildCommitMillis > 0) ? new CommitThrottle(buildCommitMillis) : null;
+    }
+
+    /** Index builds currently in progress, over ranges of a group, from this helper. */
+    public Collection<BuildProgress> getIndexBuilds() {
+        return new ArrayList<>(activeBuilds);
     }
 
     public void buildIndexes(Session session, QueryContext context) {
+        buildIndexes(session, context, null);
+    }
+
+    /** As {@link #buildIndexes(Session, QueryContext)}, notifying {@code listener} as ranges complete. */
+    public void buildIndexes(Session session, QueryContext context, BuildListener listener) {
         LOG.debug("Building indexes");
         txnService.beginTransaction(session);
         try {
-            buildIndexesInternal(session, context);
+            buildIndexesInternal(session, context, listener);
             txnService.commitTransaction(session);
         } finally {
             txnService.rollbackTransactionIfOpen(session);
@@ -344,7 +389,7 @@ public class OnlineHelper implements RowListener
         schemaManager.setOnlineDMLError(session, t.getTableId(), e.getMessage());
     }
 
-    private void buildIndexesInternal(Session session, QueryContext context) {
+    private void buildIndexesInternal(Session session, QueryContext context, BuildListener listener) {
         Collection<ChangeSet> changeSets = schemaManager.getOnlineChangeSets(session);
         ChangeLevel changeLevel = commonChangeLevel(changeSets);
         assert (changeLevel == ChangeLevel.INDEX || changeLevel == ChangeLevel.INDEX_CONSTRAINT) : changeSets;
@@ -359,7 +404,7 @@ public class OnlineHelper implements RowListener
 
         StoreAdapter adapter = store.createAdapter(session);
         if(!tableIndexes.isEmpty()) {
-            buildTableIndexes(session, context, adapter, transformCache, tableIndexes);
+            buildTableIndexes(session, context, adapter, transformCache, tableIndexes, listener);
         }
         if(!groupIndexes.isEmpty()) {
             if(changeLevel == ChangeLevel.INDEX_CONSTRAINT) {
@@ -487,12 +532,12 @@ public class OnlineHelper implements RowListener
     
     
 
-    private void buildTableIndexes(final Session session,
+    private void buildTableIndexes(Session session,
                                    QueryContext context,
                                    StoreAdapter adapter,
-                                   final TransformCache transformCache,
-                                   Multimap<Group,RowType> tableIndexes) {
-        final WriteIndexRow buffer = new WriteIndexRow();
+                                   TransformCache transformCache,
+                                   Multimap<Group,RowType> tableIndexes,
+                                   BuildListener listener) {
         for(Entry<Group, Collection<RowType>> entry : tableIndexes.asMap().entrySet()) {
             if(entry.getValue().isEmpty()) {
                 continue;
@@ -501,34 +546,158 @@ public class OnlineHelper implements RowListener
                     API.groupScan_Default(entry.getKey()),
                     entry.getValue()
             );
-            runPlan(session, contextIfNull(context, adapter), schemaManager, txnService, plan, new RowHandler() {
-                @Override
-                public void handleRow(final Row row) {
-                    TableTransform transform = transformCache.get(row.rowType().typeId());
-                    simpleCheckConstraints(session, transformCache, row);
-                    for(final TableIndex index : transform.tableIndexes) {
-                        final Key hKey = store.createKey();
-                        row.hKey().copyTo(hKey);
-                        if (index.isSpatial()) {
-                            final SpatialColumnHandler spatialColumnHandler = new SpatialColumnHandler(index);
-                            spatialColumnHandler.processSpatialObject(
-                                row,
-                                new SpatialColumnHandler.Operation()
-                                {
-                                    @Override
-                                    public void handleZValue(long z)
-                                    {
-                                        store.writeIndexRow(session, index, row, hKey, buffer,
-                                                            spatialColumnHandler, z, true);
-                                    }
-                                });
-                        } else {
-                            store.writeIndexRow(session, index, row, hKey, buffer, null, -1L, true);
+            if(buildThreads > 1) {
+                buildTableIndexesParallel(session, entry.getKey(), plan, transformCache, listener);
+            } else {
+                runPlan(session, contextIfNull(context, adapter), schemaManager, txnService, plan,
+                        tableIndexHandler(session, transformCache), null, commitThrottle);
+            }
+        }
+    }
+
+    /**
+     * Split the group into ranges of hKeys and build each, independently committed, from a pool of workers.
+     * The splits and each completed range are recorded with the online change so that re-running the build
+     * only scans the ranges that remain.
+     */
+    private void buildTableIndexesParallel(Session session,
+                                           Group group,
+                                           Operator plan,
+                                           TransformCache transformCache,
+                                           BuildListener listener) {
+        int rootID = group.getRoot().getTableId();
+        List<byte[]> splits = schemaManager.getOnlineBuildSplits(session, rootID);
+        if(splits == null) {
+            splits = store.getGroupSplits(session, group, buildThreads * RANGES_PER_BUILD_THREAD);
+            schemaManager.setOnlineBuildSplits(session, rootID, splits);
+        }
+        Set<Integer> completed = schemaManager.getOnlineBuildCompletedRanges(session, rootID);
+        // Splits must be visible to, and index rows written by, the workers' independent transactions
+        txnService.commitTransaction(session);
+        txnService.beginTransaction(session);
+
+        int rangeCount = splits.size() + 1;
+        BuildProgress progress = new BuildProgress(group.getName(), rangeCount, completed.size(), listener);
+        Queue<BuildRange> pending = new ConcurrentLinkedQueue<>();
+        for(int i = 0; i < rangeCount; ++i) {
+            if(!completed.contains(i)) {
+                Key start = (i == 0) ? null : toKey(splits.get(i - 1));
+                Key end = (i == splits.size()) ? null : toKey(splits.get(i));
+                pending.add(new BuildRange(rootID, i, start, end, progress));
+            }
+        }
+        LOG.debug("Building {} of {} ranges for group {}", new Object[] { pending.size(), rangeCount, group.getName() });
+        activeBuilds.add(progress);
+        try {
+            runBuildWorkers(session, plan, transformCache, pending);
+        } finally {
+            activeBuilds.remove(progress);
+        }
+        // Fresh transaction to see everything the workers committed
+        txnService.commitTransaction(session);
+        txnService.beginTransaction(session);
+    }
+
+    private void runBuildWorkers(Session session,
+                                 final Operator plan,
+                                 final TransformCache transformCache,
+                                 final Queue<BuildRange> pending) {
+        int workerCount = Math.min(buildThreads, pending.size());
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        List<Session> workerSessions = new ArrayList<>(workerCount);
+        List<Thread> workers = new ArrayList<>(workerCount);
+        try {
+            for(int i = 0; i < workerCount; ++i) {
+                final Session workerSession = sessionService.createSession();
+                workerSessions.add(workerSession);
+                schemaManager.joinOnline(session, workerSession);
+                Thread worker = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            buildRanges(workerSession, plan, transformCache, pending, failure);
+                        } catch(RuntimeException e) {
+                            failure.compareAndSet(null, e);
                         }
                     }
-                }
-            });
+                }, "ONLINE_BUILD_" + i);
+                workers.add(worker);
+                worker.start();
+            }
+            for(Thread worker : workers) {
+                worker.join();
+            }
+        } catch(InterruptedException e) {
+            failure.compareAndSet(null, new QueryCanceledException(session));
+            for(Thread worker : workers) {
+                worker.interrupt();
+            }
+        } finally {
+            for(Session workerSession : workerSessions) {
+                workerSession.close();
+            }
         }
+        RuntimeException e = failure.get();
+        if(e != null) {
+            throw e;
+        }
+    }
+
+    private void buildRanges(Session session,
+                             Operator plan,
+                             TransformCache transformCache,
+                             Queue<BuildRange> pending,
+                             AtomicReference<RuntimeException> failure) {
+        QueryContext context = new SimpleQueryContext(store.createAdapter(session));
+        RowHandler handler = tableIndexHandler(session, transformCache);
+        txnService.beginTransaction(session);
+        try {
+            BuildRange range;
+            while((failure.get() == null) && ((range = pending.poll()) != null)) {
+                runPlan(session, context, schemaManager, txnService, plan, handler, range, commitThrottle);
+                range.progress.rangeCompleted();
+            }
+        } finally {
+            txnService.rollbackTransactionIfOpen(session);
+        }
+    }
+
+    private RowHandler tableIndexHandler(final Session session, final TransformCache transformCache) {
+        final WriteIndexRow buffer = new WriteIndexRow();
+        return new RowHandler() {
+            @Override
+            public void handleRow(final Row row) {
+                TableTransform transform = transformCache.get(row.rowType().typeId());
+                simpleCheckConstraints(session, transformCache, row);
+                for(final TableIndex index : transform.tableIndexes) {
+                    final Key hKey = store.createKey();
+                    row.hKey().copyTo(hKey);
+                    if (index.isSpatial()) {
+                        final SpatialColumnHandler spatialColumnHandler = new SpatialColumnHandler(index);
+                        spatialColumnHandler.processSpatialObject(
+                            row,
+                            new SpatialColumnHandler.Operation()
+                            {
+                                @Override
+                                public void handleZValue(long z)
+                                {
+                                    store.writeIndexRow(session, index, row, hKey, buffer,
+                                                        spatialColumnHandler, z, true);
+                                }
+                            });
+                    } else {
+                        store.writeIndexRow(session, index, row, hKey, buffer, null, -1L, true);
+                    }
+                }
+            }
+        };
+    }
+
+    private Key toKey(byte[] encoded) {
+        Key key = store.createKey();
+        System.arraycopy(encoded, 0, key.getEncodedBytes(), 0, encoded.length);
+        key.setEncodedSize(encoded.length);
+        return key;
     }
     
     @SuppressWarnings("unchecked")
@@ -548,7 +717,7 @@ public class OnlineHelper implements RowListener
                 public void handleRow(Row row) {
                     giHandler.handleRow(groupIndex, row, StoreGIHandler.Action.STORE);
                 }
-            });
+            }, null, commitThrottle);
         }
     }
 
@@ -769,11 +938,36 @@ public class OnlineHelper implements RowListener
                                 TransactionService txnService,
                                 Operator plan,
                                 RowHandler handler) {
-        LOG.debug("Running online plan: {}", plan);
+        runPlan(session, context, schemaManager, txnService, plan, handler, null, null);
+    }
+
+    /**
+     * @param range If not {@code null}, only scan the group from its start, inclusive, to its end, exclusive, and
+     *              mark it completed in the same transaction as its last rows.
+     * @param throttle If not {@code null}, consulted after every periodic commit.
+     */
+    private static void runPlan(Session session,
+                                QueryContext context,
+                                SchemaManager schemaManager,
+                                TransactionService txnService,
+                                Operator plan,
+                                RowHandler handler,
+                                BuildRange range,
+                                CommitThrottle throttle) {
+        LOG.debug("Running online plan: {} over {}", plan, range);
         Map<RowType,HKeyChecker> checkers = new HashMap<>();
         QueryBindings bindings = context.createBindings();
         Cursor cursor = API.cursor(plan, context, bindings);
         Rebindable rebindable = getRebindable(cursor);
+        Key rangeKey = null;
+        Key lastCommittedKey = null;
+        Key skipThrough = null;
+        if(range != null) {
+            rangeKey = new Key(null, 2047);
+            if(range.start != null) {
+                rebindable.rebindRange(range.start);
+            }
+        }
         cursor.openTopLevel();
         try {
             boolean done = false;
@@ -784,6 +978,15 @@ public class OnlineHelper implements RowListener
                 Row row = cursor.next();
                 boolean didCommit = false;
                 boolean didRollback = false;
+                if((row != null) && (range != null)) {
+                    row.hKey().copyTo(rangeKey);
+                    if((skipThrough != null) && (rangeKey.compareTo(skipThrough) <= 0)) {
+                        continue;   // Re-scanning the row a retry restarted from
+                    }
+                    if((range.end != null) && (rangeKey.compareTo(range.end) >= 0)) {
+                        row = null; // Next range begins here
+                    }
+                }
                 if(checkOnlineError) {
                     // Checked once per transaction here and in final phase in DDLFunctions
                     checkOnlineError(session, schemaManager);
@@ -813,7 +1016,14 @@ public class OnlineHelper implements RowListener
                                 LOG.trace("skipped row: {}", row);
                             }
                         }
+                        if(range != null) {
+                            range.progress.rowBuilt();
+                        }
+                        long commitStart = (throttle != null) ? System.nanoTime() : 0;
                         didCommit = txnService.periodicallyCommit(session);
+                        if(didCommit && (throttle != null)) {
+                            throttle.committed(session, System.nanoTime() - commitStart);
+                        }
                     } catch(InvalidOperationException e) {
                         if(!e.getCode().isRollbackClass()) {
                             throw e;
@@ -822,6 +1032,9 @@ public class OnlineHelper implements RowListener
                     }
                 } else {
                     // Cursor exhausted, completely finished
+                    if(range != null) {
+                        schemaManager.addOnlineBuildCompletedRange(session, range.tableID, range.index);
+                    }
                     didRollback = txnService.commitOrRetryTransaction(session);
                     done = didCommit = !didRollback;
                     if(didCommit) {
@@ -832,6 +1045,12 @@ public class OnlineHelper implements RowListener
                     LOG.debug("Committed up to row: {}: {} rows", row, rowCount);
                     checkOnlineError = true;
                     lastCommitted = row;
+                    if((range != null) && (row != null)) {
+                        if(lastCommittedKey == null) {
+                            lastCommittedKey = new Key(null, 2047);
+                        }
+                        rangeKey.copyTo(lastCommittedKey);
+                    }
                     checkers.clear();
                 } else if(didRollback) {
                     LOG.debug("Rolling back to row: {}", lastCommitted);
@@ -840,7 +1059,18 @@ public class OnlineHelper implements RowListener
                     txnService.rollbackTransactionIfOpen(session);
                     txnService.beginTransaction(session);
                     cursor.closeTopLevel();
-                    rebindable.rebind((lastCommitted == null) ? null : lastCommitted.hKey(), true);
+                    if(range != null) {
+                        // Resume the range just after the last committed row, including its descendants
+                        Key from = (lastCommittedKey != null) ? lastCommittedKey : range.start;
+                        if(from != null) {
+                            rebindable.rebindRange(from);
+                        } else {
+                            rebindable.rebind(null, true);
+                        }
+                        skipThrough = lastCommittedKey;
+                    } else {
+                        rebindable.rebind((lastCommitted == null) ? null : lastCommitted.hKey(), true);
+                    }
                     cursor.openTopLevel();
                 }
             }
@@ -1156,6 +1386,113 @@ public class OnlineHelper implements RowListener
         void handleRow(Row row);
     }
 
+    /** Notified, from worker threads, as ranges of a parallel index build complete. */
+    public interface BuildListener {
+        void rangeCompleted(TableName groupName, int completedRanges, int totalRanges);
+    }
+
+    /** Progress of building the indexes of one group, over ranges of its hKeys. */
+    public static class BuildProgress {
+        private final TableName groupName;
+        private final int totalRanges;
+        private final AtomicInteger completedRanges;
+        private final AtomicLong rowCount = new AtomicLong();
+        private final long startTimeMillis = System.currentTimeMillis();
+        private final BuildListener listener;
+
+        private BuildProgress(TableName groupName, int totalRanges, int completedRanges, BuildListener listener) {
+            this.groupName = groupName;
+            this.totalRanges = totalRanges;
+            this.completedRanges = new AtomicInteger(completedRanges);
+            this.listener = listener;
+        }
+
+        public TableName getGroupName() {
+            return groupName;
+        }
+
+        public int getTotalRanges() {
+            return totalRanges;
+        }
+
+        public int getCompletedRanges() {
+            return completedRanges.get();
+        }
+
+        /** Rows scanned so far, including any scanned again after a retry. */
+        public long getRowCount() {
+            return rowCount.get();
+        }
+
+        public long getStartTimeMillis() {
+            return startTimeMillis;
+        }
+
+        private void rowBuilt() {
+            rowCount.incrementAndGet();
+        }
+
+        private void rangeCompleted() {
+            int completed = completedRanges.incrementAndGet();
+            if(listener != null) {
+                listener.rangeCompleted(groupName, completed, totalRanges);
+            }
+        }
+    }
+
+    /** One range of a parallel build. A {@code null} start or end is the start or end of the group. */
+    private static class BuildRange {
+        public final int tableID;
+        public final int index;
+        public final Key start;
+        public final Key end;
+        public final BuildProgress progress;
+
+        private BuildRange(int tableID, int index, Key start, Key end, BuildProgress progress) {
+            this.tableID = tableID;
+            this.index = index;
+            this.start = start;
+            this.end = end;
+            this.progress = progress;
+        }
+
+        @Override
+        public String toString() {
+            return "range " + index + " [" + start + ", " + end + ")";
+        }
+    }
+
+    /**
+     * Pauses builds while the moving average of their commit latency is above the target, yielding the cluster to
+     * foreground work. Shared by all workers; racing updates to the average are harmless.
+     */
+    private static class CommitThrottle {
+        private static final long MAX_PAUSE_MILLIS = 1000;
+        private static final double WEIGHT = 0.2;
+
+        private final long targetMillis;
+        private volatile double averageMillis;
+
+        private CommitThrottle(long targetMillis) {
+            this.targetMillis = targetMillis;
+        }
+
+        public void committed(Session session, long elapsedNanos) {
+            double average = averageMillis * (1 - WEIGHT) + (elapsedNanos / 1.0e6) * WEIGHT;
+            averageMillis = average;
+            long pause = Math.min(MAX_PAUSE_MILLIS, Math.round(average - targetMillis));
+            if(pause > 0) {
+                LOG.debug("Pausing online build {}ms, average commit {}ms", pause, average);
+                try {
+                    Thread.sleep(pause);
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new QueryCanceledException(session);
+                }
+            }
+        }
+    }
+
     /**
      * Helper for saving concurrently handled rows.
      * Concrete implementations *must* be thread safe.
@@ -25,6 +25,7 @@ package com.foundationdb.server.store;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 import com.foundationdb.ais.AISCloner;
@@ -146,6 +147,21 @@ public interface SchemaManager {
     /** Discard definition changes since the last {@link #startOnline(Session)} call. */
     void discardOnline(Session session);
 
+    /** Let {@code helper} work on behalf of the online DDL in {@code session}, e.g. to build part of an index. */
+    void joinOnline(Session session, Session helper);
+
+    /** Get the hKey splits saved by {@link #setOnlineBuildSplits} for the group of {@code tableID}, or {@code null}. */
+    List<byte[]> getOnlineBuildSplits(Session session, int tableID);
+
+    /** Save the hKey splits that an online build of the group of {@code tableID} is divided into. */
+    void setOnlineBuildSplits(Session session, int tableID, List<byte[]> splits);
+
+    /** Mark range {@code range} of the online build of the group of {@code tableID} as complete. */
+    void addOnlineBuildCompletedRange(Session session, int tableID, int range);
+
+    /** Get ranges marked complete by {@link #addOnlineBuildCompletedRange}. */
+    Set<Integer> getOnlineBuildCompletedRanges(Session session, int tableID);
+
     /**
      * Create a new table in the SchemaManager.
      * @param session Session to operate under
@@ -43,6 +43,7 @@ import com.persistit.Key;
 import com.persistit.Value;
 
 import java.util.Collection;
+import java.util.List;
 
 public interface Store extends KeyCreator {
 
@@ -156,6 +157,12 @@ public interface Store extends KeyCreator {
 
     OnlineHelper getOnlineHelper();
 
+    /**
+     * Get encoded hKeys, in order, that split {@code group} into at most {@code maxRanges} ranges of
+     * similar size. Each is the first hKey of its range. Empty if the group should not be split.
+     */
+    List<byte[]> getGroupSplits(Session session, Group group, int maxRanges);
+
     /** (Test helper) Get exception thrown for online DML vs DDL violation */
     Class<? extends Exception> getOnlineDMLFailureException();
 
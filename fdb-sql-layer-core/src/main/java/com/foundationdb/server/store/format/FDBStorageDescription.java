@@ -35,6 +35,7 @@ import com.foundationdb.qp.row.OverlayingRow;
 import com.foundationdb.server.error.AkibanInternalException;
 import com.foundationdb.server.error.StorageDescriptionInvalidException;
 import com.foundationdb.server.service.session.Session;
+import com.foundationdb.server.store.FDBParallelRangeIterator;
 import com.foundationdb.server.store.FDBScanTransactionOptions;
 import com.foundationdb.server.store.FDBStore;
 import com.foundationdb.server.store.FDBStoreData;
@@ -46,7 +47,9 @@ import com.foundationdb.server.store.StoreStorageDescription;
 import com.foundationdb.server.types.aksql.aktypes.AkBlob;
 import com.foundationdb.server.service.blob.BlobRef;
 import com.foundationdb.KeySelector;
+import com.foundationdb.KeyValue;
 import com.foundationdb.Transaction;
+import com.foundationdb.async.AsyncIterator;
 import com.foundationdb.async.Future;
 import com.foundationdb.server.types.value.ValueSource;
 import com.foundationdb.tuple.ByteArrayUtil;
@@ -55,6 +58,7 @@ import com.google.protobuf.ByteString;
 import com.persistit.Key;
 
 import java.util.Arrays;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -68,6 +72,8 @@ import static com.foundationdb.server.store.FDBStoreDataHelper.*;
 public abstract class FDBStorageDescription extends StoreStorageDescription<FDBStore,FDBStoreData>
 {
     private byte[] prefixBytes;
+    // Enough sub-ranges that readers finishing early have more to do.
+    private static final int PARALLEL_RANGES_PER_READER = 4;
     private static final Logger LOG = LoggerFactory.getLogger(FDBStorageDescription.class);
     
     public FDBStorageDescription(HasStorage forObject, String storageFormat) {
@@ -181,6 +187,13 @@ public abstract class FDBStorageDescription extends StoreStorageDescription<FDBS
                         continue;
                     }
                     
+                    if (oldBlob.isLongLob()) {
+                        // Left in the lob service until output or an expression needs it.
+                        newRow.overlay(blobIndex, new BlobRef(oldBlob.getId(),
+                                                              store.getBlobContent(session, oldBlob.getId())));
+                        result = newRow;
+                        continue;
+                    }
                     byte[] blobData = store.getBlobData(session, oldBlob);
                     if (blobData == null) {
                         blobData = new byte[0];
@@ -188,12 +201,7 @@ public abstract class FDBStorageDescription extends StoreStorageDescription<FDBS
 
                     BlobRef newBlob = new BlobRef(blobData, BlobRef.LeadingBitState.NO);
                     newBlob.setIsReturnedBlobInUnwrappedMode(true);
-                    if (oldBlob.isLongLob()) {
-                        newBlob.setId(oldBlob.getId());
-                        newBlob.setLobType(BlobRef.LobType.LONG_LOB);
-                    } else {
-                        newBlob.setLobType(BlobRef.LobType.SHORT_LOB);
-                    }
+                    newBlob.setLobType(BlobRef.LobType.SHORT_LOB);
                     newRow.overlay(blobIndex, newBlob);
                     result = newRow;
                 }
@@ -296,6 +304,28 @@ public abstract class FDBStorageDescription extends StoreStorageDescription<FDBS
             txnState.getRangeIterator(ksLeft, ksRight, limit, false, transactionOptions));
     }
 
+    /** Set up <code>storeData.iterator</code> to iterate over the whole group,
+     * reading sub-ranges split at shard boundaries concurrently.
+     * @param ordered Return rows in key order.
+     */
+    public void parallelGroupIterator(FDBStore store, Session session, FDBStoreData storeData,
+                                      int parallelism, boolean ordered,
+                                      FDBScanTransactionOptions transactionOptions) {
+        storeData.iterator = new FDBStoreDataKeyValueIterator(storeData,
+            parallelRangeIterator(store, session, storeData, parallelism, ordered, transactionOptions));
+    }
+
+    protected AsyncIterator<KeyValue> parallelRangeIterator(FDBStore store, Session session, FDBStoreData storeData,
+                                                            int parallelism, boolean ordered,
+                                                            FDBScanTransactionOptions transactionOptions) {
+        TransactionState txnState = store.getTransaction(session, storeData);
+        byte[] begin = prefixBytes(storeData);
+        byte[] end = ByteArrayUtil.strinc(begin);
+        List<byte[]> splits = FDBParallelRangeIterator.shardSplits(txnState, begin, end,
+                                                                   parallelism * PARALLEL_RANGES_PER_READER);
+        return new FDBParallelRangeIterator(txnState, splits, parallelism, ordered, transactionOptions);
+    }
+
     /** Set up <code>storeData.iterator</code> to iterate over index.
      * @param key Start at <code>storeData.persistitKey</code>
      * @param startInclusive Include key itself in result.
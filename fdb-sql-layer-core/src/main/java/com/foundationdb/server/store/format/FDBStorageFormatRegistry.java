@@ -34,6 +34,7 @@ import com.foundationdb.ais.protobuf.FDBProtobuf.TupleUsage;
 import com.foundationdb.server.service.config.ConfigurationService;
 import com.foundationdb.server.store.FDBNameGenerator;
 import com.foundationdb.server.store.format.columnkeys.ColumnKeysStorageFormat;
+import com.foundationdb.server.store.format.compressed.CompressedStorageFormat;
 import com.foundationdb.server.store.format.protobuf.FDBProtobufStorageFormat;
 import com.foundationdb.server.store.format.tuple.TupleStorageDescription;
 import com.foundationdb.server.store.format.tuple.TupleStorageFormat;
@@ -50,6 +51,7 @@ public class FDBStorageFormatRegistry extends StorageFormatRegistry
         TupleStorageFormat.register(this);
         FDBProtobufStorageFormat.register(this);
         ColumnKeysStorageFormat.register(this);
+        CompressedStorageFormat.register(this);
         super.registerStandardFormats();
     }
 
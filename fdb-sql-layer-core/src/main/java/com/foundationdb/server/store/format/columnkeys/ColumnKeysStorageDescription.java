@@ -49,6 +49,7 @@ import com.foundationdb.server.store.format.tuple.TupleStorageDescription;
 import com.foundationdb.server.types.value.ValueSources;
 import com.foundationdb.tuple.ByteArrayUtil;
 import com.foundationdb.tuple.Tuple2;
+import com.foundationdb.Transaction;
 import com.persistit.Key;
 
 import java.util.HashMap;
@@ -233,6 +234,19 @@ public class ColumnKeysStorageDescription extends FDBStorageDescription
                                           limit);
     }
 
+    @Override
+    public void parallelGroupIterator(FDBStore store, Session session, FDBStoreData storeData,
+                                      int parallelism, boolean ordered,
+                                      FDBScanTransactionOptions transactionOptions) {
+        // A row is several consecutive keys, which a shard boundary may split, so
+        // sub-ranges must be read back in order.
+        storeData.iterator =
+            new ColumnKeysStorageIterator(storeData,
+                                          parallelRangeIterator(store, session, storeData,
+                                                                parallelism, true, transactionOptions),
+                                          Transaction.ROW_LIMIT_UNLIMITED);
+    }
+
     public void indexIterator(FDBStore store, Session session, FDBStoreData storeData,
                               boolean key, boolean inclusive, boolean reverse) {
         throw new UnsupportedOperationException();
@@ -0,0 +1,153 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.store.format.compressed;
+
+import com.foundationdb.ais.model.Group;
+import com.foundationdb.ais.model.HasStorage;
+import com.foundationdb.ais.model.StorageDescription;
+import com.foundationdb.ais.model.validation.AISValidationFailure;
+import com.foundationdb.ais.model.validation.AISValidationOutput;
+import com.foundationdb.ais.protobuf.AISProtobuf.Storage;
+import com.foundationdb.ais.protobuf.FDBProtobuf;
+import com.foundationdb.ais.protobuf.FDBProtobuf.TupleUsage;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.Schema;
+import com.foundationdb.server.error.StorageDescriptionInvalidException;
+import com.foundationdb.server.service.session.Session;
+import com.foundationdb.server.store.FDBStore;
+import com.foundationdb.server.store.FDBStoreData;
+import com.foundationdb.server.store.format.tuple.TupleStorageDescription;
+import com.google.protobuf.ByteString;
+
+/**
+ * Group rows packed as a <code>Tuple</code>, like {@link TupleStorageDescription}
+ * with <code>KEY_AND_ROW</code>, but with each value run through a
+ * {@link RowCompressor} on the way in and out.
+ */
+public class CompressedStorageDescription extends TupleStorageDescription
+{
+    private byte[] dictionary;
+    private int minSize = RowCompressor.DEFAULT_MIN_SIZE;
+    private volatile RowCompressor compressor;
+
+    public CompressedStorageDescription(HasStorage forObject, String storageFormat) {
+        super(forObject, storageFormat);
+    }
+
+    public CompressedStorageDescription(HasStorage forObject, CompressedStorageDescription other, String storageFormat) {
+        super(forObject, other, storageFormat);
+        this.dictionary = other.dictionary;
+        this.minSize = other.minSize;
+    }
+
+    @Override
+    public StorageDescription cloneForObject(HasStorage forObject) {
+        return new CompressedStorageDescription(forObject, this, storageFormat);
+    }
+
+    @Override
+    public StorageDescription cloneForObjectWithoutState(HasStorage forObject) {
+        CompressedStorageDescription sd = new CompressedStorageDescription(forObject, storageFormat);
+        sd.setUsage(this.getUsage());
+        sd.setDictionary(this.dictionary);
+        sd.setMinSize(this.minSize);
+        return sd;
+    }
+
+    public byte[] getDictionary() {
+        return dictionary;
+    }
+    public void setDictionary(byte[] dictionary) {
+        this.dictionary = dictionary;
+        this.compressor = null;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+    public void setMinSize(int minSize) {
+        this.minSize = minSize;
+        this.compressor = null;
+    }
+
+    public void readProtobuf(FDBProtobuf.Compression pbCompression) {
+        dictionary = pbCompression.hasDictionary() ? pbCompression.getDictionary().toByteArray() : null;
+        minSize = pbCompression.hasMinSize() ? pbCompression.getMinSize() : RowCompressor.DEFAULT_MIN_SIZE;
+        compressor = null;
+    }
+
+    @Override
+    public void writeProtobuf(Storage.Builder builder) {
+        super.writeProtobuf(builder);
+        FDBProtobuf.Compression.Builder pbCompression = FDBProtobuf.Compression.newBuilder();
+        if (dictionary != null) {
+            pbCompression.setDictionary(ByteString.copyFrom(dictionary));
+        }
+        pbCompression.setMinSize(minSize);
+        builder.setExtension(FDBProtobuf.compression, pbCompression.build());
+    }
+
+    @Override
+    public void validate(AISValidationOutput output) {
+        super.validate(output);
+        if (!(object instanceof Group)) {
+            output.reportFailure(new AISValidationFailure(new StorageDescriptionInvalidException(object, "is not a Group and has no row to compress")));
+            return;
+        }
+        if (getUsage() != TupleUsage.KEY_AND_ROW) {
+            output.reportFailure(new AISValidationFailure(new StorageDescriptionInvalidException(object, "compressed storage needs KEY_AND_ROW")));
+        }
+        if (minSize < 0) {
+            output.reportFailure(new AISValidationFailure(new StorageDescriptionInvalidException(object, "has negative compression min_size")));
+        }
+    }
+
+    public RowCompressor getCompressor() {
+        RowCompressor result = compressor;
+        if (result == null) {
+            result = new RowCompressor(dictionary, minSize);
+            compressor = result;
+        }
+        return result;
+    }
+
+    @Override
+    public void packRow(FDBStore store, Session session, FDBStoreData storeData, Row row) {
+        super.packRow(store, session, storeData, row);
+        storeData.rawValue = getCompressor().compress(storeData.rawValue);
+    }
+
+    @Override
+    public Row expandRow(FDBStore store, Session session,
+                         FDBStoreData storeData, Schema schema) {
+        byte[] compressed = storeData.rawValue;
+        storeData.rawValue = getCompressor().expand(compressed);
+        try {
+            return super.expandRow(store, session, storeData, schema);
+        }
+        finally {
+            storeData.rawValue = compressed;
+        }
+    }
+}
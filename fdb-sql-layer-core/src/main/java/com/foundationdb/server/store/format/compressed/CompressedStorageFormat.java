@@ -0,0 +1,80 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.store.format.compressed;
+
+import com.foundationdb.ais.model.Group;
+import com.foundationdb.ais.model.HasStorage;
+import com.foundationdb.ais.protobuf.AISProtobuf.Storage;
+import com.foundationdb.ais.protobuf.FDBProtobuf;
+import com.foundationdb.server.error.StorageDescriptionInvalidException;
+import com.foundationdb.server.store.format.StorageFormat;
+import com.foundationdb.server.store.format.StorageFormatRegistry;
+import com.foundationdb.sql.parser.StorageFormatNode;
+import com.foundationdb.util.Strings;
+
+/**
+ * <code>STORAGE_FORMAT compressed(min_size = '64', dictionary = '<i>base64</i>')</code>
+ * for a group. The dictionary is normally produced by
+ * {@link RowCompressor#trainDictionary} from a sample of existing rows.
+ */
+public class CompressedStorageFormat extends StorageFormat<CompressedStorageDescription>
+{
+    public final static String storageFormat = "compressed";
+
+    private CompressedStorageFormat() {
+    }
+
+    public static void register(StorageFormatRegistry registry) {
+        registry.registerStorageFormat(FDBProtobuf.compression, storageFormat, CompressedStorageDescription.class, new CompressedStorageFormat());
+    }
+
+    public CompressedStorageDescription readProtobuf(Storage pbStorage, HasStorage forObject, CompressedStorageDescription storageDescription) {
+        if (storageDescription == null) {
+            storageDescription = new CompressedStorageDescription(forObject, storageFormat);
+        }
+        storageDescription.readProtobuf(pbStorage.getExtension(FDBProtobuf.compression));
+        return storageDescription;
+    }
+
+    public CompressedStorageDescription parseSQL(StorageFormatNode node, HasStorage forObject) {
+        CompressedStorageDescription storageDescription = new CompressedStorageDescription(forObject, storageFormat);
+        if (forObject instanceof Group) {
+            storageDescription.setUsage(FDBProtobuf.TupleUsage.KEY_AND_ROW);
+        }
+        String minSizeOption = node.getOptions().get("min_size");
+        if (minSizeOption != null) {
+            try {
+                storageDescription.setMinSize(Integer.parseInt(minSizeOption));
+            }
+            catch (NumberFormatException ex) {
+                throw new StorageDescriptionInvalidException(forObject, "has invalid min_size " + minSizeOption);
+            }
+        }
+        String dictionaryOption = node.getOptions().get("dictionary");
+        if (dictionaryOption != null) {
+            storageDescription.setDictionary(Strings.fromBase64(dictionaryOption));
+        }
+        return storageDescription;
+    }
+}
@@ -0,0 +1,232 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.store.format.compressed;
+
+import com.foundationdb.server.error.AkibanInternalException;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses individual row values with raw deflate, optionally primed
+ * with a preset dictionary.
+ * <p>
+ * Every value starts with a header byte saying how the rest is
+ * encoded. Values shorter than the minimum size are kept as is
+ * behind a {@link #RAW} header, as are values that would not
+ * shrink. Compressed values then have the expanded length as a
+ * varint, followed by the deflate stream.
+ */
+public class RowCompressor
+{
+    public static final byte RAW = 0;
+    public static final byte DEFLATE = 1;
+    public static final byte DEFLATE_DICTIONARY = 2;
+
+    public static final int DEFAULT_MIN_SIZE = 64;
+
+    /** Length of the substrings counted when training a dictionary. */
+    static final int TRAINING_SEGMENT = 8;
+
+    private static final Charset BYTES = Charset.forName("ISO-8859-1");
+
+    private static final ThreadLocal<Deflater> deflaters = new ThreadLocal<Deflater>() {
+        @Override
+        protected Deflater initialValue() {
+            return new Deflater(Deflater.BEST_SPEED, true);
+        }
+    };
+
+    private static final ThreadLocal<Inflater> inflaters = new ThreadLocal<Inflater>() {
+        @Override
+        protected Inflater initialValue() {
+            return new Inflater(true);
+        }
+    };
+
+    private final byte[] dictionary;
+    private final int minSize;
+
+    public RowCompressor(byte[] dictionary, int minSize) {
+        this.dictionary = ((dictionary != null) && (dictionary.length > 0)) ? dictionary : null;
+        this.minSize = minSize;
+    }
+
+    public byte[] getDictionary() {
+        return dictionary;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public byte[] compress(byte[] value) {
+        if (value.length >= minSize) {
+            Deflater deflater = deflaters.get();
+            deflater.reset();
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(value);
+            deflater.finish();
+            // Anything longer than the raw form is not worth keeping.
+            byte[] buffer = new byte[value.length + 1];
+            int pos = 0;
+            buffer[pos++] = (dictionary != null) ? DEFLATE_DICTIONARY : DEFLATE;
+            pos = putVarint(buffer, pos, value.length);
+            while (!deflater.finished() && (pos < buffer.length)) {
+                pos += deflater.deflate(buffer, pos, buffer.length - pos);
+            }
+            if (deflater.finished() && (pos < buffer.length)) {
+                return Arrays.copyOf(buffer, pos);
+            }
+        }
+        byte[] result = new byte[value.length + 1];
+        result[0] = RAW;
+        System.arraycopy(value, 0, result, 1, value.length);
+        return result;
+    }
+
+    public byte[] expand(byte[] value) {
+        switch (value[0]) {
+        case RAW:
+            return Arrays.copyOfRange(value, 1, value.length);
+        case DEFLATE:
+        case DEFLATE_DICTIONARY:
+            break;
+        default:
+            throw new AkibanInternalException("Unknown compressed value header: " + value[0]);
+        }
+        int pos = 1;
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = value[pos++];
+            length |= (b & 0x7F) << shift;
+            if (b >= 0) break;
+        }
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        if (value[0] == DEFLATE_DICTIONARY) {
+            if (dictionary == null) {
+                throw new AkibanInternalException("Compressed value needs a dictionary");
+            }
+            inflater.setDictionary(dictionary);
+        }
+        inflater.setInput(value, pos, value.length - pos);
+        byte[] result = new byte[length];
+        int n = 0;
+        try {
+            while (n < length) {
+                int count = inflater.inflate(result, n, length - n);
+                if ((count == 0) && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                n += count;
+            }
+        }
+        catch (DataFormatException ex) {
+            throw new AkibanInternalException("Corrupt compressed value", ex);
+        }
+        if (n != length) {
+            throw new AkibanInternalException("Compressed value expanded to " + n + " bytes, expected " + length);
+        }
+        return result;
+    }
+
+    private static int putVarint(byte[] buffer, int pos, int n) {
+        while ((n & ~0x7F) != 0) {
+            if (pos < buffer.length) {
+                buffer[pos] = (byte)((n & 0x7F) | 0x80);
+            }
+            pos++;
+            n >>>= 7;
+        }
+        if (pos < buffer.length) {
+            buffer[pos] = (byte)n;
+        }
+        return pos + 1;
+    }
+
+    /**
+     * Build a preset dictionary of at most <code>maxSize</code> bytes from
+     * some sample values, such as the packed rows of a group.
+     * <p>
+     * Substrings that turn up in the most samples are kept, with the most
+     * common placed at the end, where deflate can reach them with the
+     * shortest distances. Substrings seen only once are no help and are
+     * left out.
+     */
+    public static byte[] trainDictionary(Iterable<byte[]> samples, int maxSize) {
+        final Map<String,Integer> counts = new HashMap<>();
+        Set<String> seen = new HashSet<>();
+        for (byte[] sample : samples) {
+            seen.clear();
+            for (int i = 0; i + TRAINING_SEGMENT <= sample.length; i++) {
+                seen.add(new String(sample, i, TRAINING_SEGMENT, BYTES));
+            }
+            for (String segment : seen) {
+                Integer count = counts.get(segment);
+                counts.put(segment, (count == null) ? 1 : count + 1);
+            }
+        }
+        List<String> segments = new ArrayList<>();
+        for (Map.Entry<String,Integer> entry : counts.entrySet()) {
+            if (entry.getValue() > 1) {
+                segments.add(entry.getKey());
+            }
+        }
+        Collections.sort(segments, new Comparator<String>() {
+                @Override
+                public int compare(String s1, String s2) {
+                    int c = counts.get(s2).compareTo(counts.get(s1));
+                    if (c == 0) c = s1.compareTo(s2); // Keep training deterministic.
+                    return c;
+                }
+            });
+        List<String> chosen = new ArrayList<>();
+        StringBuilder contents = new StringBuilder();
+        for (String segment : segments) {
+            if (contents.length() + TRAINING_SEGMENT > maxSize) break;
+            if (contents.indexOf(segment) >= 0) continue;
+            chosen.add(segment);
+            contents.append(segment);
+        }
+        StringBuilder dictionary = new StringBuilder(contents.length());
+        for (int i = chosen.size() - 1; i >= 0; i--) {
+            dictionary.append(chosen.get(i));
+        }
+        return dictionary.toString().getBytes(BYTES);
+    }
+}
@@ -27,8 +27,8 @@ import com.foundationdb.ais.model.Column;
 import com.foundationdb.ais.model.Group;
 import com.foundationdb.ais.model.Join;
 import com.foundationdb.ais.model.Table;
+import com.foundationdb.qp.row.LazyRow;
 import com.foundationdb.qp.row.Row;
-import com.foundationdb.qp.row.ValuesHolderRow;
 import com.foundationdb.qp.rowtype.RowType;
 import com.foundationdb.qp.util.SchemaCache;
 import com.google.protobuf.DynamicMessage;
@@ -226,23 +226,32 @@ public abstract class ProtobufRowConverter
 
         @Override
         public Row decode(DynamicMessage msg) {
-            Object[] objects = new Object[fields.length];
-            for (FieldDescriptor field : msg.getAllFields().keySet()) {
-                Integer columnIndex = columnIndexesByField.get(field);
-                if (columnIndex != null) {
-                    objects[columnIndex] = conversions[columnIndex].getValue(msg, field);
-                }
-                else {
-                    Integer nullIndex = nullableIndexesByField.get(field);
-                    if (nullIndex != null) {
-                        // TODO: It's already null, because we aren't
-                        // handling defaults yet.
-                        objects[nullIndex] = null;
-                    }
-                }
-            }
-            ValuesHolderRow row = new ValuesHolderRow (rowType, objects);
-            return row;
+            return new MessageRow(this, msg);
+        }
+
+        protected Object decodeField(DynamicMessage msg, int i) {
+            FieldDescriptor field = fields[i];
+            // TODO: Absent is null, because we aren't handling defaults yet.
+            if ((field == null) || !msg.hasField(field))
+                return null;
+            return conversions[i].getValue(msg, field);
+        }
+    }
+
+    /** A row that converts fields of the message only when asked for. */
+    static class MessageRow extends LazyRow {
+        private final TableConverter converter;
+        private final DynamicMessage msg;
+
+        public MessageRow(TableConverter converter, DynamicMessage msg) {
+            super(converter.rowType);
+            this.converter = converter;
+            this.msg = msg;
+        }
+
+        @Override
+        protected Object decodeField(int i) {
+            return converter.decodeField(msg, i);
         }
     }
 }
@@ -0,0 +1,57 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.store.format.tuple;
+
+import com.foundationdb.qp.row.LazyRow;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.tuple.Tuple2;
+
+/**
+ * A row over a packed <code>Tuple</code>. Element boundaries are found
+ * only as far as the highest field asked for and only those fields
+ * are decoded.
+ */
+public class TupleRow extends LazyRow
+{
+    private final byte[] bytes;
+    // Start of each element, valid for the first known of them.
+    private final int[] offsets;
+    private int known;
+
+    public TupleRow(RowType rowType, byte[] bytes) {
+        super(rowType);
+        this.bytes = bytes;
+        this.offsets = new int[rowType.nFields()];
+        this.known = (offsets.length > 0) ? 1 : 0;
+    }
+
+    @Override
+    protected Object decodeField(int i) {
+        while (known <= i) {
+            offsets[known] = Tuple2.skipElement(bytes, offsets[known - 1]);
+            known++;
+        }
+        return Tuple2.decodeElement(bytes, offsets[i]);
+    }
+}
@@ -128,8 +128,9 @@ public class TupleRowConverter
         int nfields = rowType.nFields();
         Object[] objects = new Object[nfields];
         assert tuple.size() == nfields : "Row Type " + rowType + " does not match tuple size: " + tuple.size();
-        for (int i = 0; i < nfields; i++) {
-            objects[i] = tuple.get(i);
+        int i = 0;
+        for (Object object : tuple) {
+            objects[i++] = object;
         }
         ValuesHolderRow newRow = new ValuesHolderRow (rowType, objects);
         return newRow;
@@ -34,15 +34,18 @@ import com.foundationdb.ais.model.TableIndex;
 import com.foundationdb.ais.model.TableName;
 import com.foundationdb.ais.model.aisb2.AISBBasedBuilder;
 import com.foundationdb.ais.model.aisb2.NewAISBuilder;
+import com.foundationdb.qp.row.Row;
 import com.foundationdb.server.service.Service;
 import com.foundationdb.server.service.config.ConfigurationService;
 import com.foundationdb.server.service.listener.ListenerService;
+import com.foundationdb.server.service.listener.RowListener;
 import com.foundationdb.server.service.listener.TableListener;
 import com.foundationdb.server.service.session.Session;
 import com.foundationdb.server.service.session.SessionService;
 import com.foundationdb.server.service.transaction.TransactionService;
 import com.foundationdb.server.store.SchemaManager;
 import com.foundationdb.server.store.Store;
+import com.persistit.Key;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -61,7 +64,7 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.WeakHashMap;
 
-public abstract class AbstractIndexStatisticsService implements IndexStatisticsService, Service, TableListener
+public abstract class AbstractIndexStatisticsService implements IndexStatisticsService, Service, TableListener, RowListener
 {
     private static final Logger log = LoggerFactory.getLogger(AbstractIndexStatisticsService.class);
 
@@ -69,6 +72,7 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
     private static final String BUCKET_COUNT_PROPERTY = "fdbsql.index_statistics.bucket_count";
     private static final String BUCKET_TIME_PROPERTY = "fdbsql.index_statistics.time_limit";
     private static final String BACKGROUND_TIME_PROPERTY = "fdbsql.index_statistics.background";
+    private static final String DELTA_REFRESH_PROPERTY = "fdbsql.index_statistics.delta_refresh_ratio";
     private static final long TIME_LIMIT_UNLIMITED = -1;
     private static final long TIME_LIMIT_DISABLED = -2;
 
@@ -84,6 +88,7 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
     private BackgroundState backgroundState;
     private int bucketCount;
     private long scanTimeLimit, sleepTime, backgroundTimeLimit, backgroundSleepTime;
+    private double deltaRefreshRatio;
 
     protected AbstractIndexStatisticsService(Store store,
                                              TransactionService txnService,
@@ -113,8 +118,13 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
         bucketCount = Integer.parseInt(configurationService.getProperty(BUCKET_COUNT_PROPERTY));
         parseTimeLimit(BUCKET_TIME_PROPERTY, false);
         parseTimeLimit(BACKGROUND_TIME_PROPERTY, true);
+        String ratio = configurationService.getProperty(DELTA_REFRESH_PROPERTY);
+        deltaRefreshRatio = "disabled".equals(ratio) ? -1 : Double.parseDouble(ratio);
         registerStatsTables();
         listenerService.registerTableListener(this);
+        if (deltaRefreshRatio >= 0) {
+            listenerService.registerRowListener(this);
+        }
         backgroundState = new BackgroundState(backgroundTimeLimit != TIME_LIMIT_DISABLED);
     }
 
@@ -153,6 +163,9 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
     @Override
     public void stop() {
         listenerService.deregisterTableListener(this);
+        if (deltaRefreshRatio >= 0) {
+            listenerService.deregisterRowListener(this);
+        }
         cache = null;
         storeStats = null;
         bucketCount = 0;
@@ -366,10 +379,84 @@ public abstract class AbstractIndexStatisticsService implements IndexStatisticsS
     }
 
 
+    //
+    // RowListener
+    //
+
+    @Override
+    public void onInsertPost(Session session, Table table, Key hKey, Row row) {
+        for (Index index : table.getIndexes()) {
+            IndexStatisticsDelta delta = indexStatisticsDelta(index);
+            if (delta != null) {
+                delta.insert(row);
+                checkDelta(index, delta);
+            }
+        }
+    }
+
+    @Override
+    public void onUpdatePre(Session session, Table table, Key hKey, Row oldRow, Row newRow) {
+        // None
+    }
+
+    @Override
+    public void onUpdatePost(Session session, Table table, Key hKey, Row oldRow, Row newRow) {
+        for (Index index : table.getIndexes()) {
+            IndexStatisticsDelta delta = indexStatisticsDelta(index);
+            if (delta != null) {
+                delta.update(oldRow, newRow);
+                checkDelta(index, delta);
+            }
+        }
+    }
+
+    @Override
+    public void onDeletePre(Session session, Table table, Key hKey, Row row) {
+        for (Index index : table.getIndexes()) {
+            IndexStatisticsDelta delta = indexStatisticsDelta(index);
+            if (delta != null) {
+                delta.delete(row);
+                checkDelta(index, delta);
+            }
+        }
+    }
+
+
     //
     // Internal
     //
 
+    /** Get the delta for the cached statistics of the given index,
+     * creating it on first change. Only statistics already in the
+     * cache are tracked, since the planner has not seen any others.
+     * Changes from transactions that later roll back are counted
+     * too, which only makes a refresh come a little sooner.
+     */
+    private IndexStatisticsDelta indexStatisticsDelta(Index index) {
+        if (index.isSpatial()) {
+            return null;
+        }
+        IndexStatistics stats = cache.get(index);
+        if ((stats == null) || stats.isInvalid()) {
+            return null;
+        }
+        synchronized (stats) {
+            IndexStatisticsDelta delta = stats.getDelta();
+            if (delta == null) {
+                delta = new IndexStatisticsDelta(index, stats, store.createKey());
+                stats.setDelta(delta);
+            }
+            return delta;
+        }
+    }
+
+    private void checkDelta(Index index, IndexStatisticsDelta delta) {
+        if (delta.requestRefresh(deltaRefreshRatio)) {
+            log.debug("Statistics for {} have drifted by {}; refreshing", index.getIndexName(), delta.getChangeRatio());
+            backgroundState.offer(index);
+        }
+    }
+
     private static AkibanInformationSchema createStatsTables(SchemaManager schemaManager) {
         NewAISBuilder builder = AISBBasedBuilder.create(INDEX_STATISTICS_TABLE_NAME.getSchemaName(),
                                                         schemaManager.getTypesTranslator());
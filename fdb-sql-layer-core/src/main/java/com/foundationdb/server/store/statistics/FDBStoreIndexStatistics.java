@@ -23,37 +23,73 @@
  */
 package com.foundationdb.server.store.statistics;
 
+import com.foundationdb.KeyValue;
+import com.foundationdb.async.Future;
 import com.foundationdb.ais.model.Index;
 import com.foundationdb.ais.model.IndexColumn;
 import com.foundationdb.ais.model.Table;
 import com.foundationdb.qp.row.Row;
 import com.foundationdb.qp.rowtype.Schema;
+import com.foundationdb.qp.storeadapter.FDBAdapter;
 import com.foundationdb.qp.util.SchemaCache;
+import com.foundationdb.server.error.QueryCanceledException;
 import com.foundationdb.server.service.config.ConfigurationService;
 import com.foundationdb.server.service.session.Session;
+import com.foundationdb.server.store.FDBParallelRangeIterator;
 import com.foundationdb.server.store.FDBScanTransactionOptions;
 import com.foundationdb.server.store.FDBStore;
 import com.foundationdb.server.store.FDBStoreData;
 import com.foundationdb.server.store.FDBStoreDataHelper;
+import com.foundationdb.server.store.FDBTransactionService.TransactionState;
+import com.foundationdb.tuple.ByteArrayUtil;
 import com.persistit.Key;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
 import static com.foundationdb.server.store.statistics.IndexStatisticsService.INDEX_STATISTICS_TABLE_NAME;
 import static com.foundationdb.server.store.statistics.IndexStatisticsVisitor.VisitorCreator;
 
 public class FDBStoreIndexStatistics extends AbstractStoreIndexStatistics<FDBStore> implements VisitorCreator<Key,byte[]> {
     public static final String SAMPLER_COUNT_LIMIT_PROPERTY = "fdbsql.index_statistics.sampler_count_limit";
+    public static final String SAMPLE_THRESHOLD_PROPERTY = "fdbsql.index_statistics.sample_threshold";
+    public static final String SAMPLE_RUNS_PROPERTY = "fdbsql.index_statistics.sample_runs";
+    public static final String SAMPLE_RUN_LENGTH_PROPERTY = "fdbsql.index_statistics.sample_run_length";
     private static final Logger logger = LoggerFactory.getLogger(FDBStoreIndexStatistics.class);
 
+    /** Number of sample runs read concurrently. */
+    private static final int SAMPLE_BATCH_SIZE = 100;
+    /** Number of key bytes past the common prefix used to pick a random position. */
+    private static final int KEY_POSITION_BYTES = 8;
+
+    private static final Comparator<KeyValue> KEY_ORDER = new Comparator<KeyValue>() {
+        @Override
+        public int compare(KeyValue kv1, KeyValue kv2) {
+            return ByteArrayUtil.compareUnsigned(kv1.getKey(), kv2.getKey());
+        }
+    };
+
     private final IndexStatisticsService indexStatisticsService;
     private final long samplerCountLimit;
+    private final long sampleThreshold;
+    private final int sampleRuns, sampleRunLength;
 
     public FDBStoreIndexStatistics(FDBStore store, IndexStatisticsService indexStatisticsService, ConfigurationService configurationService) {
         super(store);
         this.indexStatisticsService = indexStatisticsService;
         this.samplerCountLimit = Long.parseLong(configurationService.getProperty(SAMPLER_COUNT_LIMIT_PROPERTY));
+        String threshold = configurationService.getProperty(SAMPLE_THRESHOLD_PROPERTY);
+        this.sampleThreshold = "disabled".equals(threshold) ? Long.MAX_VALUE : Long.parseLong(threshold);
+        this.sampleRuns = Integer.parseInt(configurationService.getProperty(SAMPLE_RUNS_PROPERTY));
+        this.sampleRunLength = Integer.parseInt(configurationService.getProperty(SAMPLE_RUN_LENGTH_PROPERTY));
     }
 
 
@@ -116,6 +152,9 @@ public class FDBStoreIndexStatistics extends AbstractStoreIndexStatistics<FDBSto
             transactionOptions = FDBScanTransactionOptions.SNAPSHOT;
         }
         long indexRowCount = estimateIndexRowCount(session, index);
+        if (indexRowCount > sampleThreshold) {
+            return computeSampledIndexStatistics(session, index, indexRowCount, transactionOptions);
+        }
         long expectedSampleCount = indexRowCount;
         int sampleRate = 1, skippedSamples = 0;
         int nSingle = index.getKeyColumns().size() - 1;
@@ -154,6 +193,165 @@ public class FDBStoreIndexStatistics extends AbstractStoreIndexStatistics<FDBSto
         return indexStatistics;
     }
 
+    /**
+     * Analyze a large index from short runs of adjacent keys read at
+     * random positions spread evenly across its shards, rather than the
+     * whole thing. The visitor sees the runs in key order, and the
+     * resulting histograms are then extrapolated to the whole index.
+     * Like a full scan, the transaction is committed as it goes, subject
+     * to the same time limit.
+     */
+    protected IndexStatistics computeSampledIndexStatistics(Session session, Index index, long indexRowCount,
+                                                            FDBScanTransactionOptions transactionOptions) {
+        // Same bound on retained keys as sampling during a full scan.
+        int nSingle = index.getKeyColumns().size() - 1;
+        long maxRuns = samplerCountLimit / Math.max(nSingle, 1) / sampleRunLength;
+        int runs = (int)Math.max(1, Math.min(sampleRuns, maxRuns));
+        FDBStoreData storeData = getStore().createStoreData(session, index);
+        TransactionState txn = getStore().getTransaction(session, storeData);
+        byte[] begin = FDBStoreDataHelper.prefixBytes(storeData);
+        byte[] end = ByteArrayUtil.strinc(begin);
+        List<byte[]> splits = FDBParallelRangeIterator.shardSplits(txn, begin, end, runs);
+        int nranges = splits.size() - 1;
+        Random random = new Random();
+        List<KeyValue> sample = new ArrayList<>(runs * sampleRunLength);
+        List<Future<List<KeyValue>>> pending = new ArrayList<>(SAMPLE_BATCH_SIZE);
+        for (int i = 0; i < runs; i++) {
+            if (pending.isEmpty() && transactionOptions.shouldCommitAfterMillis(txn.getStartTime())) {
+                txn.commitAndReset();
+                try {
+                    transactionOptions.maybeSleepAfterCommit();
+                }
+                catch (InterruptedException ex) {
+                    throw new QueryCanceledException(session);
+                }
+            }
+            int range = (int)((long)i * nranges / runs);
+            byte[] rangeEnd = splits.get(range + 1);
+            byte[] start = randomKeyBetween(splits.get(range), rangeEnd, random);
+            pending.add(txn.getSnapshotRangeAsFutureList(start, rangeEnd, sampleRunLength, false));
+            if ((pending.size() == SAMPLE_BATCH_SIZE) || (i == runs - 1)) {
+                try {
+                    for (Future<List<KeyValue>> run : pending) {
+                        sample.addAll(run.get());
+                    }
+                }
+                catch (RuntimeException e) {
+                    throw FDBAdapter.wrapFDBException(session, e);
+                }
+                pending.clear();
+            }
+        }
+        // Runs can overlap when two positions land close together.
+        Collections.sort(sample, KEY_ORDER);
+        int sampleSize = 0;
+        for (int i = 0; i < sample.size(); i++) {
+            if ((sampleSize == 0) ||
+                (KEY_ORDER.compare(sample.get(sampleSize - 1), sample.get(i)) != 0)) {
+                sample.set(sampleSize++, sample.get(i));
+            }
+        }
+        IndexStatisticsVisitor<Key,byte[]> visitor = new IndexStatisticsVisitor<>(session, index, indexRowCount, sampleSize, this);
+        int bucketCount = indexStatisticsService.bucketCount();
+        visitor.init(bucketCount);
+        for (int i = 0; i < sampleSize; i++) {
+            KeyValue kv = sample.get(i);
+            storeData.rawKey = kv.getKey();
+            FDBStoreDataHelper.unpackKey(storeData);
+            visitor.visit(storeData.persistitKey, kv.getValue());
+        }
+        visitor.finish(bucketCount);
+        IndexStatistics indexStatistics = visitor.getIndexStatistics();
+        extrapolate(indexStatistics, index.getKeyColumns().size(), indexRowCount, sampleRunLength);
+        if (logger.isDebugEnabled()) {
+            // Runs are the independent units, so the relative error of
+            // the extrapolated counts goes roughly as 1/sqrt(runs).
+            logger.debug("Sampled {} keys in {} runs over {} shards of about {} rows, relative error ~{}",
+                         sampleSize, runs, nranges, indexRowCount,
+                         String.format("%.3f", 1.0 / Math.sqrt(runs)));
+            logger.debug("Analyzed: " + indexStatistics.toString(index));
+        }
+        return indexStatistics;
+    }
+
+    /**
+     * Scale histograms computed from a sample of contiguous runs up to
+     * the whole index, which has <code>rowCount / sampledCount</code>
+     * times as many rows and, since the runs are contiguous, about that
+     * many times as many distinct values in any range. A value with fewer
+     * duplicates than a run holds was generally read whole, so its equal
+     * count stands; one with more was sampled like everything else.
+     * Afterwards the statistics describe all <code>rowCount</code> rows.
+     */
+    static void extrapolate(IndexStatistics indexStatistics, int columnCount,
+                            long rowCount, int runLength) {
+        long sampledCount = indexStatistics.getSampledCount();
+        if ((sampledCount <= 0) || (rowCount <= sampledCount)) {
+            return;
+        }
+        double density = (double)rowCount / sampledCount;
+        for (int i = 0; i < columnCount; i++) {
+            extrapolate(indexStatistics.getHistogram(0, i + 1), density, runLength);
+            if (i > 0) {
+                extrapolate(indexStatistics.getHistogram(i, 1), density, runLength);
+            }
+        }
+        indexStatistics.setSampledCount(rowCount);
+    }
+
+    private static void extrapolate(Histogram histogram, double density, int runLength) {
+        if (histogram == null) {
+            return;
+        }
+        for (HistogramEntry entry : histogram.getEntries()) {
+            long equalCount = entry.getEqualCount();
+            if (equalCount >= runLength) {
+                equalCount = Math.round(equalCount * density);
+            }
+            // The entry's key is one of the values in its bucket and
+            // keeps its own count; the rest of the bucket gets the rest.
+            long lessCount = Math.max(Math.round((entry.getLessCount() + entry.getEqualCount()) * density) - equalCount, 0);
+            long distinctCount = Math.round((entry.getDistinctCount() + 1) * density) - 1;
+            distinctCount = Math.max(Math.min(distinctCount, lessCount), (lessCount > 0) ? 1 : 0);
+            entry.setCounts(equalCount, lessCount, distinctCount);
+        }
+    }
+
+    /**
+     * Pick a key uniformly at random between <code>lo</code> (inclusive)
+     * and <code>hi</code> (exclusive), treating the bytes after their common
+     * prefix as an unsigned fraction.
+     */
+    static byte[] randomKeyBetween(byte[] lo, byte[] hi, Random random) {
+        int prefix = 0;
+        while ((prefix < lo.length) && (prefix < hi.length) && (lo[prefix] == hi[prefix])) {
+            prefix++;
+        }
+        BigInteger low = new BigInteger(1, keyPosition(lo, prefix));
+        BigInteger span = new BigInteger(1, keyPosition(hi, prefix)).subtract(low);
+        if (span.signum() <= 0) {
+            return lo;
+        }
+        byte[] position = low.add(new BigInteger(span.bitLength(), random).mod(span)).toByteArray();
+        byte[] result = Arrays.copyOf(lo, prefix + KEY_POSITION_BYTES);
+        int n = Math.min(position.length, KEY_POSITION_BYTES);
+        Arrays.fill(result, prefix, prefix + KEY_POSITION_BYTES, (byte)0);
+        System.arraycopy(position, position.length - n, result, result.length - n, n);
+        // Truncating lo to the position bytes can put the result before it.
+        if (ByteArrayUtil.compareUnsigned(result, lo) < 0) {
+            return lo;
+        }
+        return result;
+    }
+
+    private static byte[] keyPosition(byte[] key, int prefix) {
+        byte[] bytes = new byte[KEY_POSITION_BYTES];
+        if (prefix < key.length) {
+            System.arraycopy(key, prefix, bytes, 0, Math.min(KEY_POSITION_BYTES, key.length - prefix));
+        }
+        return bytes;
+    }
+
 
     //
     // VisitorCreator
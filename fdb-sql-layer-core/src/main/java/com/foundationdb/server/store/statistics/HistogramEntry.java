@@ -35,4 +35,10 @@ public class HistogramEntry extends HistogramEntryDescription {
     public byte[] getKeyBytes() {
         return keyBytes;
     }
+
+    void setCounts(long equalCount, long lessCount, long distinctCount) {
+        this.equalCount = equalCount;
+        this.lessCount = lessCount;
+        this.distinctCount = distinctCount;
+    }
 }
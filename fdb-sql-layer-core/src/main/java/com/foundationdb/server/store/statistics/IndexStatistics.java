@@ -50,6 +50,8 @@ public class IndexStatistics
     //    multiColumnHistograms[2]: (a, b, c)
     private Histogram[] multiColumnHistograms;
     private Histogram[] singleColumnHistograms;
+    // Changes since these statistics were computed, once there are any.
+    private IndexStatisticsDelta delta;
 
     protected IndexStatistics(Index index) {
         this.indexName = index.getIndexName().getName();
@@ -110,6 +112,13 @@ public class IndexStatistics
         this.warned = warned;
     }
 
+    public synchronized IndexStatisticsDelta getDelta() {
+        return delta;
+    }
+    public synchronized void setDelta(IndexStatisticsDelta delta) {
+        this.delta = delta;
+    }
+
     public Histogram getHistogram(int firstColumn, int columnCount) {
         assert firstColumn == 0 || columnCount == 1;
         return
@@ -0,0 +1,266 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.store.statistics;
+
+import com.foundationdb.ais.model.Column;
+import com.foundationdb.ais.model.Index;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.server.PersistitKeyValueTarget;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.util.CountMinSketch;
+import com.foundationdb.util.HyperLogLog;
+import com.google.common.primitives.UnsignedBytes;
+import com.persistit.Key;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/** Changes to the leading column of an index since its statistics
+ * were computed, as seen by DML on this server.
+ *
+ * Inserted and deleted keys go into count-min sketches, so that the
+ * frequency of any one value can be corrected. Keys beyond either end
+ * of the leading histogram, as with an ever increasing timestamp, are
+ * counted separately, along with how far they reach and how many
+ * distinct values they have, since the histogram knows nothing about them.
+ */
+public class IndexStatisticsDelta
+{
+    private static final double SKETCH_ERROR = 0.005;
+    private static final double SKETCH_FAILURE = 0.01;
+    private static final int DISTINCT_PRECISION = 10;
+    private static final Comparator<byte[]> BYTES_COMPARATOR = UnsignedBytes.lexicographicalComparator();
+
+    // NOTE: No reference to the Index, for the same reason as IndexStatistics.
+    private final TInstance type;
+    private final int position;
+    private final long rowCount;
+    private final byte[] lowerBound, upperBound;
+    private final Key key;
+    private final PersistitKeyValueTarget keyTarget;
+    private final CountMinSketch inserted, deleted;
+    private final HyperLogLog newDistinct;
+    private long insertCount, deleteCount, belowCount, aboveCount;
+    private byte[] minKey, maxKey;
+    private boolean refreshRequested;
+
+    public IndexStatisticsDelta(Index index, IndexStatistics indexStatistics, Key key) {
+        Column column = index.getKeyColumns().get(0).getColumn();
+        this.type = column.getType();
+        this.position = column.getPosition();
+        this.rowCount = indexStatistics.getRowCount();
+        Histogram histogram = indexStatistics.getHistogram(0, 1);
+        if ((histogram != null) && !histogram.getEntries().isEmpty()) {
+            List<HistogramEntry> entries = histogram.getEntries();
+            this.lowerBound = entries.get(0).getKeyBytes();
+            this.upperBound = entries.get(entries.size() - 1).getKeyBytes();
+        }
+        else {
+            this.lowerBound = this.upperBound = null;
+        }
+        this.key = key;
+        this.keyTarget = new PersistitKeyValueTarget(getClass().getSimpleName());
+        this.inserted = new CountMinSketch(SKETCH_ERROR, SKETCH_FAILURE);
+        this.deleted = new CountMinSketch(SKETCH_ERROR, SKETCH_FAILURE);
+        this.newDistinct = new HyperLogLog(DISTINCT_PRECISION);
+    }
+
+    public synchronized void insert(Row row) {
+        insert(keyBytes(row));
+    }
+
+    public synchronized void delete(Row row) {
+        delete(keyBytes(row));
+    }
+
+    public synchronized void update(Row oldRow, Row newRow) {
+        byte[] oldKey = keyBytes(oldRow);
+        byte[] newKey = keyBytes(newRow);
+        if (!Arrays.equals(oldKey, newKey)) {
+            delete(oldKey);
+            insert(newKey);
+        }
+    }
+
+    /** The number of rows in the index when it was analyzed. */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public synchronized long getInsertCount() {
+        return insertCount;
+    }
+
+    public synchronized long getDeleteCount() {
+        return deleteCount;
+    }
+
+    /** The first key in the leading histogram, if any. */
+    public byte[] getLowerBound() {
+        return lowerBound;
+    }
+
+    /** The last key in the leading histogram, if any. */
+    public byte[] getUpperBound() {
+        return upperBound;
+    }
+
+    /** The number of keys inserted before {@link #getLowerBound}. */
+    public synchronized long getBelowCount() {
+        return belowCount;
+    }
+
+    /** The number of keys inserted after {@link #getUpperBound}. */
+    public synchronized long getAboveCount() {
+        return aboveCount;
+    }
+
+    /** The least key inserted before {@link #getLowerBound}. */
+    public synchronized byte[] getMinKey() {
+        return minKey;
+    }
+
+    /** The greatest key inserted after {@link #getUpperBound}. */
+    public synchronized byte[] getMaxKey() {
+        return maxKey;
+    }
+
+    /** The approximate number of distinct keys inserted beyond either
+     * end of the leading histogram, which are all new.
+     */
+    public synchronized long getNewDistinctCount() {
+        return ((belowCount + aboveCount) == 0) ? 0 : newDistinct.estimate();
+    }
+
+    /** How much has changed, relative to the analyzed row count,
+     * allowing for the error in the sketches. */
+    public synchronized double getChangeRatio() {
+        return (double)(insertCount + deleteCount + inserted.maxError() + deleted.maxError()) /
+               Math.max(rowCount, 1);
+    }
+
+    /** Return <code>true</code> the first time that the change ratio
+     * exceeds <code>maxChangeRatio</code>.
+     */
+    public synchronized boolean requestRefresh(double maxChangeRatio) {
+        if (!refreshRequested && (getChangeRatio() > maxChangeRatio)) {
+            refreshRequested = true;
+            return true;
+        }
+        return false;
+    }
+
+    /** Correct the fraction of analyzed rows with the given leading key
+     * for the keys inserted and deleted since.
+     */
+    public synchronized double fractionEqual(byte[] keyBytes, double histogramFraction) {
+        double rows;
+        if (isBelow(keyBytes)) {
+            if (belowCount == 0) {
+                return histogramFraction;
+            }
+            rows = 0;
+        }
+        else if (isAbove(keyBytes)) {
+            if (aboveCount == 0) {
+                return histogramFraction;
+            }
+            rows = 0;
+        }
+        else {
+            rows = histogramFraction * rowCount;
+        }
+        long hash = hash(keyBytes);
+        rows += inserted.estimate(hash) - deleted.estimate(hash);
+        return Math.max(rows, 0) / currentRowCount();
+    }
+
+    /** Correct the fraction of analyzed rows in a range of leading keys,
+     * given how many of the keys inserted beyond the ends of the histogram
+     * fall in the range. Other changes are assumed to follow the histogram.
+     */
+    public synchronized double fractionBetween(double histogramFraction, long outsideRows) {
+        long inside = insertCount - belowCount - aboveCount - deleteCount;
+        double rows = histogramFraction * Math.max(rowCount + inside, 0) + outsideRows;
+        return rows / currentRowCount();
+    }
+
+    private long currentRowCount() {
+        return Math.max(rowCount + insertCount - deleteCount, 1);
+    }
+
+    private void insert(byte[] keyBytes) {
+        long hash = hash(keyBytes);
+        inserted.add(hash, 1);
+        insertCount++;
+        if (isBelow(keyBytes)) {
+            belowCount++;
+            newDistinct.add(hash);
+            if ((minKey == null) || (BYTES_COMPARATOR.compare(keyBytes, minKey) < 0)) {
+                minKey = keyBytes;
+            }
+        }
+        else if (isAbove(keyBytes)) {
+            aboveCount++;
+            newDistinct.add(hash);
+            if ((maxKey == null) || (BYTES_COMPARATOR.compare(keyBytes, maxKey) > 0)) {
+                maxKey = keyBytes;
+            }
+        }
+    }
+
+    private void delete(byte[] keyBytes) {
+        deleted.add(hash(keyBytes), 1);
+        deleteCount++;
+    }
+
+    private boolean isBelow(byte[] keyBytes) {
+        return (lowerBound != null) && (BYTES_COMPARATOR.compare(keyBytes, lowerBound) < 0);
+    }
+
+    private boolean isAbove(byte[] keyBytes) {
+        return (upperBound != null) && (BYTES_COMPARATOR.compare(keyBytes, upperBound) > 0);
+    }
+
+    /** Encode the leading column the same way as histogram entries. */
+    private byte[] keyBytes(Row row) {
+        key.clear();
+        keyTarget.attach(key);
+        type.writeCollating(row.value(position), keyTarget);
+        byte[] keyBytes = new byte[key.getEncodedSize()];
+        System.arraycopy(key.getEncodedBytes(), 0, keyBytes, 0, keyBytes.length);
+        return keyBytes;
+    }
+
+    /** 64-bit FNV-1a; the sketches mix it further. */
+    private static long hash(byte[] keyBytes) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : keyBytes) {
+            hash ^= (b & 0xFF);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -66,7 +66,10 @@ public class BlobSize extends TScalarBase {
             if (o instanceof BlobRef) {
                 blobRef = (BlobRef) o;
                 String mode = context.getQueryContext().getStore().getConfig().getProperty(AkBlob.RETURN_UNWRAPPED);
-                if (mode.equalsIgnoreCase(AkBlob.UNWRAPPED)) {
+                if (blobRef.isStreamable()) {
+                    size = blobRef.getContentSize();
+                }
+                else if (mode.equalsIgnoreCase(AkBlob.UNWRAPPED)) {
                     byte[] content = blobRef.getBytes();
                     if (content != null) {
                         size = (long)content.length;
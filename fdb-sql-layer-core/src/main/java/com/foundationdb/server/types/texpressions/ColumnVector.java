@@ -0,0 +1,239 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.types.texpressions;
+
+import com.foundationdb.server.types.TClass;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.aksql.aktypes.AkBool;
+import com.foundationdb.server.types.mcompat.mtypes.MApproximateNumber;
+import com.foundationdb.server.types.mcompat.mtypes.MNumeric;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.server.types.value.ValueTarget;
+
+import java.util.Arrays;
+
+/**
+ * The values of one expression over a {@link com.foundationdb.qp.row.RowBatch}:
+ * a primitive array plus a null bitmap.
+ */
+public final class ColumnVector
+{
+    public enum Kind {
+        /** Any signed integer type, widened to <code>long</code>. */
+        LONG,
+        DOUBLE,
+        /** Stored in the <code>long</code> array as 0 or 1. */
+        BOOLEAN
+    }
+
+    /** The vector kind for values of the given type, or <code>null</code> if not supported. */
+    public static Kind kindOf(TInstance type) {
+        if (type == null)
+            return null;
+        TClass tclass = type.typeClass();
+        if ((tclass == MNumeric.TINYINT) ||
+            (tclass == MNumeric.SMALLINT) ||
+            (tclass == MNumeric.MEDIUMINT) ||
+            (tclass == MNumeric.INT) ||
+            (tclass == MNumeric.BIGINT))
+            return Kind.LONG;
+        if (tclass == MApproximateNumber.DOUBLE)
+            return Kind.DOUBLE;
+        if (tclass == AkBool.INSTANCE)
+            return Kind.BOOLEAN;
+        return null;
+    }
+
+    public ColumnVector(Kind kind, int capacity) {
+        this.kind = kind;
+        if (kind == Kind.DOUBLE) {
+            this.longs = null;
+            this.doubles = new double[capacity];
+        }
+        else {
+            this.longs = new long[capacity];
+            this.doubles = null;
+        }
+        this.nulls = new long[(capacity + 63) >>> 6];
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public int capacity() {
+        return (longs != null) ? longs.length : doubles.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Start filling for <code>size</code> rows, all of them not null. */
+    public void reset(int size) {
+        this.size = size;
+        Arrays.fill(nulls, 0);
+    }
+
+    public boolean isNull(int i) {
+        return (nulls[i >>> 6] & (1L << i)) != 0;
+    }
+
+    public boolean hasNulls() {
+        for (long word : nulls) {
+            if (word != 0) return true;
+        }
+        return false;
+    }
+
+    public void setNull(int i) {
+        nulls[i >>> 6] |= (1L << i);
+    }
+
+    /** Mark as null every row that is null in either input. */
+    public void orNulls(ColumnVector v1, ColumnVector v2) {
+        for (int w = 0; w < nulls.length; w++) {
+            nulls[w] = v1.nulls[w] | v2.nulls[w];
+        }
+    }
+
+    public void copyNulls(ColumnVector v) {
+        System.arraycopy(v.nulls, 0, nulls, 0, nulls.length);
+    }
+
+    public long[] longs() {
+        return longs;
+    }
+
+    public double[] doubles() {
+        return doubles;
+    }
+
+    public long getLong(int i) {
+        return longs[i];
+    }
+
+    public double getDouble(int i) {
+        return doubles[i];
+    }
+
+    public boolean getBoolean(int i) {
+        return longs[i] != 0;
+    }
+
+    /** Set row <code>i</code> from a row-at-a-time value. */
+    public void set(int i, ValueSource source) {
+        if (source.isNull()) {
+            setNull(i);
+            return;
+        }
+        switch (source.getType().typeClass().underlyingType()) {
+        case BOOL:
+            longs[i] = source.getBoolean() ? 1 : 0;
+            break;
+        case INT_8:
+            longs[i] = source.getInt8();
+            break;
+        case INT_16:
+            longs[i] = source.getInt16();
+            break;
+        case INT_32:
+            longs[i] = source.getInt32();
+            break;
+        case INT_64:
+            longs[i] = source.getInt64();
+            break;
+        case DOUBLE:
+            doubles[i] = source.getDouble();
+            break;
+        default:
+            throw new IllegalArgumentException("Not a vector type: " + source.getType());
+        }
+    }
+
+    /** Set every row to the same value. */
+    public void fill(ValueSource source) {
+        if (size == 0)
+            return;
+        if (source.isNull()) {
+            for (int i = 0; i < size; i++) {
+                setNull(i);
+            }
+            return;
+        }
+        set(0, source);
+        if (longs != null)
+            Arrays.fill(longs, 1, size, longs[0]);
+        else
+            Arrays.fill(doubles, 1, size, doubles[0]);
+    }
+
+    /** Copy row <code>i</code> to a target of the given type. */
+    public void get(int i, TInstance type, ValueTarget target) {
+        if (isNull(i)) {
+            target.putNull();
+            return;
+        }
+        switch (type.typeClass().underlyingType()) {
+        case BOOL:
+            target.putBool(longs[i] != 0);
+            break;
+        case INT_8:
+            target.putInt8((byte)longs[i]);
+            break;
+        case INT_16:
+            target.putInt16((short)longs[i]);
+            break;
+        case INT_32:
+            target.putInt32((int)longs[i]);
+            break;
+        case INT_64:
+            target.putInt64(longs[i]);
+            break;
+        case DOUBLE:
+            target.putDouble(doubles[i]);
+            break;
+        default:
+            throw new IllegalArgumentException("Not a vector type: " + type);
+        }
+    }
+
+    /** A copy of the current contents, which later evaluation will not change. */
+    public ColumnVector copy() {
+        ColumnVector copy = new ColumnVector(kind, size);
+        if (longs != null)
+            System.arraycopy(longs, 0, copy.longs, 0, size);
+        else
+            System.arraycopy(doubles, 0, copy.doubles, 0, size);
+        System.arraycopy(nulls, 0, copy.nulls, 0, copy.nulls.length);
+        copy.size = size;
+        return copy;
+    }
+
+    private final Kind kind;
+    private final long[] longs;
+    private final double[] doubles;
+    private final long[] nulls;
+    private int size;
+}
@@ -109,6 +109,18 @@ public abstract class TComparisonExpressionBase implements TPreparedExpression {
         this.right = right;
     }
 
+    public TPreparedExpression getLeft() {
+        return left;
+    }
+
+    public Comparison getComparison() {
+        return comparison;
+    }
+
+    public TPreparedExpression getRight() {
+        return right;
+    }
+
     private boolean doEval(TInstance leftInstance, ValueSource left, TInstance rightInstance, ValueSource right) {
         int cmpI = compare(leftInstance, left, rightInstance, right);
         final Comparison actualComparison;
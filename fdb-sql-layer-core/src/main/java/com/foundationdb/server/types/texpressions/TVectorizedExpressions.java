@@ -0,0 +1,438 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.types.texpressions;
+
+import com.foundationdb.qp.operator.QueryBindings;
+import com.foundationdb.qp.operator.QueryContext;
+import com.foundationdb.qp.row.RowBatch;
+import com.foundationdb.server.types.TOverload;
+import com.foundationdb.server.types.common.funcs.BoolLogic;
+import com.foundationdb.server.types.mcompat.mfuncs.MArithmetic;
+import com.foundationdb.server.types.texpressions.ColumnVector.Kind;
+import com.google.common.primitives.Doubles;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns a {@link TPreparedExpression} into a {@link TVectorizedExpression}
+ * when every node in it is one of the common cases that can run over
+ * whole vectors: fields, literals and parameters of integer, double or
+ * boolean type, comparisons, <code>+ - *</code> and boolean logic.
+ */
+public final class TVectorizedExpressions
+{
+    /** Compile <code>expression</code>, or return <code>null</code> if any part of it
+     * needs row-at-a-time evaluation. */
+    public static TVectorizedExpression compile(TPreparedExpression expression) {
+        if (expression instanceof TPreparedField) {
+            Kind kind = ColumnVector.kindOf(expression.resultType());
+            if (kind == null) return null;
+            return new FieldVector(kind, ((TPreparedField)expression).getFieldIndex());
+        }
+        if ((expression instanceof TPreparedLiteral) ||
+            (expression instanceof TPreparedParameter)) {
+            Kind kind = ColumnVector.kindOf(expression.resultType());
+            if (kind == null) return null;
+            return new ConstantVector(kind, expression.build());
+        }
+        if (expression instanceof TComparisonExpression) {
+            TComparisonExpression comparison = (TComparisonExpression)expression;
+            if (comparison.getCollator() != null) return null;
+            TPreparedExpression left = comparison.getLeft();
+            TPreparedExpression right = comparison.getRight();
+            if (left.resultType() == null || right.resultType() == null ||
+                left.resultType().typeClass() != right.resultType().typeClass())
+                return null;
+            Kind kind = ColumnVector.kindOf(left.resultType());
+            if ((kind != Kind.LONG) && (kind != Kind.DOUBLE)) return null;
+            TVectorizedExpression vleft = compile(left);
+            if (vleft == null) return null;
+            TVectorizedExpression vright = compile(right);
+            if (vright == null) return null;
+            return new CompareVector(vleft, comparison.getComparison(), vright);
+        }
+        if (expression instanceof TPreparedFunction) {
+            TPreparedFunction function = (TPreparedFunction)expression;
+            if ((function.getPreptimeValues() != null) &&
+                !function.getPreptimeValues().isEmpty())
+                return null;
+            TOverload overload = function.getOverload().getUnderlying();
+            List<? extends TPreparedExpression> inputs = function.getInputs();
+            Kind resultKind = ColumnVector.kindOf(function.resultType());
+            if (resultKind == null) return null;
+            TVectorizedExpression[] vinputs = new TVectorizedExpression[inputs.size()];
+            for (int i = 0; i < vinputs.length; i++) {
+                vinputs[i] = compile(inputs.get(i));
+                if (vinputs[i] == null) return null;
+            }
+            if (overload == BoolLogic.NOT) {
+                if ((vinputs.length != 1) || (vinputs[0].kind() != Kind.BOOLEAN)) return null;
+                return new NotVector(vinputs[0]);
+            }
+            if ((overload == BoolLogic.AND) ||
+                (overload == BoolLogic.OR) ||
+                (overload == BoolLogic.XOR)) {
+                if ((vinputs.length != 2) ||
+                    (vinputs[0].kind() != Kind.BOOLEAN) ||
+                    (vinputs[1].kind() != Kind.BOOLEAN))
+                    return null;
+                return new LogicVector(overload, vinputs[0], vinputs[1]);
+            }
+            ArithOp op = ARITHMETIC.get(overload);
+            if (op != null) {
+                if ((vinputs.length != 2) ||
+                    (vinputs[0].kind() != op.kind) ||
+                    (vinputs[1].kind() != op.kind) ||
+                    (resultKind != op.kind))
+                    return null;
+                return new ArithVector(op, vinputs[0], vinputs[1]);
+            }
+        }
+        return null;
+    }
+
+    private TVectorizedExpressions() {
+    }
+
+    static enum ArithOp {
+        ADD_LONG(Kind.LONG), SUBTRACT_LONG(Kind.LONG), MULTIPLY_LONG(Kind.LONG),
+        ADD_DOUBLE(Kind.DOUBLE), SUBTRACT_DOUBLE(Kind.DOUBLE), MULTIPLY_DOUBLE(Kind.DOUBLE);
+
+        final Kind kind;
+
+        ArithOp(Kind kind) {
+            this.kind = kind;
+        }
+    }
+
+    // Only overloads whose row-at-a-time result is the same as the
+    // widened long or double computation. Division is left out
+    // because of its divide-by-zero handling.
+    private static final Map<TOverload,ArithOp> ARITHMETIC = new IdentityHashMap<>();
+    static {
+        ARITHMETIC.put(MArithmetic.ADD_TINYINT, ArithOp.ADD_LONG);
+        ARITHMETIC.put(MArithmetic.ADD_SMALLINT, ArithOp.ADD_LONG);
+        ARITHMETIC.put(MArithmetic.ADD_MEDIUMINT, ArithOp.ADD_LONG);
+        ARITHMETIC.put(MArithmetic.ADD_INT, ArithOp.ADD_LONG);
+        ARITHMETIC.put(MArithmetic.ADD_BIGINT, ArithOp.ADD_LONG);
+        ARITHMETIC.put(MArithmetic.ADD_DOUBLE, ArithOp.ADD_DOUBLE);
+        ARITHMETIC.put(MArithmetic.ADD_DOUBLE_P2, ArithOp.ADD_DOUBLE);
+        ARITHMETIC.put(MArithmetic.SUBTRACT_TINYINT, ArithOp.SUBTRACT_LONG);
+        ARITHMETIC.put(MArithmetic.SUBTRACT_SMALLINT, ArithOp.SUBTRACT_LONG);
+        ARITHMETIC.put(MArithmetic.SUBTRACT_MEDIUMINT, ArithOp.SUBTRACT_LONG);
+        ARITHMETIC.put(MArithmetic.SUBTRACT_INT, ArithOp.SUBTRACT_LONG);
+        ARITHMETIC.put(MArithmetic.SUBTRACT_BIGINT, ArithOp.SUBTRACT_LONG);
+        ARITHMETIC.put(MArithmetic.SUBSTRACT_DOUBLE, ArithOp.SUBTRACT_DOUBLE);
+        ARITHMETIC.put(MArithmetic.SUBSTRACT_DOUBLE_P2, ArithOp.SUBTRACT_DOUBLE);
+        ARITHMETIC.put(MArithmetic.MULTIPLY_TINYINT, ArithOp.MULTIPLY_LONG);
+        ARITHMETIC.put(MArithmetic.MULTIPLY_SMALLINT, ArithOp.MULTIPLY_LONG);
+        ARITHMETIC.put(MArithmetic.MULTIPLY_MEDIUMINT, ArithOp.MULTIPLY_LONG);
+        ARITHMETIC.put(MArithmetic.MULTIPLY_INT, ArithOp.MULTIPLY_LONG);
+        ARITHMETIC.put(MArithmetic.MULTIPLY_BIGINT, ArithOp.MULTIPLY_LONG);
+        ARITHMETIC.put(MArithmetic.MULTIPLY_DOUBLE, ArithOp.MULTIPLY_DOUBLE);
+    }
+
+    static abstract class VectorBase implements TVectorizedExpression {
+        protected final Kind kind;
+        private ColumnVector result;
+
+        protected VectorBase(Kind kind) {
+            this.kind = kind;
+        }
+
+        @Override
+        public Kind kind() {
+            return kind;
+        }
+
+        @Override
+        public void with(QueryContext context) {
+        }
+
+        @Override
+        public void with(QueryBindings bindings) {
+        }
+
+        // Sized to the batch's capacity so that null bitmaps line up.
+        protected ColumnVector result(RowBatch batch) {
+            if ((result == null) || (result.capacity() != batch.capacity()))
+                result = new ColumnVector(kind, batch.capacity());
+            result.reset(batch.size());
+            return result;
+        }
+    }
+
+    static abstract class BinaryVector extends VectorBase {
+        protected final TVectorizedExpression left, right;
+
+        protected BinaryVector(Kind kind, TVectorizedExpression left, TVectorizedExpression right) {
+            super(kind);
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public void with(QueryContext context) {
+            left.with(context);
+            right.with(context);
+        }
+
+        @Override
+        public void with(QueryBindings bindings) {
+            left.with(bindings);
+            right.with(bindings);
+        }
+    }
+
+    static final class FieldVector extends VectorBase {
+        private final int fieldIndex;
+
+        FieldVector(Kind kind, int fieldIndex) {
+            super(kind);
+            this.fieldIndex = fieldIndex;
+        }
+
+        @Override
+        public ColumnVector evaluate(RowBatch batch) {
+            int size = batch.size();
+            ColumnVector result = result(batch);
+            for (int i = 0; i < size; i++) {
+                result.set(i, batch.get(i).value(fieldIndex));
+            }
+            return result;
+        }
+    }
+
+    static final class ConstantVector extends VectorBase {
+        private final TEvaluatableExpression evaluation;
+
+        ConstantVector(Kind kind, TEvaluatableExpression evaluation) {
+            super(kind);
+            this.evaluation = evaluation;
+        }
+
+        @Override
+        public void with(QueryContext context) {
+            evaluation.with(context);
+        }
+
+        @Override
+        public void with(QueryBindings bindings) {
+            evaluation.with(bindings);
+        }
+
+        @Override
+        public ColumnVector evaluate(RowBatch batch) {
+            ColumnVector result = result(batch);
+            evaluation.evaluate();
+            result.fill(evaluation.resultValue());
+            return result;
+        }
+    }
+
+    static final class CompareVector extends BinaryVector {
+        private final Comparison comparison;
+
+        CompareVector(TVectorizedExpression left, Comparison comparison, TVectorizedExpression right) {
+            super(Kind.BOOLEAN, left, right);
+            this.comparison = comparison;
+        }
+
+        @Override
+        public ColumnVector evaluate(RowBatch batch) {
+            int size = batch.size();
+            ColumnVector lv = left.evaluate(batch);
+            ColumnVector rv = right.evaluate(batch);
+            ColumnVector result = result(batch);
+            result.orNulls(lv, rv);
+            long[] out = result.longs();
+            if (lv.getKind() == Kind.DOUBLE) {
+                double[] a = lv.doubles(), b = rv.doubles();
+                for (int i = 0; i < size; i++) {
+                    out[i] = comparison.matchesCompareTo(Double.compare(a[i], b[i])) ? 1 : 0;
+                }
+                return result;
+            }
+            long[] a = lv.longs(), b = rv.longs();
+            switch (comparison) {
+            case EQ:
+                for (int i = 0; i < size; i++) out[i] = (a[i] == b[i]) ? 1 : 0;
+                break;
+            case NE:
+                for (int i = 0; i < size; i++) out[i] = (a[i] != b[i]) ? 1 : 0;
+                break;
+            case LT:
+                for (int i = 0; i < size; i++) out[i] = (a[i] < b[i]) ? 1 : 0;
+                break;
+            case LE:
+                for (int i = 0; i < size; i++) out[i] = (a[i] <= b[i]) ? 1 : 0;
+                break;
+            case GT:
+                for (int i = 0; i < size; i++) out[i] = (a[i] > b[i]) ? 1 : 0;
+                break;
+            case GE:
+                for (int i = 0; i < size; i++) out[i] = (a[i] >= b[i]) ? 1 : 0;
+                break;
+            default:
+                throw new AssertionError(comparison);
+            }
+            return result;
+        }
+    }
+
+    static final class ArithVector extends BinaryVector {
+        private final ArithOp op;
+
+        ArithVector(ArithOp op, TVectorizedExpression left, TVectorizedExpression right) {
+            super(op.kind, left, right);
+            this.op = op;
+        }
+
+        @Override
+        public ColumnVector evaluate(RowBatch batch) {
+            int size = batch.size();
+            ColumnVector lv = left.evaluate(batch);
+            ColumnVector rv = right.evaluate(batch);
+            ColumnVector result = result(batch);
+            result.orNulls(lv, rv);
+            if (op.kind == Kind.LONG) {
+                long[] a = lv.longs(), b = rv.longs(), out = result.longs();
+                switch (op) {
+                case ADD_LONG:
+                    for (int i = 0; i < size; i++) out[i] = a[i] + b[i];
+                    break;
+                case SUBTRACT_LONG:
+                    for (int i = 0; i < size; i++) out[i] = a[i] - b[i];
+                    break;
+                case MULTIPLY_LONG:
+                    for (int i = 0; i < size; i++) out[i] = a[i] * b[i];
+                    break;
+                default:
+                    throw new AssertionError(op);
+                }
+            }
+            else {
+                double[] a = lv.doubles(), b = rv.doubles(), out = result.doubles();
+                switch (op) {
+                case ADD_DOUBLE:
+                    for (int i = 0; i < size; i++) out[i] = a[i] + b[i];
+                    break;
+                case SUBTRACT_DOUBLE:
+                    for (int i = 0; i < size; i++) out[i] = a[i] - b[i];
+                    break;
+                case MULTIPLY_DOUBLE:
+                    for (int i = 0; i < size; i++) out[i] = a[i] * b[i];
+                    // Same as MArithmetic.MULTIPLY_DOUBLE.
+                    for (int i = 0; i < size; i++) {
+                        if (!Doubles.isFinite(out[i])) result.setNull(i);
+                    }
+                    break;
+                default:
+                    throw new AssertionError(op);
+                }
+            }
+            return result;
+        }
+    }
+
+    static final class LogicVector extends BinaryVector {
+        private final TOverload op;
+
+        LogicVector(TOverload op, TVectorizedExpression left, TVectorizedExpression right) {
+            super(Kind.BOOLEAN, left, right);
+            this.op = op;
+        }
+
+        @Override
+        public ColumnVector evaluate(RowBatch batch) {
+            int size = batch.size();
+            ColumnVector lv = left.evaluate(batch);
+            ColumnVector rv = right.evaluate(batch);
+            ColumnVector result = result(batch);
+            long[] a = lv.longs(), b = rv.longs(), out = result.longs();
+            if (!lv.hasNulls() && !rv.hasNulls()) {
+                if (op == BoolLogic.AND)
+                    for (int i = 0; i < size; i++) out[i] = a[i] & b[i];
+                else if (op == BoolLogic.OR)
+                    for (int i = 0; i < size; i++) out[i] = a[i] | b[i];
+                else
+                    for (int i = 0; i < size; i++) out[i] = a[i] ^ b[i];
+                return result;
+            }
+            // Three-valued logic, as in BoolLogic: FALSE decides AND and
+            // TRUE decides OR even when the other side is NULL.
+            long decider = (op == BoolLogic.AND) ? 0 : 1;
+            for (int i = 0; i < size; i++) {
+                boolean ln = lv.isNull(i), rn = rv.isNull(i);
+                if (op == BoolLogic.XOR) {
+                    if (ln || rn)
+                        result.setNull(i);
+                    else
+                        out[i] = a[i] ^ b[i];
+                }
+                else if ((!ln && (a[i] == decider)) || (!rn && (b[i] == decider)))
+                    out[i] = decider;
+                else if (ln || rn)
+                    result.setNull(i);
+                else
+                    out[i] = 1 - decider;
+            }
+            return result;
+        }
+    }
+
+    static final class NotVector extends VectorBase {
+        private final TVectorizedExpression input;
+
+        NotVector(TVectorizedExpression input) {
+            super(Kind.BOOLEAN);
+            this.input = input;
+        }
+
+        @Override
+        public void with(QueryContext context) {
+            input.with(context);
+        }
+
+        @Override
+        public void with(QueryBindings bindings) {
+            input.with(bindings);
+        }
+
+        @Override
+        public ColumnVector evaluate(RowBatch batch) {
+            int size = batch.size();
+            ColumnVector iv = input.evaluate(batch);
+            ColumnVector result = result(batch);
+            result.copyNulls(iv);
+            long[] a = iv.longs(), out = result.longs();
+            for (int i = 0; i < size; i++) {
+                out[i] = 1 - a[i];
+            }
+            return result;
+        }
+    }
+}
@@ -403,6 +403,12 @@ public final class ValueSources {
     }
 
     public static int hash(ValueSource source, AkCollator collator) {
+        long hash = longHash(source, collator);
+        return ((int) (hash >> 32)) ^ (int) hash;
+    }
+
+    /** A hash that keeps all 64 bits, for consumers such as Bloom filters. */
+    public static long longHash(ValueSource source, AkCollator collator) {
         if (source.isNull())
             return 0;
         final long hash;
@@ -440,7 +446,7 @@ public final class ValueSources {
         default:
             throw new AssertionError(source.getType());
         }
-        return ((int) (hash >> 32)) ^ (int) hash;
+        return hash;
     }
 
     public static ValueSource getNullSource(TInstance underlying) {
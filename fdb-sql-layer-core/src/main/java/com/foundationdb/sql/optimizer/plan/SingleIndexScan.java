@@ -48,6 +48,8 @@ public final class SingleIndexScan extends IndexScan implements EqualityColumnsS
     private List<OrderByExpression> ordering;
 
     private OrderEffectiveness orderEffectiveness;
+    // How many leading columns of a sort this ordering satisfies when not all of them.
+    private int nOrderedSortColumns;
     private boolean usesAllColumns;
 
     // Conditions subsumed by this index.
@@ -251,6 +253,14 @@ public final class SingleIndexScan extends IndexScan implements EqualityColumnsS
         this.orderEffectiveness = orderEffectiveness;
     }
 
+    public int getNOrderedSortColumns() {
+        return nOrderedSortColumns;
+    }
+
+    public void setNOrderedSortColumns(int nOrderedSortColumns) {
+        this.nOrderedSortColumns = nOrderedSortColumns;
+    }
+
     @Override
     public List<IndexColumn> getIndexColumns() {
         return index.getAllColumns();
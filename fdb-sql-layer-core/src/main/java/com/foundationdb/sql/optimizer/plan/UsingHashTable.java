@@ -35,6 +35,7 @@ public class UsingHashTable extends UsingLoaderBase
     private List<ExpressionNode> lookupExpressions;
     private List<TKeyComparable> tKeyComparables;
     private List<AkCollator> collators;
+    private List<ExpressionNode> runtimeFilterExpressions;
 
     public UsingHashTable(HashTable hashTable, PlanNode loader, PlanNode input,
                           List<ExpressionNode> lookupExpressions,
@@ -61,6 +62,14 @@ public class UsingHashTable extends UsingLoaderBase
         return collators;
     }
 
+    /** Probe side keys that scans of the input can check against the loaded keys, or <code>null</code>. */
+    public List<ExpressionNode> getRuntimeFilterExpressions() {
+        return runtimeFilterExpressions;
+    }
+    public void setRuntimeFilterExpressions(List<ExpressionNode> runtimeFilterExpressions) {
+        this.runtimeFilterExpressions = runtimeFilterExpressions;
+    }
+
 
     @Override
     public String summaryString(SummaryConfiguration configuration) {
@@ -76,6 +85,8 @@ public class UsingHashTable extends UsingLoaderBase
     @Override
     protected void deepCopy(DuplicateMap map) {
         super.deepCopy(map);
+        if (runtimeFilterExpressions != null)
+            runtimeFilterExpressions = duplicateList(runtimeFilterExpressions, map);
     }
 
 }
\ No newline at end of file
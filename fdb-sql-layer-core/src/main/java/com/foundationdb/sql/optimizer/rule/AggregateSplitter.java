@@ -32,6 +32,7 @@ import com.foundationdb.sql.optimizer.plan.*;
 import com.foundationdb.sql.optimizer.plan.AggregateSource.Implementation;
 
 import com.foundationdb.sql.optimizer.plan.Sort.OrderByExpression;
+import com.foundationdb.sql.optimizer.rule.cost.CostEstimator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,9 +54,39 @@ public class AggregateSplitter extends BaseRule
         List<AggregateSourceState> sources = new AggregateSourceFinder(plan).find();
         for (AggregateSourceState source : sources) {
             split(source.aggregateSource);
+            chooseHash(source, (SchemaRulesContext)plan.getRulesContext());
         }
     }
 
+    /** Hash a sufficiently large unordered GROUP BY instead of
+     * sorting it first, if that is estimated to be cheaper. The hash
+     * cost includes spilling when the estimated groups do not fit in
+     * <code>hash_aggregate_memory</code>.
+     */
+    protected void chooseHash(AggregateSourceState source, SchemaRulesContext rulesContext) {
+        AggregateSource aggregateSource = source.aggregateSource;
+        if (!aggregateSource.hasGroupBy() ||
+            ((aggregateSource.getImplementation() != null) &&
+             (aggregateSource.getImplementation() != Implementation.SORT)))
+            return;
+        // A DISTINCT or ORDER BY within an aggregate needs sorted input anyway.
+        PlanNode input = aggregateSource.getInput();
+        if (!(input instanceof Project) ||
+            (((Project)input).getInput() instanceof Sort))
+            return;
+        long threshold = Long.parseLong(rulesContext.getProperty("hash_aggregate_threshold", "0"));
+        CostEstimate inputCost = source.containingQuery.getCostEstimate();
+        if ((threshold <= 0) || (inputCost == null) || (inputCost.getRowCount() < threshold))
+            return;
+        CostEstimator costEstimator = rulesContext.getCostEstimator();
+        List<ExpressionNode> groupBy = ((Project)input).getFields().subList(0, aggregateSource.getNGroupBy());
+        CostEstimate sortCost = costEstimator.costSort(inputCost.getRowCount());
+        CostEstimate hashCost = costEstimator.costHashAggregate(inputCost.getRowCount(), groupBy,
+                                                                aggregateSource.getNAggregates());
+        if (hashCost.compareTo(sortCost) < 0)
+            aggregateSource.setImplementation(Implementation.HASH);
+    }
+
     @SuppressWarnings("unchecked")
     protected void split(AggregateSource source) {
         assert !source.isProjectSplitOff();
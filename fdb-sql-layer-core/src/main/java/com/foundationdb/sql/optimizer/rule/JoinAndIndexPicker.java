@@ -57,10 +57,16 @@ public class JoinAndIndexPicker extends BaseRule
         return logger;
     }
 
+    /** Join orders to replay, if the caller has them. */
+    public static final PlanContext.WhiteboardMarker<JoinOrderHints> JOIN_ORDER_HINTS =
+        PlanContext.DefaultWhiteboardMarker.create();
+
     @Override
     public void apply(PlanContext planContext) {
         List<Picker> pickers = new JoinsFinder(planContext).find();
-        for (Picker picker : pickers) {
+        for (int i = 0; i < pickers.size(); i++) {
+            Picker picker = pickers.get(i);
+            picker.hintNumber = i;
             picker.apply();
         }
     }
@@ -74,6 +80,7 @@ public class JoinAndIndexPicker extends BaseRule
         QueryIndexGoal queryGoal;
         ConditionList originalSubqueryWhereConditions;
         boolean enableFKJoins = true;
+        int hintNumber = -1;
 
         public Picker(Joinable joinable, BaseQuery query,
                       PlanContext planContext,
@@ -207,8 +214,29 @@ public class JoinAndIndexPicker extends BaseRule
             // The number of tables in the set is smaller than our configuration threshold OR
             // The top join in the query isn't a FK join.
             if (tableCount <= threshold || ((JoinNode)joinable).getFKJoin() == null) {
-                return processor.run(joins, queryGoal.getWhereConditions()).
+                JoinOrderHints hints = null;
+                List<String> hintTables = null;
+                if ((hintNumber >= 0) && (joins == joinable)) {
+                    hints = planContext.getWhiteboard(JOIN_ORDER_HINTS);
+                }
+                if (hints != null) {
+                    hintTables = hintTables(tables);
+                    long[] joinOrder = hints.getJoinOrder(hintNumber, hintTables);
+                    if (joinOrder != null)
+                        processor.setJoinOrderHint(joinOrder);
+                }
+                Plan plan = processor.run(joins, queryGoal.getWhereConditions()).
                         bestPlan(Collections.<JoinOperator>emptyList(), sortAllowed);
+                if ((hints != null) && !processor.isJoinOrderHinted()) {
+                    List<Long> joinOrder = new ArrayList<>();
+                    addJoinOrder(plan, JoinableBitSet.through(tableCount - 1), joinOrder);
+                    long[] order = new long[joinOrder.size()];
+                    for (int i = 0; i < order.length; i++) {
+                        order[i] = joinOrder.get(i);
+                    }
+                    hints.putJoinOrder(hintNumber, hintTables, order);
+                }
+                return plan;
             } else {
                 processor.init(joins, null);
             }
@@ -308,6 +336,47 @@ public class JoinAndIndexPicker extends BaseRule
             return joinPlan;
         }
 
+        /** Describe the leaves of the join so that a remembered order
+         * is only replayed onto the same tables in the same positions.
+         */
+        protected static List<String> hintTables(List<Joinable> tables) {
+            List<String> result = new ArrayList<>(tables.size());
+            for (Joinable table : tables) {
+                if (table instanceof TableGroupJoinTree) {
+                    StringBuilder str = new StringBuilder();
+                    for (TableGroupJoinTree.TableGroupJoinNode node : (TableGroupJoinTree)table) {
+                        if (str.length() > 0) str.append(',');
+                        str.append(node.getTable().getTable().getTable().getTableId());
+                    }
+                    result.add(str.toString());
+                }
+                else {
+                    result.add(table.getClass().getSimpleName());
+                }
+            }
+            return result;
+        }
+
+        /** Record the splits that produced the given plan for the given tables. */
+        protected static void addJoinOrder(Plan plan, long tables, List<Long> joinOrder) {
+            if (plan instanceof JoinPlan) {
+                JoinPlan join = (JoinPlan)plan;
+                if (!JoinableBitSet.isEmpty(join.leftTables)) {
+                    joinOrder.add(tables);
+                    joinOrder.add(join.leftTables);
+                    addJoinOrder(join.left, join.leftTables, joinOrder);
+                    addJoinOrder(join.right, join.rightTables, joinOrder);
+                    return;
+                }
+            }
+            if (JoinableBitSet.count(tables) > 1) {
+                // Something like a group with IN list made from a
+                // join: allow anything inside of it.
+                joinOrder.add(tables);
+                joinOrder.add(JoinableBitSet.empty());
+            }
+        }
+
         /** Is this a single column in a known table? */
         protected static long columnReferenceTable(ExpressionNode node, Map<Joinable, Long>tableBitSets) {
             if (node instanceof ColumnExpression) {
@@ -914,6 +983,7 @@ public class JoinAndIndexPicker extends BaseRule
         JoinNode.Implementation joinImplementation;
         Collection<JoinOperator> joins;
         boolean needDistinct;
+        long leftTables, rightTables; // When made by enumerator.
 
         public JoinPlan(Plan left, Plan right, 
                         JoinType joinType, JoinNode.Implementation joinImplementation,
@@ -1232,12 +1302,16 @@ public class JoinAndIndexPicker extends BaseRule
             JoinPlan joinPlan = new JoinPlan(leftPlan, rightPlan,
                     joinType, JoinNode.Implementation.NESTED_LOOPS,
                     joins, costEstimate);
+            joinPlan.leftTables = left.bitset;
+            joinPlan.rightTables = right.bitset;
 
             if (isFreeOfJoinCondition(leftPlan, rightPlan.getConditions())) {
                 List<JoinOperator> joinOperators = duplicateJoins(joins);
                 Plan loaderPlan = right.bestPlan(condJoins, outsideJoins, false);
                 JoinPlan hashPlan = buildHashTableJoin(loaderPlan, joinPlan, joinOperators);
                 if (hashPlan != null) {
+                    hashPlan.leftTables = left.bitset;
+                    hashPlan.rightTables = right.bitset;
                     if (sortAllowed) {
                         planClass.consider(hashPlan);
                     } else {
@@ -1252,6 +1326,8 @@ public class JoinAndIndexPicker extends BaseRule
                 // buildBloomFilterSemiJoin modifies the joinPlan.
                 JoinPlan hashPlan = buildBloomFilterSemiJoin(loaderPlan, joinPlan, semiJoins);
                 if (hashPlan != null) {
+                    hashPlan.leftTables = left.bitset;
+                    hashPlan.rightTables = right.bitset;
                     if (sortAllowed) {
                         planClass.consider(hashPlan);
                     } else {
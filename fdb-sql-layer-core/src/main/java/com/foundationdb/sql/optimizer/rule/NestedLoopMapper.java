@@ -24,6 +24,7 @@
 package com.foundationdb.sql.optimizer.rule;
 
 import com.foundationdb.server.error.CorruptedPlanException;
+import com.foundationdb.server.types.TKeyComparable;
 import com.foundationdb.sql.optimizer.plan.*;
 import com.foundationdb.sql.optimizer.plan.JoinNode.JoinType;
 
@@ -130,10 +131,13 @@ public class NestedLoopMapper extends BaseRule
                     HashJoinNode hjoin = (HashJoinNode)join;
                     HashTable ht = (HashTable)hjoin.getHashTable();
                     PlanNode loader = hjoin.getLoader();
-                    map = new UsingHashTable(ht, loader, map,
-                                             hjoin.getHashColumns(),
-                                             hjoin.getTKeyComparables(),
-                                             hjoin.getCollators());
+                    UsingHashTable usingHashTable = new UsingHashTable(ht, loader, map,
+                                                                       hjoin.getHashColumns(),
+                                                                       hjoin.getTKeyComparables(),
+                                                                       hjoin.getCollators());
+                    if (runtimeFilterAllowed(hjoin))
+                        usingHashTable.setRuntimeFilterExpressions(hjoin.getMatchColumns());
+                    map = usingHashTable;
                 }
                 break;
             default:
@@ -144,6 +148,19 @@ public class NestedLoopMapper extends BaseRule
         }
     }
 
+    /** Probe rows without a match can only be dropped early if the join drops them too,
+     * and if both sides' keys hash alike.
+     */
+    private static boolean runtimeFilterAllowed(HashJoinNode hjoin) {
+        if (!(hjoin.getJoinType().isInner() || hjoin.getJoinType().isSemi()))
+            return false;
+        for (TKeyComparable comparable : hjoin.getTKeyComparables()) {
+            if (comparable != null)
+                return false;
+        }
+        return true;
+    }
+
     private BaseQuery getQuery(PlanNode node) {
         PlanWithInput output = node.getOutput();
         while (output != null) {
@@ -69,6 +69,7 @@ import com.foundationdb.qp.operator.API;
 import com.foundationdb.qp.operator.API.IntersectOption;
 import com.foundationdb.qp.operator.IndexScanSelector;
 import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.operator.RuntimeFilter;
 import com.foundationdb.qp.operator.UpdateFunction;
 import com.foundationdb.qp.row.BindableRow;
 import com.foundationdb.qp.row.Row;
@@ -605,6 +606,10 @@ public class OperatorAssembler extends BaseRule
                                                       index);
                 }
             }
+            RuntimeFilter runtimeFilter = null;
+            if (!index.isSpatial() && (forIntersection == IntersectionMode.NONE))
+                runtimeFilter = assembleRuntimeFilter(indexScan, indexRowType, 
+                                                      new IndexFieldOffsets(indexScan, indexRowType));
             if (index.isSpatial()) {
                 stream.operator = API.indexScan_Default(indexRowType,
                                                         assembleSpatialIndexKeyRange(indexScan, null),
@@ -619,7 +624,8 @@ public class OperatorAssembler extends BaseRule
                                                         assembleIndexKeyRange(indexScan, null),
                                                         assembleIndexOrdering(indexScan, indexRowType),
                                                         selector,
-                                                        rulesContext.getPipelineConfiguration().getIndexScanLookaheadQuantum());
+                                                        rulesContext.getPipelineConfiguration().getIndexScanLookaheadQuantum(),
+                                                        runtimeFilter);
                 stream.rowType = indexRowType;
             }
             else {
@@ -651,7 +657,8 @@ public class OperatorAssembler extends BaseRule
                                                           assembleIndexKeyRange(indexScan, null, rangeSegment),
                                                           assembleIndexOrdering(indexScan, indexRowType),
                                                           selector,
-                                                          rulesContext.getPipelineConfiguration().getIndexScanLookaheadQuantum());
+                                                          rulesContext.getPipelineConfiguration().getIndexScanLookaheadQuantum(),
+                                                          runtimeFilter);
                     if (stream.operator == null) {
                         stream.operator = scan;
                         stream.rowType = indexRowType;
@@ -739,7 +746,16 @@ public class OperatorAssembler extends BaseRule
         protected RowStream assembleGroupScan(GroupScan groupScan) {
             RowStream stream = new RowStream();
             Group group = groupScan.getGroup().getGroup();
-            stream.operator = API.groupScan_Default(group);
+            RuntimeFilterRequest request = runtimeFilters.get(groupScan);
+            if (request == null) {
+                stream.operator = API.groupScan_Default(group);
+            }
+            else {
+                TableRowType rowType = tableRowType(request.table);
+                RuntimeFilter runtimeFilter = assembleRuntimeFilter(groupScan, rowType,
+                                                                    new ColumnSourceFieldOffsets(request.table, rowType));
+                stream.operator = API.groupScan_Default(group, runtimeFilter);
+            }
             stream.unknownTypesPresent = true;
             return stream;
         }
@@ -804,7 +820,8 @@ public class OperatorAssembler extends BaseRule
                 stream.operator = API.select_HKeyOrdered(stream.operator,
                         rowType,
                         assembleExpression(condition,
-                                fieldOffsets));
+                                fieldOffsets),
+                        rulesContext.getPipelineConfiguration().getBatchSize());
             }
             return stream;
         }
@@ -1254,6 +1271,7 @@ public class OperatorAssembler extends BaseRule
             switch (impl) {
             case PRESORTED:
             case UNGROUPED:
+            case HASH:
                 break;
             case FIRST_FROM_INDEX:
                 {
@@ -1352,13 +1370,43 @@ public class OperatorAssembler extends BaseRule
                         stream.fieldOffsets);
                 ordering.append(tExpr, orderBy.isAscending(), orderBy.getCollator());
             }
-            assembleSort(stream, ordering, sort.getInput(), output, sortOption);
+            assembleSort(stream, ordering, sort.getInput(), output, sortOption,
+                         orderedSortPrefix(sort.getInput()));
             return stream;
         }
 
+        /** How many leading columns of the sort that <code>input</code>
+         * feeds come from an index scan already in that order. */
+        protected int orderedSortPrefix(PlanNode input) {
+            while (true) {
+                if (input instanceof SingleIndexScan) {
+                    return ((SingleIndexScan)input).getNOrderedSortColumns();
+                }
+                else if (input instanceof MapJoin) {
+                    // Inner rows come out in the order of the outer.
+                    input = ((MapJoin)input).getOuter();
+                }
+                else if ((input instanceof Select) ||
+                         (input instanceof Flatten) ||
+                         (input instanceof BaseLookup) ||
+                         (input instanceof Project)) {
+                    input = ((BasePlanWithInput)input).getInput();
+                }
+                else {
+                    return 0;
+                }
+            }
+        }
+
         protected void assembleSort(RowStream stream, API.Ordering ordering,
                                     PlanNode input, PlanNode output, 
                                     API.SortOption sortOption) {
+            assembleSort(stream, ordering, input, output, sortOption, 0);
+        }
+
+        protected void assembleSort(RowStream stream, API.Ordering ordering,
+                                    PlanNode input, PlanNode output, 
+                                    API.SortOption sortOption, int orderedPrefix) {
             int maxrows = -1;
             if (output instanceof Project) {
                 output = output.getOutput();
@@ -1376,7 +1424,8 @@ public class OperatorAssembler extends BaseRule
             }
             if ((maxrows >= 0) && (maxrows <= INSERTION_SORT_MAX_LIMIT))
                 stream.operator = API.sort_InsertionLimited(stream.operator, stream.rowType,
-                                                            ordering, sortOption, maxrows);
+                                                            ordering, sortOption, maxrows,
+                                                            orderedPrefix);
             else
                 stream.operator = API.sort_General(stream.operator, stream.rowType, ordering, sortOption);
         }
@@ -1435,14 +1484,22 @@ public class OperatorAssembler extends BaseRule
             BloomFilter bloomFilter = usingBloomFilter.getBloomFilter();
             int pos = assignBindingPosition(bloomFilter);
             RowStream lstream = assembleStream(usingBloomFilter.getLoader());
-            RowStream stream = assembleStream(usingBloomFilter.getInput());
             List<AkCollator> collators = findCollators(usingBloomFilter.getLoader());
+            int runtimeFilterPos = -1;
+            if (usingBloomFilter.getInput() instanceof BloomFilterFilter) {
+                BloomFilterFilter bloomFilterFilter = (BloomFilterFilter)usingBloomFilter.getInput();
+                runtimeFilterPos = requestRuntimeFilter(bloomFilterFilter.getInput(),
+                                                        bloomFilterFilter.getLookupExpressions(),
+                                                        collators);
+            }
+            RowStream stream = assembleStream(usingBloomFilter.getInput());
             stream.operator = API.using_BloomFilter(lstream.operator,
                                                     lstream.rowType,
                                                     bloomFilter.getEstimatedSize(),
                                                     pos,
                                                     stream.operator,
-                                                    collators);
+                                                    collators,
+                                                    runtimeFilterPos);
             return stream;
         }
 
@@ -1474,6 +1531,13 @@ public class OperatorAssembler extends BaseRule
             int pos = assignBindingPosition(hashTable);
             RowStream lstream = assembleStream(usingHashTable.getLoader());
             hashTableLoaders.put(hashTable, lstream);
+            int runtimeFilterPos = -1;
+            if ((usingHashTable.getRuntimeFilterExpressions() != null) &&
+                (usingHashTable.getInput() instanceof MapJoin)) {
+                runtimeFilterPos = requestRuntimeFilter(((MapJoin)usingHashTable.getInput()).getOuter(),
+                                                        usingHashTable.getRuntimeFilterExpressions(),
+                                                        nullIfAllNull(usingHashTable.getCollators()));
+            }
             RowStream stream = assembleStream(usingHashTable.getInput());
             List<ExpressionNode> expressionNodes = usingHashTable.getLookupExpressions();
             List<TPreparedExpression> tFields = assembleExpressions(expressionNodes,lstream.fieldOffsets);
@@ -1490,26 +1554,94 @@ public class OperatorAssembler extends BaseRule
             }
             if (allNull)
                 tComparisons = null;
-            List<AkCollator> collators = usingHashTable.getCollators();
-            allNull = true;
-            for (AkCollator collator : collators) {
-                if (collator != null) {
-                    allNull = false;
-                    break;
-                }
-            }
-            if (allNull)
-                collators = null;
+            List<AkCollator> collators = nullIfAllNull(usingHashTable.getCollators());
             stream.operator = API.using_HashTable(lstream.operator,
                     lstream.rowType,
                     tFields,
                     pos,
                     stream.operator,
                     tComparisons,
-                    collators);
+                    collators,
+                    runtimeFilterPos);
             return stream;
         }
 
+        private static List<AkCollator> nullIfAllNull(List<AkCollator> collators) {
+            for (AkCollator collator : collators) {
+                if (collator != null) {
+                    return collators;
+                }
+            }
+            return null;
+        }
+
+        /** Find the scan that feeds <code>probe</code> rows and can check
+         * <code>expressions</code> on its own rows. If there is one, it will
+         * filter with the join keys bound at the returned position.
+         * Otherwise, return -1.
+         */
+        protected int requestRuntimeFilter(PlanNode probe, List<ExpressionNode> expressions,
+                                           List<AkCollator> collators) {
+            if (!rulesContext.getPipelineConfiguration().isRuntimeFilterEnabled())
+                return -1;
+            for (ExpressionNode expression : expressions) {
+                if (!(expression instanceof ColumnExpression))
+                    return -1;
+            }
+            // Every step must only drop or combine rows, so that each
+            // output row still has the keys of a scanned row.
+            PlanNode node = probe;
+            while (true) {
+                if ((node instanceof Select) || (node instanceof Flatten))
+                    node = ((BasePlanWithInput)node).getInput();
+                else if (node instanceof AncestorLookup)
+                    node = ((AncestorLookup)node).getInput();
+                else if (node instanceof MapJoin)
+                    node = ((MapJoin)node).getOuter();
+                else
+                    break;
+            }
+            RuntimeFilterRequest request = new RuntimeFilterRequest(expressions, collators);
+            if (node instanceof SingleIndexScan) {
+                SingleIndexScan indexScan = (SingleIndexScan)node;
+                if (indexScan.isSpatial())
+                    return -1;
+                for (ExpressionNode expression : expressions) {
+                    if (!indexScan.getColumns().contains(expression))
+                        return -1;
+                }
+            }
+            else if (node instanceof GroupScan) {
+                GroupScan groupScan = (GroupScan)node;
+                for (ExpressionNode expression : expressions) {
+                    ColumnSource table = ((ColumnExpression)expression).getTable();
+                    if (!(table instanceof TableSource) ||
+                        (((TableSource)table).getGroup() != groupScan.getGroup()) ||
+                        ((request.table != null) && (request.table != table)))
+                        return -1;
+                    request.table = (TableSource)table;
+                }
+            }
+            else {
+                return -1;
+            }
+            if (runtimeFilters.containsKey(node))
+                return -1;
+            runtimeFilters.put(node, request);
+            return assignBindingPosition(request);
+        }
+
+        protected RuntimeFilter assembleRuntimeFilter(PlanNode scan, RowType rowType,
+                                                      ColumnExpressionToIndex fieldOffsets) {
+            RuntimeFilterRequest request = runtimeFilters.get(scan);
+            if (request == null)
+                return null;
+            return new RuntimeFilter(rowType,
+                                     assembleExpressions(request.expressions, fieldOffsets),
+                                     request.collators,
+                                     getBindingPosition(request));
+        }
+
         protected RowStream assembleHashTableLookup(HashTableLookup hashTableLookup) {
             HashTable hashTable = hashTableLookup.getHashTable();
             int tablePos = getBindingPosition(hashTable);
@@ -1533,7 +1665,8 @@ public class OperatorAssembler extends BaseRule
             pExpressions = assembleExpressions(project.getFields(), stream.fieldOffsets);
             stream.operator = API.project_Default(stream.operator,
                                                   stream.rowType,
-                                                  pExpressions);
+                                                  pExpressions,
+                                                  rulesContext.getPipelineConfiguration().getBatchSize());
             stream.rowType = stream.operator.rowType();
             stream.fieldOffsets = new ColumnSourceFieldOffsets(project,
                                                                stream.rowType);
@@ -2078,6 +2211,7 @@ public class OperatorAssembler extends BaseRule
         protected List<Object> bindings = new ArrayList<>();
         protected Map<Object,Integer> bindingPositions = new HashMap<>();
         protected Map<HashTable,RowStream> hashTableLoaders = new HashMap<>();
+        protected Map<PlanNode,RuntimeFilterRequest> runtimeFilters = new IdentityHashMap<>();
 
         protected int assignBindingPosition(Object binding) {
             int position = bindings.size();
@@ -2202,6 +2336,18 @@ public class OperatorAssembler extends BaseRule
         ColumnExpressionToIndex fieldOffsets;
     }
 
+    // Join keys that a scan should check its rows against.
+    static class RuntimeFilterRequest {
+        List<ExpressionNode> expressions;
+        List<AkCollator> collators;
+        TableSource table;
+
+        RuntimeFilterRequest(List<ExpressionNode> expressions, List<AkCollator> collators) {
+            this.expressions = expressions;
+            this.collators = collators;
+        }
+    }
+
     static abstract class BaseColumnExpressionToIndex implements ColumnExpressionToIndex {
         protected RowType rowType;
 
@@ -32,6 +32,8 @@ public class PipelineConfiguration
     private int groupLookupLookaheadQuantum = 1;
     private boolean unionAllOpenBoth = false;
     private boolean selectBloomFilterEnabled = false;
+    private boolean runtimeFilterEnabled = false;
+    private int batchSize = 0;
 
     public PipelineConfiguration() {
     }
@@ -60,6 +62,16 @@ public class PipelineConfiguration
         return selectBloomFilterEnabled;
     }
 
+    /** Whether hash and Bloom filter joins push their build keys down into probe side scans. */
+    public boolean isRuntimeFilterEnabled() {
+        return runtimeFilterEnabled;
+    }
+
+    /** Rows per batch for select and project in batch mode, or 0 for row-at-a-time. */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
     public void load(Properties properties) {
         for (String prop : properties.stringPropertyNames()) {
             String val = properties.getProperty(prop);
@@ -73,6 +85,10 @@ public class PipelineConfiguration
                 unionAllOpenBoth = Boolean.parseBoolean(val);
             else if ("selectBloomFilter.enabled".equals(prop))
                 selectBloomFilterEnabled = Boolean.parseBoolean(val);
+            else if ("runtimeFilter.enabled".equals(prop))
+                runtimeFilterEnabled = Boolean.parseBoolean(val);
+            else if ("batch.size".equals(prop))
+                batchSize = Integer.parseInt(val);
             else
                 throw new IllegalArgumentException("Unknown property " + prop);
         }
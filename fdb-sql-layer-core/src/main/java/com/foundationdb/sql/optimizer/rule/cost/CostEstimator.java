@@ -33,11 +33,13 @@ import com.foundationdb.sql.optimizer.plan.*;
 import com.foundationdb.sql.optimizer.plan.TableGroupJoinTree.TableGroupJoinNode;
 
 import com.foundationdb.ais.model.*;
+import com.foundationdb.qp.operator.API;
 import com.foundationdb.qp.rowtype.InternalIndexTypes;
 import com.foundationdb.qp.rowtype.Schema;
 import com.foundationdb.qp.rowtype.TableRowType;
 import com.foundationdb.server.service.tree.KeyCreator;
 import com.foundationdb.server.store.statistics.IndexStatistics;
+import com.foundationdb.server.store.statistics.IndexStatisticsDelta;
 import com.foundationdb.server.types.TInstance;
 import com.persistit.Key;
 
@@ -337,36 +339,46 @@ public abstract class CostEstimator implements TableRowCounts
                 keyPTarget.attach(key);
                 // encodeKeyValue evaluates non-null iff node is a constant expression. key is initialized as a side-effect.
                 byte[] columnValue = encodeKeyValue(expr, index, histogram.getFirstColumn()) ? keyCopy() : null;
+                IndexStatisticsDelta delta = leadingDelta(histogram);
                 if (columnValue == null) {
                     // Variable expression. Use average selectivity for histogram.
-                    return
-                        mostlyDistinct(histogram)
-                        ? 1.0 / indexStatsSampledCount
-                        : 1.0 / histogram.totalDistinctCount();
+                    if (mostlyDistinct(histogram))
+                        return 1.0 / indexStatsSampledCount;
+                    long distinct = histogram.totalDistinctCount();
+                    if (delta != null)
+                        distinct += delta.getNewDistinctCount();
+                    return 1.0 / distinct;
                 } else {
-                    // TODO: Could use Collections.binarySearch if we had something that looked like a HistogramEntry.
-                    List<HistogramEntry> entries = histogram.getEntries();
-                    for (HistogramEntry entry : entries) {
-                        // Constant expression
-                        int compare = bytesComparator.compare(columnValue, entry.getKeyBytes());
-                        if (compare == 0) {
-                            return ((double) entry.getEqualCount()) / indexStatsSampledCount;
-                        } else if (compare < 0) {
-                            long d = entry.getDistinctCount();
-                            return d == 0 ? 0.0 : ((double) entry.getLessCount()) / (d * indexStatsSampledCount);
-                        }
-                    }
-                    HistogramEntry lastEntry = entries.get(entries.size() - 1);
-                    long d = lastEntry.getDistinctCount();
-                    if (d == 0) {
-                        return 1;
-                    }
-                    return 0.00483;
+                    double fraction = fractionEqual(histogram, columnValue, indexStatsSampledCount);
+                    if (delta != null)
+                        fraction = delta.fractionEqual(columnValue, fraction);
+                    return fraction;
                 }
             }
         }
     }
 
+    private double fractionEqual(Histogram histogram, byte[] columnValue, long indexStatsSampledCount) {
+        // TODO: Could use Collections.binarySearch if we had something that looked like a HistogramEntry.
+        List<HistogramEntry> entries = histogram.getEntries();
+        for (HistogramEntry entry : entries) {
+            // Constant expression
+            int compare = bytesComparator.compare(columnValue, entry.getKeyBytes());
+            if (compare == 0) {
+                return ((double) entry.getEqualCount()) / indexStatsSampledCount;
+            } else if (compare < 0) {
+                long d = entry.getDistinctCount();
+                return d == 0 ? 0.0 : ((double) entry.getLessCount()) / (d * indexStatsSampledCount);
+            }
+        }
+        HistogramEntry lastEntry = entries.get(entries.size() - 1);
+        long d = lastEntry.getDistinctCount();
+        if (d == 0) {
+            return 1;
+        }
+        return 0.00483;
+    }
+
     protected double fractionBetween(Column column,
                                      Index index,
                                      Histogram histogram,
@@ -429,7 +441,48 @@ public abstract class CostEstimator implements TableRowCounts
             }
             rowCount += entry.getLessCount() + entry.getEqualCount() - portionStart;
         }
-        return ((double) Math.max(rowCount, 1)) / histogram.getIndexStatistics().getSampledCount();
+        double fraction = ((double) Math.max(rowCount, 1)) / histogram.getIndexStatistics().getSampledCount();
+        IndexStatisticsDelta delta = leadingDelta(histogram);
+        if (delta != null) {
+            // Rows inserted beyond either end of the histogram, assumed
+            // to be spread evenly out to the furthest one.
+            long outsideRows =
+                outsidePortion(delta.getUpperBound(), delta.getMaxKey(), delta.getAboveCount(),
+                               loBytes, hiBytes) +
+                outsidePortion(delta.getMinKey(), delta.getLowerBound(), delta.getBelowCount(),
+                               loBytes, hiBytes);
+            fraction = delta.fractionBetween(fraction, outsideRows);
+        }
+        return fraction;
+    }
+
+    /** Changes since analysis, if the histogram is for the leading
+     * column of its index, which is what they track.
+     */
+    private static IndexStatisticsDelta leadingDelta(Histogram histogram) {
+        if ((histogram.getFirstColumn() != 0) || (histogram.getColumnCount() != 1))
+            return null;
+        return histogram.getIndexStatistics().getDelta();
+    }
+
+    /** How many of <code>total</code> rows uniformly between
+     * <code>start</code> and <code>end</code> are between
+     * <code>loBytes</code> and <code>hiBytes</code>.
+     */
+    private long outsidePortion(byte[] start, byte[] end, long total,
+                                byte[] loBytes, byte[] hiBytes) {
+        if (total == 0)
+            return 0;
+        if ((loBytes != null) && (bytesComparator.compare(loBytes, end) > 0))
+            return 0;
+        if ((hiBytes != null) && (bytesComparator.compare(hiBytes, start) < 0))
+            return 0;
+        long below = 0, upTo = total;
+        if ((loBytes != null) && (bytesComparator.compare(loBytes, start) > 0))
+            below = uniformPortion(start, end, loBytes, total);
+        if ((hiBytes != null) && (bytesComparator.compare(hiBytes, end) < 0))
+            upTo = uniformPortion(start, end, hiBytes, total);
+        return Math.max(upTo - below, 0);
     }
 
 
@@ -997,6 +1050,66 @@ public abstract class CostEstimator implements TableRowCounts
                                 model.sortWithLimit((int)size, nfields));
     }
 
+    /** Estimate the cost of aggregating rows of the given size by
+     * hashing on the given GROUP BY expressions. The estimated number
+     * of groups is checked against the memory the operator will have,
+     * so that spilling is charged for.
+     */
+    public CostEstimate costHashAggregate(long size, List<ExpressionNode> groupBy, int nAggregates) {
+        long nGroups = estimateGroupCount(groupBy, size);
+        double groupsSize = (double)nGroups * API.hashAggregateGroupSize(groupBy.size(), nAggregates);
+        long memoryLimit = Long.parseLong(getProperty("hash_aggregate_memory", "0"));
+        double nSpilledRows = API.hashAggregateSpilledRows(size, groupsSize, memoryLimit);
+        return new CostEstimate(size, model.hashAggregate((int)size, groupBy.size(), nSpilledRows));
+    }
+
+    /** Estimate the number of distinct combinations of the given
+     * expressions among <code>size</code> rows. Only columns with a
+     * histogram can be estimated; anything else is taken to be distinct
+     * for every row.
+     */
+    public long estimateGroupCount(List<ExpressionNode> groupBy, long size) {
+        double nGroups = 1;
+        for (ExpressionNode expr : groupBy) {
+            long distinct = -1;
+            if (expr instanceof ColumnExpression) {
+                Column column = ((ColumnExpression)expr).getColumn();
+                if (column != null)
+                    distinct = columnDistinctCount(column);
+            }
+            if (distinct < 0)
+                return size;
+            nGroups *= Math.max(distinct, 1);
+            if (nGroups >= size)
+                return size;
+        }
+        return (long)nGroups;
+    }
+
+    /** Number of distinct values of a column, from the histogram of an
+     * index that it leads, or -1 if there is none.
+     */
+    protected long columnDistinctCount(Column column) {
+        for (TableIndex index : column.getTable().getIndexes()) {
+            if (index.getKeyColumns().get(0).getColumn() != column)
+                continue;
+            IndexStatistics indexStatistics = getIndexStatistics(index);
+            if (indexStatistics == null)
+                continue;
+            Histogram histogram = indexStatistics.getHistogram(0, 1);
+            if (histogram == null)
+                continue;
+            if (mostlyDistinct(histogram))
+                return indexStatistics.getRowCount();
+            long distinct = histogram.totalDistinctCount();
+            IndexStatisticsDelta delta = leadingDelta(histogram);
+            if (delta != null)
+                distinct += delta.getNewDistinctCount();
+            return distinct;
+        }
+        return -1;
+    }
+
     /** Estimate cost of scanning the whole group. */
     // TODO: Need to account for tables actually wanted?
     public CostEstimate costGroupScan(Group group) {
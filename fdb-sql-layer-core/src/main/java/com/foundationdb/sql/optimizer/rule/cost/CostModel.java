@@ -100,6 +100,16 @@ public abstract class CostModel
         return nRows * SORT_LIMIT_PER_ROW * (1 + sortFields * SORT_LIMIT_PER_FIELD_FACTOR);
     }
 
+    public double hashAggregate(int nRows, int nGroupBy, double nSpilledRows)
+    {
+        // Overhead of HashAggregate_Default not measured; treat as
+        // loading a hash table keyed on the GROUP BY columns, plus
+        // writing, reading back and loading again each spilled row,
+        // where the file round trip costs about what sorting a row does.
+        double perRow = HASH_TABLE_LOAD_PER_ROW + (nGroupBy - 1) * HASH_TABLE_DIFF_PER_JOIN;
+        return nRows * perRow + nSpilledRows * (SORT_PER_ROW + perRow);
+    }
+
     public double select(int nRows)
     {
         return nRows * (SELECT_PER_ROW + EXPRESSION_PER_FIELD);
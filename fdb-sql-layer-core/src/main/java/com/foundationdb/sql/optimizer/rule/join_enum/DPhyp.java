@@ -67,6 +67,12 @@ public abstract class DPhyp<P>
 
     // The "plan class" is the set of retained plans for the given tables.
     private Object[] plans;
+
+    // A join order to replay instead of enumerating every pair: each
+    // joined set maps to one side of its split, or to empty if any
+    // split of that set and its subsets is allowed.
+    private Map<Long,Long> joinOrderHint;
+    private boolean joinOrderHintFailed;
     
     @SuppressWarnings("unchecked")
     private P getPlan(long s) {
@@ -120,6 +126,14 @@ public abstract class DPhyp<P>
                 }
             }
             P plan = getPlan(plans.length-1); // One that does all the joins together.
+            if ((joinOrderHint != null) && ((plan == null) || joinOrderHintFailed)) {
+                // Hinted order no longer fits this graph: enumerate normally.
+                logger.debug("Join order hint not applicable");
+                joinOrderHint = null;
+                Arrays.fill(plans, null);
+                pass--;
+                continue;
+            }
             if (plan != null)
                 return plan;
             if (logger.isTraceEnabled()) {
@@ -152,6 +166,11 @@ public abstract class DPhyp<P>
             long requiredSubgraph = requiredSubgraphs[j];
             if (JoinableBitSet.equals(ts, JoinableBitSet.minSubset(requiredSubgraph))) {
                 if (getPlan(requiredSubgraph) == null) {
+                    if (joinOrderHint != null) {
+                        // Do not change the graph on behalf of a hint.
+                        joinOrderHintFailed = true;
+                        continue;
+                    }
                     addExtraEdges(requiredSubgraph);
                     retVal = false;
                 }
@@ -238,6 +257,8 @@ public abstract class DPhyp<P>
      * register it as the new best such plan for the pair.
      */
     public void emitCsgCmp(long s1, long s2) {
+        if ((joinOrderHint != null) && !isHintedJoin(s1, s2))
+            return;
         P p1 = getPlan(s1);
         P p2 = getPlan(s2);
         long s = JoinableBitSet.union(s1, s2);
@@ -334,6 +355,41 @@ public abstract class DPhyp<P>
     public abstract P evaluateJoin(long bitset1, P p1, long bitset2, P p2, long bitsetJoined, P existing,
                                    JoinType joinType, Collection<JoinOperator> joins, Collection<JoinOperator> outsideJoins);
 
+    /** Restrict enumeration to the given join order, as returned
+     * for an earlier run by the subclass. The order is pairs of a
+     * joined set and one side of its split (or empty to allow any
+     * split within that set). If the order does not yield a complete
+     * plan, {@link #solve} falls back to full enumeration.
+     */
+    public void setJoinOrderHint(long[] joinOrder) {
+        joinOrderHint = new HashMap<>();
+        for (int i = 0; i < joinOrder.length; i += 2) {
+            joinOrderHint.put(joinOrder[i], joinOrder[i+1]);
+        }
+        joinOrderHintFailed = false;
+    }
+
+    /** Was the last {@link #solve} restricted by a join order hint? */
+    public boolean isJoinOrderHinted() {
+        return (joinOrderHint != null);
+    }
+
+    protected boolean isHintedJoin(long s1, long s2) {
+        long s = JoinableBitSet.union(s1, s2);
+        Long split = joinOrderHint.get(s);
+        if (split != null) {
+            return (JoinableBitSet.isEmpty(split) ||
+                    JoinableBitSet.equals(split, s1) ||
+                    JoinableBitSet.equals(split, s2));
+        }
+        for (Map.Entry<Long,Long> entry : joinOrderHint.entrySet()) {
+            if (JoinableBitSet.isEmpty(entry.getValue()) &&
+                JoinableBitSet.isSubset(s, entry.getKey()))
+                return true;
+        }
+        return false;
+    }
+
     /** Return a leaf of the tree. */
     public Joinable getTable(int index) {
         return tables.get(index);
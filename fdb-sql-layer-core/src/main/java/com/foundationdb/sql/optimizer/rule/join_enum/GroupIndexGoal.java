@@ -563,6 +563,11 @@ public class GroupIndexGoal implements Comparator<BaseScan>
         if (nequals - nunions > 0) {
             equalityColumns = index.getColumns().subList(0, nequals - nunions);
         }
+        // Sort columns matched in the same direction so far, for a
+        // partially sorted input.
+        int nordered = 0;
+        boolean stillOrdered = true;
+        index.setNOrderedSortColumns(0);
         try_sorted:
         if (queryGoal.getOrdering() != null) {
             int idx = nequals-nunions;
@@ -594,6 +599,10 @@ public class GroupIndexGoal implements Comparator<BaseScan>
                         }
                         if (idx >= index.getNKeyColumns())
                             index.setUsesAllColumns(true);
+                        if (stillOrdered && (indexColumn.isAscending() == targetColumn.isAscending()))
+                            nordered++;
+                        else
+                            stillOrdered = false;
                         idx++;
                         continue;
                     }
@@ -603,9 +612,16 @@ public class GroupIndexGoal implements Comparator<BaseScan>
                     // in fact unchanged due to equality condition.
                     // TODO: Should this have been noticed earlier on
                     // so that it can be taken out of the sort?
-                    if (equalityColumns.contains(targetExpression))
+                    if (equalityColumns.contains(targetExpression)) {
+                        if (stillOrdered)
+                            nordered++;
                         continue;
+                    }
                 }
+                // Not sorted, but possibly on a prefix, which lets a
+                // limited sort stop reading early.
+                if ((nunions == 0) && (index.getConditionRange() == null))
+                    index.setNOrderedSortColumns(nordered);
                 break try_sorted;
             }
             // Don't allow mixed order index lookups, just use the order of the first column 
@@ -23,30 +23,78 @@
  */
 package com.foundationdb.sql.server;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
+/**
+ * Hit, miss and eviction counts for one or more {@link ServerStatementCache}s,
+ * kept per shard so that busy shards do not contend on a single counter.
+ */
 public class CacheCounters {
-    private final AtomicInteger hits = new AtomicInteger(0);
-    private final AtomicInteger misses = new AtomicInteger(0);
+    private final AtomicIntegerArray hits, misses, evictions;
+
+    public CacheCounters() {
+        this(1);
+    }
+
+    public CacheCounters(int shards) {
+        hits = new AtomicIntegerArray(shards);
+        misses = new AtomicIntegerArray(shards);
+        evictions = new AtomicIntegerArray(shards);
+    }
+
+    public int getShardCount() {
+        return hits.length();
+    }
+
+    public void incrementHits(int shard) {
+        hits.incrementAndGet(shard);
+    }
 
-    public void incrementHits() {
-        hits.incrementAndGet();
+    public void incrementMisses(int shard) {
+        misses.incrementAndGet(shard);
     }
 
-    public void incrementMisses() {
-        misses.incrementAndGet();
+    public void incrementEvictions(int shard) {
+        evictions.incrementAndGet(shard);
     }
 
     public int getHits() {
-        return hits.get();
+        return sum(hits);
     }
 
     public int getMisses() {
-        return misses.get();
+        return sum(misses);
+    }
+
+    public int getEvictions() {
+        return sum(evictions);
+    }
+
+    public int getHits(int shard) {
+        return hits.get(shard);
+    }
+
+    public int getMisses(int shard) {
+        return misses.get(shard);
+    }
+
+    public int getEvictions(int shard) {
+        return evictions.get(shard);
     }
 
     public void reset() {
-        hits.set(0);
-        misses.set(0);
+        for (int i = 0; i < hits.length(); i++) {
+            hits.set(i, 0);
+            misses.set(i, 0);
+            evictions.set(i, 0);
+        }
+    }
+
+    private static int sum(AtomicIntegerArray counts) {
+        int total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
     }
 }
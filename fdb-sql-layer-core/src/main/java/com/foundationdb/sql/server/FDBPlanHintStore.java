@@ -0,0 +1,88 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.sql.server;
+
+import com.foundationdb.Database;
+import com.foundationdb.Transaction;
+import com.foundationdb.async.Function;
+import com.foundationdb.directory.DirectorySubspace;
+import com.foundationdb.server.store.FDBHolder;
+import com.foundationdb.tuple.ByteArrayUtil;
+
+import java.util.Arrays;
+
+/**
+ * Plan hints kept in a directory of the FDB cluster, where every SQL
+ * layer node connected to it shares them. The directory is opened on
+ * first use and each lookup is a single point read.
+ */
+public class FDBPlanHintStore implements PlanHintStore
+{
+    public static final String PLAN_HINTS_DIRECTORY = "planHints";
+
+    private final FDBHolder holder;
+    private volatile DirectorySubspace directory;
+
+    public FDBPlanHintStore(FDBHolder holder) {
+        this.holder = holder;
+    }
+
+    protected byte[] packKey(byte[] key) {
+        DirectorySubspace directory = this.directory;
+        if (directory == null) {
+            directory = holder.getRootDirectory()
+                .createOrOpen(holder.getTransactionContext(), Arrays.asList(PLAN_HINTS_DIRECTORY))
+                .get();
+            this.directory = directory;
+        }
+        return ByteArrayUtil.join(directory.getKey(), key);
+    }
+
+    @Override
+    public byte[] load(byte[] key) {
+        final byte[] packedKey = packKey(key);
+        return getDatabase().run(new Function<Transaction,byte[]>() {
+                @Override
+                public byte[] apply(Transaction tr) {
+                    return tr.get(packedKey).get();
+                }
+            });
+    }
+
+    @Override
+    public void store(byte[] key, final byte[] value) {
+        final byte[] packedKey = packKey(key);
+        getDatabase().run(new Function<Transaction,Void>() {
+                @Override
+                public Void apply(Transaction tr) {
+                    tr.set(packedKey, value);
+                    return null;
+                }
+            });
+    }
+
+    protected Database getDatabase() {
+        return holder.getDatabase();
+    }
+}
@@ -0,0 +1,143 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.sql.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Plan hints kept in a local file, private to this node. The file is
+ * read on first use; changes are appended and the file is rewritten
+ * once it is mostly superseded entries.
+ */
+public class LocalPlanHintStore implements PlanHintStore
+{
+    private static final Logger logger = LoggerFactory.getLogger(LocalPlanHintStore.class);
+
+    private final File file;
+    private Map<ByteBuffer,byte[]> entries;
+    private int records;
+    private boolean damaged;
+
+    public LocalPlanHintStore(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public synchronized byte[] load(byte[] key) {
+        if (entries == null) {
+            readFile();
+        }
+        return entries.get(ByteBuffer.wrap(key));
+    }
+
+    @Override
+    public synchronized void store(byte[] key, byte[] value) {
+        if (entries == null) {
+            readFile();
+        }
+        entries.put(ByteBuffer.wrap(key.clone()), value);
+        if (damaged || (records > entries.size() * 2 + 100)) {
+            rewriteFile();
+        }
+        else {
+            try (DataOutputStream str = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+                writeRecord(str, key, value);
+                records++;
+            }
+            catch (IOException ex) {
+                logger.warn("Error writing plan hints to {}", file, ex);
+            }
+        }
+    }
+
+    protected void readFile() {
+        entries = new HashMap<>();
+        records = 0;
+        try (DataInputStream str = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                byte[] key, value;
+                try {
+                    key = new byte[str.readInt()];
+                }
+                catch (EOFException ex) {
+                    break;
+                }
+                str.readFully(key);
+                value = new byte[str.readInt()];
+                str.readFully(value);
+                entries.put(ByteBuffer.wrap(key), value);
+                records++;
+            }
+        }
+        catch (FileNotFoundException ex) {
+            // Nothing remembered yet.
+        }
+        catch (IOException ex) {
+            // Probably a record cut off by a crash; keep what came before it.
+            logger.warn("Error reading plan hints from {}", file, ex);
+            damaged = true;
+        }
+    }
+
+    protected void rewriteFile() {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream str = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            for (Map.Entry<ByteBuffer,byte[]> entry : entries.entrySet()) {
+                writeRecord(str, entry.getKey().array(), entry.getValue());
+            }
+        }
+        catch (IOException ex) {
+            logger.warn("Error writing plan hints to {}", temp, ex);
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            logger.warn("Could not replace {} with {}", file, temp);
+            return;
+        }
+        records = entries.size();
+        damaged = false;
+    }
+
+    protected static void writeRecord(DataOutputStream str, byte[] key, byte[] value) throws IOException {
+        str.writeInt(key.length);
+        str.write(key);
+        str.writeInt(value.length);
+        str.write(value);
+    }
+}
@@ -24,6 +24,7 @@
 package com.foundationdb.sql.server;
 
 import com.foundationdb.server.error.NoSuchCastException;
+import com.foundationdb.server.service.blob.BlobRef;
 import com.foundationdb.server.types.TCast;
 import com.foundationdb.server.types.TClass;
 import com.foundationdb.server.types.TExecutionContext;
@@ -36,6 +37,7 @@ import com.foundationdb.server.types.value.ValueSources;
 import com.foundationdb.util.AkibanAppender;
 import com.foundationdb.util.WrappingByteSource;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -395,7 +397,15 @@ public abstract class ServerJavaValues
     }
 
     public InputStream getBinaryStream(int index) {
-        throw new UnsupportedOperationException();
+        ValueSource value = value(index);
+        if (wasNull)
+            return null;
+        if (value.hasCacheValue() && (value.getObject() instanceof BlobRef)) {
+            BlobRef blob = (BlobRef)value.getObject();
+            if (blob.isStreamable())
+                return blob.openStream();
+        }
+        return new ByteArrayInputStream(cachedCast(index, value, Types.VARBINARY).getBytes());
     }
 
     public Ref getRef(int index) {
@@ -0,0 +1,223 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.sql.server;
+
+import com.foundationdb.ais.model.AkibanInformationSchema;
+import com.foundationdb.ais.model.Table;
+import com.foundationdb.server.error.AkibanInternalException;
+import com.foundationdb.sql.optimizer.rule.JoinOrderHints;
+import com.foundationdb.tuple.Tuple2;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The join orders chosen for one statement, remembered in a
+ * {@link PlanHintStore} across restarts and DDL.
+ *
+ * <p>Compiled operator trees reference row types and expressions of a
+ * particular AIS, so what is kept is the expensive decision instead:
+ * the join order found by enumeration. Recompiling with it still
+ * picks indexes and join implementations fresh, but only along one
+ * tree of joins.</p>
+ *
+ * <p>Entries are keyed by a digest of the normalized SQL, the default
+ * schema and the parameter types. Each records the version of every
+ * table the plan depended on; a change to any of those tables makes
+ * the entry stale, while DDL on other tables does not.</p>
+ */
+public class ServerPlanHints implements JoinOrderHints
+{
+    private static final Logger logger = LoggerFactory.getLogger(ServerPlanHints.class);
+
+    private static final long FORMAT = 1;
+
+    private final PlanHintStore store;
+    private final byte[] key;
+    private final AkibanInformationSchema ais;
+    private Map<Integer,Hint> hints;
+    private boolean changed;
+
+    static class Hint {
+        List<String> tables;
+        long[] joinOrder;
+
+        Hint(List<String> tables, long[] joinOrder) {
+            this.tables = tables;
+            this.joinOrder = joinOrder;
+        }
+    }
+
+    public ServerPlanHints(PlanHintStore store, AkibanInformationSchema ais,
+                           String sql, String defaultSchemaName, int[] paramTypes) {
+        this.store = store;
+        this.ais = ais;
+        this.key = statementKey(sql, defaultSchemaName, paramTypes);
+    }
+
+    @Override
+    public long[] getJoinOrder(int join, List<String> tables) {
+        if (hints == null) {
+            load();
+        }
+        Hint hint = hints.get(join);
+        if ((hint == null) || !hint.tables.equals(tables))
+            return null;
+        return hint.joinOrder;
+    }
+
+    @Override
+    public void putJoinOrder(int join, List<String> tables, long[] joinOrder) {
+        if (hints == null) {
+            load();
+        }
+        hints.put(join, new Hint(tables, joinOrder));
+        changed = true;
+    }
+
+    /** Save any new join orders, along with the versions of the given tables. */
+    public void finish(Collection<Table> dependentTables) {
+        if (!changed || (dependentTables == null)) return;
+        Tuple2 tuple = new Tuple2().add(FORMAT);
+        tuple = tuple.add((long)dependentTables.size());
+        for (Table table : dependentTables) {
+            tuple = tuple.add((long)table.getTableId()).add(tableVersion(table));
+        }
+        for (Map.Entry<Integer,Hint> entry : hints.entrySet()) {
+            Hint hint = entry.getValue();
+            tuple = tuple.add((long)entry.getKey()).add((long)hint.tables.size());
+            for (String table : hint.tables) {
+                tuple = tuple.add(table);
+            }
+            tuple = tuple.add((long)hint.joinOrder.length);
+            for (long bitset : hint.joinOrder) {
+                tuple = tuple.add(bitset);
+            }
+        }
+        try {
+            store.store(key, tuple.pack());
+        }
+        catch (RuntimeException ex) {
+            logger.warn("Error saving plan hints", ex);
+        }
+        changed = false;
+    }
+
+    protected void load() {
+        hints = new HashMap<>();
+        byte[] value;
+        try {
+            value = store.load(key);
+        }
+        catch (RuntimeException ex) {
+            logger.warn("Error loading plan hints", ex);
+            return;
+        }
+        if (value == null) return;
+        Tuple2 tuple = Tuple2.fromBytes(value);
+        int i = 0;
+        if (tuple.getLong(i++) != FORMAT) return;
+        int ntables = (int)tuple.getLong(i++);
+        for (int j = 0; j < ntables; j++) {
+            Table table = ais.getTable((int)tuple.getLong(i++));
+            long version = tuple.getLong(i++);
+            if ((table == null) || (tableVersion(table) != version)) {
+                logger.debug("Plan hints stale for {}", table);
+                return;
+            }
+        }
+        while (i < tuple.size()) {
+            int join = (int)tuple.getLong(i++);
+            int nleaves = (int)tuple.getLong(i++);
+            List<String> tables = new ArrayList<>(nleaves);
+            for (int j = 0; j < nleaves; j++) {
+                tables.add(tuple.getString(i++));
+            }
+            long[] joinOrder = new long[(int)tuple.getLong(i++)];
+            for (int j = 0; j < joinOrder.length; j++) {
+                joinOrder[j] = tuple.getLong(i++);
+            }
+            hints.put(join, new Hint(tables, joinOrder));
+        }
+    }
+
+    protected static long tableVersion(Table table) {
+        Integer version = table.getVersion();
+        return (version == null) ? -1 : version;
+    }
+
+    /** Digest of everything that determines which plan a statement gets. */
+    protected static byte[] statementKey(String sql, String defaultSchemaName, int[] paramTypes) {
+        StringBuilder str = new StringBuilder();
+        str.append(defaultSchemaName).append('\0');
+        normalize(sql, str);
+        if (paramTypes != null) {
+            str.append('\0').append(Arrays.toString(paramTypes));
+        }
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return md.digest(str.toString().getBytes("UTF-8"));
+        }
+        catch (NoSuchAlgorithmException | UnsupportedEncodingException ex) {
+            throw new AkibanInternalException("Cannot digest statement", ex);
+        }
+    }
+
+    /** Collapse runs of whitespace outside of quotes. */
+    protected static void normalize(String sql, StringBuilder str) {
+        int start = str.length();
+        char quote = 0;
+        boolean space = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char ch = sql.charAt(i);
+            if (quote != 0) {
+                if (ch == quote)
+                    quote = 0;
+            }
+            else if (Character.isWhitespace(ch)) {
+                space = true;
+                continue;
+            }
+            else if ((ch == '\'') || (ch == '"') || (ch == '`')) {
+                quote = ch;
+            }
+            if (space) {
+                if (str.length() > start)
+                    str.append(' ');
+                space = false;
+            }
+            str.append(ch);
+        }
+    }
+}
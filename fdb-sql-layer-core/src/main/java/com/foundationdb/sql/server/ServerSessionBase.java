@@ -24,6 +24,7 @@
 package com.foundationdb.sql.server;
 
 import com.foundationdb.ais.model.ForeignKey;
+import com.foundationdb.qp.operator.API;
 import com.foundationdb.qp.operator.QueryContext;
 import com.foundationdb.qp.operator.StoreAdapterHolder;
 import com.foundationdb.server.error.AkibanInternalException;
@@ -58,6 +59,7 @@ import java.util.*;
 public abstract class ServerSessionBase extends AISBinderContext implements ServerSession
 {
     public static final String COMPILER_PROPERTIES_PREFIX = "optimizer.";
+    public static final String HASH_AGGREGATE_MEMORY_PROPERTY = "hash_aggregate_memory";
     public static final String PIPELINE_PROPERTIES_PREFIX = "fdbsql.pipeline.";
 
     protected final ServerServiceRequirements reqs;
@@ -216,8 +218,12 @@ public abstract class ServerSessionBase extends AISBinderContext implements Serv
 
     @Override
     public Properties getCompilerProperties() {
-        if (compilerProperties == null)
+        if (compilerProperties == null) {
             compilerProperties = reqs.config().deriveProperties(COMPILER_PROPERTIES_PREFIX);
+            // Costing a hash aggregate needs the memory it will run with.
+            compilerProperties.setProperty(HASH_AGGREGATE_MEMORY_PROPERTY,
+                                           reqs.config().getProperty(API.HASH_AGGREGATE_MEMORY_PROPERTY));
+        }
         return compilerProperties;
     }
 
@@ -23,50 +23,287 @@
  */
 package com.foundationdb.sql.server;
 
-import com.foundationdb.server.util.LRUCacheMap;
+import com.foundationdb.ais.model.AkibanInformationSchema;
+import com.foundationdb.ais.model.Table;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Cache of parsed statements.
+ * A cache of compiled statements, keyed by SQL text.
+ *
+ * <p>The cache is split into independently locked segments by key
+ * hash. Lookups do not lock; they only mark the entry as
+ * referenced. Additions lock their segment and evict with a clock
+ * sweep until the segment is back under its share of the
+ * capacity.</p>
+ *
+ * <p>Capacity is in weight units rather than entries: a
+ * {@link CacheableStatement} supplies its own weight and everything
+ * else counts as one. Entries that took noticeably longer than
+ * average to compile get one extra pass of the clock before they
+ * are evicted.</p>
  */
 public class ServerStatementCache<T extends ServerStatement>
 {
+    public static final int MAX_SEGMENTS = 16;
+    /** Do not split the capacity into segments smaller than this. */
+    public static final int MIN_SEGMENT_CAPACITY = 64;
+
     private final CacheCounters counters;
-    private final LRUCacheMap<String,T> cache;
+    private volatile int capacity;
+    private volatile Segment<T>[] segments;
 
     public ServerStatementCache(CacheCounters counters, int size) {
         this.counters = counters;
-        this.cache = new LRUCacheMap<>(size);
+        this.capacity = size;
+        this.segments = createSegments(size);
     }
 
     public int getCapacity() {
-        return cache.getCapacity();
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+        this.segments = createSegments(capacity);
+    }
+
+    public T get(String sql) {
+        Segment<T>[] segments = this.segments;
+        int index = segmentIndex(segments, sql);
+        Entry<T> entry = segments[index].entries.get(sql);
+        if (entry != null) {
+            entry.referenced = true;
+            counters.incrementHits(index);
+            return entry.stmt;
+        }
+        else {
+            counters.incrementMisses(index);
+            return null;
+        }
     }
 
-    public synchronized void setCapacity(int capacity) {
-        cache.setCapacity(capacity);
-        cache.clear();
+    public void put(String sql, T stmt) {
+        put(sql, stmt, 0);
     }
 
-    public synchronized T get(String sql) {
-        T entry = cache.get(sql);
-        if (entry != null)
-            counters.incrementHits();
-        else
-            counters.incrementMisses();
-        return entry;
+    /** Add a statement that took <code>compileNanos</code> to compile. */
+    public void put(String sql, T stmt, long compileNanos) {
+        int weight = 1;
+        Map<Integer,Integer> tableVersions = null;
+        if (stmt instanceof CacheableStatement) {
+            CacheableStatement cstmt = (CacheableStatement)stmt;
+            weight = Math.max(1, cstmt.getCacheWeight());
+            Collection<Table> tables = cstmt.getDependentTables();
+            if (tables != null) {
+                tableVersions = new HashMap<>(tables.size());
+                for (Table table : tables) {
+                    tableVersions.put(table.getTableId(), table.getVersion());
+                }
+            }
+        }
+        Segment<T>[] segments = this.segments;
+        int index = segmentIndex(segments, sql);
+        segments[index].put(new Entry<>(sql, stmt, weight, compileNanos, tableVersions),
+                            counters, index);
     }
 
-    public synchronized void put(String sql, T stmt) {
-        // TODO: Count number of times this is non-null, meaning that
-        // two threads computed the same statement?
-        cache.put(sql, stmt);
+    /** Remove everything. */
+    public void invalidate() {
+        for (Segment<T> segment : segments) {
+            segment.clear();
+        }
     }
 
-    public synchronized void invalidate() {
-        cache.clear();
+    /**
+     * Remove entries whose plan depends on a table that is missing or
+     * has a different version in <code>ais</code>. Entries that
+     * did not declare their tables are left alone.
+     */
+    public void invalidate(AkibanInformationSchema ais) {
+        for (Segment<T> segment : segments) {
+            segment.invalidate(ais);
+        }
     }
 
-    public synchronized void reset() {
-        cache.clear();
+    public void reset() {
+        invalidate();
+    }
+
+    /** Number of entries currently cached. */
+    public int size() {
+        int size = 0;
+        for (Segment<T> segment : segments) {
+            size += segment.entries.size();
+        }
+        return size;
+    }
+
+    /** Total weight of entries currently cached. */
+    public int weight() {
+        int weight = 0;
+        for (Segment<T> segment : segments) {
+            segment.lock.lock();
+            try {
+                weight += segment.weight;
+            }
+            finally {
+                segment.lock.unlock();
+            }
+        }
+        return weight;
+    }
+
+    protected static int segmentCount(int capacity) {
+        int n = 1;
+        while ((n < MAX_SEGMENTS) && (capacity / (n * 2) >= MIN_SEGMENT_CAPACITY)) {
+            n *= 2;
+        }
+        return n;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Segment<T>[] createSegments(int capacity) {
+        int n = Math.min(segmentCount(capacity), counters.getShardCount());
+        Segment<T>[] segments = new Segment[n];
+        for (int i = 0; i < n; i++) {
+            // Spread any remainder over the first few segments.
+            segments[i] = new Segment<>(capacity / n + ((i < capacity % n) ? 1 : 0));
+        }
+        return segments;
+    }
+
+    private static int segmentIndex(Segment<?>[] segments, String sql) {
+        if (segments.length == 1) return 0;
+        int h = sql.hashCode();
+        h ^= (h >>> 16);
+        return h & (segments.length - 1);
+    }
+
+    static final class Entry<T> {
+        final String sql;
+        final T stmt;
+        final int weight;
+        final long compileNanos;
+        final Map<Integer,Integer> tableVersions;
+        volatile boolean referenced;
+        boolean spared;
+
+        Entry(String sql, T stmt, int weight, long compileNanos,
+              Map<Integer,Integer> tableVersions) {
+            this.sql = sql;
+            this.stmt = stmt;
+            this.weight = weight;
+            this.compileNanos = compileNanos;
+            this.tableVersions = tableVersions;
+        }
+
+        boolean isCurrent(AkibanInformationSchema ais) {
+            if (tableVersions == null) return true;
+            for (Map.Entry<Integer,Integer> entry : tableVersions.entrySet()) {
+                Table table = ais.getTable(entry.getKey());
+                if ((table == null) ||
+                    !Objects.equals(table.getVersion(), entry.getValue()))
+                    return false;
+            }
+            return true;
+        }
+    }
+
+    static final class Segment<T> {
+        final int capacity;
+        final ConcurrentHashMap<String,Entry<T>> entries = new ConcurrentHashMap<>();
+        final ReentrantLock lock = new ReentrantLock();
+        // Guarded by lock.
+        final ArrayDeque<Entry<T>> clock = new ArrayDeque<>();
+        int weight;
+        long averageCompileNanos;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void put(Entry<T> entry, CacheCounters counters, int index) {
+            if (entry.weight > capacity) return; // Would never fit.
+            lock.lock();
+            try {
+                Entry<T> old = entries.put(entry.sql, entry);
+                if (old != null) {
+                    // TODO: Count number of times this happens, meaning that
+                    // two threads computed the same statement?
+                    clock.remove(old);
+                    weight -= old.weight;
+                }
+                clock.addLast(entry);
+                weight += entry.weight;
+                // Cheap running average, enough to tell expensive entries apart.
+                averageCompileNanos += (entry.compileNanos - averageCompileNanos) / 8;
+                evict(counters, index);
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        private void evict(CacheCounters counters, int index) {
+            // Each entry can only be passed over twice, so bound the
+            // sweep in case lookups keep setting the reference bit.
+            int passes = clock.size() * 2;
+            while (weight > capacity) {
+                Entry<T> entry = clock.pollFirst();
+                if (passes-- > 0) {
+                    if (entry.referenced) {
+                        entry.referenced = false;
+                        clock.addLast(entry);
+                        continue;
+                    }
+                    if (!entry.spared && (entry.compileNanos > averageCompileNanos * 2)) {
+                        entry.spared = true;
+                        clock.addLast(entry);
+                        continue;
+                    }
+                }
+                entries.remove(entry.sql, entry);
+                weight -= entry.weight;
+                counters.incrementEvictions(index);
+            }
+        }
+
+        void invalidate(AkibanInformationSchema ais) {
+            lock.lock();
+            try {
+                Iterator<Entry<T>> iter = clock.iterator();
+                while (iter.hasNext()) {
+                    Entry<T> entry = iter.next();
+                    if (!entry.isCurrent(ais)) {
+                        iter.remove();
+                        entries.remove(entry.sql, entry);
+                        weight -= entry.weight;
+                    }
+                }
+            }
+            finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                entries.clear();
+                clock.clear();
+                weight = 0;
+            }
+            finally {
+                lock.unlock();
+            }
+        }
     }
 }
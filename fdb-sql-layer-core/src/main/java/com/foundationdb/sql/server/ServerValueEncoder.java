@@ -98,6 +98,13 @@ public class ServerValueEncoder
         this.zeroDateTimeBehavior = zeroDateTimeBehavior;
     }
 
+    /** Encode into the given stream, which may be shared with the caller: see {@link #appendEncodedValue}. */
+    public ServerValueEncoder(TypesTranslator typesTranslator, String encoding, ByteArrayOutputStream byteStream, 
+                              ZeroDateTimeBehavior zeroDateTimeBehavior, FormatOptions options) {
+        this(typesTranslator, encoding, byteStream, options);
+        this.zeroDateTimeBehavior = zeroDateTimeBehavior;
+    }
+
     public ServerValueEncoder(TypesTranslator typesTranslator, String encoding, ByteArrayOutputStream byteStream, 
                               FormatOptions options) {
         this.typesTranslator = typesTranslator;
@@ -122,6 +129,11 @@ public class ServerValueEncoder
         return encoding;
     }
 
+    /** How binary values are encoded as text. */
+    public FormatOptions.BinaryFormatOption getBinaryFormat() {
+        return options.get(FormatOptions.BinaryFormatOption.class);
+    }
+
     public ByteArrayOutputStream getByteStream() {
         printWriter.flush();
         return byteStream;
@@ -146,6 +158,32 @@ public class ServerValueEncoder
      */
     public ByteArrayOutputStream encodeValue(ValueSource value, ServerType type,
                                              boolean binary) throws IOException {
+        value = zeroDateTimeValue(value, type);
+        if (value == null)
+            return null;
+        reset();
+        appendValue(value, type, binary);
+        return getByteStream();
+    }
+
+    /**
+     * Encode the given value onto the end of the stream, after
+     * whatever the caller has written there directly.
+     * @return the number of bytes appended, or <code>-1</code> for null.
+     */
+    public int appendEncodedValue(ValueSource value, ServerType type,
+                                  boolean binary) throws IOException {
+        value = zeroDateTimeValue(value, type);
+        if (value == null)
+            return -1;
+        int start = getByteStream().size();
+        appendValue(value, type, binary);
+        return getByteStream().size() - start;
+    }
+
+    /** The value to actually encode, taking account of zero dates,
+     * or <code>null</code> for NULL. */
+    protected ValueSource zeroDateTimeValue(ValueSource value, ServerType type) {
         if (value.isNull())
             return null;
         if ((zeroDateTimeBehavior != ZeroDateTimeBehavior.NONE) &&
@@ -165,9 +203,7 @@ public class ServerValueEncoder
                 return null;
             }
         }
-        reset();
-        appendValue(value, type, binary);
-        return getByteStream();
+        return value;
     }
 
     /** Encode the given direct value. */
@@ -271,6 +271,31 @@ public class Tuple2 extends Tuple {
         return t;
     }
 
+    /**
+     * Gets the position just past the single encoded element that starts at
+     *  {@code offset}, without decoding it.
+     *
+     * @param bytes encoded {@code Tuple} source
+     * @param offset start of an element within {@code bytes}
+     *
+     * @return the start of the next element, or {@code bytes.length} after the last one
+     */
+    public static int skipElement(byte[] bytes, int offset) {
+        return TupleFloatingUtil.skip(bytes, offset);
+    }
+
+    /**
+     * Decodes the single element that starts at {@code offset}.
+     *
+     * @param bytes encoded {@code Tuple} source
+     * @param offset start of an element within {@code bytes}
+     *
+     * @return the decoded item
+     */
+    public static Object decodeElement(byte[] bytes, int offset) {
+        return TupleFloatingUtil.decode(bytes, offset, bytes.length).o;
+    }
+
     /**
      * Gets the number of elements in this {@code Tuple}.
      *
@@ -253,6 +253,53 @@ class TupleFloatingUtil {
         return items;
     }
 
+    /** Position just past the element starting at <code>pos</code>, without decoding it. */
+    static int skip(byte[] rep, int pos) {
+        int code = rep[pos];
+        int start = pos + 1;
+        if (code == 0x0) {
+            return start;
+        }
+        if (code == 0x1 || code == 0x2) {
+            // Bytes or string: ends at a nil that is not escaped by a following 0xFF.
+            int i = start;
+            while (true) {
+                if (rep[i] == nil) {
+                    if ((i + 1 < rep.length) && (rep[i + 1] == (byte)0xFF)) {
+                        i += 2;
+                        continue;
+                    }
+                    return i + 1;
+                }
+                i++;
+            }
+        }
+        if (code >= 12 && code <= 28) {
+            return start + Math.abs(code - 20);
+        }
+        if (code == UUID_CODE) {
+            return start + UUID_LEN;
+        }
+        if (code == FLOAT_CODE) {
+            return start + FLOAT_LEN;
+        }
+        if (code == DOUBLE_CODE) {
+            return start + DOUBLE_LEN;
+        }
+        if (code == TRUE_CODE || code == FALSE_CODE) {
+            return start;
+        }
+        if (code == BIGDEC_POS_CODE || code == BIGDEC_NEG_CODE) {
+            int length = Math.abs(ByteBuffer.wrap(rep, start + INT_LEN, INT_LEN).order(ByteOrder.BIG_ENDIAN).getInt());
+            return start + INT_LEN * 2 + length;
+        }
+        if (code == BIGINT_POS_CODE || code == BIGINT_NEG_CODE) {
+            int length = Math.abs(ByteBuffer.wrap(rep, start, INT_LEN).order(ByteOrder.BIG_ENDIAN).getInt());
+            return start + INT_LEN + length;
+        }
+        throw new IllegalArgumentException("Unknown tuple data type " + code + " at index " + pos);
+    }
+
     static byte[] pack(List<Object> items) {
         if(items.size() == 0)
             return new byte[0];
@@ -23,24 +23,42 @@
  */
 package com.foundationdb.util;
 
+import static java.lang.Math.ceil;
 import static java.lang.Math.log;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 import static java.lang.Math.round;
 
+/**
+ * A register-blocked Bloom filter: all the bits for a key are in one
+ * 64-byte block, so that a probe touches a single cache line. Blocking
+ * costs a little accuracy, which is made up by sizing the filter for a
+ * somewhat lower error rate than asked for.
+ * <p>
+ * Keys are 64-bit hashes. They are mixed again here, so callers need
+ * not worry about poorly distributed inputs, such as small integers.
+ */
 public class BloomFilter
 {
-    public void add(int hashValue)
+    public void add(long hashValue)
     {
-        for (int h = 0; h < hashFunctions; h++) {
-            int position = position(hashValue, h);
-            filter[position >> SHIFT] |= 1L << (position & MASK);
+        long hash = mix(hashValue);
+        int base = block(hash);
+        int h = (int) hash;
+        for (int i = 0; i < hashFunctions; i++) {
+            int bit = (h * SALTS[i]) >>> (Integer.SIZE - BLOCK_SHIFT);
+            filter[base + (bit >>> SHIFT)] |= 1L << (bit & MASK);
         }
     }
 
-    public boolean maybePresent(int hashValue)
+    public boolean maybePresent(long hashValue)
     {
-        for (int h = 0; h < hashFunctions; h++) {
-            int position = position(hashValue, h);
-            if ((filter[position >> SHIFT] & (1L << (position & MASK))) == 0) {
+        long hash = mix(hashValue);
+        int base = block(hash);
+        int h = (int) hash;
+        for (int i = 0; i < hashFunctions; i++) {
+            int bit = (h * SALTS[i]) >>> (Integer.SIZE - BLOCK_SHIFT);
+            if ((filter[base + (bit >>> SHIFT)] & (1L << (bit & MASK))) == 0) {
                 return false;
             }
         }
@@ -51,20 +69,36 @@ public class BloomFilter
     {
         // Formulae from http://en.wikipedia.org/wiki/Bloom_filter.
         double ln2 = log(2);
-        filterSize = (int) -round(maxKeys * log(errorRate) / (ln2 * ln2));
-        hashFunctions = (int) round(((double) filterSize / maxKeys) * ln2);
-        filter = new long[1 + filterSize / BITS];
+        maxKeys = max(maxKeys, 1);
+        double bitsPerKey = -log(errorRate * BLOCKING_ALLOWANCE) / (ln2 * ln2);
+        long filterSize = (long) ceil(maxKeys * bitsPerKey);
+        blocks = (int) min(max(1, (filterSize + BLOCK_BITS - 1) / BLOCK_BITS), MAX_BLOCKS);
+        hashFunctions = (int) min(max(1, round(bitsPerKey * ln2)), MAX_HASH_FUNCTIONS);
+        filter = new long[blocks * BLOCK_WORDS];
+    }
+
+    public long sizeInBytes()
+    {
+        return filter.length * 8L;
     }
 
     // For use by this class
 
-    private int position(int x, int h)
+    /** Pick a block from the high half of the hash. */
+    private int block(long hash)
     {
-        int hash = x * PRIMES[h];
-        if (hash < 0) {
-            hash = hash == Integer.MIN_VALUE ? 0 : -hash;
-        }
-        return hash % filterSize;
+        return (int) (((hash >>> 32) * blocks) >>> 32) * BLOCK_WORDS;
+    }
+
+    /** Finalization step of MurmurHash3. Also used by the other sketches here. */
+    static long mix(long hash)
+    {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
     }
 
     // Class state
@@ -72,34 +106,25 @@ public class BloomFilter
     private static final int BITS = 64;
     private static final int SHIFT = 6; // log2(BITS)
     private static final int MASK = (1 << SHIFT) - 1;
+    private static final int BLOCK_WORDS = 8; // One 64-byte cache line
+    private static final int BLOCK_BITS = BLOCK_WORDS * BITS;
+    private static final int BLOCK_SHIFT = 9; // log2(BLOCK_BITS)
+    private static final int MAX_BLOCKS = Integer.MAX_VALUE / BLOCK_WORDS;
+    private static final double BLOCKING_ALLOWANCE = 0.5;
 
-    // First 100 primes > 1e9
-    private static int[] PRIMES = {
-        1000000007, 1000000009, 1000000021, 1000000033, 1000000087,
-        1000000093, 1000000097, 1000000103, 1000000123, 1000000181,
-        1000000207, 1000000223, 1000000241, 1000000271, 1000000289,
-        1000000297, 1000000321, 1000000349, 1000000363, 1000000403,
-        1000000409, 1000000411, 1000000427, 1000000433, 1000000439,
-        1000000447, 1000000453, 1000000459, 1000000483, 1000000513,
-        1000000531, 1000000579, 1000000607, 1000000613, 1000000637,
-        1000000663, 1000000711, 1000000753, 1000000787, 1000000801,
-        1000000829, 1000000861, 1000000871, 1000000891, 1000000901,
-        1000000919, 1000000931, 1000000933, 1000000993, 1000001011,
-        1000001021, 1000001053, 1000001087, 1000001099, 1000001137,
-        1000001161, 1000001203, 1000001213, 1000001237, 1000001263,
-        1000001269, 1000001273, 1000001279, 1000001311, 1000001329,
-        1000001333, 1000001351, 1000001371, 1000001393, 1000001413,
-        1000001447, 1000001449, 1000001491, 1000001501, 1000001531,
-        1000001537, 1000001539, 1000001581, 1000001617, 1000001621,
-        1000001633, 1000001647, 1000001663, 1000001677, 1000001699,
-        1000001759, 1000001773, 1000001789, 1000001791, 1000001801,
-        1000001803, 1000001819, 1000001857, 1000001887, 1000001917,
-        1000001927, 1000001957, 1000001963, 1000001969, 1000002043,
+    // Odd multipliers, one per hash function, that pick a bit within the block
+    // from the low half of the hash.
+    private static final int[] SALTS = {
+        0x47b6137b, 0x44974d91, 0x8824ad5b, 0xa2b7289d,
+        0x705495c7, 0x2df1424b, 0x9efc4947, 0x5c6bfb31,
+        0x9e3779b1, 0x85ebca6b, 0xc2b2ae35, 0x27d4eb2f,
+        0x165667b1, 0xd3a2646d, 0xfd7046c5, 0xb55a4f09,
     };
+    private static final int MAX_HASH_FUNCTIONS = SALTS.length;
 
     // Object state
 
-    private final int filterSize;
+    private final int blocks;
     private final int hashFunctions;
     private final long[] filter;
 
@@ -0,0 +1,105 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.util;
+
+import static java.lang.Math.ceil;
+import static java.lang.Math.E;
+import static java.lang.Math.log;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * A count-min sketch: approximate frequencies of keys in fixed space.
+ * An estimate is never below the true count and, with probability at
+ * least <code>1 - failureProbability</code>, exceeds it by no more than
+ * <code>relativeError * total()</code>.
+ * <p>
+ * Keys are 64-bit hashes, mixed again here as for {@link BloomFilter}.
+ */
+public class CountMinSketch
+{
+    public void add(long hashValue, long count)
+    {
+        long hash = BloomFilter.mix(hashValue);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < depth; i++) {
+            counts[i * width + column(h1 + i * h2)] += count;
+        }
+        total += count;
+    }
+
+    public long estimate(long hashValue)
+    {
+        long hash = BloomFilter.mix(hashValue);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long estimate = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            estimate = min(estimate, counts[i * width + column(h1 + i * h2)]);
+        }
+        return estimate;
+    }
+
+    /** The sum of all counts added. */
+    public long total()
+    {
+        return total;
+    }
+
+    /** The most by which an estimate is likely to exceed the true count. */
+    public long maxError()
+    {
+        return (long) ceil(relativeError * total);
+    }
+
+    public CountMinSketch(double relativeError, double failureProbability)
+    {
+        // Formulae from http://en.wikipedia.org/wiki/Count%E2%80%93min_sketch.
+        this.relativeError = relativeError;
+        width = (int) min(max(1, ceil(E / relativeError)), MAX_WIDTH);
+        depth = (int) min(max(1, ceil(log(1 / failureProbability))), MAX_DEPTH);
+        counts = new long[width * depth];
+    }
+
+    // For use by this class
+
+    private int column(int hash)
+    {
+        return (int) (((hash & 0xFFFFFFFFL) * width) >>> 32);
+    }
+
+    // Class state
+
+    private static final int MAX_WIDTH = 1 << 20;
+    private static final int MAX_DEPTH = 16;
+
+    // Object state
+
+    private final double relativeError;
+    private final int width;
+    private final int depth;
+    private final long[] counts;
+    private long total;
+}
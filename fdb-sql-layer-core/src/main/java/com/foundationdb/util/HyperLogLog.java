@@ -0,0 +1,110 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.util;
+
+import static java.lang.Math.log;
+import static java.lang.Math.round;
+import static java.lang.Math.sqrt;
+
+/**
+ * A HyperLogLog counter: the approximate number of distinct keys added,
+ * in <code>2^precision</code> bytes, with a relative standard error of
+ * about <code>1.04 / sqrt(2^precision)</code>.
+ * <p>
+ * Keys are 64-bit hashes, mixed again here as for {@link BloomFilter}.
+ */
+public class HyperLogLog
+{
+    public void add(long hashValue)
+    {
+        long hash = BloomFilter.mix(hashValue);
+        int register = (int) (hash >>> (Long.SIZE - precision));
+        // Position of the first one bit in the rest, capped by a sentinel bit.
+        int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+        if (rank > registers[register]) {
+            registers[register] = (byte) rank;
+        }
+    }
+
+    public long estimate()
+    {
+        // Formulae from Flajolet et al., "HyperLogLog: the analysis of a
+        // near-optimal cardinality estimation algorithm".
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte rank : registers) {
+            sum += 1.0 / (1L << rank);
+            if (rank == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if ((estimate <= 2.5 * m) && (zeros > 0)) {
+            // Small range correction: linear counting.
+            estimate = m * log((double) m / zeros);
+        }
+        return round(estimate);
+    }
+
+    public double standardError()
+    {
+        return 1.04 / sqrt(registers.length);
+    }
+
+    public HyperLogLog(int precision)
+    {
+        if ((precision < MIN_PRECISION) || (precision > MAX_PRECISION)) {
+            throw new IllegalArgumentException("precision: " + precision);
+        }
+        this.precision = precision;
+        registers = new byte[1 << precision];
+    }
+
+    // For use by this class
+
+    private static double alpha(int m)
+    {
+        switch (m) {
+        case 16:
+            return 0.673;
+        case 32:
+            return 0.697;
+        case 64:
+            return 0.709;
+        default:
+            return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+    // Class state
+
+    private static final int MIN_PRECISION = 4;
+    private static final int MAX_PRECISION = 16;
+
+    // Object state
+
+    private final int precision;
+    private final byte[] registers;
+}
@@ -32,7 +32,11 @@ import com.foundationdb.subspace.Subspace;
 import com.foundationdb.tuple.ByteArrayUtil;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Random;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
@@ -183,6 +187,48 @@ public class BlobAsyncIT extends FDBITBase
         });
     }
 
+    @Test
+    public void streamRead() {
+        final byte[] testBytes = new byte[1000000];
+        new Random(42).nextBytes(testBytes);
+        fdbHolder().getTransactionContext().run(new Function<Transaction, Void>() {
+            @Override
+            public Void apply(Transaction tr) {
+                BlobAsync blob = new BlobAsync(getDir(tr));
+                blob.write(tr, 0, testBytes).get();
+                try {
+                    // Odd sized reads across window boundaries
+                    BlobInputStream stream = blob.openInputStream(tr, 12345, 3);
+                    assertEquals(testBytes.length, stream.getSize());
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    byte[] buffer = new byte[7777];
+                    int n;
+                    while((n = stream.read(buffer)) >= 0) {
+                        out.write(buffer, 0, n);
+                    }
+                    stream.close();
+                    assertArrayEquals(Arrays.copyOfRange(testBytes, 12345, testBytes.length), out.toByteArray());
+
+                    // As a channel, stopping early
+                    stream = blob.openInputStream(tr, 0, 1);
+                    ByteBuffer dst = ByteBuffer.allocate(250000);
+                    while(dst.hasRemaining() && stream.read(dst) >= 0) {
+                    }
+                    stream.close();
+                    assertArrayEquals(Arrays.copyOf(testBytes, dst.capacity()), dst.array());
+
+                    // Past the end
+                    stream = blob.openInputStream(tr, testBytes.length, 2);
+                    assertEquals(-1, stream.read());
+                    stream.close();
+                } catch(IOException e) {
+                    throw new RuntimeException(e);
+                }
+                return null;
+            }
+        });
+    }
+
     private void writeAndRead(final int len) {
         final byte[] testBytes = generateBytes(len);
         fdbHolder().getTransactionContext().run(new Function<Transaction, Void>() {
@@ -0,0 +1,99 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.qp.operator;
+
+import com.foundationdb.util.tap.PointTap;
+import com.foundationdb.util.tap.Tap;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+public class LookaheadQuantumTest
+{
+    private static final PointTap HIT = Tap.createCount("test: lookahead hit");
+    private static final PointTap STALL = Tap.createCount("test: lookahead stall");
+    private static final long HIT_NANOS = 0;
+    private static final long STALL_NANOS = LookaheadQuantum.READY_NANOS * 10;
+
+    @Test
+    public void startsSmall() {
+        LookaheadQuantum quantum = new LookaheadQuantum(16, HIT, STALL);
+        assertEquals(1, quantum.get());
+        assertEquals(16, quantum.getMaximum());
+    }
+
+    @Test
+    public void stallsDouble() {
+        LookaheadQuantum quantum = new LookaheadQuantum(10, HIT, STALL);
+        quantum.firstRow(STALL_NANOS);
+        assertEquals(2, quantum.get());
+        quantum.firstRow(STALL_NANOS);
+        assertEquals(4, quantum.get());
+        quantum.firstRow(STALL_NANOS);
+        assertEquals(8, quantum.get());
+        quantum.firstRow(STALL_NANOS);
+        assertEquals(10, quantum.get());
+        assertEquals(4, quantum.getStalls());
+    }
+
+    @Test
+    public void hitsGrowByOne() {
+        LookaheadQuantum quantum = new LookaheadQuantum(4, HIT, STALL);
+        quantum.firstRow(HIT_NANOS);
+        assertEquals(2, quantum.get());
+        quantum.firstRow(HIT_NANOS);
+        assertEquals(2, quantum.get());
+        quantum.firstRow(HIT_NANOS);
+        assertEquals(3, quantum.get());
+        for (int i = 0; i < 10; i++) {
+            quantum.firstRow(HIT_NANOS);
+        }
+        assertEquals(4, quantum.get());
+        assertEquals(13, quantum.getHits());
+    }
+
+    @Test
+    public void discardsHalve() {
+        LookaheadQuantum quantum = new LookaheadQuantum(8, HIT, STALL);
+        for (int i = 0; i < 3; i++) {
+            quantum.firstRow(STALL_NANOS);
+        }
+        assertEquals(8, quantum.get());
+        quantum.discarded(0);
+        assertEquals(8, quantum.get());
+        quantum.discarded(5);
+        assertEquals(4, quantum.get());
+        quantum.discarded(1);
+        quantum.discarded(1);
+        quantum.discarded(1);
+        assertEquals(1, quantum.get());
+    }
+
+    @Test
+    public void unitMaximum() {
+        LookaheadQuantum quantum = new LookaheadQuantum(0, HIT, STALL);
+        quantum.firstRow(STALL_NANOS);
+        assertEquals(1, quantum.get());
+    }
+}
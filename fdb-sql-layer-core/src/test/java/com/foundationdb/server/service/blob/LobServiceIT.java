@@ -27,6 +27,12 @@ import com.foundationdb.server.service.transaction.*;
 import com.foundationdb.server.store.FDBTransactionService;
 import com.foundationdb.server.test.it.ITBase;
 import com.foundationdb.Transaction;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
 import java.util.UUID;
 
 import org.junit.*;
@@ -93,6 +99,55 @@ public class LobServiceIT extends ITBase {
     }
     
     
+    @Test
+    public void streamingWriteAndRead() throws IOException {
+        byte[] bytes = new byte[2500000];
+        new Random(17).nextBytes(bytes);
+        UUID id = UUID.randomUUID();
+        getOrBeginTransaction();
+        ls.createNewLob(session(), id);
+        ls.linkTableBlob(session(), id, 1);
+        // More than one piece, so more than one transaction
+        Assert.assertEquals(bytes.length, ls.writeBlob(session(), id, 0, new ByteArrayInputStream(bytes)));
+        commit();
+
+        getOrBeginTransaction();
+        Assert.assertEquals(bytes.length, ls.sizeBlob(session(), id));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = ls.openBlobStream(session(), id, 0)) {
+            byte[] buffer = new byte[65536];
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+        Assert.assertArrayEquals(bytes, out.toByteArray());
+        ls.deleteLob(session(), id);
+        commit();
+    }
+
+    @Test
+    public void streamingWriteRolledBack() {
+        byte[] bytes = new byte[2500000];
+        new Random(17).nextBytes(bytes);
+        UUID id = UUID.randomUUID();
+        getOrBeginTransaction();
+        ls.createNewLob(session(), id);
+        ls.linkTableBlob(session(), id, 1);
+        // More than one piece, none of them in the caller's transaction
+        Assert.assertEquals(bytes.length, ls.writeBlob(session(), id, 0, new ByteArrayInputStream(bytes)));
+        Assert.assertTrue(ls.existsLob(session(), id));
+        txnService().rollbackTransaction(session());
+
+        // Neither the lob nor any of its pieces are left
+        getOrBeginTransaction();
+        Assert.assertFalse(ls.existsLob(session(), id));
+        ls.createNewLob(session(), id);
+        Assert.assertEquals(0L, ls.sizeBlob(session(), id));
+        ls.deleteLob(session(), id);
+        commit();
+    }
+
     private Transaction getOrBeginTransaction() {
         TransactionService txnService = txnService();
         if (txnService instanceof FDBTransactionService) {
@@ -61,6 +61,8 @@ public class TestConfigService extends ConfigurationServiceImpl {
         ret.put(FDB_ROOT_DIR_KEY, TEST_FDB_ROOT_DIR);
         ret.put(TEXT_INDEX_PATH_KEY, dataDirectory.getAbsolutePath());
         ret.put(BUCKET_COUNT_KEY, BUCKET_COUNT);
+        // Keep statistics that tests load or compute from drifting under them.
+        ret.put(DELTA_REFRESH_RATIO_KEY, "disabled");
         ret.put(FEATURE_DDL_WITH_DML_KEY, "true");
         ret.put(FEATURE_SPATIAL_INDEX_KEY, "true");
         // extra = test overrides
@@ -130,6 +132,7 @@ public class TestConfigService extends ConfigurationServiceImpl {
     public final static String FDB_ROOT_DIR_KEY = "fdbsql.fdb.root_directory";
     public final static String TEXT_INDEX_PATH_KEY = "fdbsql.text.indexpath";
     public final static String BUCKET_COUNT_KEY = "fdbsql.index_statistics.bucket_count";
+    public final static String DELTA_REFRESH_RATIO_KEY = "fdbsql.index_statistics.delta_refresh_ratio";
     private final static String BUCKET_COUNT = "32";
 
     public final static String FEATURE_DDL_WITH_DML_KEY = "fdbsql.feature.ddl_with_dml_on";
@@ -911,6 +911,31 @@ public class BasicInfoSchemaTablesServiceImplTest {
             throw new UnsupportedOperationException();
         }
 
+        @Override
+        public void joinOnline(Session session, Session helper) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<byte[]> getOnlineBuildSplits(Session session, int tableID) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setOnlineBuildSplits(Session session, int tableID, List<byte[]> splits) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void addOnlineBuildCompletedRange(Session session, int tableID, int range) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Set<Integer> getOnlineBuildCompletedRanges(Session session, int tableID) {
+            throw new UnsupportedOperationException();
+        }
+
         @Override
         public TableName createTableDefinition(Session session, Table newTable) {
             throw new UnsupportedOperationException();
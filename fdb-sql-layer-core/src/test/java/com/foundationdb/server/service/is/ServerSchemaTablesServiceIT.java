@@ -86,6 +86,7 @@ public class ServerSchemaTablesServiceIT extends ITBase
         assertNotNull (ais.getTable(ServerSchemaTablesServiceImpl.SERVER_PREPARED_STATEMENTS));
         assertNotNull (ais.getTable(ServerSchemaTablesServiceImpl.SERVER_CURSORS));
         assertNotNull (ais.getTable(ServerSchemaTablesServiceImpl.SERVER_USERS));
+        assertNotNull (ais.getTable(ServerSchemaTablesServiceImpl.SERVER_INDEX_BUILDS));
     }
     
     @Test
@@ -170,6 +171,13 @@ public class ServerSchemaTablesServiceIT extends ITBase
         
         checkTable(expected,ServerSchemaTablesServiceImpl.SERVER_USERS);
     }
+
+    @Test
+    public void testServerIndexBuilds() {
+        final Object[][] expected = {
+        };
+        checkTable(expected, ServerSchemaTablesServiceImpl.SERVER_INDEX_BUILDS);
+    }
     
     @Test
     public void testServerPreparedStatements() {
@@ -0,0 +1,149 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.store;
+
+import com.foundationdb.server.error.DuplicateKeyException;
+import com.foundationdb.server.service.transaction.TransactionService;
+import com.foundationdb.server.test.it.FDBITBase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class FDBBatchedUniqueChecksIT extends FDBITBase
+{
+    private static final String SCHEMA = "test";
+    private static final int NROWS = FDBPendingIndexChecks.BATCH_SIZE * 2 + 10;
+    private static final int SPARSE_ROWS = 200;
+
+    private int tid;
+
+    @Before
+    public void createAndPopulate() {
+        tid = createTable(SCHEMA, "t", "id INT NOT NULL PRIMARY KEY, u INT, UNIQUE(u)");
+        writeRow(tid, 0, 0);
+        writeRow(tid, NROWS, NROWS);
+        txnService().setSessionOption(session(), TransactionService.SessionOption.CONSTRAINT_CHECK_TIME,
+                                      FDBPendingIndexChecks.CheckTime.STATEMENT_BATCHED.name());
+    }
+
+    @After
+    public void resetCheckTime() {
+        txnService().setSessionOption(session(), TransactionService.SessionOption.CONSTRAINT_CHECK_TIME, null);
+    }
+
+    @Test
+    public void manyDistinct() {
+        txnService().beginTransaction(session());
+        for (int i = 1; i < NROWS; i++) {
+            writeRow(tid, i, i);
+        }
+        txnService().checkStatementConstraints(session());
+        txnService().commitTransaction(session());
+        assertEquals(NROWS + 1, scanAll(tid).size());
+    }
+
+    @Test
+    public void duplicateOfExistingPrimaryKey() {
+        expectDuplicate(new int[][] { { 1, 1 }, { NROWS, -1 }, { 2, 2 } });
+    }
+
+    @Test
+    public void duplicateOfExistingUnique() {
+        expectDuplicate(new int[][] { { 1, 1 }, { 2, NROWS }, { 3, 3 } });
+    }
+
+    @Test
+    public void duplicatePrimaryKeyInTransaction() {
+        expectDuplicate(new int[][] { { 1, 1 }, { 2, 2 }, { 1, 3 } });
+    }
+
+    @Test
+    public void duplicateUniqueInTransaction() {
+        expectDuplicate(new int[][] { { 1, 1 }, { 2, 2 }, { 3, 1 } });
+    }
+
+    @Test
+    public void deleteThenReinsert() {
+        txnService().beginTransaction(session());
+        deleteRow(tid, 0, 0);
+        deleteRow(tid, NROWS, NROWS);
+        writeRow(tid, 0, NROWS);
+        writeRow(tid, NROWS, 0);
+        txnService().checkStatementConstraints(session());
+        txnService().commitTransaction(session());
+        expectRows(tid, row(tid, 0, NROWS), row(tid, NROWS, 0));
+    }
+
+    @Test
+    public void sparseBetweenExisting() {
+        writeSparse();
+        txnService().beginTransaction(session());
+        for (int i = 0; i < SPARSE_ROWS; i++) {
+            writeRow(tid, NROWS + 1 + SPARSE_ROWS + i, -(10 * i + 5));
+        }
+        txnService().checkStatementConstraints(session());
+        txnService().commitTransaction(session());
+        assertEquals(2 + SPARSE_ROWS * 2, scanAll(tid).size());
+    }
+
+    @Test
+    public void sparseDuplicateOfExisting() {
+        writeSparse();
+        int[][] rows = new int[SPARSE_ROWS + 1][];
+        for (int i = 0; i < SPARSE_ROWS; i++) {
+            rows[i] = new int[] { NROWS + 1 + SPARSE_ROWS + i, -(10 * i + 5) };
+        }
+        rows[SPARSE_ROWS] = new int[] { NROWS + 1 + SPARSE_ROWS * 2, -(10 * (SPARSE_ROWS / 2) + 10) };
+        expectDuplicate(rows);
+    }
+
+    /** Existing unique values between each of the ones the sparse tests insert. */
+    private void writeSparse() {
+        txnService().beginTransaction(session());
+        for (int i = 0; i < SPARSE_ROWS; i++) {
+            writeRow(tid, NROWS + 1 + i, -(10 * i + 10));
+        }
+        txnService().commitTransaction(session());
+    }
+
+    private void expectDuplicate(int[][] rows) {
+        txnService().beginTransaction(session());
+        try {
+            for (int[] r : rows) {
+                writeRow(tid, r[0], r[1]);
+            }
+            txnService().checkStatementConstraints(session());
+            fail("expected duplicate key");
+        }
+        catch (DuplicateKeyException e) {
+            // Expected
+        }
+        finally {
+            txnService().rollbackTransactionIfOpen(session());
+        }
+    }
+}
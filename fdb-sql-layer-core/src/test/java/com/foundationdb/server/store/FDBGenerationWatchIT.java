@@ -0,0 +1,98 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.store;
+
+import com.foundationdb.ais.model.TableName;
+import com.foundationdb.server.error.FDBNotCommittedException;
+import com.foundationdb.server.service.session.Session;
+import com.foundationdb.server.test.it.FDBITBase;
+import com.foundationdb.tuple.Tuple2;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+public class FDBGenerationWatchIT extends FDBITBase
+{
+    private static final String SCHEMA = "test";
+    private static final long WATCH_WAIT_MILLIS = 5000;
+
+    @Override
+    protected Map<String, String> startupConfigProperties() {
+        Map<String,String> map = new HashMap<>(super.startupConfigProperties());
+        map.put(FDBSchemaManager.GENERATION_WATCH_PROP, "true");
+        return map;
+    }
+
+    @Test
+    public void ddlIsVisible() throws Exception {
+        int tid = createTable(SCHEMA, "t", "id INT NOT NULL PRIMARY KEY");
+        waitForWatch();
+        writeRow(tid, 1);
+        createTable(SCHEMA, "t2", "id INT NOT NULL PRIMARY KEY");
+        assertNotNull("t2 visible", ais().getTable(SCHEMA, "t2"));
+        waitForWatch();
+        writeRow(tid, 2);
+        assertEquals("rows", 2, scanAll(tid).size());
+    }
+
+    @Test
+    public void concurrentDDLFailsCommit() throws Exception {
+        createTable(SCHEMA, "t", "id INT NOT NULL PRIMARY KEY");
+        waitForWatch();
+        byte[] key = fdbHolder().getRootDirectory().pack("generationWatchIT");
+        txnService().beginTransaction(session());
+        try {
+            // Served from the watched generation
+            fdbSchemaManager().getAis(session());
+            fdbTxnService().getTransaction(session()).setBytes(key, Tuple2.from(1).pack());
+            try(Session other = createNewSession()) {
+                ddl().renameTable(other, new TableName(SCHEMA, "t"), new TableName(SCHEMA, "t3"));
+            }
+            try {
+                txnService().commitTransaction(session());
+                fail("expected conflict");
+            } catch(FDBNotCommittedException e) {
+                // Expected
+            }
+        } finally {
+            txnService().rollbackTransactionIfOpen(session());
+        }
+    }
+
+    private void waitForWatch() throws InterruptedException {
+        long expected = ais().getGeneration();
+        long end = System.currentTimeMillis() + WATCH_WAIT_MILLIS;
+        while(fdbSchemaManager().getWatchedGeneration() != expected) {
+            if(System.currentTimeMillis() > end) {
+                fail("generation " + expected + " not watched");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
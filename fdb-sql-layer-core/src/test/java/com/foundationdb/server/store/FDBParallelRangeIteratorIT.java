@@ -0,0 +1,117 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.store;
+
+import com.foundationdb.KeyValue;
+import com.foundationdb.ais.model.Group;
+import com.foundationdb.ais.model.TableName;
+import com.foundationdb.server.store.FDBTransactionService.TransactionState;
+import com.foundationdb.server.store.format.FDBStorageDescription;
+import com.foundationdb.server.test.it.FDBITBase;
+import com.foundationdb.tuple.ByteArrayUtil;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/** Sub-ranges from explicit splits, so that there are several even though the whole group fits in one shard. */
+public class FDBParallelRangeIteratorIT extends FDBITBase
+{
+    private static final String SCHEMA = "test";
+
+    static final int NT1 = 5, NT2 = 10;
+
+    private Group group;
+
+    @Before
+    public void populate() {
+        createFromDDL(SCHEMA,
+                      "CREATE TABLE t1(id INT PRIMARY KEY, name VARCHAR(16));\n" +
+                      "CREATE TABLE t2(id INT PRIMARY KEY, pid INT, GROUPING FOREIGN KEY(pid) REFERENCES t1(id), name VARCHAR(16));");
+        int tid1 = ddl().getTableId(session(), new TableName(SCHEMA, "t1"));
+        int tid2 = ddl().getTableId(session(), new TableName(SCHEMA, "t2"));
+        group = getTable(tid1).getGroup();
+
+        txnService().beginTransaction(session());
+        for (int i1 = 0; i1 < NT1; i1++) {
+            writeRow(tid1, i1, Integer.toString(i1));
+            for (int i2 = 0; i2 < NT2; i2++) {
+                writeRow(tid2, i1 * 1000 + i2, i1, String.format("%d-%d", i1, i2));
+            }
+        }
+        txnService().commitTransaction(session());
+    }
+
+    @Test
+    public void ordered() {
+        scan(true);
+    }
+
+    @Test
+    public void unordered() {
+        scan(false);
+    }
+
+    private void scan(boolean ordered) {
+        txnService().beginTransaction(session());
+        TransactionState txn = fdbTxnService().getTransaction(session());
+        byte[] begin = ((FDBStorageDescription)group.getStorageDescription()).getPrefixBytes();
+        byte[] end = ByteArrayUtil.strinc(begin);
+        List<byte[]> keys = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (KeyValue kv : txn.getTransaction().getRange(begin, end).asList().get()) {
+            keys.add(kv.getKey());
+            expected.add(ByteArrayUtil.printable(kv.getKey()));
+        }
+        assertEquals(NT1 * (NT2 + 1), keys.size());
+
+        // Five sub-ranges, split on rows and once between two, read two at a time.
+        int n = keys.size();
+        byte[] afterRow = Arrays.copyOf(keys.get(3 * n / 5), keys.get(3 * n / 5).length + 1);
+        List<byte[]> splits = Arrays.asList(begin,
+                                            keys.get(n / 5),
+                                            keys.get(2 * n / 5),
+                                            afterRow,
+                                            keys.get(4 * n / 5),
+                                            end);
+        FDBParallelRangeIterator it = new FDBParallelRangeIterator(txn, splits, 2, ordered,
+                                                                   FDBScanTransactionOptions.NORMAL);
+        List<String> actual = new ArrayList<>();
+        while (it.hasNext()) {
+            actual.add(ByteArrayUtil.printable(it.next().getKey()));
+        }
+        it.dispose();
+        if (!ordered) {
+            Collections.sort(actual);
+            Collections.sort(expected);
+        }
+        assertEquals(expected, actual);
+        txnService().commitTransaction(session());
+    }
+}
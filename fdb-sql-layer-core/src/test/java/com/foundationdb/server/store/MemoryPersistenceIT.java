@@ -0,0 +1,138 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.store;
+
+import com.foundationdb.ais.model.Table;
+import com.foundationdb.ais.model.TableName;
+import com.foundationdb.server.AkServerUtil;
+import com.foundationdb.server.service.ServiceManagerImpl;
+import com.foundationdb.server.service.config.TestConfigService;
+import com.foundationdb.server.test.it.MemoryITBase;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class MemoryPersistenceIT extends MemoryITBase
+{
+    private static final String SCHEMA = "test";
+    private static final File DATA_DIR = new File(TestConfigService.dataDirectory(), "memory_store");
+
+    @BeforeClass
+    @AfterClass
+    public static void cleanDataDir() {
+        AkServerUtil.cleanUpDirectory(DATA_DIR);
+    }
+
+    @Override
+    protected Map<String, String> startupConfigProperties() {
+        Map<String, String> props = new HashMap<>(super.startupConfigProperties());
+        props.put("fdbsql.memory.data_dir", DATA_DIR.getAbsolutePath());
+        // Only when asked
+        props.put("fdbsql.memory.checkpoint_millis", "0");
+        return props;
+    }
+
+    @Override
+    protected Map<String, String> defaultPropertiesToPreserveOnRestart() {
+        Map<String, String> props = new HashMap<>(super.defaultPropertiesToPreserveOnRestart());
+        props.putAll(startupConfigProperties());
+        return props;
+    }
+
+    @Test
+    public void restartFromCheckpoint() throws Exception {
+        int tid = createTable(SCHEMA, "t", "id INT NOT NULL PRIMARY KEY, v VARCHAR(32)");
+        createIndex(SCHEMA, "t", "v", "v");
+        writeRows(row(tid, 1, "one"), row(tid, 2, "two"), row(tid, 3, "three"));
+
+        safeRestartTestServices();
+
+        checkRestored(tid);
+    }
+
+    @Test
+    public void crashRecoversFromLog() throws Exception {
+        int tid = createTable(SCHEMA, "t", "id INT NOT NULL PRIMARY KEY, v VARCHAR(32)");
+        createIndex(SCHEMA, "t", "v", "v");
+        writeRows(row(tid, 1, "one"), row(tid, 2, "two"));
+        ((MemoryTransactionService)txnService()).checkpoint();
+        // After the checkpoint, so only in the log
+        writeRows(row(tid, 3, "three"));
+
+        ServiceManagerImpl.setServiceManager(null);
+        serviceManager().crashServices();
+        restartTestServices(defaultPropertiesToPreserveOnRestart());
+
+        checkRestored(tid);
+    }
+
+    private void checkRestored(int tid) {
+        Table table = getTable(tid);
+        assertEquals("table name", new TableName(SCHEMA, "t"), table.getName());
+        compareRows(
+            new Object[][] {
+                { 1, "one" },
+                { 2, "two" },
+                { 3, "three" },
+            },
+            table
+        );
+        compareRows(
+            new Object[][] {
+                { "one", 1 },
+                { "three", 3 },
+                { "two", 2 },
+            },
+            table.getIndex("v")
+        );
+        assertEquals("row count", 3L, getRowCount(tid));
+        // Registered again on start, not restored
+        Table virtual = ais().getTable(TableName.INFORMATION_SCHEMA, "tables");
+        assertNotNull("information_schema.tables", virtual);
+        assertTrue("virtual", virtual.isVirtual());
+
+        int tid2 = createTable(SCHEMA, "t2", "id INT NOT NULL PRIMARY KEY");
+        assertTrue("new table id", tid2 != tid);
+        writeRows(row(tid2, 10));
+        compareRows(new Object[][] { { 10 } }, getTable(tid2));
+    }
+
+    private long getRowCount(final int tid) {
+        return txnService().run(session(), new Callable<Long>() {
+            @Override
+            public Long call() {
+                return getTable(tid).tableStatus().getRowCount(session());
+            }
+        });
+    }
+}
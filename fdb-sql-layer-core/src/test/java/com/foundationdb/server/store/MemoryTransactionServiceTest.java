@@ -0,0 +1,228 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.store;
+
+import com.foundationdb.server.error.TransactionConflictException;
+import com.foundationdb.server.service.session.Session;
+import com.foundationdb.server.service.session.TestSessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+
+import static com.foundationdb.server.store.MemoryStore.packLong;
+import static com.foundationdb.server.store.MemoryStore.unpackLong;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MemoryTransactionServiceTest
+{
+    private static final byte[] A = { 0x0A };
+    private static final byte[] B = { 0x0B };
+    private static final byte[] C = { 0x0C };
+    private static final byte[] D = { 0x0D };
+    private static final byte[] V1 = { 0x01 };
+    private static final byte[] V2 = { 0x02 };
+
+    private MemoryTransactionService txnService;
+    private Session s1;
+    private Session s2;
+
+    @Before
+    public void setUp() {
+        txnService = new MemoryTransactionService();
+        txnService.start();
+        s1 = TestSessionFactory.get().createSession();
+        s2 = TestSessionFactory.get().createSession();
+    }
+
+    @After
+    public void tearDown() {
+        txnService.rollbackTransactionIfOpen(s1);
+        txnService.rollbackTransactionIfOpen(s2);
+        txnService.stop();
+        s1.close();
+        s2.close();
+    }
+
+    @Test
+    public void readsSnapshot() {
+        commitSet(A, V1);
+        txnService.beginTransaction(s1);
+        assertArrayEquals(V1, txn(s1).get(A));
+        commitSet(A, V2);
+        commitSet(B, V2);
+        assertArrayEquals(V1, txn(s1).get(A));
+        assertNull(txn(s1).get(B));
+        assertArrayEquals(V2, txn(s1).getUncommitted(A));
+        // Read-only, never conflicts
+        txnService.commitTransaction(s1);
+    }
+
+    @Test
+    public void readsOwnWrites() {
+        commitSet(A, V1);
+        commitSet(C, V1);
+        txnService.beginTransaction(s1);
+        txn(s1).set(B, V2);
+        txn(s1).clear(C);
+        txn(s1).set(D, V2);
+        assertEquals("[0a=01, 0b=02, 0d=02]", keys(txn(s1).getRange(A, new byte[]{ 0x0E })));
+        assertEquals("[0d=02, 0b=02, 0a=01]", keys(txn(s1).getRange(A, new byte[]{ 0x0E }, true)));
+        txn(s1).clearRange(A, C);
+        assertEquals("[0d=02]", keys(txn(s1).getRange(A, new byte[]{ 0x0E })));
+        txnService.commitTransaction(s1);
+        txnService.beginTransaction(s2);
+        assertEquals("[0d=02]", keys(txn(s2).getRange(A, new byte[]{ 0x0E })));
+        txnService.commitTransaction(s2);
+    }
+
+    @Test
+    public void writeAfterConflictingReadFails() {
+        commitSet(A, V1);
+        txnService.beginTransaction(s1);
+        txn(s1).get(A);
+        txn(s1).set(B, V1);
+        commitSet(A, V2);
+        try {
+            txnService.commitTransaction(s1);
+            fail("expected conflict");
+        } catch(TransactionConflictException e) {
+            // Expected
+        }
+        txnService.beginTransaction(s2);
+        assertNull(txn(s2).get(B));
+        txnService.commitTransaction(s2);
+    }
+
+    @Test
+    public void rangeConflictOnlyUpToLastRead() {
+        commitSet(A, V1);
+        commitSet(C, V1);
+        txnService.beginTransaction(s1);
+        Iterator<Entry<byte[], byte[]>> it = txn(s1).getRange(A, D);
+        it.next();
+        txn(s1).set(B, V2);
+        // Past the observed A
+        commitSet(C, V2);
+        txnService.commitTransaction(s1);
+
+        txnService.beginTransaction(s1);
+        keys(txn(s1).getRange(A, D));
+        txn(s1).set(D, V1);
+        commitSet(B, V1);
+        try {
+            txnService.commitTransaction(s1);
+            fail("expected conflict");
+        } catch(TransactionConflictException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void addLongDoesNotConflict() {
+        txnService.beginTransaction(s1);
+        txnService.beginTransaction(s2);
+        txn(s1).addLong(A, 5);
+        txn(s2).addLong(A, 7);
+        txn(s2).addLong(A, 1);
+        assertEquals(5, unpackLong(txn(s1).get(A)));
+        txnService.commitTransaction(s1);
+        txnService.commitTransaction(s2);
+        txnService.beginTransaction(s1);
+        assertArrayEquals(packLong(13), txn(s1).get(A));
+        txnService.commitTransaction(s1);
+    }
+
+    @Test
+    public void iteratorKeepsSnapshotAcrossPeriodicCommit() {
+        for(byte b = 0; b < 10; ++b) {
+            commitSet(new byte[]{ b }, V1);
+        }
+        byte[] big = new byte[100001];
+        txnService.beginTransaction(s1);
+        Iterator<Entry<byte[], byte[]>> it = txn(s1).getRange(new byte[]{ 0 }, new byte[]{ 10 });
+        int count = 0;
+        while(it.hasNext()) {
+            Entry<byte[], byte[]> entry = it.next();
+            assertArrayEquals(V1, entry.getValue());
+            // Replace, and allow pruning of, the next row before it is read
+            commitSet(new byte[]{ (byte)(entry.getKey()[0] + 1) }, V2);
+            txn(s1).set(new byte[]{ 0x7F }, big);
+            assertTrue("periodic commit", txnService.periodicallyCommit(s1));
+            ++count;
+        }
+        assertEquals(10, count);
+        txnService.commitTransaction(s1);
+    }
+
+    @Test
+    public void periodicCommitMovesSnapshot() {
+        commitSet(A, V1);
+        byte[] big = new byte[100001];
+        txnService.beginTransaction(s1);
+        Iterator<Entry<byte[], byte[]>> it = txn(s1).getRange(A, D);
+        assertTrue(it.hasNext());
+        txn(s1).set(B, big);
+        assertTrue("periodic commit", txnService.periodicallyCommit(s1));
+        commitSet(C, V1);
+        long pinned = txnService.getPruneHorizon();
+        commitSet(C, V2);
+        assertEquals("held by open iterator", pinned, txnService.getPruneHorizon());
+        while(it.hasNext()) {
+            it.next();
+        }
+        txn(s1).set(B, big);
+        assertTrue("periodic commit", txnService.periodicallyCommit(s1));
+        commitSet(C, V1);
+        assertTrue("moved after iterator finished", txnService.getPruneHorizon() > pinned);
+        txnService.commitTransaction(s1);
+    }
+
+    private void commitSet(byte[] key, byte[] value) {
+        txnService.beginTransaction(s2);
+        txn(s2).set(key, value);
+        txnService.commitTransaction(s2);
+    }
+
+    private MemoryTransaction txn(Session session) {
+        return txnService.getTransaction(session);
+    }
+
+    private static String keys(Iterator<Entry<byte[], byte[]>> it) {
+        List<String> list = new ArrayList<>();
+        while(it.hasNext()) {
+            Entry<byte[], byte[]> entry = it.next();
+            list.add(String.format("%02x=%02x", entry.getKey()[0], entry.getValue()[0]));
+        }
+        return list.toString();
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.store;
+
+import com.foundationdb.server.AkServerUtil;
+import com.foundationdb.server.error.MemoryStoreIOException;
+import com.foundationdb.server.service.config.TestConfigService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class MemoryWriteAheadLogTest
+{
+    private static final File DIR = new File(TestConfigService.dataDirectory(), "memory_wal");
+    private static final byte[] A = { 0x0A };
+    private static final byte[] B = { 0x0B };
+    private static final byte[] C = { 0x0C };
+    private static final byte[] V1 = { 0x01 };
+
+    @Before
+    public void writeLogs() {
+        AkServerUtil.cleanUpDirectory(DIR);
+        // One commit in each of three files
+        MemoryWriteAheadLog log = new MemoryWriteAheadLog(DIR, 1);
+        log.sync(log.append(1, Collections.singletonList(A), Collections.singletonList(V1)));
+        log.rotate(2);
+        log.sync(log.append(2, Collections.singletonList(B), Collections.singletonList(V1)));
+        log.rotate(3);
+        log.sync(log.append(3, Collections.singletonList(C), Collections.singletonList(V1)));
+        log.close();
+    }
+
+    @After
+    public void cleanUp() {
+        AkServerUtil.cleanUpDirectory(DIR);
+    }
+
+    @Test
+    public void replayAll() {
+        MemoryVersionedKV db = new MemoryVersionedKV();
+        assertEquals(3, MemoryWriteAheadLog.replay(DIR, 0, db));
+        assertArrayEquals(V1, db.getLatest(A));
+        assertArrayEquals(V1, db.getLatest(B));
+        assertArrayEquals(V1, db.getLatest(C));
+    }
+
+    @Test
+    public void tornTailTruncated() throws Exception {
+        File last = logFiles()[2];
+        long length = last.length();
+        setLength(last, length - 2);
+        MemoryVersionedKV db = new MemoryVersionedKV();
+        assertEquals(2, MemoryWriteAheadLog.replay(DIR, 0, db));
+        assertArrayEquals(V1, db.getLatest(B));
+        assertNull(db.getLatest(C));
+        assertEquals(0, last.length());
+    }
+
+    @Test
+    public void corruptEarlierFileFails() throws Exception {
+        File middle = logFiles()[1];
+        long length = middle.length();
+        corruptLastByte(middle);
+        try {
+            MemoryWriteAheadLog.replay(DIR, 0, new MemoryVersionedKV());
+            fail("expected MemoryStoreIOException");
+        } catch(MemoryStoreIOException e) {
+            // Expected
+        }
+        // Left as found
+        assertEquals(length, middle.length());
+    }
+
+    @Test
+    public void shortEarlierFileFails() throws Exception {
+        File first = logFiles()[0];
+        setLength(first, first.length() - 2);
+        try {
+            MemoryWriteAheadLog.replay(DIR, 0, new MemoryVersionedKV());
+            fail("expected MemoryStoreIOException");
+        } catch(MemoryStoreIOException e) {
+            // Expected
+        }
+    }
+
+    private static File[] logFiles() {
+        File[] files = DIR.listFiles();
+        Arrays.sort(files);
+        assertEquals(3, files.length);
+        return files;
+    }
+
+    private static void setLength(File file, long length) throws Exception {
+        try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+        }
+    }
+
+    private static void corruptLastByte(File file) throws Exception {
+        try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(file.length() - 1);
+            int b = raf.read();
+            raf.seek(file.length() - 1);
+            raf.write(b ^ 0xFF);
+        }
+    }
+}
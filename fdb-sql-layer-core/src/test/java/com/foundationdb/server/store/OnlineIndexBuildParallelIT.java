@@ -0,0 +1,135 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.store;
+
+import com.foundationdb.ais.model.Group;
+import com.foundationdb.ais.model.TableIndex;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.server.service.dxl.OnlineDDLMonitor;
+import com.foundationdb.server.test.it.ITBase;
+import com.persistit.KeyState;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OnlineIndexBuildParallelIT extends ITBase
+{
+    private static final String SCHEMA = "test";
+    private static final int PARENT_COUNT = 200;
+    private static final int CHILDREN_PER_PARENT = 3;
+
+    private int pid;
+    private int cid;
+
+    @Override
+    protected Map<String, String> startupConfigProperties() {
+        Map<String,String> map = new HashMap<>(super.startupConfigProperties());
+        map.put("fdbsql.online_ddl.build_threads", "4");
+        return map;
+    }
+
+    @Before
+    public void createAndLoad() {
+        pid = createTable(SCHEMA, "p", "id INT NOT NULL PRIMARY KEY, x INT");
+        cid = createTable(SCHEMA, "c", "id INT NOT NULL PRIMARY KEY, pid INT, y INT",
+                          akibanFK("pid", "p", "id"));
+        List<Row> rows = new ArrayList<>();
+        for(int i = 0; i < PARENT_COUNT; ++i) {
+            rows.add(row(pid, i, PARENT_COUNT - i));
+            for(int j = 0; j < CHILDREN_PER_PARENT; ++j) {
+                int id = i * CHILDREN_PER_PARENT + j;
+                rows.add(row(cid, id, i, -id));
+            }
+        }
+        writeRows(rows);
+    }
+
+    @Test
+    public void splitsAreOrdered() {
+        final Group group = getTable(pid).getGroup();
+        List<byte[]> splits = transactionallyUnchecked(new Callable<List<byte[]>>() {
+            @Override
+            public List<byte[]> call() {
+                return store().getGroupSplits(session(), group, 16);
+            }
+        });
+        assertTrue("at most max - 1 splits: " + splits.size(), splits.size() < 16);
+        for(int i = 1; i < splits.size(); ++i) {
+            KeyState prev = new KeyState(splits.get(i - 1));
+            KeyState cur = new KeyState(splits.get(i));
+            assertTrue("split " + i + " of " + group.getName() + " increasing", prev.compareTo(cur) < 0);
+        }
+    }
+
+    @Test
+    public void parentIndex() {
+        TableIndex index = createIndex(SCHEMA, "p", "x", "x");
+        List<Row> rows = scanAllIndex(index);
+        assertEquals("index rows", PARENT_COUNT, rows.size());
+        for(int i = 0; i < rows.size(); ++i) {
+            assertEquals("x at " + i, i + 1, rows.get(i).value(0).getInt32());
+        }
+    }
+
+    @Test
+    public void childIndex() {
+        final AtomicInteger lastCompleted = new AtomicInteger();
+        final AtomicInteger lastTotal = new AtomicInteger();
+        ddl().setOnlineDDLMonitor(new OnlineDDLMonitor() {
+            @Override
+            public void at(Stage stage) {
+            }
+
+            @Override
+            public void buildProgress(int completedRanges, int totalRanges) {
+                synchronized(lastCompleted) {
+                    lastCompleted.set(Math.max(lastCompleted.get(), completedRanges));
+                    lastTotal.set(totalRanges);
+                }
+            }
+        });
+        try {
+            TableIndex index = createIndex(SCHEMA, "c", "y", "y");
+            List<Row> rows = scanAllIndex(index);
+            int count = PARENT_COUNT * CHILDREN_PER_PARENT;
+            assertEquals("index rows", count, rows.size());
+            for(int i = 0; i < rows.size(); ++i) {
+                assertEquals("y at " + i, i - count + 1, rows.get(i).value(0).getInt32());
+            }
+        } finally {
+            ddl().setOnlineDDLMonitor(null);
+        }
+        assertTrue("ranges reported", lastTotal.get() > 0);
+        assertEquals("all ranges completed", lastTotal.get(), lastCompleted.get());
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.store.format.compressed;
+
+import com.foundationdb.ais.model.HasStorage;
+import com.foundationdb.ais.model.TableName;
+import com.foundationdb.qp.operator.StoreAdapter;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.rowtype.Schema;
+import com.foundationdb.qp.util.SchemaCache;
+import com.foundationdb.server.error.StorageDescriptionInvalidException;
+import com.foundationdb.server.store.FDBTransactionService;
+import com.foundationdb.server.store.FDBTransactionService.TransactionState;
+import com.foundationdb.server.store.format.FDBStorageDescription;
+import com.foundationdb.server.test.it.FDBITBase;
+import com.foundationdb.server.test.it.qp.TestRow;
+import com.foundationdb.util.Strings;
+import com.foundationdb.KeyValue;
+import com.foundationdb.Range;
+import com.foundationdb.Transaction;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class CompressedStorageFormatIT  extends FDBITBase
+{
+    private static final String SCHEMA = "test";
+    private static final String LONG_NAME = "A name long enough that it is worth compressing, repeated: " +
+                                            "a name long enough that it is worth compressing";
+
+    @Test(expected = StorageDescriptionInvalidException.class)
+    public void indexNotAllowed() {
+        createFromDDL(SCHEMA,
+          "CREATE TABLE t1(id INT PRIMARY KEY NOT NULL, n BIGINT);" +
+          "CREATE INDEX i1 ON t1(n) STORAGE_FORMAT compressed;");
+    }
+
+    @Test
+    public void smallAndLargeRows() {
+        createFromDDL(SCHEMA,
+          "CREATE TABLE t1(id INT PRIMARY KEY NOT NULL, name VARCHAR(256)) STORAGE_FORMAT compressed(min_size = '32');" +
+          "CREATE TABLE t2(id INT PRIMARY KEY NOT NULL, pid INT, GROUPING FOREIGN KEY(pid) REFERENCES t1(id), name VARCHAR(256));");
+        int t1 = ddl().getTableId(session(), new TableName(SCHEMA, "t1"));
+        int t2 = ddl().getTableId(session(), new TableName(SCHEMA, "t2"));
+
+        Schema schema = SchemaCache.globalSchema(ddl().getAIS(session()));
+        RowType t1Type = schema.tableRowType(getTable(t1));
+        RowType t2Type = schema.tableRowType(getTable(t2));
+        StoreAdapter adapter = newStoreAdapter();
+
+        txnService().beginTransaction(session());
+
+        Object[] r1 = { 1L, "Fred" };
+        Object[] r101 = { 101L, 1L, LONG_NAME };
+        Object[] r2 = { 2L, LONG_NAME };
+        writeRow(t1, r1);
+        writeRow(t2, r101);
+        writeRow(t1, r2);
+
+        List<Byte> headers = new ArrayList<>();
+        for (byte[] value : treeValues(t1Type.table().getGroup())) {
+            headers.add(value[0]);
+        }
+        assertEquals(Arrays.asList(RowCompressor.RAW, RowCompressor.DEFLATE, RowCompressor.DEFLATE),
+                     headers);
+
+        Row[] expected = {
+            new TestRow(t1Type, r1),
+            new TestRow(t2Type, r101),
+            new TestRow(t1Type, r2)
+        };
+        compareRows(expected, adapter.newGroupCursor(t1Type.table().getGroup()));
+        txnService().commitTransaction(session());
+    }
+
+    @Test
+    public void dictionary() {
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            samples.add(("Customer#" + i + " " + LONG_NAME).getBytes());
+        }
+        String dictionary = Strings.toBase64(RowCompressor.trainDictionary(samples, 256));
+        createFromDDL(SCHEMA,
+          "CREATE TABLE t1(id INT PRIMARY KEY NOT NULL, name VARCHAR(256)) STORAGE_FORMAT compressed(dictionary = '" + dictionary + "');");
+        int t1 = ddl().getTableId(session(), new TableName(SCHEMA, "t1"));
+
+        Schema schema = SchemaCache.globalSchema(ddl().getAIS(session()));
+        RowType t1Type = schema.tableRowType(getTable(t1));
+        StoreAdapter adapter = newStoreAdapter();
+
+        txnService().beginTransaction(session());
+
+        Object[] r1 = { 1L, "Customer#42 " + LONG_NAME };
+        writeRow(t1, r1);
+
+        List<byte[]> values = treeValues(t1Type.table().getGroup());
+        assertEquals(1, values.size());
+        assertEquals(RowCompressor.DEFLATE_DICTIONARY, values.get(0)[0]);
+        assertTrue(values.get(0).length < LONG_NAME.length() / 2);
+
+        Row[] expected = {
+            new TestRow(t1Type, r1)
+        };
+        compareRows(expected, adapter.newGroupCursor(t1Type.table().getGroup()));
+        txnService().commitTransaction(session());
+    }
+
+    protected List<byte[]> treeValues(HasStorage object) {
+        byte[] prefix = ((FDBStorageDescription)object.getStorageDescription()).getPrefixBytes();
+        TransactionState tr = ((FDBTransactionService)txnService()).getTransaction(session());
+        List<byte[]> result = new ArrayList<>();
+        for (KeyValue kv : tr.getRangeIterator(Range.startsWith(prefix),Transaction.ROW_LIMIT_UNLIMITED )) {
+            result.add(kv.getValue());
+        }
+        return result;
+    }
+}
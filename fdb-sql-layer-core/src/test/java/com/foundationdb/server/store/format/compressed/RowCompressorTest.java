@@ -0,0 +1,107 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.store.format.compressed;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class RowCompressorTest
+{
+    private static final Charset BYTES = Charset.forName("ISO-8859-1");
+
+    private static List<byte[]> samples(int count) {
+        Random random = new Random(1);
+        List<byte[]> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String row = "\u0002Customer#" + random.nextInt(1000) + "\u0000" +
+                "\u0002BUILDING\u0000" +
+                "\u0002regular deposits sleep quickly " + random.nextInt(100) + "\u0000" +
+                "\u00021996-03-" + (10 + random.nextInt(18)) + "\u0000";
+            result.add(row.getBytes(BYTES));
+        }
+        return result;
+    }
+
+    @Test
+    public void smallValuesStayRaw() {
+        RowCompressor compressor = new RowCompressor(null, 64);
+        byte[] value = "short".getBytes(BYTES);
+        byte[] compressed = compressor.compress(value);
+        assertEquals(RowCompressor.RAW, compressed[0]);
+        assertEquals(value.length + 1, compressed.length);
+        assertArrayEquals(value, compressor.expand(compressed));
+    }
+
+    @Test
+    public void incompressibleValuesStayRaw() {
+        RowCompressor compressor = new RowCompressor(null, 0);
+        byte[] value = new byte[200];
+        new Random(2).nextBytes(value);
+        byte[] compressed = compressor.compress(value);
+        assertEquals(RowCompressor.RAW, compressed[0]);
+        assertArrayEquals(value, compressor.expand(compressed));
+    }
+
+    @Test
+    public void repetitiveValuesDeflate() {
+        RowCompressor compressor = new RowCompressor(null, 16);
+        StringBuilder str = new StringBuilder();
+        for (int i = 0; i < 50; i++) {
+            str.append("abcdefgh");
+        }
+        byte[] value = str.toString().getBytes(BYTES);
+        byte[] compressed = compressor.compress(value);
+        assertEquals(RowCompressor.DEFLATE, compressed[0]);
+        assertTrue(compressed.length < value.length / 4);
+        assertArrayEquals(value, compressor.expand(compressed));
+    }
+
+    @Test
+    public void trainedDictionary() {
+        List<byte[]> samples = samples(300);
+        byte[] dictionary = RowCompressor.trainDictionary(samples.subList(0, 100), 1024);
+        assertTrue(dictionary.length > 0);
+        assertTrue(dictionary.length <= 1024);
+        RowCompressor plain = new RowCompressor(null, 16);
+        RowCompressor trained = new RowCompressor(dictionary, 16);
+        int plainSize = 0, trainedSize = 0;
+        for (byte[] value : samples.subList(100, 300)) {
+            byte[] c1 = plain.compress(value);
+            byte[] c2 = trained.compress(value);
+            assertArrayEquals(value, plain.expand(c1));
+            assertArrayEquals(value, trained.expand(c2));
+            plainSize += c1.length;
+            trainedSize += c2.length;
+        }
+        assertTrue("trained " + trainedSize + " vs " + plainSize, trainedSize < plainSize / 2);
+    }
+}
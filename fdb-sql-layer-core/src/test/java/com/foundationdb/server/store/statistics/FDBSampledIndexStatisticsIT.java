@@ -0,0 +1,104 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.store.statistics;
+
+import com.foundationdb.ais.model.Index;
+import com.foundationdb.server.test.it.FDBITBase;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class FDBSampledIndexStatisticsIT extends FDBITBase
+{
+    private static final String SCHEMA = "test";
+    private static final int ROWS = 2000;
+    private static final int ROWS_PER_VALUE = 10;
+    private static final int DISTINCT = ROWS / ROWS_PER_VALUE;
+
+    private Index index;
+
+    @Override
+    protected Map<String,String> startupConfigProperties() {
+        Map<String,String> config = new HashMap<>(super.startupConfigProperties());
+        // Sample every index, a few hundred keys at a time.
+        config.put(FDBStoreIndexStatistics.SAMPLE_THRESHOLD_PROPERTY, "0");
+        config.put(FDBStoreIndexStatistics.SAMPLE_RUNS_PROPERTY, "4");
+        config.put(FDBStoreIndexStatistics.SAMPLE_RUN_LENGTH_PROPERTY, "50");
+        return config;
+    }
+
+    @Before
+    public void createAndAnalyze() {
+        int tid = createTable(SCHEMA, "t", "id INT NOT NULL PRIMARY KEY, v INT");
+        index = createIndex(SCHEMA, "t", "v", "v");
+        for (int i = 0; i < ROWS; i++) {
+            writeRow(tid, i, i / ROWS_PER_VALUE);
+        }
+        txnService().run(session(), new Runnable() {
+            @Override
+            public void run() {
+                indexStatsService().updateIndexStatistics(session(), Collections.singleton(index));
+            }
+        });
+        // Read back what was stored, not what was computed.
+        indexStatsService().clearCache();
+    }
+
+    @Test
+    public void extrapolated() {
+        IndexStatistics stats = txnService().run(session(), new Callable<IndexStatistics>() {
+            @Override
+            public IndexStatistics call() {
+                return indexStatsService().getIndexStatistics(session(), index);
+            }
+        });
+        assertNotNull(stats);
+        assertEquals(ROWS, stats.getRowCount());
+        assertEquals(ROWS, stats.getSampledCount());
+        Histogram histogram = stats.getHistogram(0, 1);
+        long rows = 0, lessDistinct = 0;
+        for (HistogramEntry entry : histogram.getEntries()) {
+            rows += entry.getLessCount() + entry.getEqualCount();
+            lessDistinct += entry.getDistinctCount();
+            // Nowhere near one row per value, which is what unscaled
+            // distinct counts from a contiguous sample would suggest.
+            if (entry.getDistinctCount() > 0) {
+                double perValue = (double)entry.getLessCount() / entry.getDistinctCount();
+                assertTrue("rows per value " + entry, perValue > ROWS_PER_VALUE / 3.0);
+            }
+        }
+        assertTrue("less distinct " + lessDistinct, lessDistinct > 0);
+        assertTrue("rows " + rows, (rows > ROWS / 2) && (rows < ROWS * 2));
+        long distinct = histogram.totalDistinctCount();
+        assertTrue("distinct " + distinct, (distinct > DISTINCT / 2) && (distinct < DISTINCT * 2));
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.store.statistics;
+
+import com.foundationdb.tuple.ByteArrayUtil;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+public class FDBStoreIndexStatisticsTest
+{
+    private static final int TRIALS = 1000;
+
+    @Test
+    public void adjacentPrefixes() {
+        checkBetween(bytes(0x15, 0x05), bytes(0x15, 0x06));
+    }
+
+    @Test
+    public void differentLengths() {
+        checkBetween(bytes(0x15, 0x05, 0x01, 0x02), bytes(0x15, 0x05, 0xFF));
+        checkBetween(bytes(0x01, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x05), bytes(0x02));
+    }
+
+    @Test
+    public void longCommonPrefix() {
+        checkBetween(bytes(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11), bytes(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 12));
+    }
+
+    @Test
+    public void spread() {
+        Random random = new Random(1);
+        int lowerHalf = 0;
+        for (int i = 0; i < TRIALS; i++) {
+            byte[] key = FDBStoreIndexStatistics.randomKeyBetween(bytes(0x15), bytes(0x16), random);
+            if ((key[1] & 0xFF) < 0x80) {
+                lowerHalf++;
+            }
+        }
+        assertTrue("lower half " + lowerHalf, (lowerHalf > TRIALS * 2 / 5) && (lowerHalf < TRIALS * 3 / 5));
+    }
+
+    private static void checkBetween(byte[] lo, byte[] hi) {
+        Random random = new Random(1);
+        for (int i = 0; i < TRIALS; i++) {
+            byte[] key = FDBStoreIndexStatistics.randomKeyBetween(lo, hi, random);
+            assertTrue(Arrays.toString(key), ByteArrayUtil.compareUnsigned(key, lo) >= 0);
+            assertTrue(Arrays.toString(key), ByteArrayUtil.compareUnsigned(key, hi) < 0);
+        }
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte)values[i];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.store.statistics;
+
+import com.foundationdb.ais.model.Index;
+import com.foundationdb.server.service.config.TestConfigService;
+import com.foundationdb.server.test.it.ITBase;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class IndexStatisticsDeltaIT extends ITBase
+{
+    private static final String SCHEMA = "test";
+    private static final int ANALYZED_ROWS = 100;
+
+    private int tableId;
+    private Index index;
+
+    @Override
+    protected Map<String,String> startupConfigProperties() {
+        Map<String,String> config = new HashMap<>(super.startupConfigProperties());
+        config.put(TestConfigService.DELTA_REFRESH_RATIO_KEY, "0.1");
+        // Keep the delta around to look at rather than refreshing it away.
+        config.put("fdbsql.index_statistics.background", "disabled");
+        return config;
+    }
+
+    @Before
+    public void createAndAnalyze() {
+        tableId = createTable(SCHEMA, "t", "id INT NOT NULL PRIMARY KEY, ts INT");
+        index = createIndex(SCHEMA, "t", "ts", "ts");
+        for (int i = 0; i < ANALYZED_ROWS; i++) {
+            writeRow(tableId, i, i);
+        }
+        txnService().run(session(), new Runnable() {
+            @Override
+            public void run() {
+                indexStatsService().updateIndexStatistics(session(), Collections.singleton(index));
+            }
+        });
+    }
+
+    @Test
+    public void noChanges() {
+        assertNull(statistics().getDelta());
+    }
+
+    @Test
+    public void appendAndDelete() {
+        for (int i = 0; i < 50; i++) {
+            writeRow(tableId, ANALYZED_ROWS + i, 1000 + i);
+        }
+        for (int i = 0; i < 10; i++) {
+            deleteRow(tableId, i, i);
+        }
+        IndexStatisticsDelta delta = statistics().getDelta();
+        assertNotNull(delta);
+        assertEquals(ANALYZED_ROWS, delta.getRowCount());
+        assertEquals(50, delta.getInsertCount());
+        assertEquals(10, delta.getDeleteCount());
+        assertEquals(50, delta.getAboveCount());
+        assertEquals(0, delta.getBelowCount());
+        assertEquals(50, delta.getNewDistinctCount(), 2);
+        // Already asked for when the change went past the ratio.
+        assertFalse(delta.requestRefresh(0.1));
+    }
+
+    @Test
+    public void updateKey() {
+        updateRow(row(tableId, 5, 5), row(tableId, 5, -5));
+        IndexStatisticsDelta delta = statistics().getDelta();
+        assertNotNull(delta);
+        assertEquals(1, delta.getInsertCount());
+        assertEquals(1, delta.getDeleteCount());
+        assertEquals(1, delta.getBelowCount());
+    }
+
+    private IndexStatistics statistics() {
+        return txnService().run(session(), new Callable<IndexStatistics>() {
+            @Override
+            public IndexStatistics call() {
+                return indexStatsService().getIndexStatistics(session(), index);
+            }
+        });
+    }
+}
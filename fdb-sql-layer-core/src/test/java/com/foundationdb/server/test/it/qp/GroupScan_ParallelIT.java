@@ -0,0 +1,72 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.operator.API;
+import com.foundationdb.qp.operator.Cursor;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.row.Row;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.foundationdb.qp.operator.API.*;
+import static com.foundationdb.server.test.ExpressionGenerators.field;
+
+/** Run all of the group scan tests with full scans split into concurrent sub-ranges. */
+public class GroupScan_ParallelIT extends GroupScanIT
+{
+    @Override
+    protected Map<String, String> startupConfigProperties() {
+        Map<String,String> props = new HashMap<>();
+        props.putAll(super.startupConfigProperties());
+        props.put("fdbsql.fdb.group_scan_parallelism", "4");
+        return props;
+    }
+
+    @Test
+    public void testUnorderedFullScan()
+    {
+        use(db);
+        API.Ordering ordering = ordering();
+        ordering.append(field(orderRowType, 0), true);
+        Operator plan =
+            sort_General(
+                filter_Default(
+                    groupScan_Default(coi, false),
+                    Collections.singleton(orderRowType)),
+                orderRowType,
+                ordering,
+                SortOption.PRESERVE_DUPLICATES);
+        Cursor cursor = cursor(plan, queryContext, queryBindings);
+        Row[] expected = new Row[]{row(orderRowType, 11L, 1L, "ori"),
+                                   row(orderRowType, 12L, 1L, "david"),
+                                   row(orderRowType, 21L, 2L, "tom"),
+                                   row(orderRowType, 22L, 2L, "jack"),
+        };
+        compareRows(expected, cursor);
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.operator.Cursor;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.server.types.TAggregator;
+import com.foundationdb.server.types.TInstance;
+import com.foundationdb.server.types.mcompat.aggr.MCount;
+import com.foundationdb.server.types.mcompat.mtypes.MNumeric;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import static com.foundationdb.qp.operator.API.*;
+import static com.foundationdb.server.test.ExpressionGenerators.field;
+
+public class HashAggregate_DefaultIT extends OperatorITBase
+{
+    @Override
+    protected void setupPostCreateSchema() {
+        super.setupPostCreateSchema();
+        Row[] dbRows = new Row[]{
+            row(customer, 1L, "northbridge"),
+            row(customer, 2L, "foundation"),
+            row(customer, 4L, "highland"),
+            row(customer, 5L, "matrix"),
+            row(order, 11L, 1L, "ori"),
+            row(order, 12L, 1L, "david"),
+            row(order, 13L, 1L, "jack"),
+            row(order, 21L, 2L, "david"),
+            row(order, 22L, 2L, "jack"),
+            row(order, 31L, 3L, "david"),
+            row(order, 41L, 4L, "yuval"),
+            row(order, 51L, 5L, "yuval"),
+        };
+        use(dbRows);
+    }
+
+    @Test
+    public void testCountByCid() {
+        Operator plan = countOrders(Collections.singleton(orderRowType), orderRowType, 1);
+        Row[] expected = new Row[]{
+            row(plan.rowType(), 1L, 3L),
+            row(plan.rowType(), 2L, 2L),
+            row(plan.rowType(), 3L, 1L),
+            row(plan.rowType(), 4L, 1L),
+            row(plan.rowType(), 5L, 1L),
+        };
+        compareRows(expected, cursor(sorted(plan), queryContext, queryBindings));
+    }
+
+    @Test
+    public void testCountBySalesman() {
+        Operator plan = countOrders(Collections.singleton(orderRowType), orderRowType, 2);
+        Row[] expected = new Row[]{
+            row(plan.rowType(), "david", 3L),
+            row(plan.rowType(), "jack", 2L),
+            row(plan.rowType(), "ori", 1L),
+            row(plan.rowType(), "yuval", 2L),
+        };
+        compareRows(expected, cursor(sorted(plan), queryContext, queryBindings));
+    }
+
+    @Test
+    public void testNoInput() {
+        Operator plan = countOrders(Collections.singleton(addressRowType), addressRowType, 1);
+        compareRows(new Row[0], cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testReopen() {
+        Operator plan = sorted(countOrders(Collections.singleton(orderRowType), orderRowType, 1));
+        Cursor cursor = cursor(plan, queryContext, queryBindings);
+        for (int i = 0; i < 2; i++) {
+            Row[] expected = new Row[]{
+                row(plan.rowType(), 1L, 3L),
+                row(plan.rowType(), 2L, 2L),
+                row(plan.rowType(), 3L, 1L),
+                row(plan.rowType(), 4L, 1L),
+                row(plan.rowType(), 5L, 1L),
+            };
+            compareRows(expected, cursor);
+        }
+    }
+
+    /** COUNT of the first field of <code>rowType</code> grouped by <code>keyField</code>. */
+    private Operator countOrders(Collection<RowType> keepTypes, RowType rowType, int keyField) {
+        Operator project = project_DefaultTest(filter_Default(groupScan_Default(coi), keepTypes),
+                                               rowType,
+                                               Arrays.asList(field(rowType, keyField), field(rowType, 0)));
+        return hashAggregate_Default(project,
+                                     project.rowType(),
+                                     1,
+                                     Arrays.<TAggregator>asList(MCount.INSTANCES[2]),
+                                     Arrays.<TInstance>asList(MNumeric.BIGINT.instance(false)),
+                                     Arrays.<Object>asList((Object)null));
+    }
+
+    private Operator sorted(Operator plan) {
+        Ordering ordering = ordering();
+        ordering.append(field(plan.rowType(), 0), true);
+        return sort_General(plan, plan.rowType(), ordering, SortOption.PRESERVE_DUPLICATES);
+    }
+}
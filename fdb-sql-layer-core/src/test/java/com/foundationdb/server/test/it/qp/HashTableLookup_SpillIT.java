@@ -0,0 +1,88 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.operator.Cursor;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.storeadapter.indexcursor.MergeJoinSorter;
+import com.foundationdb.qp.util.HashTable;
+import com.foundationdb.server.service.config.TestConfigService;
+import com.foundationdb.server.types.texpressions.TEvaluatableExpression;
+import com.foundationdb.server.types.texpressions.TPreparedField;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.foundationdb.qp.operator.API.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Run all of the hash join tests with a memory limit small enough that every partition spills. */
+public class HashTableLookup_SpillIT extends HashTableLookup_DefaultIT {
+
+    @Override
+    protected Map<String, String> startupConfigProperties() {
+        Map<String,String> props = new HashMap<>();
+        props.putAll(super.startupConfigProperties());
+        props.put("fdbsql.tmp_dir", TestConfigService.dataDirectory().getAbsolutePath());
+        props.put("fdbsql.hash_join.memory", "1");
+        return props;
+    }
+
+    @Test
+    public void testSpillAndReload() {
+        HashTable hashTable = new HashTable();
+        hashTable.setRowType(orderRowType);
+        hashTable.setSpilling(1, new MergeJoinSorter.MergeTempFileProvider(queryContext, "hash"));
+        List<TEvaluatableExpression> innerFields =
+            Collections.singletonList(new TPreparedField(orderRowType.typeAt(1), 1).build());
+        Cursor cursor = cursor(filter_Default(groupScan_Default(coi), Collections.singleton(orderRowType)),
+                               queryContext, queryBindings);
+        cursor.openTopLevel();
+        Row row;
+        while ((row = cursor.next()) != null) {
+            hashTable.put(row, innerFields, queryBindings);
+        }
+        cursor.closeTopLevel();
+        hashTable.finishLoading();
+        assertTrue("spilled partitions", hashTable.getSpilledPartitions() > 0);
+        assertEquals("spilled rows", 7, hashTable.getSpilledRows());
+
+        List<TEvaluatableExpression> outerFields =
+            Collections.singletonList(new TPreparedField(customerRowType.typeAt(0), 0).build());
+        Row[] expected = new Row[] {
+            row(orderRowType, 400L, 4L, "jack"),
+            row(orderRowType, 401L, 4L, "jack"),
+        };
+        compareRows(Arrays.asList(expected),
+                    hashTable.getMatchingRows(row(customerRowType, 4L, "atlas"), outerFields, queryBindings));
+        assertEquals(0, hashTable.getMatchingRows(row(customerRowType, 6L, "flybridge"), outerFields, queryBindings).size());
+        assertTrue("reloaded partitions", hashTable.getReloadedPartitions() > 0);
+        hashTable.close();
+    }
+}
@@ -119,6 +119,38 @@ public class ProjectIT extends OperatorITBase
         compareRows(expected, cursor);
     }
 
+    @Test
+    public void testReverseItemColumnsBatched()
+    {
+        Operator plan = project_Default(groupScan_Default(coi),
+                                        itemRowType,
+                                        generateNew(Arrays.asList(field(itemRowType, 1), field(itemRowType, 0))),
+                                        3);
+        Cursor cursor = cursor(plan, queryContext, queryBindings);
+        RowType projectedRowType = plan.rowType();
+        Row[] expected = new Row[]{
+            row(customerRowType, 1L, "northbridge"),
+            row(orderRowType, 11L, 1L, "ori"),
+            row(projectedRowType, 11L, 111L),
+            row(projectedRowType, 11L, 112L),
+            row(orderRowType, 12L, 1L, "david"),
+            row(projectedRowType, 12L, 121L),
+            row(projectedRowType, 12L, 122L),
+            row(customerRowType, 2L, "foundation"),
+            row(orderRowType, 21L, 2L, "tom"),
+            row(projectedRowType, 21L, 211L),
+            row(projectedRowType, 21L, 212L),
+            row(orderRowType, 22L, 2L, "jack"),
+            row(projectedRowType, 22L, 221L),
+            row(projectedRowType, 22L, 222L),
+            row(orderRowType, 31L, 3L, "peter"),
+            row(projectedRowType, 31L, 311L),
+            row(projectedRowType, 31L, 312L),
+            row(customerRowType, 4L, "highland")
+        };
+        compareRows(expected, cursor);
+    }
+
     @Test
     public void testReverseCustomerColumns()
     {
@@ -0,0 +1,269 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.expression.IndexKeyRange;
+import com.foundationdb.qp.operator.IndexScanSelector;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.operator.RuntimeFilter;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.IndexRowType;
+import com.foundationdb.qp.rowtype.RowType;
+import com.foundationdb.qp.rowtype.TableRowType;
+import com.foundationdb.server.test.ExpressionGenerators;
+import com.foundationdb.server.types.texpressions.Comparison;
+import com.foundationdb.server.types.texpressions.TPreparedExpression;
+import com.foundationdb.server.types.texpressions.TPreparedField;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.foundationdb.qp.operator.API.*;
+
+public class RuntimeFilterIT extends OperatorITBase
+{
+    static int FILTER_BINDING_POSITION = 100;
+    static int RUNTIME_FILTER_BINDING_POSITION = 101;
+    static int TABLE_BINDING_POSITION = 200;
+    static int SUBQUERY_BINDING_POSITION = 300;
+
+    private int wanted;
+    private TableRowType wantedRowType;
+
+    @Override
+    protected void setupCreateSchema() {
+        super.setupCreateSchema();
+        wanted = createTable(
+                "schema", "wanted",
+                "wid int not null primary key",
+                "cid int");
+    }
+
+    @Override
+    protected void setupPostCreateSchema() {
+        super.setupPostCreateSchema();
+        wantedRowType = schema.tableRowType(table(wanted));
+        Row[] db = new Row[]{
+                row(customer, 1L, "northbridge"),
+                row(customer, 2L, "foundation"),
+                row(customer, 3L, "matrix"),
+                row(customer, 4L, "atlas"),
+
+                row(order, 100L, 1L, "ori"),
+                row(order, 200L, 2L, "david"),
+                row(order, 201L, 2L, "david"),
+                row(order, 300L, 3L, "tom"),
+                row(order, 400L, 4L, "jack"),
+
+                row(address, 1000L, 1L, "111 1000 st"),
+                row(address, 2000L, 2L, "222 2000 st"),
+                row(address, 3000L, 3L, "333 3000 st"),
+
+                row(wanted, 1L, 2L),
+                row(wanted, 2L, 4L),
+                row(wanted, 3L, null),
+        };
+        use(db);
+    }
+
+    @Test
+    public void testHashTableGroupScan() {
+        RuntimeFilter runtimeFilter = new RuntimeFilter(orderRowType,
+                                                        fields(orderRowType, 1),
+                                                        null,
+                                                        RUNTIME_FILTER_BINDING_POSITION);
+        Operator plan = using_HashTable(
+                filter_Default(
+                        groupScan_Default(wantedRowType.table().getGroup()),
+                        Collections.singleton(wantedRowType)),
+                wantedRowType,
+                fields(wantedRowType, 1),
+                TABLE_BINDING_POSITION,
+                filter_Default(
+                        groupScan_Default(coi, runtimeFilter),
+                        Collections.singleton(orderRowType)),
+                null,
+                null,
+                RUNTIME_FILTER_BINDING_POSITION);
+        Row[] expected = new Row[]{
+                row(orderRowType, 200L, 2L, "david"),
+                row(orderRowType, 201L, 2L, "david"),
+                row(orderRowType, 400L, 4L, "jack"),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testBloomFilterIndexScan() {
+        testBloomFilterIndexScan(1);
+    }
+
+    @Test
+    public void testBloomFilterIndexScanLookahead() {
+        testBloomFilterIndexScan(10);
+    }
+
+    private void testBloomFilterIndexScan(int lookaheadQuantum) {
+        Operator wantedCids = project_Default(
+                filter_Default(
+                        groupScan_Default(wantedRowType.table().getGroup()),
+                        Collections.singleton(wantedRowType)),
+                wantedRowType,
+                fields(wantedRowType, 1));
+        RuntimeFilter runtimeFilter = new RuntimeFilter(addressCidIndexRowType,
+                                                        fields(addressCidIndexRowType, 0),
+                                                        null,
+                                                        RUNTIME_FILTER_BINDING_POSITION);
+        Operator scan = indexScan_Default(addressCidIndexRowType,
+                                          IndexKeyRange.unbounded(addressCidIndexRowType),
+                                          ordering(addressCidIndexRowType),
+                                          IndexScanSelector.leftJoinAfter(addressCidIndexRowType.index(),
+                                                                          addressRowType.table()),
+                                          lookaheadQuantum,
+                                          runtimeFilter);
+        Operator project = project_Default(scan,
+                                           addressCidIndexRowType,
+                                           fields(addressCidIndexRowType, 0));
+        RowType projectRowType = project.rowType();
+        Operator plan = using_BloomFilter(wantedCids,
+                                          wantedCids.rowType(),
+                                          3,
+                                          FILTER_BINDING_POSITION,
+                                          project,
+                                          null,
+                                          RUNTIME_FILTER_BINDING_POSITION);
+        Row[] expected = new Row[]{
+                row(projectRowType, 2L),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testHashTableCorrelatedGroupScan() {
+        RuntimeFilter runtimeFilter = new RuntimeFilter(orderRowType,
+                                                        fields(orderRowType, 1),
+                                                        null,
+                                                        RUNTIME_FILTER_BINDING_POSITION);
+        Operator probe = filter_Default(
+                groupScan_Default(coi, runtimeFilter),
+                Collections.singleton(orderRowType));
+        Operator plan = correlatedSubquery(probe, orderRowType, 1);
+        RowType projectRowType = plan.rowType();
+        Row[] expected = new Row[]{
+                row(projectRowType, 1L, null),
+                row(projectRowType, 2L, 2L),
+                row(projectRowType, 3L, null),
+                row(projectRowType, 4L, 4L),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testHashTableCorrelatedIndexScan() {
+        testHashTableCorrelatedIndexScan(1);
+    }
+
+    @Test
+    public void testHashTableCorrelatedIndexScanLookahead() {
+        testHashTableCorrelatedIndexScan(10);
+    }
+
+    private void testHashTableCorrelatedIndexScan(int lookaheadQuantum) {
+        RuntimeFilter runtimeFilter = new RuntimeFilter(addressCidIndexRowType,
+                                                        fields(addressCidIndexRowType, 0),
+                                                        null,
+                                                        RUNTIME_FILTER_BINDING_POSITION);
+        Operator probe = indexScan_Default(addressCidIndexRowType,
+                                           IndexKeyRange.unbounded(addressCidIndexRowType),
+                                           ordering(addressCidIndexRowType),
+                                           IndexScanSelector.leftJoinAfter(addressCidIndexRowType.index(),
+                                                                           addressRowType.table()),
+                                           lookaheadQuantum,
+                                           runtimeFilter);
+        Operator plan = correlatedSubquery(probe, addressCidIndexRowType, 0);
+        RowType projectRowType = plan.rowType();
+        Row[] expected = new Row[]{
+                row(projectRowType, 1L, null),
+                row(projectRowType, 2L, 2L),
+                row(projectRowType, 3L, null),
+                row(projectRowType, 4L, null),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    /**
+     * For each customer, the first cid from <code>probe</code> that is
+     * also wanted for that customer. The hash table is built from the
+     * outer row, so each evaluation of the subquery reopens the probe
+     * scan with the same bindings but a different filter.
+     */
+    private Operator correlatedSubquery(Operator probe, RowType probeRowType, int cidPosition) {
+        Operator build = select_HKeyOrdered(
+                filter_Default(
+                        groupScan_Default(wantedRowType.table().getGroup()),
+                        Collections.singleton(wantedRowType)),
+                wantedRowType,
+                ExpressionGenerators.compare(
+                        ExpressionGenerators.field(wantedRowType, 1),
+                        Comparison.EQ,
+                        ExpressionGenerators.boundField(customerRowType, SUBQUERY_BINDING_POSITION, 0),
+                        castResolver()));
+        Operator subquery = limit_Default(
+                using_HashTable(
+                        build,
+                        wantedRowType,
+                        fields(wantedRowType, 1),
+                        TABLE_BINDING_POSITION,
+                        probe,
+                        null,
+                        null,
+                        RUNTIME_FILTER_BINDING_POSITION),
+                1);
+        return project_DefaultTest(
+                filter_Default(
+                        groupScan_Default(coi),
+                        Collections.singleton(customerRowType)),
+                customerRowType,
+                Arrays.asList(ExpressionGenerators.field(customerRowType, 0),
+                              ExpressionGenerators.scalarSubquery(subquery,
+                                                                  ExpressionGenerators.field(probeRowType, cidPosition),
+                                                                  customerRowType,
+                                                                  probeRowType,
+                                                                  SUBQUERY_BINDING_POSITION)));
+    }
+
+    private static Ordering ordering(IndexRowType indexRowType) {
+        Ordering ordering = new Ordering();
+        for (int i = 0; i < indexRowType.nFields(); i++) {
+            ordering.append(new TPreparedField(indexRowType.typeAt(i), i), true);
+        }
+        return ordering;
+    }
+
+    private static List<TPreparedExpression> fields(RowType rowType, int position) {
+        return Collections.<TPreparedExpression>singletonList(new TPreparedField(rowType.typeAt(position), position));
+    }
+}
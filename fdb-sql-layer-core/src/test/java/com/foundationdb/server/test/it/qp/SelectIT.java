@@ -200,6 +200,73 @@ public class SelectIT extends OperatorITBase
         testCursorLifecycle(plan, testCase);
     }
 
+    @Test
+    public void testSelectItemBatched()
+    {
+        // Batch sizes that do and don't divide the input evenly
+        for (int batchSize : new int[]{2, 3, 64}) {
+            Operator plan =
+                select_HKeyOrdered(
+                    groupScan_Default(coi), itemRowType, itemOidEQTyped(12L).getTPreparedExpression(), batchSize);
+            Cursor cursor = cursor(plan, queryContext, queryBindings);
+            Row[] expected = new Row[]{
+                row(customerRowType, 1L, "northbridge"),
+                row(orderRowType, 11L, 1L, "ori"),
+                row(orderRowType, 12L, 1L, null),
+                row(itemRowType, 121L, 12L),
+                row(itemRowType, 122L, 12L),
+                row(addressRowType, 1001L, 1L, "111 1111 st"),
+                row(addressRowType, 1002L, 1L, null),
+                row(customerRowType, 2L, "foundation"),
+                row(orderRowType, 21L, 2L, "tom"),
+                row(orderRowType, 22L, 2L, null),
+                row(addressRowType, 2001L, 2L, "222 1111 st"),
+                row(addressRowType, 2002L, 2L, null),
+                row(orderRowType, 31L, 3L, "peter"),
+                row(customerRowType, 4L, "highland"),
+                row(addressRowType, 4001L, 4L, "444 1111 st"),
+                row(addressRowType, 4002L, 4L, null),
+                row(addressRowType, 5001L, 5L, "555 1111 st"),
+            };
+            compareRows(expected, cursor);
+        }
+    }
+
+    @Test
+    public void testCursorBatched()
+    {
+        Operator plan =
+            select_HKeyOrdered(
+                groupScan_Default(coi), itemRowType, itemOidEQTyped(12L).getTPreparedExpression(), 3);
+        CursorLifecycleTestCase testCase = new CursorLifecycleTestCase()
+        {
+            @Override
+            public Row[] firstExpectedRows()
+            {
+                return new Row[] {
+                    row(customerRowType, 1L, "northbridge"),
+                    row(orderRowType, 11L, 1L, "ori"),
+                    row(orderRowType, 12L, 1L, null),
+                    row(itemRowType, 121L, 12L),
+                    row(itemRowType, 122L, 12L),
+                    row(addressRowType, 1001L, 1L, "111 1111 st"),
+                    row(addressRowType, 1002L, 1L, null),
+                    row(customerRowType, 2L, "foundation"),
+                    row(orderRowType, 21L, 2L, "tom"),
+                    row(orderRowType, 22L, 2L, null),
+                    row(addressRowType, 2001L, 2L, "222 1111 st"),
+                    row(addressRowType, 2002L, 2L, null),
+                    row(orderRowType, 31L, 3L, "peter"),
+                    row(customerRowType, 4L, "highland"),
+                    row(addressRowType, 4001L, 4L, "444 1111 st"),
+                    row(addressRowType, 4002L, 4L, null),
+                    row(addressRowType, 5001L, 5L, "555 1111 st"),
+                };
+            }
+        };
+        testCursorLifecycle(plan, testCase);
+    }
+
     // For use by this class
 
     private ExpressionGenerator customerNameEQ(String name)
@@ -216,4 +283,10 @@ public class SelectIT extends OperatorITBase
     {
         return compare(field(itemRowType, 1), Comparison.EQ, literal(oid), castResolver());
     }
+
+    // Literal of the column's own type, so no cast is needed and the predicate can be vectorized
+    private ExpressionGenerator itemOidEQTyped(long oid)
+    {
+        return compare(field(itemRowType, 1), Comparison.EQ, literal(oid, itemRowType.typeAt(1)), castResolver());
+    }
 }
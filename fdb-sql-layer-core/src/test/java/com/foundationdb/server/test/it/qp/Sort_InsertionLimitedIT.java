@@ -574,6 +574,48 @@ public class Sort_InsertionLimitedIT extends OperatorITBase
         compareRows(expected, cursor(plan, queryContext, queryBindings));
     }
 
+    @Test
+    public void testOrderedPrefix()
+    {
+        // Group scan delivers customers in cid order.
+        Operator plan =
+            sort_InsertionLimited(
+                filter_Default(
+                    groupScan_Default(coi),
+                    Collections.singleton(customerRowType)),
+                customerRowType,
+                ordering(field(customerRowType, 0), true, field(customerRowType, 1), true),
+                SortOption.PRESERVE_DUPLICATES,
+                2,
+                1);
+        Row[] expected = new Row[]{
+            row(customerRowType, 1L, "northbridge"),
+            row(customerRowType, 2L, "foundation"),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testOrderedPrefixSuppressDuplicates()
+    {
+        Operator plan =
+            sort_InsertionLimited(
+                filter_Default(
+                    groupScan_Default(coi),
+                    Collections.singleton(orderRowType)),
+                orderRowType,
+                ordering(field(orderRowType, 1), true, field(orderRowType, 2), true),
+                SortOption.SUPPRESS_DUPLICATES,
+                3,
+                1);
+        Row[] expected = new Row[]{
+            row(orderRowType, 12L, 1L, "david"),
+            row(orderRowType, 11L, 1L, "ori"),
+            row(orderRowType, 21L, 2L, "david"),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
     @Test
     public void testCursor()
     {
@@ -602,7 +644,7 @@ public class Sort_InsertionLimitedIT extends OperatorITBase
         testCursorLifecycle(plan, testCase);
     }
 
-    private Ordering ordering(Object... objects)
+    protected Ordering ordering(Object... objects)
     {
         Ordering ordering = API.ordering();
         int i = 0;
@@ -0,0 +1,99 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.test.it.qp;
+
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.rowtype.RowType;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.foundationdb.server.test.ExpressionGenerators.*;
+import static com.foundationdb.qp.operator.API.*;
+
+/** Run all of the limited sort tests with a sort memory budget that large limits overflow. */
+public class Sort_InsertionLimited_SpillIT extends Sort_InsertionLimitedIT
+{
+    private static final int LARGE_LIMIT = 100000;
+
+    @Override
+    protected Map<String, String> startupConfigProperties() {
+        Map<String,String> props = new HashMap<>();
+        props.putAll(super.startupConfigProperties());
+        props.put("fdbsql.sort.memory", "65536");
+        return props;
+    }
+
+    @Test
+    public void testSpillCustomerName()
+    {
+        Operator plan =
+            sort_InsertionLimited(
+                filter_Default(
+                    groupScan_Default(coi),
+                    Collections.singleton(customerRowType)),
+                customerRowType,
+                ordering(field(customerRowType, 1), true),
+                SortOption.PRESERVE_DUPLICATES,
+                LARGE_LIMIT);
+        Row[] expected = new Row[]{
+            row(customerRowType, 2L, "foundation"),
+            row(customerRowType, 4L, "highland"),
+            row(customerRowType, 5L, "matrix"),
+            row(customerRowType, 1L, "northbridge"),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+
+    @Test
+    public void testSpillSuppressDuplicateName()
+    {
+        Operator project =
+            project_DefaultTest(
+                filter_Default(
+                    groupScan_Default(coi),
+                    Collections.singleton(orderRowType)),
+                orderRowType,
+                Arrays.asList(field(orderRowType, 2)));
+        RowType projectType = project.rowType();
+        Operator plan =
+            sort_InsertionLimited(
+                project,
+                projectType,
+                ordering(field(projectType, 0), true),
+                SortOption.SUPPRESS_DUPLICATES,
+                LARGE_LIMIT);
+        Row[] expected = new Row[]{
+            row(projectType, "david"),
+            row(projectType, "jack"),
+            row(projectType, "ori"),
+            row(projectType, "yuval"),
+        };
+        compareRows(expected, cursor(plan, queryContext, queryBindings));
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.server.test.it.tablestatus;
+
+import com.foundationdb.server.service.session.Session;
+import com.foundationdb.server.test.it.FDBITBase;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+
+/** Row counts spread over several keys by writing session. */
+public class FDBTableStatusShardedIT extends FDBITBase {
+    private final static int SESSIONS = 5;
+    private final static int ROWS_PER_SESSION = 20;
+
+    private int tableId;
+
+    @Override
+    protected Map<String, String> startupConfigProperties() {
+        Map<String,String> props = new HashMap<>();
+        props.putAll(super.startupConfigProperties());
+        props.put("fdbsql.fdb.row_count_shards", "4");
+        props.put("fdbsql.fdb.row_count_cache_millis", "0");
+        return props;
+    }
+
+    @Before
+    public void populate() {
+        tableId = createTable("test", "t", "id INT NOT NULL PRIMARY KEY, s VARCHAR(10)");
+        int id = 0;
+        for (int i = 0; i < SESSIONS; i++) {
+            try(Session session = createNewSession()) {
+                for (int j = 0; j < ROWS_PER_SESSION; j++) {
+                    writeRow(session, tableId, id++, "x");
+                }
+            }
+        }
+    }
+
+    @Test
+    public void sumOfShards() {
+        assertEquals(SESSIONS * ROWS_PER_SESSION, getRowCount(false));
+        assertEquals(SESSIONS * ROWS_PER_SESSION, getRowCount(true));
+    }
+
+    @Test
+    public void delete() {
+        deleteRow(tableId, 0, "x");
+        assertEquals(SESSIONS * ROWS_PER_SESSION - 1, getRowCount(false));
+    }
+
+    @Test
+    public void truncateClearsShards() {
+        dml().truncateTable(session(), tableId);
+        assertEquals(0, getRowCount(false));
+        writeRow(tableId, 1, "y");
+        assertEquals(1, getRowCount(false));
+        assertEquals(1, getRowCount(true));
+    }
+
+    @Test
+    public void survivesRestart() throws Exception {
+        safeRestartTestServices();
+        assertEquals(SESSIONS * ROWS_PER_SESSION, getRowCount(false));
+    }
+
+    private long getRowCount(final boolean approximate) {
+        return txnService().run(session(), new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                if (approximate) {
+                    return getTable(tableId).tableStatus().getApproximateRowCount(session());
+                }
+                return getTable(tableId).tableStatus().getRowCount(session());
+            }
+        });
+    }
+}
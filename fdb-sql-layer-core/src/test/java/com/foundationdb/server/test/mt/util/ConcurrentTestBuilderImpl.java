@@ -274,6 +274,11 @@ public class ConcurrentTestBuilderImpl implements ConcurrentTestBuilder
             delay(false, stage == DELAY_DDL_STAGE);
         }
 
+        @Override
+        public void buildProgress(int completedRanges, int totalRanges) {
+            // None
+        }
+
         private void atBarrier(String barrierName) throws BrokenBarrierException, InterruptedException {
             if(barrierName != null) {
                 CyclicBarrier barrier = barriers.get(barrierName);
@@ -122,5 +122,11 @@ public class MonitoredDDLThread extends MonitoredThread
                 mark(stage.name());
             }
         }
+
+        @Override
+        public void buildProgress(int completedRanges, int totalRanges) {
+            delegate.buildProgress(completedRanges, totalRanges);
+            LOG.trace("build progress: {}/{}", completedRanges, totalRanges);
+        }
     }
 }
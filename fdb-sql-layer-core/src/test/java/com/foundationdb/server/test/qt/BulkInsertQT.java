@@ -326,7 +326,9 @@ public class BulkInsertQT extends EmbeddedJDBCITBase
                                      CheckTime.IMMEDIATE, CheckTime.STATEMENT,
                                      CheckTime.STATEMENT_WITH_RANGE_CACHE,
                                      CheckTime.DELAYED,
-                                     CheckTime.DELAYED_WITH_RANGE_CACHE
+                                     CheckTime.DELAYED_WITH_RANGE_CACHE,
+                                     CheckTime.STATEMENT_BATCHED,
+                                     CheckTime.DELAYED_BATCHED
                                  }) {
                                 TestParameters params = new TestParameters();
                                 params.totalRows = warmup ? warmupCount : testCount;
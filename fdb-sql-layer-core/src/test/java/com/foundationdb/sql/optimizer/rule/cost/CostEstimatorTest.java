@@ -30,7 +30,12 @@ import com.foundationdb.sql.optimizer.plan.TableGroupJoinTree.TableGroupJoinNode
 import com.foundationdb.sql.optimizer.rule.RulesTestHelper;
 
 import com.foundationdb.ais.model.*;
+import com.foundationdb.qp.row.Row;
+import com.foundationdb.qp.row.ValuesHolderRow;
 import com.foundationdb.qp.rowtype.Schema;
+import com.foundationdb.server.collation.TestKeyCreator;
+import com.foundationdb.server.store.statistics.IndexStatistics;
+import com.foundationdb.server.store.statistics.IndexStatisticsDelta;
 import com.foundationdb.server.types.TInstance;
 import com.foundationdb.server.types.mcompat.mtypes.MString;
 
@@ -365,6 +370,130 @@ public class CostEstimatorTest
         }
     };
 
+    /* Deltas: changes since the statistics were computed, with the
+     * table row count kept current as the server's would be.
+     */
+
+    protected CostEstimator liveCostEstimator() throws Exception {
+        return new TestCostEstimator(ais, new Schema(ais), new File(RESOURCE_DIR, "stats.yaml"), false, new Properties()) {
+            @Override
+            public long getTableRowCount(Table table) {
+                for (Index index : table.getIndexes()) {
+                    IndexStatistics stats = getIndexStatistics(index);
+                    if ((stats != null) && (stats.getDelta() != null)) {
+                        IndexStatisticsDelta delta = stats.getDelta();
+                        return delta.getRowCount() + delta.getInsertCount() - delta.getDeleteCount();
+                    }
+                }
+                return super.getTableRowCount(table);
+            }
+        };
+    }
+
+    protected IndexStatisticsDelta attachDelta(CostEstimator costEstimator, Index index) {
+        IndexStatistics stats = costEstimator.getIndexStatistics(index);
+        IndexStatisticsDelta delta = new IndexStatisticsDelta(index, stats, new TestKeyCreator(new Schema(ais)).createKey());
+        stats.setDelta(delta);
+        return delta;
+    }
+
+    protected Row row(String table, Object... values) {
+        return new ValuesHolderRow(new Schema(ais).tableRowType(table(table)), values);
+    }
+
+    @Test
+    public void testDeltaEqualsNewValue() throws Exception {
+        CostEstimator costEstimator = liveCostEstimator();
+        Index index = index("addresses", "state");
+        List<ExpressionNode> zz = Collections.singletonList(constant("ZZ", MString.VARCHAR.instance(false)));
+        List<ExpressionNode> ma = Collections.singletonList(constant("MA", MString.VARCHAR.instance(false)));
+        // ZZ is past the last histogram entry (NY), which alone takes it to match everything.
+        assertEquals(100, costEstimator.costIndexScan(index, zz, null, false, null, false).getRowCount());
+        assertEquals(15, costEstimator.costIndexScan(index, ma, null, false, null, false).getRowCount());
+        IndexStatisticsDelta delta = attachDelta(costEstimator, index);
+        for (int i = 0; i < 50; i++) {
+            delta.insert(row("addresses", 1000 + i, 1, "ZZ", "Springfield"));
+        }
+        assertEquals(50, costEstimator.costIndexScan(index, zz, null, false, null, false).getRowCount(), 2);
+        // Unchanged values keep their count as the table grows.
+        assertEquals(15, costEstimator.costIndexScan(index, ma, null, false, null, false).getRowCount(), 1);
+    }
+
+    @Test
+    public void testDeltaRangeAfterUpperBound() throws Exception {
+        CostEstimator costEstimator = liveCostEstimator();
+        Index index = index("orders", "order_date");
+        // The last histogram entry is 2019-09-28; append a day at a time from 2019-10-01 to 2019-12-30.
+        ExpressionNode october = constant(MDateAndTime.encodeDate(2019, 10, 1), MDateAndTime.DATE.instance(false));
+        ExpressionNode midNovember = constant(MDateAndTime.encodeDate(2019, 11, 16), MDateAndTime.DATE.instance(false));
+        assertEquals(1, costEstimator.costIndexScan(index, null, october, true, null, false).getRowCount());
+        IndexStatisticsDelta delta = attachDelta(costEstimator, index);
+        int oid = 10000;
+        for (int month = 10; month <= 12; month++) {
+            for (int day = 1; day <= 30; day++) {
+                delta.insert(row("orders", oid++, 1, MDateAndTime.encodeDate(2019, month, day)));
+            }
+        }
+        assertEquals(90, delta.getAboveCount());
+        // All 90 new rows, interpolated between the old upper bound and the newest key.
+        long sinceOctober = costEstimator.costIndexScan(index, null, october, true, null, false).getRowCount();
+        assertEquals(90, sinceOctober, 15);
+        // Some of them; key bytes are not linear in the date, so only roughly half.
+        long sinceMidNovember = costEstimator.costIndexScan(index, null, midNovember, true, null, false).getRowCount();
+        assertTrue(sinceMidNovember > 10);
+        assertTrue(sinceMidNovember < sinceOctober);
+        // All the old rows and hardly any new ones.
+        assertEquals(1000, costEstimator.costIndexScan(index, null, null, false, october, false).getRowCount(), 10);
+    }
+
+    @Test
+    public void testDeltaVariableEquals() throws Exception {
+        CostEstimator costEstimator = liveCostEstimator();
+        Index index = index("addresses", "state");
+        List<ExpressionNode> state = Collections.singletonList(variable(MString.VARCHAR.instance(false)));
+        // 100 rows over 9 distinct values.
+        assertEquals(11, costEstimator.costIndexScan(index, state, null, false, null, false).getRowCount());
+        IndexStatisticsDelta delta = attachDelta(costEstimator, index);
+        int aid = 1000, count = 0;
+        for (char c1 = 'P'; c1 <= 'Z'; c1++) {
+            for (char c2 = 'A'; c2 <= 'Z'; c2++) {
+                if (count++ < 91) {
+                    delta.insert(row("addresses", aid++, 1, new String(new char[] { c1, c2 }), "Springfield"));
+                }
+            }
+        }
+        assertEquals(91, delta.getNewDistinctCount(), 5);
+        // 191 rows over about 100 distinct values.
+        assertEquals(2, costEstimator.costIndexScan(index, state, null, false, null, false).getRowCount(), 1);
+    }
+
+    @Test
+    public void testHashAggregate() throws Exception {
+        TableSource addresses = tableSource("addresses");
+        List<ExpressionNode> byState = Collections.<ExpressionNode>singletonList(
+            new ColumnExpression(addresses, table("addresses").getColumn("state")));
+        List<ExpressionNode> byCity = Collections.<ExpressionNode>singletonList(
+            new ColumnExpression(addresses, table("addresses").getColumn("city")));
+        // state has 9 distinct values (counting null); city is not indexed, so every row is its own group.
+        assertEquals(9, costEstimator.estimateGroupCount(byState, 100000));
+        assertEquals(100000, costEstimator.estimateGroupCount(byCity, 100000));
+        List<ExpressionNode> byBoth = new ArrayList<>(byState);
+        byBoth.addAll(byCity);
+        assertEquals(100000, costEstimator.estimateGroupCount(byBoth, 100000));
+
+        CostEstimate sortCost = costEstimator.costSort(100000);
+        // No memory limit: nothing spills.
+        assertTrue(costEstimator.costHashAggregate(100000, byCity, 1).compareTo(sortCost) < 0);
+
+        Properties properties = new Properties();
+        properties.setProperty("hash_aggregate_memory", "65536");
+        CostEstimator limited = new TestCostEstimator(ais, new Schema(ais), new File(RESOURCE_DIR, "stats.yaml"), false, properties);
+        // A few groups fit in memory.
+        assertTrue(limited.costHashAggregate(100000, byState, 1).compareTo(sortCost) < 0);
+        // 100000 groups of about 136 bytes spill most rows twice, which is dearer than sorting.
+        assertTrue(limited.costHashAggregate(100000, byCity, 1).compareTo(sortCost) > 0);
+    }
+
     @Test
     public void testUniformPortion() {
         assertEquals(8, CostEstimator.uniformPortion("A".getBytes(),
@@ -0,0 +1,123 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.sql.server;
+
+import com.foundationdb.ais.model.AkibanInformationSchema;
+import com.foundationdb.ais.model.Table;
+import com.foundationdb.ais.model.aisb2.AISBBasedBuilder;
+import com.foundationdb.server.types.mcompat.mtypes.MTypesTranslator;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ServerPlanHintsTest
+{
+    static class TestStore implements PlanHintStore {
+        final Map<ByteBuffer,byte[]> entries = new HashMap<>();
+
+        @Override
+        public byte[] load(byte[] key) {
+            return entries.get(ByteBuffer.wrap(key));
+        }
+
+        @Override
+        public void store(byte[] key, byte[] value) {
+            entries.put(ByteBuffer.wrap(key), value);
+        }
+    }
+
+    static final String SQL = "SELECT * FROM t1, t2 WHERE t1.id = t2.id";
+    static final List<String> TABLES = Arrays.asList("1", "2");
+    static final long[] JOIN_ORDER = { 3, 1 };
+
+    private TestStore store;
+    private AkibanInformationSchema ais;
+    private Table t1, t2;
+    private Collection<Table> dependentTables;
+
+    @Before
+    public void createAIS() {
+        store = new TestStore();
+        ais = AISBBasedBuilder.create("s", MTypesTranslator.INSTANCE)
+            .table("t1").colInt("id")
+            .table("t2").colInt("id")
+            .ais();
+        t1 = ais.getTable("s", "t1");
+        t2 = ais.getTable("s", "t2");
+        t1.setTableId(1);
+        t1.setVersion(1);
+        t2.setTableId(2);
+        t2.setVersion(1);
+        dependentTables = Arrays.asList(t1, t2);
+    }
+
+    protected ServerPlanHints hints(String sql) {
+        return new ServerPlanHints(store, ais, sql, "s", null);
+    }
+
+    @Test
+    public void rememberJoinOrder() {
+        ServerPlanHints hints = hints(SQL);
+        assertNull(hints.getJoinOrder(0, TABLES));
+        hints.putJoinOrder(0, TABLES, JOIN_ORDER);
+        hints.finish(dependentTables);
+        assertEquals(1, store.entries.size());
+        hints = hints(SQL);
+        assertArrayEquals(JOIN_ORDER, hints.getJoinOrder(0, TABLES));
+        assertNull(hints.getJoinOrder(1, TABLES));
+        assertNull(hints.getJoinOrder(0, Arrays.asList("2", "1")));
+    }
+
+    @Test
+    public void statementKey() {
+        ServerPlanHints hints = hints(SQL);
+        hints.putJoinOrder(0, TABLES, JOIN_ORDER);
+        hints.finish(dependentTables);
+        assertNotNull(hints(" SELECT *\n  FROM t1, t2\tWHERE t1.id = t2.id ").getJoinOrder(0, TABLES));
+        assertNull(hints(SQL.toLowerCase()).getJoinOrder(0, TABLES));
+        assertNull(new ServerPlanHints(store, ais, SQL, "other", null).getJoinOrder(0, TABLES));
+        assertNull(new ServerPlanHints(store, ais, SQL, "s", new int[] { 23 }).getJoinOrder(0, TABLES));
+        assertFalse(Arrays.equals(ServerPlanHints.statementKey("SELECT 'a  b'", "s", null),
+                                  ServerPlanHints.statementKey("SELECT 'a b'", "s", null)));
+    }
+
+    @Test
+    public void staleAfterTableChange() {
+        ServerPlanHints hints = hints(SQL);
+        hints.putJoinOrder(0, TABLES, JOIN_ORDER);
+        hints.finish(Arrays.asList(t1));
+        t2.setVersion(2);
+        assertNotNull(hints(SQL).getJoinOrder(0, TABLES));
+        t1.setVersion(2);
+        assertNull(hints(SQL).getJoinOrder(0, TABLES));
+    }
+}
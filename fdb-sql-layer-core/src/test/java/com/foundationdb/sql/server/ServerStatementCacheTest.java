@@ -0,0 +1,175 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.sql.server;
+
+import com.foundationdb.ais.model.AkibanInformationSchema;
+import com.foundationdb.ais.model.Table;
+import com.foundationdb.ais.model.aisb2.AISBBasedBuilder;
+import com.foundationdb.server.types.mcompat.mtypes.MTypesTranslator;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Collection;
+import java.util.Collections;
+
+public class ServerStatementCacheTest
+{
+    static class TestStatement implements ServerStatement, CacheableStatement {
+        private final int weight;
+        private final Collection<Table> tables;
+
+        TestStatement(int weight, Collection<Table> tables) {
+            this.weight = weight;
+            this.tables = tables;
+        }
+
+        @Override
+        public TransactionMode getTransactionMode() {
+            return TransactionMode.ALLOWED;
+        }
+
+        @Override
+        public TransactionAbortedMode getTransactionAbortedMode() {
+            return TransactionAbortedMode.ALLOWED;
+        }
+
+        @Override
+        public AISGenerationMode getAISGenerationMode() {
+            return AISGenerationMode.NOT_ALLOWED;
+        }
+
+        @Override
+        public int getCacheWeight() {
+            return weight;
+        }
+
+        @Override
+        public Collection<Table> getDependentTables() {
+            return tables;
+        }
+    }
+
+    @Test
+    public void segmentCount() {
+        assertEquals(1, ServerStatementCache.segmentCount(10));
+        assertEquals(1, ServerStatementCache.segmentCount(127));
+        assertEquals(2, ServerStatementCache.segmentCount(128));
+        assertEquals(4, ServerStatementCache.segmentCount(500));
+        assertEquals(ServerStatementCache.MAX_SEGMENTS, ServerStatementCache.segmentCount(1000000));
+    }
+
+    @Test
+    public void hitsAndMisses() {
+        CacheCounters counters = new CacheCounters(ServerStatementCache.MAX_SEGMENTS);
+        ServerStatementCache<TestStatement> cache = new ServerStatementCache<>(counters, 1000);
+        for (int i = 0; i < 100; i++) {
+            cache.put("s" + i, new TestStatement(1, null));
+        }
+        for (int i = 0; i < 200; i++) {
+            cache.get("s" + i);
+        }
+        assertEquals(100, counters.getHits());
+        assertEquals(100, counters.getMisses());
+        int hits = 0;
+        for (int i = 0; i < counters.getShardCount(); i++) {
+            hits += counters.getHits(i);
+        }
+        assertEquals(100, hits);
+        assertEquals(0, counters.getEvictions());
+    }
+
+    @Test
+    public void weightedEviction() {
+        CacheCounters counters = new CacheCounters();
+        ServerStatementCache<TestStatement> cache = new ServerStatementCache<>(counters, 10);
+        for (int i = 0; i < 10; i++) {
+            cache.put("small" + i, new TestStatement(1, null));
+        }
+        assertEquals(10, cache.size());
+        cache.put("big", new TestStatement(4, null));
+        assertEquals(4, counters.getEvictions());
+        assertEquals(7, cache.size());
+        assertEquals(10, cache.weight());
+        assertNull(cache.get("small0"));
+        assertNotNull(cache.get("big"));
+        // Never fits.
+        cache.put("huge", new TestStatement(11, null));
+        assertNull(cache.get("huge"));
+    }
+
+    @Test
+    public void referencedSurvive() {
+        CacheCounters counters = new CacheCounters();
+        ServerStatementCache<TestStatement> cache = new ServerStatementCache<>(counters, 3);
+        cache.put("a", new TestStatement(1, null));
+        cache.put("b", new TestStatement(1, null));
+        cache.put("c", new TestStatement(1, null));
+        assertNotNull(cache.get("a"));
+        cache.put("d", new TestStatement(1, null));
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+    }
+
+    @Test
+    public void expensiveSurvive() {
+        CacheCounters counters = new CacheCounters();
+        ServerStatementCache<TestStatement> cache = new ServerStatementCache<>(counters, 3);
+        cache.put("a", new TestStatement(1, null), 1000000);
+        cache.put("b", new TestStatement(1, null), 1000);
+        cache.put("c", new TestStatement(1, null), 1000);
+        cache.put("d", new TestStatement(1, null), 1000);
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+    }
+
+    @Test
+    public void invalidateChangedTables() {
+        AkibanInformationSchema ais = AISBBasedBuilder.create("s", MTypesTranslator.INSTANCE)
+            .table("t1").colInt("id")
+            .table("t2").colInt("id")
+            .ais();
+        Table t1 = ais.getTable("s", "t1");
+        Table t2 = ais.getTable("s", "t2");
+        t1.setTableId(1);
+        t1.setVersion(1);
+        t2.setTableId(2);
+        t2.setVersion(1);
+        CacheCounters counters = new CacheCounters();
+        ServerStatementCache<TestStatement> cache = new ServerStatementCache<>(counters, 10);
+        cache.put("q1", new TestStatement(1, Collections.singleton(t1)));
+        cache.put("q2", new TestStatement(1, Collections.singleton(t2)));
+        cache.put("q3", new TestStatement(1, null));
+
+        cache.invalidate(ais);
+        assertEquals(3, cache.size());
+
+        t2.setVersion(2);
+        cache.invalidate(ais);
+        assertNotNull(cache.get("q1"));
+        assertNull(cache.get("q2"));
+        assertNotNull(cache.get("q3"));
+        assertEquals(2, cache.weight());
+    }
+}
@@ -24,6 +24,7 @@
 package com.foundationdb.tuple;
 
 import org.junit.Test;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.math.BigDecimal;
@@ -69,6 +70,36 @@ public class TuplesTest {
         assertEquals((UUID) items.get(14), uuid);
     }
 
+    @Test
+    public void skipAndDecodeElements() {
+        Tuple2 t = new Tuple2();
+        t = t.add(Long.MAX_VALUE);
+        t = t.add(0);
+        t = t.add(-300);
+        t = t.addObject(null);
+        t = t.add("foo");
+        t = t.add(new byte[] { 0, (byte)0xFF, 0, 1 });
+        t = t.add("");
+        t = t.add(4.5);
+        t = t.add((Float) (float) -4.5);
+        t = t.add(new Boolean(true));
+        t = t.add(new BigInteger("-123456789123456789123456789"));
+        t = t.add(new BigDecimal("123456789.123456789"));
+        t = t.add(UUID.randomUUID());
+        byte[] bytes = t.pack();
+        List<Object> items = Tuple2.fromBytes(bytes).getItems();
+        int offset = 0;
+        for (int i = 0; i < items.size(); i++) {
+            Object item = Tuple2.decodeElement(bytes, offset);
+            if (item instanceof byte[])
+                assertArrayEquals((byte[])items.get(i), (byte[])item);
+            else
+                assertEquals(items.get(i), item);
+            offset = Tuple2.skipElement(bytes, offset);
+        }
+        assertEquals(bytes.length, offset);
+    }
+
     @Test
     public void compareIntsAndBigInts() {
         // negative ints should always be less than positive BigInts
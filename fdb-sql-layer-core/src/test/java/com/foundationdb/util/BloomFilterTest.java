@@ -46,6 +46,31 @@ public class BloomFilterTest
         }
     }
 
+    @Test
+    public void testLongHashes()
+    {
+        // Keys that only differ in their high 32 bits.
+        for (double errorRate : ERROR_RATES) {
+            for (int count : COUNTS) {
+                BloomFilter filter = new BloomFilter(count, errorRate);
+                for (long i = 0; i < count; i++) {
+                    filter.add(i << 32);
+                }
+                for (long i = 0; i < count; i++) {
+                    assertTrue(filter.maybePresent(i << 32));
+                }
+                int falsePositives = 0;
+                for (long i = count; i < 2 * count; i++) {
+                    if (filter.maybePresent(i << 32)) {
+                        falsePositives++;
+                    }
+                }
+                double actualErrorRate = ((double) falsePositives) / count;
+                assertTrue(actualErrorRate <= errorRate * 10);
+            }
+        }
+    }
+
     private void test(String label, double errorRate, int count, List keys, List missingKeys)
     {
         BloomFilter filter = new BloomFilter(count, errorRate);
@@ -0,0 +1,71 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CountMinSketchTest
+{
+    @Test
+    public void test()
+    {
+        for (double relativeError : RELATIVE_ERRORS) {
+            CountMinSketch sketch = new CountMinSketch(relativeError, 0.01);
+            // Many keys with a few occurrences each, plus one heavy hitter.
+            for (long i = 0; i < KEYS * 10; i++) {
+                sketch.add(i % KEYS, 1);
+            }
+            sketch.add(HEAVY, 500);
+            assertEquals(KEYS * 10 + 500, sketch.total());
+            int tooHigh = 0;
+            for (long i = 0; i < KEYS; i++) {
+                long estimate = sketch.estimate(i);
+                assertTrue(estimate >= 10);
+                if (estimate > 10 + sketch.maxError()) {
+                    tooHigh++;
+                }
+            }
+            assertTrue(tooHigh <= KEYS / 50);
+            assertTrue(sketch.estimate(HEAVY) >= 500);
+            assertTrue(sketch.estimate(HEAVY) <= 500 + sketch.maxError());
+        }
+    }
+
+    @Test
+    public void testNegativeCounts()
+    {
+        CountMinSketch sketch = new CountMinSketch(0.01, 0.01);
+        sketch.add(1, 5);
+        sketch.add(1, -3);
+        assertEquals(2, sketch.estimate(1));
+        assertEquals(2, sketch.total());
+    }
+
+    private static final double[] RELATIVE_ERRORS = { 0.1, 0.01, 0.001 };
+    private static final int KEYS = 10000;
+    private static final long HEAVY = -1;
+}
@@ -0,0 +1,64 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HyperLogLogTest
+{
+    @Test
+    public void test()
+    {
+        for (int precision : PRECISIONS) {
+            for (int count : COUNTS) {
+                HyperLogLog counter = new HyperLogLog(precision);
+                // Each key twice, to check that duplicates are not counted.
+                for (long i = 0; i < count; i++) {
+                    counter.add(i);
+                    counter.add(i);
+                }
+                double error = Math.abs(counter.estimate() - count) / (double) count;
+                assertTrue(count + " ~ " + counter.estimate(), error <= counter.standardError() * 4);
+            }
+        }
+    }
+
+    @Test
+    public void testEmpty()
+    {
+        assertEquals(0, new HyperLogLog(10).estimate());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadPrecision()
+    {
+        new HyperLogLog(20);
+    }
+
+    private static final int[] PRECISIONS = { 4, 10, 14 };
+    private static final int[] COUNTS = { 10, 1000, 100000 };
+}
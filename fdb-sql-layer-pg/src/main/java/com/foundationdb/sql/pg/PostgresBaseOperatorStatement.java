@@ -23,23 +23,37 @@
  */
 package com.foundationdb.sql.pg;
 
+import com.foundationdb.ais.model.Table;
+import com.foundationdb.qp.exec.Plannable;
+import com.foundationdb.qp.operator.Operator;
 import com.foundationdb.server.error.UnknownDataTypeException;
 import com.foundationdb.server.types.TInstance;
 import com.foundationdb.server.types.common.types.TypesTranslator;
 import com.foundationdb.sql.optimizer.plan.BasePlannable;
 import com.foundationdb.sql.optimizer.plan.PhysicalSelect;
 import com.foundationdb.sql.optimizer.plan.PhysicalUpdate;
+import com.foundationdb.sql.optimizer.rule.JoinAndIndexPicker;
 import com.foundationdb.sql.optimizer.rule.PlanContext;
 import com.foundationdb.sql.parser.DMLStatementNode;
 import com.foundationdb.sql.parser.ParameterNode;
 import com.foundationdb.sql.parser.StatementNode;
+import com.foundationdb.sql.server.CacheableStatement;
+import com.foundationdb.sql.server.PlanHintStore;
 import com.foundationdb.sql.server.ServerPlanContext;
+import com.foundationdb.sql.server.ServerPlanHints;
 
+import java.util.Collection;
 import java.util.List;
 
 public abstract class PostgresBaseOperatorStatement extends PostgresDMLStatement
+    implements CacheableStatement
 {
+    /** Number of operators that count as one unit of statement cache weight. */
+    static final int OPERATORS_PER_CACHE_WEIGHT = 16;
+
     private PostgresOperatorCompiler compiler;
+    private int planSize;
+    private Collection<Table> dependentTables;
 
     protected PostgresBaseOperatorStatement(PostgresOperatorCompiler compiler) {
         this.compiler = compiler;
@@ -52,6 +66,13 @@ public abstract class PostgresBaseOperatorStatement extends PostgresDMLStatement
         DMLStatementNode dmlStmt = (DMLStatementNode)stmt;
         PostgresQueryContext queryContext = new PostgresQueryContext(server);
         PlanContext planContext = new ServerPlanContext(compiler, queryContext);
+        ServerPlanHints planHints = null;
+        PlanHintStore planHintStore = server.getPlanHintStore();
+        if (planHintStore != null) {
+            planHints = new ServerPlanHints(planHintStore, server.getAIS(),
+                                            sql, server.getDefaultSchemaName(), paramTypes);
+            planContext.putWhiteboard(JoinAndIndexPicker.JOIN_ORDER_HINTS, planHints);
+        }
         // TODO: This needs to make types with better default attributes or else
         // decimals and strings get truncated, collation doesn't match, etc.
         if (paramTypes != null && false) {
@@ -70,6 +91,8 @@ public abstract class PostgresBaseOperatorStatement extends PostgresDMLStatement
             }
         }
         BasePlannable result = compiler.compile(dmlStmt, params, planContext);
+        if (planHints != null)
+            planHints.finish(result.getAffectedTables());
         PostgresType[] parameterTypes = getParameterTypes(result.getParameterTypes(),
                                                           paramTypes,
                                                           server.typesTranslator());
@@ -84,9 +107,29 @@ public abstract class PostgresBaseOperatorStatement extends PostgresDMLStatement
                                            (PhysicalSelect)result,
                                            parameterTypes);
         pbos.compiler = null;
+        pbos.planSize = countOperators(result.getPlannable());
+        pbos.dependentTables = result.getAffectedTables();
         return pbos;
     }
 
+    @Override
+    public int getCacheWeight() {
+        return 1 + planSize / OPERATORS_PER_CACHE_WEIGHT;
+    }
+
+    @Override
+    public Collection<Table> getDependentTables() {
+        return dependentTables;
+    }
+
+    protected static int countOperators(Plannable plannable) {
+        int count = 1;
+        for (Operator input : plannable.getInputOperators()) {
+            count += countOperators(input);
+        }
+        return count;
+    }
+
     protected PostgresType[] getParameterTypes(BasePlannable.ParameterType[] planTypes,
                                                int[] paramTypes,
                                                TypesTranslator typesTranslator) {
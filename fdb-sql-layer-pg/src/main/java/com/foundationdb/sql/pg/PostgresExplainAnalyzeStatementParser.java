@@ -0,0 +1,102 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.sql.pg;
+
+import com.foundationdb.server.error.SQLParseException;
+import com.foundationdb.server.error.SQLParserInternalException;
+import com.foundationdb.server.error.UnableToExplainException;
+import com.foundationdb.server.error.UnsupportedExplainException;
+import com.foundationdb.sql.StandardException;
+import com.foundationdb.sql.optimizer.OperatorCompiler;
+import com.foundationdb.sql.parser.DMLStatementNode;
+import com.foundationdb.sql.parser.ExplainStatementNode;
+import com.foundationdb.sql.parser.NodeTypes;
+import com.foundationdb.sql.parser.ParameterNode;
+import com.foundationdb.sql.parser.SQLParser;
+import com.foundationdb.sql.parser.SQLParserException;
+import com.foundationdb.sql.parser.StatementNode;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** Handle <code>EXPLAIN ANALYZE</code>, which runs the statement and
+ * shows what each operator did alongside the plan. The grammar only
+ * knows <code>EXPLAIN</code>, so drop the <code>ANALYZE</code> and
+ * parse the rest.
+ */
+public class PostgresExplainAnalyzeStatementParser implements PostgresStatementParser
+{
+    private static final Logger logger = LoggerFactory.getLogger(PostgresExplainAnalyzeStatementParser.class);
+
+    private static final Pattern EXPLAIN_ANALYZE = Pattern.compile("(EXPLAIN)\\s+ANALYZE\\b", Pattern.CASE_INSENSITIVE);
+
+    private OperatorCompiler compiler;
+
+    public PostgresExplainAnalyzeStatementParser(PostgresServerSession server) {
+        compiler = (OperatorCompiler)server.getAttribute("compiler");
+    }
+
+    @Override
+    public PostgresStatement parse(PostgresServerSession server,
+                                   String sql, int[] paramTypes)  {
+        if ((sql.length() == 0) || 
+            ((sql.charAt(0) != 'E') && (sql.charAt(0) != 'e')))
+            return null;
+        Matcher matcher = EXPLAIN_ANALYZE.matcher(sql);
+        if (!matcher.lookingAt())
+            return null;
+        String explainSQL = matcher.group(1) + sql.substring(matcher.end());
+        SQLParser parser = server.getParser();
+        StatementNode stmt;
+        List<ParameterNode> params;
+        try {
+            stmt = parser.parseStatement(explainSQL);
+            params = parser.getParameterList();
+        } 
+        catch (SQLParserException ex) {
+            throw new SQLParseException(ex);
+        }
+        catch (StandardException ex) {
+            throw new SQLParserInternalException(ex);
+        }
+        if (stmt.getNodeType() != NodeTypes.EXPLAIN_STATEMENT_NODE)
+            return null;
+        if (compiler == null)
+            throw new UnsupportedExplainException();
+        if (!(((ExplainStatementNode)stmt).getStatement() instanceof DMLStatementNode))
+            throw new UnableToExplainException();
+        logger.debug("Explain analyze: {}", explainSQL);
+        PostgresExplainStatement explain = new PostgresExplainStatement(compiler, true);
+        return explain.finishGenerating(server, sql, stmt, params, paramTypes);
+    }
+
+    @Override
+    public void sessionChanged(PostgresServerSession server) {
+    }
+
+}
@@ -34,13 +34,21 @@ import com.foundationdb.sql.parser.ExplainStatementNode;
 import com.foundationdb.sql.parser.ParameterNode;
 import com.foundationdb.sql.parser.StatementNode;
 import com.foundationdb.sql.server.ServerValueEncoder;
+import com.foundationdb.qp.operator.API;
+import com.foundationdb.qp.operator.Cursor;
+import com.foundationdb.qp.operator.Operator;
+import com.foundationdb.qp.operator.OperatorProfile;
 import com.foundationdb.qp.operator.QueryBindings;
+import com.foundationdb.server.error.UnableToExplainException;
+import com.foundationdb.server.explain.ExplainContext;
 import com.foundationdb.server.explain.Explainable;
+import com.foundationdb.server.explain.Explainer;
 import com.foundationdb.server.explain.format.DefaultFormatter;
 import com.foundationdb.server.explain.format.JsonFormatter;
 import com.foundationdb.server.service.monitor.SessionMonitor.StatementTypes;
 import com.foundationdb.server.types.TClass;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.io.ByteArrayOutputStream;
@@ -50,15 +58,28 @@ import java.io.IOException;
 public class PostgresExplainStatement extends PostgresStatementResults
                                       implements PostgresStatement
 {
+    private static final int ANALYZE_EXTRA_WIDTH = 128; // Room for " (actual ...)"
+
     private OperatorCompiler compiler; // Used only to finish generation
     private List<String> explanation;
     private String colName;
     private PostgresType colType;
     private long aisGeneration;
     private TClass colTClass;
+    // For EXPLAIN ANALYZE, which runs the plan and then formats it.
+    private boolean analyze, update;
+    private Operator plan;
+    private ExplainContext explainContext;
+    private String defaultSchemaName;
+    private DefaultFormatter.LevelOfDetail detail;
 
     public PostgresExplainStatement(OperatorCompiler compiler) {
+        this(compiler, false);
+    }
+
+    public PostgresExplainStatement(OperatorCompiler compiler, boolean analyze) {
         this.compiler = compiler;
+        this.analyze = analyze;
         colTClass = compiler.getTypesTranslator().typeClassForString();
     }
 
@@ -70,6 +91,8 @@ public class PostgresExplainStatement extends PostgresStatementResults
             if (maxlen < row.length())
                 maxlen = row.length();
         }
+        if (analyze)
+            maxlen += ANALYZE_EXTRA_WIDTH;
         colName = "OPERATORS";
         colType = new PostgresType(PostgresType.TypeOid.VARCHAR_TYPE_OID, (short)-1, maxlen,
                                    colTClass.instance(maxlen, false));
@@ -105,7 +128,7 @@ public class PostgresExplainStatement extends PostgresStatementResults
 
     @Override
     public TransactionMode getTransactionMode() {
-        return TransactionMode.READ;
+        return update ? TransactionMode.WRITE : TransactionMode.READ;
     }
 
     @Override
@@ -124,6 +147,10 @@ public class PostgresExplainStatement extends PostgresStatementResults
         server.getSessionMonitor().countEvent(StatementTypes.OTHER_STMT);
         PostgresMessenger messenger = server.getMessenger();
         ServerValueEncoder encoder = server.getValueEncoder();
+        List<String> explanation = this.explanation;
+        if (analyze) {
+            explanation = analyze(context, bindings);
+        }
         int nrows = 0;
         for (String row : explanation) {
             messenger.beginMessage(PostgresMessages.DATA_ROW_TYPE.code());
@@ -169,6 +196,13 @@ public class PostgresExplainStatement extends PostgresStatementResults
         else {
             BasePlannable result = compiler.compile((DMLStatementNode)innerStmt, params, context);
             explainable = result.getPlannable();
+            update = analyze && result.isUpdate();
+        }
+        if (analyze) {
+            if (!(explainable instanceof Operator) || (compiler instanceof PostgresJsonCompiler))
+                throw new UnableToExplainException();
+            plan = (Operator)explainable;
+            explainContext = context.getExplainContext();
         }
         List<String> explain;
         if (compiler instanceof PostgresJsonCompiler) {
@@ -191,12 +225,44 @@ public class PostgresExplainStatement extends PostgresStatementResults
             }
             DefaultFormatter f = new DefaultFormatter(server.getDefaultSchemaName(), detail);
             explain = f.format(explainable.getExplainer(context.getExplainContext()));
+            this.defaultSchemaName = server.getDefaultSchemaName();
+            this.detail = detail;
         }
         init(explain);
         compiler = null;
         return this;
     }
 
+    /** Run the plan, discarding its rows, and explain it with what each operator did. */
+    protected List<String> analyze(PostgresQueryContext context, QueryBindings bindings) {
+        OperatorProfile profile = new OperatorProfile();
+        OperatorProfile.install(context.getSession(), profile);
+        long startNanos = System.nanoTime();
+        int nrows = 0;
+        try {
+            Cursor cursor = API.cursor(plan, context, bindings);
+            cursor.openTopLevel();
+            try {
+                while (cursor.next() != null) {
+                    nrows++;
+                }
+            }
+            finally {
+                cursor.closeTopLevel();
+            }
+        }
+        finally {
+            OperatorProfile.remove(context.getSession());
+        }
+        long endNanos = System.nanoTime();
+        Explainer explainer = plan.getExplainer(explainContext);
+        profile.explain(plan, explainer);
+        DefaultFormatter f = new DefaultFormatter(defaultSchemaName, detail);
+        List<String> result = new ArrayList<>(f.format(explainer));
+        result.add(String.format("Execution: %d rows, %.3f ms", nrows, (endNanos - startNanos) / 1.0e6));
+        return result;
+    }
+
     @Override
     public boolean putInCache() {
         return false;
@@ -30,12 +30,23 @@ import com.foundationdb.util.tap.Tap;
 
 import java.net.*;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.Charset;
+import java.util.List;
 
 /**
  * Basic implementation of Postgres wire protocol for SQL integration.
  *
  * See http://developer.postgresql.org/pgdocs/postgres/protocol.html
+ *
+ * Messages are read either from a blocking socket's stream or, when
+ * created with a non-blocking {@link SocketChannel}, from an input
+ * {@link ByteBuffer} that the server's selector fills with {@link #readAvailable}
+ * until {@link #hasCompleteMessage} says there is something to process.
  */
 public class PostgresMessenger implements DataInput, DataOutput
 {
@@ -57,36 +68,74 @@ public class PostgresMessenger implements DataInput, DataOutput
     private final static InOutTap xmitTap = Tap.createTimer("sql: msg: xmit");
 
     private static final int IDLE_INTERVAL = 100;
+    private static final int INITIAL_INPUT_BUFFER_SIZE = 8192;
+    private static final int INITIAL_OUTPUT_BUFFER_SIZE = 8192;
+    // Write out this much at once, even without a flush.
+    private static final int OUTPUT_BATCH_SIZE = 32768;
+    // Give back the memory for a single bigger message.
+    private static final int RETAINED_OUTPUT_BUFFER_SIZE = 1024 * 1024;
 
     private final Socket socket;
+    private final SocketChannel channel;
+    // Always flipped for reading; compacted and flipped back around channel reads.
+    private ByteBuffer inputBuffer;
+    private boolean inputEOF;
     private final InputStream inputStream;
     private final OutputStream outputStream;
     private final DataInputStream dataInput;
     private byte[] rawMessageInput;
     private DataInputStream messageInput;
-    private ByteArrayOutputStream byteOutput;
-    private DataOutputStream messageOutput;
+    private final PostgresOutputBuffer outputBuffer;
+    private final DataOutputStream messageOutput;
+    // Start of the message being built in outputBuffer, or -1.
+    private int messageStart = -1;
     private String encoding = "UTF-8";
 
     public PostgresMessenger(Socket socket) throws SocketException, IOException {
         this.socket = socket;
+        this.channel = null;
         // We flush() when we mean it. 
         // So, turn off kernel delay, but wrap a buffer so every
         // message isn't its own packet.
         socket.setTcpNoDelay(true);
         inputStream = socket.getInputStream();
         dataInput = new DataInputStream(inputStream);
-        outputStream = new BufferedOutputStream(socket.getOutputStream());
+        outputStream = socket.getOutputStream();
+        outputBuffer = new PostgresOutputBuffer(INITIAL_OUTPUT_BUFFER_SIZE, RETAINED_OUTPUT_BUFFER_SIZE);
+        messageOutput = new DataOutputStream(outputBuffer);
+    }
+
+    /** Use a channel that has already been made non-blocking. */
+    public PostgresMessenger(SocketChannel channel) throws SocketException, IOException {
+        this.socket = channel.socket();
+        this.channel = channel;
+        socket.setTcpNoDelay(true);
+        inputBuffer = ByteBuffer.allocate(INITIAL_INPUT_BUFFER_SIZE);
+        inputBuffer.flip();
+        inputStream = null;
+        dataInput = null;
+        outputStream = new ChannelOutputStream(channel);
+        outputBuffer = new PostgresOutputBuffer(INITIAL_OUTPUT_BUFFER_SIZE, RETAINED_OUTPUT_BUFFER_SIZE);
+        messageOutput = new DataOutputStream(outputBuffer);
     }
 
     InputStream getInputStream() {
         return inputStream;
     }
 
-    OutputStream getOutputStream() {
+    /** The underlying stream, for writing something other than a
+     * message. Any messages waiting to be sent are written to it first. */
+    OutputStream getOutputStream() throws IOException {
+        writeOutput();
         return outputStream;
     }
 
+    /** The buffer into which messages are assembled, for encoding
+     * values directly into the current message. */
+    public PostgresOutputBuffer getOutputBuffer() {
+        return outputBuffer;
+    }
+
     /** The encoding used for strings. */
     public String getEncoding() {
         return encoding;
@@ -115,6 +164,9 @@ public class PostgresMessenger implements DataInput, DataOutput
     }
     /** Read the next message from the stream, starting with the message type opcode. */
     protected PostgresMessages readMessage(boolean hasType) throws IOException {
+        if (channel != null) {
+            return readBufferedMessage(hasType);
+        }
         PostgresMessages type;
         int code = -1;
         if (hasType) {
@@ -171,29 +223,218 @@ public class PostgresMessenger implements DataInput, DataOutput
         }
     }
 
+    /** Read the next message from the input buffer, waiting for the
+     * rest of it only if the selector handed over a partial one. */
+    protected PostgresMessages readBufferedMessage(boolean hasType) throws IOException {
+        PostgresMessages type;
+        int code;
+        if (hasType) {
+            if (!fillInput(1))
+                return PostgresMessages.EOF_TYPE;
+            code = inputBuffer.get() & 0xFF;
+            if (!PostgresMessages.readTypeCorrect(code)) {
+                throw new IOException ("Bad protocol read message: " + (char)code);
+            }
+            type = PostgresMessages.messageType(code);
+        }
+        else {
+            type = PostgresMessages.STARTUP_MESSAGE_TYPE;
+            code = 0;
+        }
+
+        recvTap.in();
+        try {
+            int count = 0;
+            if (code > 0) count++;
+            if (!fillInput(4))
+                throw new EOFException();
+            int len = inputBuffer.getInt();
+            if ((len < 0) || (len > type.maxSize()))
+                throw new IOException(String.format("Implausible message length (%d) received.", len));
+            count += len;
+            len -= 4;
+            try {
+                rawMessageInput = new byte[len];
+            } catch (OutOfMemoryError ex) {
+                throw new IOException (String.format("Unable to allocate read buffer of length (%d)", len));
+            }
+            if (!fillInput(len))
+                throw new EOFException();
+            inputBuffer.get(rawMessageInput);
+            messageInput = new DataInputStream(new ByteArrayInputStream(rawMessageInput));
+            bytesRead(count);
+            return type;
+        }
+        finally {
+            recvTap.out();
+        }
+    }
+
+    /** Read whatever the channel has without blocking.
+     * @return the number of bytes read or <code>-1</code> at end of stream.
+     */
+    protected int readAvailable() throws IOException {
+        if (inputEOF)
+            return -1;
+        if (inputBuffer.remaining() == inputBuffer.capacity())
+            growInput(inputBuffer.capacity() * 2);
+        inputBuffer.compact();
+        int count;
+        try {
+            count = channel.read(inputBuffer);
+        }
+        catch (IOException ex) {
+            // Reset by peer and the like: same as the client going away.
+            count = -1;
+        }
+        finally {
+            inputBuffer.flip();
+        }
+        if (count < 0)
+            inputEOF = true;
+        return count;
+    }
+
+    /** Is there enough in the input buffer for {@link #readMessage} to
+     * return without waiting? Also true at end of stream and when the
+     * header is bad, so that the error surfaces from reading it.
+     */
+    protected boolean hasCompleteMessage(boolean hasType) {
+        if (inputEOF)
+            return true;
+        int header = hasType ? 5 : 4;
+        if (inputBuffer.remaining() < header)
+            return false;
+        PostgresMessages type;
+        if (hasType) {
+            type = PostgresMessages.messageType(inputBuffer.get(inputBuffer.position()) & 0xFF);
+            if (type == null)
+                return true;
+        }
+        else {
+            type = PostgresMessages.STARTUP_MESSAGE_TYPE;
+        }
+        int len = inputBuffer.getInt(inputBuffer.position() + header - 4);
+        if ((len < 4) || (len > type.maxSize()))
+            return true;
+        return (inputBuffer.remaining() >= header - 4 + len);
+    }
+
+    /** Make sure at least <code>count</code> bytes are buffered,
+     * waiting on the channel if need be.
+     * @return <code>false</code> if the stream ends first.
+     */
+    private boolean fillInput(int count) throws IOException {
+        if (inputBuffer.remaining() >= count)
+            return true;
+        if (inputBuffer.capacity() < count)
+            growInput(count);
+        Selector selector = null;
+        try {
+            while (inputBuffer.remaining() < count) {
+                int nread = readAvailable();
+                if (nread < 0)
+                    return false;
+                if (nread == 0) {
+                    if (selector == null) {
+                        // A channel can be registered with more than one selector; the
+                        // server's has no interest in this one while it is being processed.
+                        selector = Selector.open();
+                        channel.register(selector, SelectionKey.OP_READ);
+                        beforeIdle();
+                    }
+                    if (selector.select(IDLE_INTERVAL) == 0)
+                        idle();
+                    selector.selectedKeys().clear();
+                }
+            }
+            return true;
+        }
+        finally {
+            if (selector != null) {
+                selector.close();
+                afterIdle();
+            }
+        }
+    }
+
+    private void growInput(int capacity) {
+        ByteBuffer newBuffer = ByteBuffer.allocate(Math.max(capacity, inputBuffer.capacity()));
+        newBuffer.put(inputBuffer);
+        newBuffer.flip();
+        inputBuffer = newBuffer;
+    }
+
     /** Begin outgoing message of given type. */
     protected void beginMessage(int type) throws IOException {
-        byteOutput = new ByteArrayOutputStream();
-        messageOutput = new DataOutputStream(byteOutput);
+        if (messageStart >= 0) {
+            // Abandon any message left unfinished by an error.
+            outputBuffer.truncate(messageStart);
+        }
+        messageStart = outputBuffer.size();
         messageOutput.write(type);
         messageOutput.writeInt(0);
     }
 
-    /** Send outgoing message. */
+    /** Finish outgoing message, which goes out with the next batch. */
     protected void sendMessage() throws IOException {
-        messageOutput.flush();
-        byte[] msg = byteOutput.toByteArray();
-        
         // check we're writing an allowed message. 
-        assert PostgresMessages.writeTypeCorrect((int)msg[0]) : "Invalid write message: " + (char)msg[0];
+        assert PostgresMessages.writeTypeCorrect(outputBuffer.byteAt(messageStart)) : "Invalid write message: " + (char)outputBuffer.byteAt(messageStart);
         
-        int len = msg.length - 1;
-        msg[1] = (byte)(len >> 24);
-        msg[2] = (byte)(len >> 16);
-        msg[3] = (byte)(len >> 8);
-        msg[4] = (byte)len;
-        outputStream.write(msg);
+        int len = outputBuffer.size() - messageStart - 1;
+        outputBuffer.putInt(messageStart + 1, len);
+        messageStart = -1;
         bytesWritten(len + 1);
+        if (outputBuffer.size() >= OUTPUT_BATCH_SIZE)
+            writeOutput();
+    }
+
+    /** Part of an outgoing message that is copied to the stream when the
+     * message is sent, rather than being assembled in the buffer. */
+    public static abstract class StreamedPart {
+        private final int position;
+        private final int length;
+
+        /** @param position where the part goes in the buffer, as of when it is added
+         * @param length the exact number of bytes {@link #writeTo} will write */
+        protected StreamedPart(int position, int length) {
+            this.position = position;
+            this.length = length;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        protected abstract void writeTo(OutputStream out) throws IOException;
+    }
+
+    /** Finish outgoing message with <code>parts</code>, in position order,
+     * spliced into what is in the buffer, and write it out right away. */
+    protected void sendMessage(List<? extends StreamedPart> parts) throws IOException {
+        long len = outputBuffer.size() - messageStart - 1;
+        for (StreamedPart part : parts) {
+            len += part.length;
+        }
+        if (len > Integer.MAX_VALUE)
+            throw new IOException(String.format("Message too long (%d) to send.", len));
+        outputBuffer.putInt(messageStart + 1, (int)len);
+        messageStart = -1;
+        bytesWritten((int)len + 1);
+        try {
+            xmitTap.in();
+            int position = 0;
+            for (StreamedPart part : parts) {
+                outputBuffer.writeTo(outputStream, position, part.position - position);
+                part.writeTo(outputStream);
+                position = part.position;
+            }
+            outputBuffer.writeTo(outputStream, position, outputBuffer.size() - position);
+            outputBuffer.clear();
+        }
+        finally {
+            xmitTap.out();
+        }
     }
 
     /** Send outgoing message and optionally flush stream. */
@@ -206,6 +447,7 @@ public class PostgresMessenger implements DataInput, DataOutput
     protected void flush() throws IOException {
         try {
             xmitTap.in();
+            writeOutput();
             outputStream.flush();
         }
         finally {
@@ -213,17 +455,40 @@ public class PostgresMessenger implements DataInput, DataOutput
         }
     }
 
+    /** Write all complete messages in one go, keeping any partial one. */
+    protected void writeOutput() throws IOException {
+        byte[] partial = null;
+        if (messageStart >= 0) {
+            partial = outputBuffer.copyFrom(messageStart);
+            outputBuffer.truncate(messageStart);
+        }
+        if (outputBuffer.size() > 0) {
+            outputBuffer.writeTo(outputStream);
+        }
+        outputBuffer.clear();
+        if (partial != null) {
+            messageStart = 0;
+            outputBuffer.write(partial);
+        }
+    }
+
     /** Save whatever portion of the current message there is so that
      * something asynchronous can be sent. */
     protected Object suspendMessage() throws IOException {
-        messageOutput.flush();
-        return byteOutput;
+        if (messageStart < 0)
+            return null;
+        byte[] partial = outputBuffer.copyFrom(messageStart);
+        outputBuffer.truncate(messageStart);
+        messageStart = -1;
+        return partial;
     }
 
     /** Restore the state from {@link #suspendMessage}. */
     protected void resumeMessage(Object state) throws IOException {
-        byteOutput = (ByteArrayOutputStream)state;
-        messageOutput = new DataOutputStream(byteOutput);
+        if (state == null)
+            return;
+        messageStart = outputBuffer.size();
+        outputBuffer.write((byte[])state);
     }
 
     /** Read null-terminated string. */
@@ -257,7 +522,7 @@ public class PostgresMessenger implements DataInput, DataOutput
 
     /** Write the raw contents of the given byte stream's buffer. */
     public void writeByteStream(ByteArrayOutputStream s) throws IOException {
-        s.writeTo(messageOutput);
+        s.writeTo(outputBuffer);
     }
 
     /*** DataInput ***/
@@ -354,11 +619,13 @@ public class PostgresMessenger implements DataInput, DataOutput
 
     public void beforeIdle() throws IOException {
         waitTap.in();
-        socket.setSoTimeout(IDLE_INTERVAL);
+        if (channel == null)
+            socket.setSoTimeout(IDLE_INTERVAL);
     }
 
     public void afterIdle() throws IOException {
-        socket.setSoTimeout(0);
+        if (channel == null)
+            socket.setSoTimeout(0);
         waitTap.out();
     }
 
@@ -372,4 +639,43 @@ public class PostgresMessenger implements DataInput, DataOutput
     }
     public void bytesWritten(int count) {
     }
+
+    /** Blocking writes to a non-blocking channel, waiting for room
+     * only when the socket's send buffer is full. */
+    static class ChannelOutputStream extends OutputStream {
+        private final SocketChannel channel;
+
+        public ChannelOutputStream(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte)b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+            Selector selector = null;
+            try {
+                while (buffer.hasRemaining()) {
+                    if (channel.write(buffer) == 0) {
+                        if (selector == null) {
+                            selector = Selector.open();
+                            channel.register(selector, SelectionKey.OP_WRITE);
+                        }
+                        selector.select(IDLE_INTERVAL);
+                        selector.selectedKeys().clear();
+                        if (!channel.isOpen())
+                            throw new ClosedChannelException();
+                    }
+                }
+            }
+            finally {
+                if (selector != null)
+                    selector.close();
+            }
+        }
+    }
 }
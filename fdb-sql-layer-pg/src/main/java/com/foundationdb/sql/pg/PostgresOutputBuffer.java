@@ -0,0 +1,85 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.sql.pg;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/** Outgoing messages for one connection, accumulated so that several
+ * can go out in a single write.
+ * Unlike a plain <code>ByteArrayOutputStream</code>, what has already
+ * been written can be patched or cut off, and the array is kept from one
+ * batch to the next instead of being reallocated.
+ */
+public class PostgresOutputBuffer extends ByteArrayOutputStream
+{
+    private final int initialSize, retainedSize;
+
+    /** @param retainedSize largest array to keep for the next batch after an unusually large message */
+    public PostgresOutputBuffer(int initialSize, int retainedSize) {
+        super(initialSize);
+        this.initialSize = initialSize;
+        this.retainedSize = retainedSize;
+    }
+
+    public synchronized int byteAt(int position) {
+        assert position < count;
+        return buf[position] & 0xFF;
+    }
+
+    /** Overwrite four bytes, such as a message length, in network order. */
+    public synchronized void putInt(int position, int value) {
+        assert position + 4 <= count;
+        buf[position] = (byte)(value >> 24);
+        buf[position+1] = (byte)(value >> 16);
+        buf[position+2] = (byte)(value >> 8);
+        buf[position+3] = (byte)value;
+    }
+
+    /** Discard everything from <code>size</code> on. */
+    public synchronized void truncate(int size) {
+        assert size <= count;
+        count = size;
+    }
+
+    public synchronized byte[] copyFrom(int position) {
+        return Arrays.copyOfRange(buf, position, count);
+    }
+
+    /** Write out just part of the buffer, when other content goes in between. */
+    public synchronized void writeTo(OutputStream out, int position, int length) throws IOException {
+        assert position + length <= count;
+        out.write(buf, position, length);
+    }
+
+    /** Empty for the next batch, keeping the array unless it grew too large. */
+    public synchronized void clear() {
+        count = 0;
+        if (buf.length > retainedSize) {
+            buf = new byte[initialSize];
+        }
+    }
+}
@@ -24,9 +24,17 @@
 package com.foundationdb.sql.pg;
 
 import com.foundationdb.qp.row.Row;
+import com.foundationdb.server.service.blob.BlobRef;
+import com.foundationdb.server.types.FormatOptions;
+import com.foundationdb.server.types.value.ValueSource;
+import com.foundationdb.sql.server.ServerType;
+import com.foundationdb.sql.server.ServerValueEncoder;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -35,29 +43,116 @@ public class PostgresRowOutputter extends PostgresOutputter<Row>
 {
     private static final Logger logger = LoggerFactory.getLogger(PostgresRowOutputter.class);
 
+    private final ServerValueEncoder messageEncoder;
+
     public PostgresRowOutputter(PostgresQueryContext context,
                                 PostgresDMLStatement statement) {
         super(context, statement);
+        messageEncoder = context.getServer().getMessageValueEncoder();
     }
 
     @Override
     public void output(Row row) throws IOException {
         messenger.beginMessage(PostgresMessages.DATA_ROW_TYPE.code());
         messenger.writeShort(ncols);
+        PostgresOutputBuffer buffer = messenger.getOutputBuffer();
+        List<BlobPart> streamed = null;
         for (int i = 0; i < ncols; i++) {
             PostgresType type = columnTypes.get(i);
             boolean binary = context.isColumnBinary(i);
-            ByteArrayOutputStream bytes = encoder.encodeValue(row.value(i), type, binary);
-            if (bytes == null) {
-                messenger.writeInt(-1);
+            // Encode right after the length, then fill that in.
+            int lengthPosition = buffer.size();
+            messenger.writeInt(-1);
+            ValueSource value = row.value(i);
+            BlobPart blob = streamedBlob(value, type, binary, buffer.size());
+            int length;
+            if (blob != null) {
+                if (streamed == null)
+                    streamed = new ArrayList<>();
+                streamed.add(blob);
+                length = blob.getLength();
             }
             else {
-                messenger.writeInt(bytes.size());
-                messenger.writeByteStream(bytes);
-                logger.trace("BE Row Data -> {}:{}", i, bytes.size() );
+                length = messageEncoder.appendEncodedValue(value, type, binary);
+            }
+            if (length >= 0) {
+                buffer.putInt(lengthPosition, length);
+                logger.trace("BE Row Data -> {}:{}", i, length);
             }
         }
-        messenger.sendMessage();
+        if (streamed == null)
+            messenger.sendMessage();
+        else
+            messenger.sendMessage(streamed);
+    }
+
+    /** A long blob that has not been read yet goes from its stream
+     * right to the client, when its format does not need the whole
+     * value at once. */
+    protected BlobPart streamedBlob(ValueSource value, PostgresType type, boolean binary, int position) {
+        if ((type.getBinaryEncoding() != ServerType.BinaryEncoding.BINARY_OCTAL_TEXT) ||
+            value.isNull() || !value.hasCacheValue() ||
+            !(value.getObject() instanceof BlobRef))
+            return null;
+        BlobRef blob = (BlobRef)value.getObject();
+        if (!blob.isStreamable())
+            return null;
+        boolean hex;
+        if (binary)
+            hex = false;
+        else if (messageEncoder.getBinaryFormat() == FormatOptions.BinaryFormatOption.HEX)
+            hex = true;
+        else
+            return null;
+        long size = blob.getContentSize();
+        long length = hex ? 2 + 2 * size : size;
+        if (length > Integer.MAX_VALUE)
+            return null;
+        return new BlobPart(position, (int)length, blob, hex);
     }
 
+    protected static class BlobPart extends PostgresMessenger.StreamedPart {
+        private static final byte[] HEX_DIGITS = "0123456789ABCDEF".getBytes();
+        private final BlobRef blob;
+        private final boolean hex;
+
+        public BlobPart(int position, int length, BlobRef blob, boolean hex) {
+            super(position, length);
+            this.blob = blob;
+            this.hex = hex;
+        }
+
+        @Override
+        protected void writeTo(OutputStream out) throws IOException {
+            byte[] buffer = new byte[8192];
+            byte[] encoded = hex ? new byte[buffer.length * 2] : null;
+            long written = 0;
+            if (hex) {
+                out.write('\\');
+                out.write('x');
+                written += 2;
+            }
+            try (InputStream in = blob.openStream()) {
+                int n;
+                while ((n = in.read(buffer)) >= 0) {
+                    if (hex) {
+                        for (int i = 0; i < n; i++) {
+                            encoded[2*i] = HEX_DIGITS[(buffer[i] >> 4) & 0xF];
+                            encoded[2*i+1] = HEX_DIGITS[buffer[i] & 0xF];
+                        }
+                        out.write(encoded, 0, 2 * n);
+                        written += 2 * n;
+                    }
+                    else {
+                        out.write(buffer, 0, n);
+                        written += n;
+                    }
+                }
+            }
+            // The length has already gone out, so anything else would garble the stream.
+            if (written != getLength())
+                throw new IOException(String.format("Blob changed length while being sent (%d != %d).",
+                                                    written, getLength()));
+        }
+    }
 }
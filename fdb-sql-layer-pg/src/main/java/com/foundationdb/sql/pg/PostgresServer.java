@@ -23,21 +23,32 @@
  */
 package com.foundationdb.sql.pg;
 
+import com.foundationdb.ais.model.AkibanInformationSchema;
 import com.foundationdb.sql.server.CacheCounters;
+import com.foundationdb.sql.server.FDBPlanHintStore;
+import com.foundationdb.sql.server.LocalPlanHintStore;
+import com.foundationdb.sql.server.PlanHintStore;
 import com.foundationdb.sql.server.ServerServiceRequirements;
 import com.foundationdb.sql.server.ServerStatementCache;
 import com.foundationdb.server.error.InvalidPortException;
 import com.foundationdb.server.service.ServiceManager;
 import com.foundationdb.server.service.metrics.LongMetric;
 import com.foundationdb.server.service.monitor.ServerMonitor;
+import com.foundationdb.server.store.FDBHolder;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
@@ -46,8 +57,15 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Queue;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.security.Principal;
 
 import javax.security.auth.Subject;
@@ -57,6 +75,10 @@ import javax.security.auth.login.LoginException;
 /** The PostgreSQL server.
  * Listens of a given port and spawns <code>PostgresServerConnection</code> threads
  * to process requests.
+ * Or, with <code>connection_mode=selector</code>, reads from every connection with one
+ * {@link Selector} and processes a connection's messages on a shared pool of
+ * <code>connection_threads</code> threads only once one has completely arrived,
+ * so that idle connections do not each hold a thread.
  * Also keeps global state for shutdown and inter-connection communication like cancel.
 */
 public class PostgresServer implements Runnable, ServerMonitor {
@@ -64,6 +86,8 @@ public class PostgresServer implements Runnable, ServerMonitor {
     public static final String SERVER_PROPERTIES_PREFIX = "fdbsql.postgres.";
     protected static final String SERVER_TYPE = "Postgres";
     private static final String THREAD_NAME_PREFIX = "PostgresServer_Accept-"; // Port is appended
+    private static final String WORKER_THREAD_NAME_PREFIX = "PostgresServer_Worker-"; // Port and number are appended
+    private static final long HARD_LIMIT_CHECK_INTERVAL = 10;
     private static final String BYTES_IN_METRIC_NAME = "PostgresBytesIn";
     private static final String BYTES_OUT_METRIC_NAME = "PostgresBytesOut";
 
@@ -89,7 +113,8 @@ public class PostgresServer implements Runnable, ServerMonitor {
         new HashMap<>(); // key and aisGeneration
     // end AIS-dependent state
     private volatile Date overrideCurrentTime;
-    private final CacheCounters cacheCounters = new CacheCounters();
+    private final CacheCounters cacheCounters = new CacheCounters(ServerStatementCache.MAX_SEGMENTS);
+    private final PlanHintStore planHintStore;
     private AuthenticationType authenticationType;
     private Subject gssLogin;
     private String jaasConfigName;
@@ -97,6 +122,13 @@ public class PostgresServer implements Runnable, ServerMonitor {
     private Collection<Class<? extends Principal>> jaasRoleClasses;
     private final int slowLimit;
     private final int hardLimit;
+    private final boolean selectorMode;
+    private final int connectionThreads;
+    // Selector mode state
+    private volatile Selector selector;
+    private ExecutorService executor;
+    private final Queue<SelectedConnection> readyConnections = new ConcurrentLinkedQueue<>();
+    private final Queue<SelectedConnection> wokenConnections = new ConcurrentLinkedQueue<>();
 
     private static final Logger logger = LoggerFactory.getLogger(PostgresServer.class);
 
@@ -116,6 +148,37 @@ public class PostgresServer implements Runnable, ServerMonitor {
         
         slowLimit = Integer.parseInt(properties.getProperty("connection_slow_limit", "250"));
         hardLimit = Integer.parseInt(properties.getProperty("connection_hard_limit", "500"));
+
+        String mode = properties.getProperty("connection_mode", "thread");
+        if (mode.equals("selector")) {
+            selectorMode = true;
+        }
+        else if (mode.equals("thread")) {
+            selectorMode = false;
+        }
+        else {
+            throw new IllegalArgumentException("Invalid connection_mode property: " + mode);
+        }
+        connectionThreads = Integer.parseInt(properties.getProperty("connection_threads", "32"));
+
+        String hintStore = properties.getProperty("planHintStore", "none");
+        if (hintStore.equals("none")) {
+            planHintStore = null;
+        }
+        else if (hintStore.equals("local")) {
+            String hintFile = properties.getProperty("planHintFile", "");
+            if (hintFile.isEmpty()) {
+                hintFile = new File(reqs.config().getProperty("fdbsql.tmp_dir"),
+                                    "postgres-plan-hints-" + port).getPath();
+            }
+            planHintStore = new LocalPlanHintStore(new File(hintFile));
+        }
+        else if (hintStore.equals("fdb")) {
+            planHintStore = new FDBPlanHintStore(reqs.serviceManager().getServiceByClass(FDBHolder.class));
+        }
+        else {
+            throw new IllegalArgumentException("Invalid planHintStore property: " + hintStore);
+        }
     }
 
     public Properties getProperties() {
@@ -155,6 +218,10 @@ public class PostgresServer implements Runnable, ServerMonitor {
             catch (IOException ex) {
             }
         }
+        Selector selector = this.selector;
+        if (selector != null) {
+            selector.wakeup();
+        }
 
         Collection<PostgresServerConnection> conns;
         synchronized (this) {
@@ -189,6 +256,10 @@ public class PostgresServer implements Runnable, ServerMonitor {
             bytesInMetric = reqs.metricsService().addLongMetric(BYTES_IN_METRIC_NAME);
             bytesOutMetric = reqs.metricsService().addLongMetric(BYTES_OUT_METRIC_NAME);
             reqs.monitor().registerServerMonitor(this);
+            if (selectorMode) {
+                runSelector(rand, bytesInMetric, bytesOutMetric);
+                return;
+            }
             synchronized(this) {
                 if (!running) return;
                 // 50 here was taken from the shorter new ServerSocket(port)
@@ -246,6 +317,156 @@ public class PostgresServer implements Runnable, ServerMonitor {
         }
     }
 
+    /** Accept connections and read their input on this thread,
+     * handing them to the executor when a message is ready.
+     */
+    protected void runSelector(Random rand, LongMetric bytesInMetric, LongMetric bytesOutMetric) throws IOException {
+        ServerSocketChannel serverChannel;
+        synchronized(this) {
+            if (!running) return;
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            socket = serverChannel.socket();
+            socket.bind(new InetSocketAddress(InetAddress.getByName(host), port), 50);
+            serverChannel.configureBlocking(false);
+            listening = true;
+        }
+        final AtomicInteger nthreads = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(connectionThreads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    return new Thread(r, WORKER_THREAD_NAME_PREFIX + port + "-" + nthreads.incrementAndGet());
+                }
+            });
+        try {
+            SelectionKey acceptKey = serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+            while (running) {
+                // If we're running too many connections, stop accepting until some close.
+                // There is no thread per connection to slow down for the lower limit.
+                boolean full = (connections.size() > hardLimit);
+                if (full != (acceptKey.interestOps() == 0)) {
+                    if (full)
+                        logger.warn("Connection hard limit exceeded, wait for connections to close...");
+                    acceptKey.interestOps(full ? 0 : SelectionKey.OP_ACCEPT);
+                }
+                selector.select(full ? HARD_LIMIT_CHECK_INTERVAL : 0);
+                SelectedConnection selected;
+                while ((selected = readyConnections.poll()) != null) {
+                    resume(selected);
+                }
+                while ((selected = wokenConnections.poll()) != null) {
+                    // Only if on the selector now, not being processed.
+                    if (selected.key.isValid() && (selected.key.interestOps() != 0) &&
+                        selected.connection.hasCompleteMessage()) {
+                        schedule(selected);
+                    }
+                }
+                Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+                while (iter.hasNext()) {
+                    SelectionKey key = iter.next();
+                    iter.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept(serverChannel, rand, bytesInMetric, bytesOutMetric);
+                    }
+                    else if (key.isReadable()) {
+                        selected = (SelectedConnection)key.attachment();
+                        try {
+                            selected.connection.readAvailable();
+                        }
+                        catch (IOException ex) {
+                            logger.debug("Error reading from connection", ex);
+                            selected.connection.stop();
+                        }
+                        if (selected.connection.hasCompleteMessage()) {
+                            schedule(selected);
+                        }
+                    }
+                }
+            }
+        }
+        finally {
+            executor.shutdown();
+            selector.close();
+        }
+    }
+
+    protected void accept(ServerSocketChannel serverChannel, Random rand,
+                          LongMetric bytesInMetric, LongMetric bytesOutMetric) throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        int sessionId = reqs.monitor().allocateSessionId();
+        int secret = rand.nextInt();
+        PostgresServerConnection connection = 
+            new PostgresServerConnection(this, 
+                                         channel, sessionId, secret, 
+                                         bytesInMetric, bytesOutMetric,
+                                         reqs);
+        nconnections++;
+        connections.put(sessionId, connection);
+        if (connection.startSelected()) {
+            SelectedConnection selected = new SelectedConnection(connection);
+            selected.key = channel.register(selector, SelectionKey.OP_READ, selected);
+        }
+    }
+
+    /** Hand the connection to an executor thread, ignoring it until it comes back. */
+    protected void schedule(SelectedConnection selected) {
+        selected.key.interestOps(0);
+        try {
+            executor.execute(selected);
+        }
+        catch (RejectedExecutionException ex) {
+            // Shutting down.
+            selected.connection.stop();
+        }
+    }
+
+    /** Back from an executor thread: watch for more input, unless some is already here. */
+    protected void resume(SelectedConnection selected) {
+        if (!selected.key.isValid()) return;
+        if (selected.connection.hasCompleteMessage()) {
+            schedule(selected);
+        }
+        else {
+            selected.key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    /** Have an idle selector connection processed, such as to notice being killed. */
+    void wakeConnection(PostgresServerConnection connection) {
+        Selector selector = this.selector;
+        if (selector == null) return;
+        SelectionKey key = connection.getChannel().keyFor(selector);
+        if (key != null) {
+            wokenConnections.add((SelectedConnection)key.attachment());
+            selector.wakeup();
+        }
+    }
+
+    protected class SelectedConnection implements Runnable {
+        final PostgresServerConnection connection;
+        SelectionKey key;
+
+        SelectedConnection(PostgresServerConnection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public void run() {
+            if (connection.processAvailableMessages()) {
+                readyConnections.add(this);
+                selector.wakeup();
+            }
+            else {
+                key.cancel();
+            }
+        }
+    }
+
     public synchronized boolean isListening() {
         return listening;
     }
@@ -262,10 +483,10 @@ public class PostgresServer implements Runnable, ServerMonitor {
         return new ArrayList<>(connections.values());
     }
 
-    void cleanStatementCaches(long newGeneration) {
+    void cleanStatementCaches(AkibanInformationSchema newAIS) {
         Set<Long> activeGenerations = reqs.dxl().ddlFunctions().getActiveGenerations();
         logger.debug("Cleaning statement caches except {} (now {})", 
-                     activeGenerations, newGeneration);
+                     activeGenerations, newAIS.getGeneration());
         synchronized (statementCaches) {
             Iterator<Map.Entry<ObjectLongPair,ServerStatementCache<PostgresStatement>>> it = statementCaches.entrySet().iterator();
             while(it.hasNext()) {
@@ -274,22 +495,28 @@ public class PostgresServer implements Runnable, ServerMonitor {
                     entry.getValue().invalidate(); // It may be a while before a connection gets a new one.
                     it.remove();
                 }
+                else if (entry.getKey().longVal < newAIS.getGeneration()) {
+                    // Still in use by some transaction, but anything
+                    // built on a table that has since changed will not
+                    // be wanted again.
+                    entry.getValue().invalidate(newAIS);
+                }
             }
         }
     }
 
     /** This is the version for use by connections. */
-    public ServerStatementCache<PostgresStatement> getStatementCache(Object key, long aisGeneration) {
+    public ServerStatementCache<PostgresStatement> getStatementCache(Object key, AkibanInformationSchema ais) {
         if (statementCacheCapacity <= 0)
             return null;
 
-        ObjectLongPair fullKey = new ObjectLongPair(key, aisGeneration);
+        ObjectLongPair fullKey = new ObjectLongPair(key, ais.getGeneration());
         ServerStatementCache<PostgresStatement> statementCache;
         synchronized (statementCaches) {
             statementCache = statementCaches.get(fullKey);
             if (statementCache == null) {
                 // No cache => recent DDL, reasonable time to do a little cleaning
-                cleanStatementCaches(aisGeneration);
+                cleanStatementCaches(ais);
                 statementCache = new ServerStatementCache<>(cacheCounters, statementCacheCapacity);
                 statementCaches.put(fullKey, statementCache);
             }
@@ -301,6 +528,11 @@ public class PostgresServer implements Runnable, ServerMonitor {
         return statementCacheCapacity;
     }
 
+    /** Where join orders are remembered across restarts, or <code>null</code>. */
+    public PlanHintStore getPlanHintStore() {
+        return planHintStore;
+    }
+
     public void setStatementCacheCapacity(int capacity) {
         statementCacheCapacity = capacity;
         synchronized (statementCaches) {
@@ -320,6 +552,15 @@ public class PostgresServer implements Runnable, ServerMonitor {
     public int getStatementCacheMisses() {
         return cacheCounters.getMisses();
     }
+
+    public int getStatementCacheEvictions() {
+        return cacheCounters.getEvictions();
+    }
+
+    /** Per-shard counts, shared by all the statement caches. */
+    public CacheCounters getStatementCacheCounters() {
+        return cacheCounters;
+    }
     
     public void resetStatementCache() {
         synchronized (statementCaches) {
@@ -24,6 +24,7 @@
 package com.foundationdb.sql.pg;
 
 import com.foundationdb.ais.model.AkibanInformationSchema;
+import com.foundationdb.sql.server.PlanHintStore;
 import com.foundationdb.sql.server.ServerServiceRequirements;
 import com.foundationdb.sql.server.ServerSessionBase;
 import com.foundationdb.sql.server.ServerSessionMonitor;
@@ -60,6 +61,7 @@ import javax.security.auth.Subject;
 import javax.security.auth.login.LoginException;
 
 import java.net.*;
+import java.nio.channels.SocketChannel;
 
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
@@ -72,6 +74,8 @@ import static com.foundationdb.sql.pg.PostgresStatement.PostgresStatementResult;
 /**
  * Connection to a Postgres server client.
  * Runs in its own thread; has its own Main Session.
+ * Or, when created with a {@link SocketChannel}, runs on one of the server's
+ * executor threads each time the server's selector has found a complete message.
  *
  */
 public class PostgresServerConnection extends ServerSessionBase
@@ -84,10 +88,12 @@ public class PostgresServerConnection extends ServerSessionBase
     private static final String MD5_SALT = "MD5_SALT";
 
     private final PostgresServer server;
-    private boolean running = false, ignoreUntilSync = false;
+    private volatile boolean running = false;
+    private boolean ignoreUntilSync = false, startupComplete = false;
     private Socket socket;
+    private SocketChannel channel;
     private PostgresMessenger messenger;
-    private ServerValueEncoder valueEncoder;
+    private ServerValueEncoder valueEncoder, messageValueEncoder;
     private ServerValueDecoder valueDecoder;
     private OutputFormat outputFormat = OutputFormat.TABLE;
     private final int sessionId, secret;
@@ -100,7 +106,7 @@ public class PostgresServerConnection extends ServerSessionBase
     private ServerStatementCache<PostgresStatement> statementCache;
     private PostgresStatementParser[] unparsedGenerators;
     private PostgresStatementGenerator[] parsedGenerators;
-    private Thread thread;
+    private volatile Thread thread;
     private final LongMetric bytesInMetric, bytesOutMetric;
 
     private volatile String cancelForKillReason, cancelByUser;
@@ -144,6 +150,14 @@ public class PostgresServerConnection extends ServerSessionBase
         reqs.monitor().registerSessionMonitor(sessionMonitor, session);
     }
 
+    public PostgresServerConnection(PostgresServer server, SocketChannel channel, 
+                                    int sessionId, int secret,
+                                    LongMetric bytesInMetric, LongMetric bytesOutMetric,
+                                    ServerServiceRequirements reqs) {
+        this(server, channel.socket(), sessionId, secret, bytesInMetric, bytesOutMetric, reqs);
+        this.channel = channel;
+    }
+
     public void start() {
         running = true;
         thread = new Thread(this, THREAD_NAME_PREFIX + sessionId);
@@ -158,7 +172,8 @@ public class PostgresServerConnection extends ServerSessionBase
         }
         catch (IOException ex) {
         }
-        if ((thread != null) && (thread != Thread.currentThread())) {
+        // An executor thread outlives the connection; it will see the closed socket.
+        if ((channel == null) && (thread != null) && (thread != Thread.currentThread())) {
             try {
                 // Wait a bit, but don't hang up shutdown if thread is wedged.
                 thread.join(500);
@@ -193,194 +208,302 @@ public class PostgresServerConnection extends ServerSessionBase
         }
     }
 
+    /** Start without a thread of its own: the server calls
+     * {@link #processAvailableMessages} when {@link #readAvailable} has
+     * buffered a complete message.
+     * @return <code>false</code> if the connection could not be set up.
+     */
+    public boolean startSelected() {
+        running = true;
+        try {
+            createMessenger();
+        }
+        catch (IOException ex) {
+            logger.warn("Error in server", ex);
+            stop();
+            disconnect();
+            return false;
+        }
+        logger.debug("Connect from {}", socket.getRemoteSocketAddress());
+        sessionMonitor.enterStage(MonitorStage.IDLE);
+        return true;
+    }
+
+    /** Read whatever has arrived without blocking; called by the
+     * server's selector thread while no executor thread has the connection.
+     * @return <code>-1</code> at end of stream.
+     */
+    public int readAvailable() throws IOException {
+        return messenger.readAvailable();
+    }
+
+    /** Is there anything for {@link #processAvailableMessages} to do? */
+    public boolean hasCompleteMessage() {
+        return !running || (cancelForKillReason != null) ||
+            messenger.hasCompleteMessage(startupComplete);
+    }
+
+    /** Process all the complete messages that have been buffered.
+     * @return <code>false</code> once the connection is finished.
+     */
+    public boolean processAvailableMessages() {
+        sessionMonitor.leaveStage();
+        thread = Thread.currentThread();
+        try {
+            while (running && hasCompleteMessage()) {
+                processMessage();
+            }
+        }
+        catch (Exception ex) {
+            if (running)
+                logger.warn("Error in server", ex);
+            stop();
+        } catch (Throwable ex) {
+            logger.error("Error in server {}", ex);
+            stop();
+        }
+        finally {
+            thread = null;
+            // Do not leave a cancel interrupt to the next connection on this thread.
+            Thread.interrupted();
+        }
+        if (!running) {
+            try {
+                socket.close();
+            }
+            catch (IOException ex) {
+            }
+            disconnect();
+            return false;
+        }
+        sessionMonitor.enterStage(MonitorStage.IDLE);
+        return true;
+    }
+
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
     protected void createMessenger() throws IOException {
-        messenger = new PostgresMessenger(socket) {
-                @Override
-                public void beforeIdle() throws IOException {
-                    super.beforeIdle();
-                    sessionMonitor.enterStage(MonitorStage.IDLE);
-                }
+        messageValueEncoder = null; // Writes into the old messenger.
+        if (channel != null) {
+            messenger = new ConnectionMessenger(channel);
+        }
+        else {
+            messenger = new ConnectionMessenger(socket);
+        }
+    }
 
-                @Override
-                public void afterIdle() throws IOException {
-                    sessionMonitor.leaveStage();
-                    super.afterIdle();
-                }
+    private class ConnectionMessenger extends PostgresMessenger {
+        public ConnectionMessenger(Socket socket) throws IOException {
+            super(socket);
+        }
 
-                @Override
-                public void idle() {
-                    if (cancelForKillReason != null) {
-                        String msg = cancelForKillReason;
-                        cancelForKillReason = null;
-                        if (cancelByUser != null) {
-                            msg += " by " + cancelByUser;
-                            cancelByUser = null;
-                        }
-                        throw new ConnectionTerminatedException(msg);
-                    }
-                }
+        public ConnectionMessenger(SocketChannel channel) throws IOException {
+            super(channel);
+        }
 
-                @Override
-                public void bytesRead(int count) {
-                    bytesInMetric.increment(count);
-                }
-                @Override
-                public void bytesWritten(int count) {
-                    bytesOutMetric.increment(count);
-                }
-            };
+        @Override
+        public void beforeIdle() throws IOException {
+            super.beforeIdle();
+            sessionMonitor.enterStage(MonitorStage.IDLE);
+        }
+
+        @Override
+        public void afterIdle() throws IOException {
+            sessionMonitor.leaveStage();
+            super.afterIdle();
+        }
+
+        @Override
+        public void idle() {
+            checkKilled();
+        }
+
+        @Override
+        public void bytesRead(int count) {
+            bytesInMetric.increment(count);
+        }
+        @Override
+        public void bytesWritten(int count) {
+            bytesOutMetric.increment(count);
+        }
+    }
+
+    protected void checkKilled() {
+        if (cancelForKillReason != null) {
+            String msg = cancelForKillReason;
+            cancelForKillReason = null;
+            if (cancelByUser != null) {
+                msg += " by " + cancelByUser;
+                cancelByUser = null;
+            }
+            throw new ConnectionTerminatedException(msg);
+        }
     }
 
     protected void topLevel() throws IOException, Exception {
         logger.debug("Connect from {}" + socket.getRemoteSocketAddress());
-        boolean startupComplete = false;
         try {
             while (running) {
-                READ_MESSAGE.in();
-                PostgresMessages type;
-                try {
-                    type = messenger.readMessage(startupComplete);
-                } catch (ConnectionTerminatedException ex) {
-                    logger.debug("About to terminate", ex);
-                    notifyClient(QueryContext.NotificationLevel.WARNING,
-                                 ex.getCode(), ex.getShortMessage());
-                    stop();
-                    continue;
-                } finally {
-                    READ_MESSAGE.out();
-                }
-                PROCESS_MESSAGE.in();
-                if (ignoreUntilSync) {
-                    if ((type != PostgresMessages.EOF_TYPE) && (type != PostgresMessages.SYNC_TYPE))
-                        continue;
-                    ignoreUntilSync = false;
-                }
-                long startNsec = System.nanoTime();
-                try {
-                    switch (type) {
-                    case EOF_TYPE: // EOF
-                        stop();
-                        break;
-                    case SYNC_TYPE:
-                        readyForQuery();
-                        break;
-                    case STARTUP_MESSAGE_TYPE:
-                        startupComplete = processStartupMessage();
-                        break;
-                    case PASSWORD_MESSAGE_TYPE:
-                        processPasswordMessage();
-                        break;
-                    case QUERY_TYPE:
-                        processQuery();
-                        break;
-                    case PARSE_TYPE:
-                        processParse();
-                        break;
-                    case BIND_TYPE:
-                        processBind();
-                        break;
-                    case DESCRIBE_TYPE:
-                        processDescribe();
-                        break;
-                    case EXECUTE_TYPE:
-                        processExecute();
-                        break;
-                    case FLUSH_TYPE:
-                        processFlush();
-                        break;
-                    case CLOSE_TYPE:
-                        processClose();
-                        break;
-                    case TERMINATE_TYPE:
-                        processTerminate();
-                        break;
-                    }
-                } catch (QueryCanceledException ex) {
-                    InvalidOperationException nex = ex;
-                    boolean forKill = false;
-                    if (cancelForKillReason != null) {
-                        nex = new ConnectionTerminatedException(cancelForKillReason);
-                        nex.initCause(ex);
-                        cancelForKillReason = null;
-                        forKill = true;
-                    }
-                    logError(ErrorLogLevel.INFO, "Query {} canceled", nex);
-                    String msg = nex.getShortMessage();
-                    if (cancelByUser != null) {
-                        if (!forKill) msg = "Query canceled";
-                        msg += " by " + cancelByUser;
-                        cancelByUser = null;
-                    }
-                    sendErrorResponse(type, nex, nex.getCode(), msg);
-                    if (forKill) stop();
-                } catch (ConnectionTerminatedException ex) {
-                    logError(ErrorLogLevel.DEBUG, "Query {} terminated self", ex);
-                    sendErrorResponse(type, ex, ex.getCode(), ex.getShortMessage());
-                    stop();
-                } catch (InvalidOperationException ex) {
-                    // Most likely a user error, not a system error.
-                    String fmt = logger.isDebugEnabled() ?
-                        "Error in query {}" : // Include stack trace
-                        "Error in query {} => {}"; // Just summarize error
-                    logError(ErrorLogLevel.WARN, fmt, ex);
-                    sendErrorResponse(type, ex, ex.getCode(), ex.getShortMessage());
-                } catch (MultipleCauseException ex) {
-                    int count = 1;
-                    int length = ex.getCauses().size();
-                    for(Throwable throwable : ex.getCauses()) {
-                        if (throwable instanceof InvalidOperationException){
-                            if(count == length){
-                                logError(ErrorLogLevel.WARN, "Error in query {}", ex);
-                                sendErrorResponse(type,
-                                                  ((InvalidOperationException) throwable),
-                                                  ((InvalidOperationException) throwable).getCode(),
-                                                  ((InvalidOperationException) throwable).getShortMessage());
-                            } else {
-                                notifyClient(QueryContext.NotificationLevel.WARNING,
-                                        ((InvalidOperationException) throwable).getCode(),
-                                        ((InvalidOperationException) throwable).getShortMessage());
-                            }
-                        } else {
-                            if(count == length){
-                                logError(ErrorLogLevel.WARN, "Unexpected runtime exception in query {}", ex);
-                                sendErrorResponse(type,
-                                                  (RuntimeException)throwable,
-                                                  ErrorCode.UNEXPECTED_EXCEPTION,
-                                                  ex.getMessage());
-                            } else {
-                                notifyClient(QueryContext.NotificationLevel.WARNING,
-                                        ErrorCode.UNEXPECTED_EXCEPTION,
-                                        ex.getMessage());
-                            }
-                        }
-                        count++;
+                processMessage();
+            }
+        }
+        finally {
+            disconnect();
+        }
+    }
+
+    /** Read one message and act on it. */
+    protected void processMessage() throws IOException, Exception {
+        READ_MESSAGE.in();
+        PostgresMessages type;
+        try {
+            if (channel != null) {
+                // Nothing polls for a kill while waiting on the selector.
+                checkKilled();
+            }
+            type = messenger.readMessage(startupComplete);
+        } catch (ConnectionTerminatedException ex) {
+            logger.debug("About to terminate", ex);
+            notifyClient(QueryContext.NotificationLevel.WARNING,
+                         ex.getCode(), ex.getShortMessage());
+            stop();
+            return;
+        } finally {
+            READ_MESSAGE.out();
+        }
+        PROCESS_MESSAGE.in();
+        if (ignoreUntilSync) {
+            if ((type != PostgresMessages.EOF_TYPE) && (type != PostgresMessages.SYNC_TYPE))
+                return;
+            ignoreUntilSync = false;
+        }
+        long startNsec = System.nanoTime();
+        try {
+            switch (type) {
+            case EOF_TYPE: // EOF
+                stop();
+                break;
+            case SYNC_TYPE:
+                readyForQuery();
+                break;
+            case STARTUP_MESSAGE_TYPE:
+                startupComplete = processStartupMessage();
+                break;
+            case PASSWORD_MESSAGE_TYPE:
+                processPasswordMessage();
+                break;
+            case QUERY_TYPE:
+                processQuery();
+                break;
+            case PARSE_TYPE:
+                processParse();
+                break;
+            case BIND_TYPE:
+                processBind();
+                break;
+            case DESCRIBE_TYPE:
+                processDescribe();
+                break;
+            case EXECUTE_TYPE:
+                processExecute();
+                break;
+            case FLUSH_TYPE:
+                processFlush();
+                break;
+            case CLOSE_TYPE:
+                processClose();
+                break;
+            case TERMINATE_TYPE:
+                processTerminate();
+                break;
+            }
+        } catch (QueryCanceledException ex) {
+            InvalidOperationException nex = ex;
+            boolean forKill = false;
+            if (cancelForKillReason != null) {
+                nex = new ConnectionTerminatedException(cancelForKillReason);
+                nex.initCause(ex);
+                cancelForKillReason = null;
+                forKill = true;
+            }
+            logError(ErrorLogLevel.INFO, "Query {} canceled", nex);
+            String msg = nex.getShortMessage();
+            if (cancelByUser != null) {
+                if (!forKill) msg = "Query canceled";
+                msg += " by " + cancelByUser;
+                cancelByUser = null;
+            }
+            sendErrorResponse(type, nex, nex.getCode(), msg);
+            if (forKill) stop();
+        } catch (ConnectionTerminatedException ex) {
+            logError(ErrorLogLevel.DEBUG, "Query {} terminated self", ex);
+            sendErrorResponse(type, ex, ex.getCode(), ex.getShortMessage());
+            stop();
+        } catch (InvalidOperationException ex) {
+            // Most likely a user error, not a system error.
+            String fmt = logger.isDebugEnabled() ?
+                "Error in query {}" : // Include stack trace
+                "Error in query {} => {}"; // Just summarize error
+            logError(ErrorLogLevel.WARN, fmt, ex);
+            sendErrorResponse(type, ex, ex.getCode(), ex.getShortMessage());
+        } catch (MultipleCauseException ex) {
+            int count = 1;
+            int length = ex.getCauses().size();
+            for(Throwable throwable : ex.getCauses()) {
+                if (throwable instanceof InvalidOperationException){
+                    if(count == length){
+                        logError(ErrorLogLevel.WARN, "Error in query {}", ex);
+                        sendErrorResponse(type,
+                                          ((InvalidOperationException) throwable),
+                                          ((InvalidOperationException) throwable).getCode(),
+                                          ((InvalidOperationException) throwable).getShortMessage());
+                    } else {
+                        notifyClient(QueryContext.NotificationLevel.WARNING,
+                                ((InvalidOperationException) throwable).getCode(),
+                                ((InvalidOperationException) throwable).getShortMessage());
                     }
-                } catch (Exception ex) {
-                    logError(ErrorLogLevel.WARN, "Unexpected error in query {}", ex);
-                    String message = (ex.getMessage() == null ? ex.getClass().toString() : ex.getMessage());
-                    sendErrorResponse(type, ex, ErrorCode.UNEXPECTED_EXCEPTION, message);
-                } catch (AssertionError ex) {
-                    logError(ErrorLogLevel.WARN, "Assertion in query {}", ex);
-                    throw ex;
-                }
-                finally {
-                    long stopNsec = System.nanoTime();
-                    if (logger.isTraceEnabled()) {
-                        logger.trace("Executed {}: {} usec", type, (stopNsec - startNsec) / 1000);
+                } else {
+                    if(count == length){
+                        logError(ErrorLogLevel.WARN, "Unexpected runtime exception in query {}", ex);
+                        sendErrorResponse(type,
+                                          (RuntimeException)throwable,
+                                          ErrorCode.UNEXPECTED_EXCEPTION,
+                                          ex.getMessage());
+                    } else {
+                        notifyClient(QueryContext.NotificationLevel.WARNING,
+                                ErrorCode.UNEXPECTED_EXCEPTION,
+                                ex.getMessage());
                     }
                 }
-                PROCESS_MESSAGE.out();
+                count++;
             }
+        } catch (Exception ex) {
+            logError(ErrorLogLevel.WARN, "Unexpected error in query {}", ex);
+            String message = (ex.getMessage() == null ? ex.getClass().toString() : ex.getMessage());
+            sendErrorResponse(type, ex, ErrorCode.UNEXPECTED_EXCEPTION, message);
+        } catch (AssertionError ex) {
+            logError(ErrorLogLevel.WARN, "Assertion in query {}", ex);
+            throw ex;
         }
         finally {
-            if (transaction != null) {
-                transaction.abort();
-                transaction = null;
+            long stopNsec = System.nanoTime();
+            if (logger.isTraceEnabled()) {
+                logger.trace("Executed {}: {} usec", type, (stopNsec - startNsec) / 1000);
             }
-            server.removeConnection(sessionId);
-            reqs.monitor().deregisterSessionMonitor(sessionMonitor, session);
-            logger.debug("Disconnect");
         }
+        PROCESS_MESSAGE.out();
+    }
+
+    protected void disconnect() {
+        if (transaction != null) {
+            transaction.abort();
+            transaction = null;
+        }
+        server.removeConnection(sessionId);
+        reqs.monitor().deregisterSessionMonitor(sessionMonitor, session);
+        logger.debug("Disconnect");
     }
 
     private enum ErrorLogLevel { WARN, INFO, DEBUG };
@@ -550,8 +673,9 @@ public class PostgresServerConnection extends ServerSessionBase
 
     protected void processSSLMessage() throws IOException {
         OutputStream raw = messenger.getOutputStream();
-        if (System.getProperty("javax.net.ssl.keyStore") == null) {
+        if ((System.getProperty("javax.net.ssl.keyStore") == null) || (channel != null)) {
             // JSSE doesn't have a keystore; TLSv1 handshake is gonna fail. Deny support.
+            // Or this is a selector connection, which can't hand its channel to an SSLSocket.
             raw.write('N');
             raw.flush();
         }
@@ -748,6 +872,7 @@ public class PostgresServerConnection extends ServerSessionBase
                 else
                     stmtSQL = sql.substring(stmt.getBeginOffset(),
                                             stmt.getEndOffset() + 1);
+                long compileStart = System.nanoTime();
                 pstmt = generateStatementStub(stmtSQL, stmt, null, null);
                 boolean local = beforeExecute(pstmt);
                 PostgresStatementResult result;
@@ -755,7 +880,7 @@ public class PostgresServerConnection extends ServerSessionBase
                 try {
                     pstmt = finishGenerating(context, stmtSQL, stmt, null, null);
                     if ((statementCache != null) && singleStmt && pstmt.putInCache())
-                        statementCache.put(stmtSQL, pstmt);
+                        statementCache.put(stmtSQL, pstmt, System.nanoTime() - compileStart);
                     pstmt.sendDescription(context, false, false);
                     result = executeStatement(pstmt, context, bindings, -1);
                     success = true;
@@ -816,6 +941,7 @@ public class PostgresServerConnection extends ServerSessionBase
         
         
         if (pstmt == null) {
+            long compileStart = System.nanoTime();
             StatementNode stmt;
             List<ParameterNode> params;
             try {
@@ -842,7 +968,7 @@ public class PostgresServerConnection extends ServerSessionBase
                 afterExecute(pstmt, local, success, false);
             }
             if ((statementCache != null) && pstmt.putInCache()) {
-                statementCache.put(sql, pstmt);
+                statementCache.put(sql, pstmt, System.nanoTime() - compileStart);
             }
         }
         PostgresPreparedStatement ppstmt = 
@@ -1020,9 +1146,14 @@ public class PostgresServerConnection extends ServerSessionBase
         if (session != null) {
             session.cancelCurrentQuery(true);
         }
+        Thread thread = this.thread;
         if (thread != null) {
             thread.interrupt();
         }
+        else if ((channel != null) && (forKillReason != null)) {
+            // Idle on the selector; get scheduled to notice.
+            server.wakeConnection(this);
+        }
     }
 
     public void waitAndStop() {
@@ -1080,7 +1211,8 @@ public class PostgresServerConnection extends ServerSessionBase
 
         unparsedGenerators = new PostgresStatementParser[] {
             new PostgresEmulatedMetaDataStatementParser(this),
-            new PostgresEmulatedSessionStatementParser(this)
+            new PostgresEmulatedSessionStatementParser(this),
+            new PostgresExplainAnalyzeStatementParser(this)
         };
         parsedGenerators = new PostgresStatementGenerator[] {
             // Can be ordered by frequency so long as there is no overlap.
@@ -1100,6 +1232,10 @@ public class PostgresServerConnection extends ServerSessionBase
     public int getStatementCacheCapacity() {
         return server.getStatementCacheCapacity();
     }
+
+    public PlanHintStore getPlanHintStore() {
+        return server.getPlanHintStore();
+    }
     
     protected ServerStatementCache<PostgresStatement>  getStatementCache() {
         // Statement cache depends on some connection settings.
@@ -1107,7 +1243,7 @@ public class PostgresServerConnection extends ServerSessionBase
                                                       defaultSchemaName,
                                                       getProperty("OutputFormat", "table"),
                                                       getProperty("optimizerDummySetting")),
-                                        ais.getGeneration());
+                                        ais);
     }
 
     @Override
@@ -1388,6 +1524,17 @@ public class PostgresServerConnection extends ServerSessionBase
         return valueEncoder;
     }
 
+    @Override
+    public ServerValueEncoder getMessageValueEncoder() {
+        if (messageValueEncoder == null)
+            messageValueEncoder = new ServerValueEncoder(typesTranslator(),
+                                                         messenger.getEncoding(), 
+                                                         messenger.getOutputBuffer(),
+                                                         getZeroDateTimeBehavior(),
+                                                         getFormatOptions());
+        return messageValueEncoder;
+    }
+
     /* ServerSession */
 
     @Override
@@ -1395,6 +1542,7 @@ public class PostgresServerConnection extends ServerSessionBase
         if ("client_encoding".equals(key)) {
             messenger.setEncoding(value);
             valueEncoder = null; // These depend on the encoding.
+            messageValueEncoder = null;
             valueDecoder = null;
             return true;
         }
@@ -1410,9 +1558,11 @@ public class PostgresServerConnection extends ServerSessionBase
         }
         if ("zeroDateTimeBehavior".equals(key)) {
             valueEncoder = null; // Also depends on this.
+            messageValueEncoder = null;
         }
         if ("binary_output".equals(key) || "jsonbinary_output".equals(key)){
             valueEncoder = null;
+            messageValueEncoder = null;
         }
         return super.propertySet(key, value);
     }
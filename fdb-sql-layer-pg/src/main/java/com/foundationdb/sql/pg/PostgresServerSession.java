@@ -25,6 +25,7 @@ package com.foundationdb.sql.pg;
 
 import com.foundationdb.sql.parser.ParameterNode;
 import com.foundationdb.sql.parser.StatementNode;
+import com.foundationdb.sql.server.PlanHintStore;
 import com.foundationdb.sql.server.ServerSession;
 import com.foundationdb.sql.server.ServerValueEncoder;
 
@@ -45,6 +46,9 @@ public interface PostgresServerSession extends ServerSession
     /** Return an encoder of values as bytes / strings. */
     public ServerValueEncoder getValueEncoder();
 
+    /** Return an encoder of values straight into the messenger's current message. */
+    public ServerValueEncoder getMessageValueEncoder();
+
     public enum OutputFormat { TABLE, JSON, JSON_WITH_META_DATA };
 
     /** Get the output format. */
@@ -74,4 +78,7 @@ public interface PostgresServerSession extends ServerSession
     
     public int getStatementCacheCapacity();
 
+    /** Return where join orders are remembered across restarts, or <code>null</code>. */
+    public PlanHintStore getPlanHintStore();
+
 }
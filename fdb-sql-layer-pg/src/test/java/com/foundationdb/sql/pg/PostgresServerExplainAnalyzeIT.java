@@ -0,0 +1,93 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.sql.pg;
+
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PostgresServerExplainAnalyzeIT extends PostgresServerITBase
+{
+    private static final int NROWS = 10;
+
+    @Before
+    public void populate() throws Exception {
+        Statement stmt = getConnection().createStatement();
+        stmt.execute("CREATE TABLE t(id INT NOT NULL PRIMARY KEY, n INT)");
+        for (int i = 0; i < NROWS; i++) {
+            stmt.execute(String.format("INSERT INTO t VALUES(%d, %d)", i, i));
+        }
+        stmt.close();
+    }
+
+    @Test
+    public void select() throws Exception {
+        List<String> rows = query("EXPLAIN ANALYZE SELECT id FROM t WHERE n > 3");
+        assertTrue(rows.toString(), rows.get(0).contains("(actual rows = 6, loops = 1"));
+        assertTrue(rows.toString(), anyContains(rows, "reads = "));
+        assertTrue(rows.toString(), rows.get(rows.size() - 1).startsWith("Execution: 6 rows"));
+    }
+
+    @Test
+    public void insertIsExecuted() throws Exception {
+        List<String> rows = query("explain analyze INSERT INTO t VALUES(100, 100)");
+        assertTrue(rows.toString(), anyContains(rows, "(actual rows = "));
+        List<String> count = query("SELECT COUNT(*) FROM t");
+        assertEquals(Integer.toString(NROWS + 1), count.get(0));
+    }
+
+    @Test
+    public void plainExplainHasNoActual() throws Exception {
+        List<String> rows = query("EXPLAIN SELECT id FROM t WHERE n > 3");
+        assertFalse(rows.toString(), anyContains(rows, "(actual "));
+    }
+
+    protected List<String> query(String sql) throws Exception {
+        List<String> rows = new ArrayList<>();
+        Statement stmt = getConnection().createStatement();
+        ResultSet rs = stmt.executeQuery(sql);
+        while (rs.next()) {
+            rows.add(rs.getString(1));
+        }
+        rs.close();
+        stmt.close();
+        return rows;
+    }
+
+    protected static boolean anyContains(List<String> rows, String str) {
+        for (String row : rows) {
+            if (row.contains(str)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2009-2015 FoundationDB, LLC
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.foundationdb.sql.pg;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Connections served by the server's selector and a small pool of threads. */
+public class PostgresServerSelectorIT extends PostgresServerITBase
+{
+    private static final int CONNECTION_THREADS = 4;
+    private static final int NCONNECTIONS = 50;
+    private static final int NROWS = 2000;
+
+    @Override
+    protected Map<String, String> startupConfigProperties() {
+        Map<String,String> props = new HashMap<>();
+        props.putAll(super.startupConfigProperties());
+        props.put("fdbsql.postgres.connection_mode", "selector");
+        props.put("fdbsql.postgres.connection_threads", Integer.toString(CONNECTION_THREADS));
+        return props;
+    }
+
+    @Before
+    public void createTable() throws Exception {
+        int tid = createTable(SCHEMA_NAME, "t", "id INT NOT NULL PRIMARY KEY, s VARCHAR(100)");
+        for (int i = 0; i < NROWS; i++) {
+            writeRow(tid, i, String.format("%0100d", i));
+        }
+    }
+
+    @Test
+    public void manyConnections() throws Exception {
+        List<Connection> connections = new ArrayList<>();
+        try {
+            for (int i = 0; i < NCONNECTIONS; i++) {
+                connections.add(openConnection());
+            }
+            for (int round = 0; round < 2; round++) {
+                for (int i = 0; i < NCONNECTIONS; i++) {
+                    try (Statement stmt = connections.get(i).createStatement();
+                         ResultSet rs = stmt.executeQuery("SELECT s FROM t WHERE id = " + i)) {
+                        assertTrue(rs.next());
+                        assertEquals(String.format("%0100d", i), rs.getString(1));
+                        assertFalse(rs.next());
+                    }
+                }
+            }
+            int workers = 0;
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                assertFalse(thread.getName(), thread.getName().startsWith("PostgresServer_Session-"));
+                if (thread.getName().startsWith("PostgresServer_Worker-"))
+                    workers++;
+            }
+            assertTrue("worker threads " + workers, workers <= CONNECTION_THREADS);
+        }
+        finally {
+            for (Connection connection : connections) {
+                closeConnection(connection);
+            }
+        }
+    }
+
+    @Test
+    public void largeResult() throws Exception {
+        // More than fits in the socket buffers, so writes have to wait for the client.
+        try (Statement stmt = getConnection().createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT id, s FROM t ORDER BY id")) {
+            for (int i = 0; i < NROWS; i++) {
+                assertTrue(rs.next());
+                assertEquals(i, rs.getInt(1));
+            }
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void preparedStatements() throws Exception {
+        // Parse, Bind, Describe, Execute and Sync arrive together.
+        try (PreparedStatement stmt = getConnection().prepareStatement("SELECT COUNT(*) FROM t WHERE id < ?")) {
+            for (int i = 0; i < 10; i++) {
+                stmt.setInt(1, i * 100);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    assertTrue(rs.next());
+                    assertEquals(i * 100, rs.getInt(1));
+                }
+            }
+        }
+    }
+}